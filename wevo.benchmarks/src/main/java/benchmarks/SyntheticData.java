@@ -0,0 +1,267 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import classifier.Rule;
+import classifier.data.ClassifiedSample;
+import classifier.examples.PhotoRuleCondition;
+import classifier.examples.PhotoRulesGenerator;
+import classifier.examples.SatellitePhotoCategory;
+import engine.Population;
+import engine.codecs.BinaryVectorCodec;
+import engine.codecs.IndividualCodec;
+import engine.codecs.NaturalVectorCodec;
+import engine.codecs.PermutationCodec;
+import engine.codecs.RealVectorCodec;
+import engine.individuals.BinaryVector;
+import engine.individuals.NaturalVector;
+import engine.individuals.Permutation;
+import engine.individuals.RealVector;
+import engine.utils.JavaRandom;
+import engine.utils.WevoRandom;
+
+/**
+ * Generators of synthetic, reproducible data sets used by benchmarks.
+ * Every generator is driven by a fixed seed so that two runs of the same
+ * benchmark on different machines operate on identical inputs.
+ */
+public final class SyntheticData {
+
+  /** Seed used by all generators. */
+  public static final long SEED = 20090521L;
+
+  /** Names of representations understood by {@link #population}. */
+  public static final String BINARY = "binary";
+
+  /** Natural vector representation. */
+  public static final String NATURAL = "natural";
+
+  /** Permutation representation. */
+  public static final String PERMUTATION = "permutation";
+
+  /** Real vector representation. */
+  public static final String REAL = "real";
+
+  /** Upper limit (exclusive) on generated natural and real genes. */
+  public static final int GENE_UPPER_LIMIT = 1000;
+
+  /** Utility class. */
+  private SyntheticData() {
+  }
+
+  /**
+   * Creates random number generator with the fixed seed.
+   * @return Random number generator.
+   */
+  public static JavaRandom random() {
+    return new JavaRandom(SEED);
+  }
+
+  /**
+   * Generates population of random binary vectors.
+   * @param size Number of individuals.
+   * @param length Number of bits of each individual.
+   * @return Generated population.
+   */
+  public static Population<BinaryVector> binaryPopulation(
+      final int size, final int length) {
+    return BinaryVector.generatePopulationOfRandomBinaryIndividuals(
+        random(), length, size);
+  }
+
+  /**
+   * Generates population of random natural vectors with genes drawn
+   * uniformly from [0, {@link #GENE_UPPER_LIMIT}).
+   * @param size Number of individuals.
+   * @param length Number of genes of each individual.
+   * @return Generated population.
+   */
+  public static Population<NaturalVector> naturalPopulation(
+      final int size, final int length) {
+    WevoRandom random = random();
+    List<NaturalVector> individuals = new LinkedList<NaturalVector>();
+    for (int i = 0; i < size; i++) {
+      long[] genes = new long[length];
+      for (int j = 0; j < length; j++) {
+        genes[j] = random.nextLong(0, GENE_UPPER_LIMIT);
+      }
+      individuals.add(new NaturalVector(genes));
+    }
+    return new Population<NaturalVector>(individuals);
+  }
+
+  /**
+   * Generates population of random permutations.
+   * @param size Number of individuals.
+   * @param length Size of each permutation.
+   * @return Generated population.
+   */
+  public static Population<Permutation> permutationPopulation(
+      final int size, final int length) {
+    return Permutation.generatePopulationOfRandomIndividuals(
+        random(), length, size);
+  }
+
+  /**
+   * Generates population of random real vectors with genes drawn
+   * uniformly from [0, {@link #GENE_UPPER_LIMIT}).
+   * @param size Number of individuals.
+   * @param length Number of genes of each individual.
+   * @return Generated population.
+   */
+  public static Population<RealVector> realPopulation(
+      final int size, final int length) {
+    return RealVector.generatePopulationOfRandomRealIndividuals(
+        random(), length, size, 0, GENE_UPPER_LIMIT);
+  }
+
+  /**
+   * Generates population of given representation. Useful for benchmarks
+   * that do not depend on the type of the individual, e.g. serializers.
+   * @param representation One of {@link #BINARY}, {@link #NATURAL},
+   *     {@link #PERMUTATION} or {@link #REAL}.
+   * @param size Number of individuals.
+   * @param length Length of each individual.
+   * @return Generated population.
+   */
+  public static Population<Object> population(
+      final String representation, final int size, final int length) {
+    Population<?> population;
+    if (BINARY.equals(representation)) {
+      population = binaryPopulation(size, length);
+    } else if (NATURAL.equals(representation)) {
+      population = naturalPopulation(size, length);
+    } else if (PERMUTATION.equals(representation)) {
+      population = permutationPopulation(size, length);
+    } else if (REAL.equals(representation)) {
+      population = realPopulation(size, length);
+    } else {
+      throw new IllegalArgumentException(
+          "Unknown representation: " + representation);
+    }
+    return new Population<Object>(
+        new ArrayList<Object>(population.getIndividuals()));
+  }
+
+  /**
+   * Returns codec of individuals of given representation.
+   * @param representation One of {@link #BINARY}, {@link #NATURAL},
+   *     {@link #PERMUTATION} and {@link #REAL}.
+   * @return Codec of the individuals, typed as for {@link #population}.
+   */
+  @SuppressWarnings("unchecked")
+  public static IndividualCodec<Object> codec(final String representation) {
+    IndividualCodec<?> codec;
+    if (BINARY.equals(representation)) {
+      codec = new BinaryVectorCodec();
+    } else if (NATURAL.equals(representation)) {
+      codec = new NaturalVectorCodec();
+    } else if (PERMUTATION.equals(representation)) {
+      codec = new PermutationCodec();
+    } else if (REAL.equals(representation)) {
+      codec = new RealVectorCodec();
+    } else {
+      throw new IllegalArgumentException(
+          "Unknown representation: " + representation);
+    }
+    return (IndividualCodec<Object>) codec;
+  }
+
+  /**
+   * Generates categories used in synthetic classification problems.
+   * @param count Number of categories.
+   * @return List of distinct categories.
+   */
+  public static List<SatellitePhotoCategory> categories(final int count) {
+    List<SatellitePhotoCategory> categories =
+        new ArrayList<SatellitePhotoCategory>();
+    for (int i = 0; i < count; i++) {
+      categories.add(new SatellitePhotoCategory(new Color(i), "c" + i));
+    }
+    return categories;
+  }
+
+  /**
+   * Generates learning set of random pixels. Each pixel has given number
+   * of bands with values drawn uniformly from the range accepted by
+   * {@link PhotoRulesGenerator} and is assigned one of given categories.
+   * @param samples Number of pixels in the learning set.
+   * @param bands Number of bands of each pixel.
+   * @param categories Categories to assign pixels to.
+   * @return Learning set.
+   */
+  public static List<ClassifiedSample<List<Integer>, SatellitePhotoCategory>>
+      learningSet(final int samples, final int bands,
+          final List<SatellitePhotoCategory> categories) {
+    WevoRandom random = random();
+    List<ClassifiedSample<List<Integer>, SatellitePhotoCategory>> result =
+        new ArrayList<ClassifiedSample<List<Integer>,
+            SatellitePhotoCategory>>(samples);
+    for (int i = 0; i < samples; i++) {
+      List<Integer> pixel = new ArrayList<Integer>(bands);
+      for (int j = 0; j < bands; j++) {
+        pixel.add(random.nextInt(PhotoRulesGenerator.LOWER_BOUND_ON_BAND,
+            PhotoRulesGenerator.UPPER_BOUND_ON_BAND));
+      }
+      result.add(new ClassifiedSample<List<Integer>, SatellitePhotoCategory>(
+          pixel, categories.get(random.nextInt(0, categories.size()))));
+    }
+    return result;
+  }
+
+  /**
+   * Generates population of random classification rules, each with
+   * a single sorted interval per band.
+   * @param size Number of rules.
+   * @param bands Number of bands of each pixel.
+   * @param categories Categories rules are generated for.
+   * @return Population of rules.
+   */
+  public static Population<Rule<List<Integer>, SatellitePhotoCategory>>
+      rulePopulation(final int size, final int bands,
+          final List<SatellitePhotoCategory> categories) {
+    WevoRandom random = random();
+    List<Rule<List<Integer>, SatellitePhotoCategory>> rules =
+        new LinkedList<Rule<List<Integer>, SatellitePhotoCategory>>();
+    for (int i = 0; i < size; i++) {
+      List<List<Integer>> bandSets = new ArrayList<List<Integer>>(bands);
+      for (int j = 0; j < bands; j++) {
+        int a = random.nextInt(PhotoRulesGenerator.LOWER_BOUND_ON_BAND,
+            PhotoRulesGenerator.UPPER_BOUND_ON_BAND);
+        int b = random.nextInt(PhotoRulesGenerator.LOWER_BOUND_ON_BAND,
+            PhotoRulesGenerator.UPPER_BOUND_ON_BAND);
+        List<Integer> interval = new ArrayList<Integer>(2);
+        interval.add(Math.min(a, b));
+        interval.add(Math.max(a, b));
+        bandSets.add(interval);
+      }
+      rules.add(new Rule<List<Integer>, SatellitePhotoCategory>(
+          new PhotoRuleCondition(bandSets),
+          categories.get(random.nextInt(0, categories.size()))));
+    }
+    return new Population<Rule<List<Integer>, SatellitePhotoCategory>>(
+        rules);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.classifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.SyntheticData;
+import classifier.ClassifierObjectiveFunction;
+import classifier.Rule;
+import classifier.examples.SatellitePhotoCategory;
+import engine.ObjectiveFunction;
+
+/**
+ * Benchmark of {@link ClassifierObjectiveFunction} on a synthetic learning
+ * set of random multi-band pixels.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ClassifierFitnessBenchmark {
+
+  /** Number of categories pixels are assigned to. */
+  private static final int CATEGORIES = 8;
+
+  /** Number of rules evaluated in each invocation. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Number of pixels in the learning set. */
+  @Param({"1000", "10000" })
+  private int samples;
+
+  /** Number of bands of each pixel. */
+  @Param({"3", "7" })
+  private int bands;
+
+  /** Objective function under test. */
+  private ObjectiveFunction<Rule<List<Integer>, SatellitePhotoCategory>>
+      function;
+
+  /** Evaluated rules. */
+  private List<Rule<List<Integer>, SatellitePhotoCategory>> rules;
+
+  /** Generates learning set and rules. */
+  @Setup
+  public void setUp() {
+    List<SatellitePhotoCategory> categories =
+        SyntheticData.categories(CATEGORIES);
+    function = new ClassifierObjectiveFunction<List<Integer>,
+        SatellitePhotoCategory>(
+            SyntheticData.learningSet(samples, bands, categories));
+    rules = SyntheticData.rulePopulation(populationSize, bands, categories)
+        .getIndividuals();
+  }
+
+  /**
+   * Measures evaluation of the whole rule population.
+   * @param blackhole Sink for computed values.
+   */
+  @Benchmark
+  public void computeFitness(final Blackhole blackhole) {
+    for (Rule<List<Integer>, SatellitePhotoCategory> rule : rules) {
+      blackhole.consume(function.compute(rule));
+    }
+  }
+}
+// MagicNumber on
@@ -0,0 +1,202 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import samples.objectivefunctions.OneMax;
+import benchmarks.SyntheticData;
+import engine.CachedObjectiveFunction;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+import engine.individuals.BinaryVector;
+import engine.utils.LruMap;
+
+/**
+ * Benchmarks of {@link LruMap} and {@link CachedObjectiveFunction}, both
+ * from a single thread and under contention. Keys are drawn uniformly from
+ * a key space twice as large as the cache, so about half of lookups miss.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CacheBenchmark {
+
+  /** Number of threads used in contended benchmarks. */
+  private static final int THREADS = 4;
+
+  /** Maximum number of entries in the cache. */
+  @Param({"1000", "100000" })
+  private int cacheSize;
+
+  /** Number of bits of individuals kept in objective function cache. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Map used from a single thread. */
+  private LruMap<Integer, Double> map;
+
+  /** Map shared by many threads, guarded the same way evaluators do. */
+  private Map<Integer, Double> sharedMap;
+
+  /** Cached objective function shared by all threads. */
+  private List<CachedObjectiveFunction<BinaryVector>> functions;
+
+  /** Individuals the objective function is evaluated on. */
+  private List<BinaryVector> individuals;
+
+  /** Fills the caches with half of the key space. */
+  @Setup
+  public void setUp() {
+    map = new LruMap<Integer, Double>(cacheSize);
+    sharedMap = Collections.synchronizedMap(
+        new LruMap<Integer, Double>(cacheSize));
+    for (int i = 0; i < cacheSize; i++) {
+      map.put(2 * i, (double) i);
+      sharedMap.put(2 * i, (double) i);
+    }
+
+    functions = new ArrayList<CachedObjectiveFunction<BinaryVector>>();
+    functions.add(
+        new CachedObjectiveFunction<BinaryVector>(new OneMax(), cacheSize));
+    individuals = new ArrayList<BinaryVector>(SyntheticData.binaryPopulation(
+        2 * cacheSize, genomeLength).getIndividuals());
+    new SingleThreadedEvaluator<BinaryVector>(functions).evaluatePopulation(
+        new Population<BinaryVector>(
+            individuals.subList(0, cacheSize)));
+  }
+
+  /** Per-thread source of keys. */
+  @State(Scope.Thread)
+  public static class Keys {
+    /** Random number generator. */
+    private final Random random = new Random(SyntheticData.SEED);
+
+    /**
+     * Draws next key.
+     * @param bound Size of the key space.
+     * @return Key from [0, bound).
+     */
+    int next(final int bound) {
+      return random.nextInt(bound);
+    }
+  }
+
+  /**
+   * Looks up a key in the map and stores it on a miss.
+   * @param target Map to use.
+   * @param key Key to look up.
+   * @return Value associated with the key.
+   */
+  private static Double getOrPut(
+      final Map<Integer, Double> target, final int key) {
+    Double value = target.get(key);
+    if (value == null) {
+      value = (double) key;
+      target.put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Measures {@link LruMap} used from a single thread.
+   * @param keys Source of keys.
+   * @return Looked up value.
+   */
+  @Benchmark
+  public Double lruMapGetOrPut(final Keys keys) {
+    return getOrPut(map, keys.next(2 * cacheSize));
+  }
+
+  /**
+   * Measures synchronized {@link LruMap} shared by many threads.
+   * @param keys Source of keys.
+   * @return Looked up value.
+   */
+  @Benchmark
+  @Threads(THREADS)
+  public Double lruMapGetOrPutContended(final Keys keys) {
+    return getOrPut(sharedMap, keys.next(2 * cacheSize));
+  }
+
+  /**
+   * Measures evaluation of a single individual by
+   * {@link CachedObjectiveFunction} from a single thread.
+   * @param keys Source of keys.
+   * @return Evaluated population.
+   */
+  @Benchmark
+  public Population<BinaryVector> cachedObjectiveFunction(final Keys keys) {
+    return evaluate(keys);
+  }
+
+  /**
+   * Measures evaluation of a single individual by
+   * {@link CachedObjectiveFunction} shared by many threads, the way
+   * {@link engine.MultiThreadedEvaluator} uses it.
+   * @param keys Source of keys.
+   * @return Evaluated population.
+   */
+  @Benchmark
+  @Threads(THREADS)
+  public Population<BinaryVector> cachedObjectiveFunctionContended(
+      final Keys keys) {
+    return evaluate(keys);
+  }
+
+  /**
+   * Evaluates a random individual with the shared objective function.
+   * Evaluation is invoked directly rather than by applying the evaluator,
+   * which would skip individuals of the last applied population by identity
+   * and replace that population, shared by all threads.
+   * @param keys Source of keys.
+   * @return Evaluated single-individual population.
+   */
+  private Population<BinaryVector> evaluate(final Keys keys) {
+    Population<BinaryVector> population = new Population<BinaryVector>();
+    population.addIndividual(individuals.get(keys.next(individuals.size())));
+    new SingleThreadedEvaluator<BinaryVector>(functions).evaluatePopulation(
+        population);
+    return population;
+  }
+}
+// MagicNumber on
@@ -0,0 +1,136 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import samples.objectivefunctions.OneMax;
+import benchmarks.SyntheticData;
+import engine.CachedObjectiveFunction;
+import engine.MultiThreadedEvaluator;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+import engine.individuals.BinaryVector;
+
+/**
+ * Benchmarks of {@link SingleThreadedEvaluator} and
+ * {@link MultiThreadedEvaluator}. With a cold cache the cache holds a single
+ * entry, so cycling through the population misses on every individual and
+ * each evaluation computes the objective function. With a warm cache every
+ * individual fits in the cache and only lookups are measured. Populations
+ * are evaluated directly rather than applied as operators, which would skip
+ * the same survivors by identity on every invocation.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EvaluatorBenchmark {
+
+  /** Cold cache mode. */
+  private static final String COLD = "cold";
+
+  /** Number of individuals in the population. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Number of bits of each individual. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Either "cold" or "warm". */
+  @Param({"cold", "warm" })
+  private String cache;
+
+  /** Evaluated population. */
+  private Population<BinaryVector> population;
+
+  /** Single threaded evaluator. */
+  private SingleThreadedEvaluator<BinaryVector> singleThreaded;
+
+  /** Multi threaded evaluator. */
+  private MultiThreadedEvaluator<BinaryVector> multiThreaded;
+
+  /** Generates the population and creates evaluators. */
+  @Setup
+  public void setUp() {
+    population = SyntheticData.binaryPopulation(populationSize, genomeLength);
+    singleThreaded = new SingleThreadedEvaluator<BinaryVector>(functions());
+    multiThreaded = new MultiThreadedEvaluator<BinaryVector>(functions());
+  }
+
+  /** Stops worker threads of the multi threaded evaluator. */
+  @TearDown
+  public void tearDown() {
+    multiThreaded.shutDown();
+  }
+
+  /**
+   * Creates a fresh list of cached objective functions.
+   * @return List with a single cached {@link OneMax}.
+   */
+  private List<CachedObjectiveFunction<BinaryVector>> functions() {
+    int cacheSize = COLD.equals(cache) ? 1 : 2 * populationSize;
+    List<CachedObjectiveFunction<BinaryVector>> functions =
+        new ArrayList<CachedObjectiveFunction<BinaryVector>>();
+    functions.add(
+        new CachedObjectiveFunction<BinaryVector>(new OneMax(), cacheSize));
+    return functions;
+  }
+
+  /**
+   * Measures {@link SingleThreadedEvaluator}.
+   * @return Evaluated population.
+   */
+  @Benchmark
+  public Population<BinaryVector> singleThreaded() {
+    singleThreaded.evaluatePopulation(population);
+    return population;
+  }
+
+  /**
+   * Measures {@link MultiThreadedEvaluator}.
+   * @return Evaluated population.
+   */
+  @Benchmark
+  public Population<BinaryVector> multiThreaded() {
+    multiThreaded.evaluatePopulation(population);
+    return population;
+  }
+}
+// MagicNumber on
@@ -0,0 +1,182 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import samples.objectivefunctions.OneMax;
+import benchmarks.SyntheticData;
+import engine.Factory;
+import engine.ObjectiveFunction;
+import engine.Operator;
+import engine.Population;
+import engine.individuals.BinaryVector;
+import engine.operators.AddHardcodedIndividual;
+import engine.operators.BestFractionSelection;
+import engine.operators.CombineBestWithOtherOperator;
+import engine.operators.PopulationStatistics;
+import engine.operators.reporters.BestIndividualAndBasicStats;
+import engine.utils.SystemClock;
+
+/**
+ * Benchmarks of operators that do not depend on the representation
+ * of the individual: selection, statistics and reporters. All of them
+ * are run on binary vectors scored with {@link OneMax}, so the cost of
+ * the objective function grows with the genome length.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GenericOperatorsBenchmark {
+
+  /** Number of individuals in the population. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Number of bits of each individual. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Population operators are applied to. */
+  private Population<BinaryVector> population;
+
+  /** Best half selection. */
+  private Operator<BinaryVector> bestFractionSelection;
+
+  /** Copy of the population combined with best individual. */
+  private Operator<BinaryVector> combineBestWithOther;
+
+  /** Adds a constant individual to the population. */
+  private Operator<BinaryVector> addHardcodedIndividual;
+
+  /** Best, worst and average statistics. */
+  private Operator<BinaryVector> populationStatistics;
+
+  /** Reporter with output disabled, so only computations are measured. */
+  private Operator<BinaryVector> bestIndividualAndBasicStats;
+
+  /** Generates the population and creates operators. */
+  @Setup
+  public void setUp() {
+    population = SyntheticData.binaryPopulation(populationSize, genomeLength);
+    List<ObjectiveFunction<BinaryVector>> functions =
+        new ArrayList<ObjectiveFunction<BinaryVector>>();
+    functions.add(new OneMax());
+
+    bestFractionSelection =
+        new BestFractionSelection<BinaryVector>(functions.get(0), 0.5);
+    combineBestWithOther = new CombineBestWithOtherOperator<BinaryVector>(
+        functions, new CopyOperator(), SyntheticData.random());
+    final BinaryVector hardcoded = new BinaryVector(genomeLength);
+    addHardcodedIndividual = new AddHardcodedIndividual<BinaryVector>(
+        new Factory<BinaryVector>() {
+          public BinaryVector get() {
+            return hardcoded;
+          }
+        });
+    populationStatistics =
+        new PopulationStatistics<BinaryVector>(functions.get(0));
+
+    Logger silent = Logger.getLogger(
+        GenericOperatorsBenchmark.class.getCanonicalName());
+    silent.setLevel(Level.OFF);
+    bestIndividualAndBasicStats = new BestIndividualAndBasicStats<BinaryVector>(
+        functions, silent, null, new SystemClock());
+  }
+
+  /**
+   * Measures {@link BestFractionSelection}.
+   * @return Selected population.
+   */
+  @Benchmark
+  public Population<BinaryVector> bestFractionSelection() {
+    return bestFractionSelection.apply(population);
+  }
+
+  /**
+   * Measures {@link CombineBestWithOtherOperator} wrapped around
+   * an operator that copies the population.
+   * @return Combined population.
+   */
+  @Benchmark
+  public Population<BinaryVector> combineBestWithOtherOperator() {
+    return combineBestWithOther.apply(population);
+  }
+
+  /**
+   * Measures {@link AddHardcodedIndividual}. The operator modifies its
+   * argument, so it is applied to a fresh copy of the population.
+   * @return Population with the individual added.
+   */
+  @Benchmark
+  public Population<BinaryVector> addHardcodedIndividual() {
+    return addHardcodedIndividual.apply(new Population<BinaryVector>(
+        new ArrayList<BinaryVector>(population.getIndividuals())));
+  }
+
+  /**
+   * Measures {@link PopulationStatistics}.
+   * @return Input population.
+   */
+  @Benchmark
+  public Population<BinaryVector> populationStatistics() {
+    return populationStatistics.apply(population);
+  }
+
+  /**
+   * Measures {@link BestIndividualAndBasicStats}.
+   * @return Input population.
+   */
+  @Benchmark
+  public Population<BinaryVector> bestIndividualAndBasicStats() {
+    return bestIndividualAndBasicStats.apply(population);
+  }
+
+  /** Operator that returns modifiable copy of the population. */
+  private static class CopyOperator implements Operator<BinaryVector> {
+    /** {@inheritDoc} */
+    public Population<BinaryVector> apply(
+        final Population<BinaryVector> population) {
+      return new Population<BinaryVector>(
+          new ArrayList<BinaryVector>(population.getIndividuals()));
+    }
+  }
+}
+// MagicNumber on
@@ -0,0 +1,115 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.operators;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticData;
+import engine.Operator;
+import engine.Population;
+import engine.individuals.NaturalVector;
+import engine.operators.natural.GaussianAdditionMutation;
+import engine.operators.natural.IntervalCutoff;
+import engine.operators.natural.UniformCrossover;
+
+/**
+ * Benchmarks of operators working on {@link NaturalVector} individuals.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NaturalOperatorsBenchmark {
+
+  /** Number of individuals in the population. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Number of genes of each individual. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Population operators are applied to. */
+  private Population<NaturalVector> population;
+
+  /** Gaussian mutation. */
+  private Operator<NaturalVector> mutation;
+
+  /** Interval cutoff. */
+  private Operator<NaturalVector> cutoff;
+
+  /** Uniform crossover. */
+  private Operator<NaturalVector> crossover;
+
+  /** Generates the population and creates operators. */
+  @Setup
+  public void setUp() {
+    population = SyntheticData.naturalPopulation(populationSize, genomeLength);
+    mutation = new GaussianAdditionMutation(SyntheticData.random(), 0.1, 5.0);
+    cutoff = new IntervalCutoff(
+        SyntheticData.GENE_UPPER_LIMIT / 4,
+        3 * SyntheticData.GENE_UPPER_LIMIT / 4);
+    crossover = new UniformCrossover(new Random(SyntheticData.SEED));
+  }
+
+  /**
+   * Measures {@link GaussianAdditionMutation}.
+   * @return Mutated population.
+   */
+  @Benchmark
+  public Population<NaturalVector> gaussianAdditionMutation() {
+    return mutation.apply(population);
+  }
+
+  /**
+   * Measures {@link IntervalCutoff}.
+   * @return Population brought back to the interval.
+   */
+  @Benchmark
+  public Population<NaturalVector> intervalCutoff() {
+    return cutoff.apply(population);
+  }
+
+  /**
+   * Measures {@link UniformCrossover}.
+   * @return Offspring population.
+   */
+  @Benchmark
+  public Population<NaturalVector> uniformCrossover() {
+    return crossover.apply(population);
+  }
+}
+// MagicNumber on
@@ -0,0 +1,113 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.operators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticData;
+import engine.Operator;
+import engine.Population;
+import engine.individuals.Permutation;
+import engine.operators.permutation.InversionMutation;
+import engine.operators.permutation.PMXCrossover;
+import engine.operators.permutation.TranspositionMutation;
+
+/**
+ * Benchmarks of operators working on {@link Permutation} individuals.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PermutationOperatorsBenchmark {
+
+  /** Number of individuals in the population. Has to be even. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Size of each permutation. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Population operators are applied to. */
+  private Population<Permutation> population;
+
+  /** Inversion mutation applied to every individual. */
+  private Operator<Permutation> inversion;
+
+  /** Transposition mutation applied to every individual. */
+  private Operator<Permutation> transposition;
+
+  /** PMX crossover with random segment bounds. */
+  private Operator<Permutation> pmx;
+
+  /** Generates the population and creates operators. */
+  @Setup
+  public void setUp() {
+    population = SyntheticData.permutationPopulation(
+        populationSize, genomeLength);
+    inversion = new InversionMutation(SyntheticData.random(), 1.0);
+    transposition = new TranspositionMutation(SyntheticData.random(), 1.0);
+    pmx = new PMXCrossover(SyntheticData.random());
+  }
+
+  /**
+   * Measures {@link InversionMutation}.
+   * @return Mutated population.
+   */
+  @Benchmark
+  public Population<Permutation> inversionMutation() {
+    return inversion.apply(population);
+  }
+
+  /**
+   * Measures {@link TranspositionMutation}.
+   * @return Mutated population.
+   */
+  @Benchmark
+  public Population<Permutation> transpositionMutation() {
+    return transposition.apply(population);
+  }
+
+  /**
+   * Measures {@link PMXCrossover}.
+   * @return Offspring population.
+   */
+  @Benchmark
+  public Population<Permutation> pmxCrossover() {
+    return pmx.apply(population);
+  }
+}
+// MagicNumber on
@@ -0,0 +1,185 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package benchmarks.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticData;
+import engine.Population;
+import engine.distribution.serialization.BinaryResultSerializer;
+import engine.distribution.serialization.BinaryTaskSerializer;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationResultBuilder;
+import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.serialization.JavaIOResultSerializer;
+import engine.distribution.serialization.JavaIOTaskSerializer;
+import engine.distribution.serialization.ResultSerializer;
+import engine.distribution.serialization.TaskSerializer;
+
+/**
+ * Benchmarks of task and result serializers, Java I/O based and binary,
+ * in both directions, for every individual representation shipped with
+ * the library.
+ */
+// MagicNumber off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SerializationBenchmark {
+
+  /** Initial size of output buffers. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Serialization format, Java I/O or binary. */
+  @Param({"javaio", "binary" })
+  private String format;
+
+  /** Representation of serialized individuals. */
+  @Param({"binary", "natural", "permutation", "real" })
+  private String representation;
+
+  /** Number of individuals in the task. */
+  @Param({"100", "1000" })
+  private int populationSize;
+
+  /** Length of each individual. */
+  @Param({"32", "1024" })
+  private int genomeLength;
+
+  /** Task serializer. */
+  private TaskSerializer<Object> taskSerializer;
+
+  /** Result serializer. */
+  private ResultSerializer<Object> resultSerializer;
+
+  /** Serialized task. */
+  private EvaluationTask<Object> task;
+
+  /** Serialized result. */
+  private EvaluationResult<Object> result;
+
+  /** Task in serialized form. */
+  private byte[] taskBytes;
+
+  /** Result in serialized form. */
+  private byte[] resultBytes;
+
+  /**
+   * Generates task and result and serializes them once.
+   * @throws IOException Never thrown.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    if ("binary".equals(format)) {
+      taskSerializer = new BinaryTaskSerializer<Object>(
+          SyntheticData.codec(representation));
+      resultSerializer = new BinaryResultSerializer<Object>();
+    } else {
+      taskSerializer = new JavaIOTaskSerializer<Object>();
+      resultSerializer = new JavaIOResultSerializer<Object>();
+    }
+
+    Population<Object> population = SyntheticData.population(
+        representation, populationSize, genomeLength);
+    task = new EvaluationTask<Object>(population);
+
+    Map<Object, Double> values = new LinkedHashMap<Object, Double>();
+    int i = 0;
+    for (Object individual : population.getIndividuals()) {
+      values.put(individual, (double) i++);
+    }
+    EvaluationResultBuilder<Object> builder =
+        new EvaluationResultBuilder<Object>();
+    builder.appendObjectiveFunctionResults(values);
+    result = builder.toEvaluationResult();
+
+    taskBytes = serializeTask();
+    resultBytes = serializeResult();
+  }
+
+  /**
+   * Measures task serialization.
+   * @return Serialized task.
+   * @throws IOException Never thrown.
+   */
+  @Benchmark
+  public byte[] serializeTask() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+    taskSerializer.serialize(output, task);
+    return output.toByteArray();
+  }
+
+  /**
+   * Measures task deserialization.
+   * @return Deserialized task.
+   * @throws IOException Never thrown.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  @Benchmark
+  public EvaluationTask<Object> deserializeTask()
+      throws IOException, ClassNotFoundException {
+    return taskSerializer.deserialize(new ByteArrayInputStream(taskBytes));
+  }
+
+  /**
+   * Measures result serialization.
+   * @return Serialized result.
+   * @throws IOException Never thrown.
+   */
+  @Benchmark
+  public byte[] serializeResult() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+    resultSerializer.serialize(output, result);
+    return output.toByteArray();
+  }
+
+  /**
+   * Measures result deserialization.
+   * @return Deserialized result.
+   * @throws IOException Never thrown.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  @Benchmark
+  public EvaluationResult<Object> deserializeResult()
+      throws IOException, ClassNotFoundException {
+    return resultSerializer.deserialize(new ByteArrayInputStream(resultBytes));
+  }
+}
+// MagicNumber on
@@ -22,17 +22,19 @@ package classifier;
 import java.util.List;
 
 import classifier.data.ClassifiedSample;
-import engine.ObjectiveFunction;
+import engine.DecomposableObjectiveFunction;
 
 /**
- * Objective function for learning classifier system.
+ * Objective function for learning classifier system. The value is
+ * the number of samples classified correctly, so values over shards of
+ * the learning set are summed up.
  * @param <D> Data sample type.
  * @param <C> Category type.
  * @author Lukasz Krawiec (lmkrawiec@gmail.com)
  * @author Michal Anglart (anglart.michal@gmail.com)
  */
 public class ClassifierObjectiveFunction<D, C> 
-      implements ObjectiveFunction<Rule<D, C>> {
+      implements DecomposableObjectiveFunction<Rule<D, C>> {
 
     // TODO(anglart.michal|lmkrawiec): write tests!
 
@@ -65,4 +67,13 @@ public class ClassifierObjectiveFunction<D, C>
       }
       return value;
     }
+
+    /** {@inheritDoc} */
+    public double combine(double[] partialValues) {
+      double value = 0;
+      for (double partialValue : partialValues) {
+        value += partialValue;
+      }
+      return value;
+    }
 }
@@ -19,18 +19,26 @@
  */
 package engine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import engine.checkpoint.CheckpointUtils;
+import engine.checkpoint.Checkpointable;
+import engine.checkpoint.Checkpointer;
+import engine.utils.VarIntUtils;
+
 /**
  * Encapsulates the list of operators, evaluators, termination conditions, etc.
  * @author Marcin Brodziak (marcin@nierobcietegowdomu.pl)
  *
  * @param <T> Type of the individuals to be evolved.
  */
-public class Algorithm<T> {
+public class Algorithm<T> implements Checkpointable {
 
   /** Logger. */
   private final Logger logger =
@@ -48,6 +56,22 @@ public class Algorithm<T> {
   /** Forces algorithm to reset termination condition. */
   private boolean shouldBeReset = false;
 
+  /** Number of iterations started so far. */
+  private long iterationNo = 0;
+
+  /** Termination conditions of the algorithm, in order of addition. */
+  private final List<TerminationCondition<T>> terminationConditions =
+      new ArrayList<TerminationCondition<T>>();
+
+  /** Saves state of the algorithm between iterations. May be null. */
+  private Checkpointer<T> checkpointer;
+
+  /** Number of iterations between checkpoints. */
+  private int checkpointInterval;
+
+  /** Iteration after which the last checkpoint was saved or restored. */
+  private long lastCheckpointIteration = 0;
+
   /**
    * Creates the Algorithm that will form the basis for the evolution.
    * @param population Initial population.
@@ -72,6 +96,7 @@ public class Algorithm<T> {
    *      terminates the execution of the algorithm. 
    */
   public void addExitPoint(final TerminationCondition<T> terminationCondition) {
+    terminationConditions.add(terminationCondition);
     operators.add(new Operator<T>() {
       public Population<T> apply(Population<T> populationInternal) {
         if (Algorithm.this.shouldBeReset) {
@@ -94,12 +119,27 @@ public class Algorithm<T> {
     operators.add(operator);
   }
 
+  /**
+   * Makes the algorithm save its state with given checkpointer every given
+   * number of iterations. Checkpoints are taken between iterations.
+   * @param newCheckpointer Checkpointer to use.
+   * @param interval Number of iterations between checkpoints.
+   */
+  public void setCheckpointer(Checkpointer<T> newCheckpointer, int interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException(
+          "Checkpoint interval has to be positive.");
+    }
+    this.checkpointer = newCheckpointer;
+    this.checkpointInterval = interval;
+  }
+
   /**
    * Runs the algorithm.
    */
   public void run() {
-    long iterationNo = 0;
     while (true) {
+      checkpointIfNeeded();
       iterationNo++;
       logger.log(Level.FINE, "Iteration " + iterationNo + " started");
       for (Operator<T> operator : operators) {
@@ -115,6 +155,65 @@ public class Algorithm<T> {
     }
   }
 
+  /**
+   * Saves state of the algorithm if a checkpointer is set and checkpoint
+   * interval has passed. Failed checkpoints are logged and do not stop
+   * the algorithm.
+   */
+  private void checkpointIfNeeded() {
+    if (checkpointer == null || isFinished
+        || iterationNo == lastCheckpointIteration
+        || iterationNo % checkpointInterval != 0) {
+      return;
+    }
+    try {
+      checkpointer.checkpoint(this);
+      lastCheckpointIteration = iterationNo;
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Checkpoint after iteration " + iterationNo
+          + " failed.", e);
+    }
+  }
+
+  /**
+   * Returns number of iterations started so far.
+   * @return Number of iterations.
+   */
+  public long getIterationNumber() {
+    return iterationNo;
+  }
+
+  /**
+   * {@inheritDoc} Writes iteration number, flags and states of termination
+   * conditions. Population is not included.
+   */
+  public void writeState(DataOutput output) throws IOException {
+    output.writeLong(iterationNo);
+    output.writeBoolean(isFinished);
+    output.writeBoolean(shouldBeReset);
+    VarIntUtils.writeUnsignedInt(output, terminationConditions.size());
+    for (TerminationCondition<T> condition : terminationConditions) {
+      CheckpointUtils.writeState(output, condition);
+    }
+  }
+
+  /** {@inheritDoc} */
+  public void readState(DataInput input) throws IOException {
+    iterationNo = input.readLong();
+    isFinished = input.readBoolean();
+    shouldBeReset = input.readBoolean();
+    final int conditions = VarIntUtils.readUnsignedInt(input);
+    if (conditions != terminationConditions.size()) {
+      throw new IOException("Saved state contains " + conditions
+          + " termination conditions while algorithm has "
+          + terminationConditions.size());
+    }
+    for (TerminationCondition<T> condition : terminationConditions) {
+      CheckpointUtils.readState(input, condition);
+    }
+    lastCheckpointIteration = iterationNo;
+  }
+
   /**  Sets true to flag which forces termination condition to reset. */
   public void reset() {
     shouldBeReset = true;
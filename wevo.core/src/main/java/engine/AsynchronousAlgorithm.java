@@ -0,0 +1,188 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.master.MasterSlaveEvaluator;
+
+/**
+ * Steady-state algorithm evaluating offspring asynchronously on slaves, with
+ * no barrier at the end of a generation. Offspring bred from the current
+ * population are submitted to the master evaluator in batches. Whenever
+ * a task comes back, its individuals are integrated into the population by
+ * the replacement policy, and whenever a batch worth of offspring came back,
+ * a new batch is bred, so slaves always have tasks to pull and never wait
+ * for the slowest one.
+ *
+ * Offspring are bred from the population as it is at submission, so they
+ * may be integrated after a few replacements happened in the meantime.
+ *
+ * @param <T> Type of the individuals to be evolved.
+ */
+public class AsynchronousAlgorithm<T> {
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      AsynchronousAlgorithm.class.getCanonicalName());
+
+  /** Evaluator distributing offspring to slaves. */
+  private final MasterSlaveEvaluator<T> evaluator;
+
+  /** Operator breeding offspring from the population. */
+  private final Operator<T> breeder;
+
+  /** Policy integrating evaluated offspring into the population. */
+  private final ReplacementPolicy<T> replacementPolicy;
+
+  /** Termination conditions, checked after every replacement. */
+  private final List<TerminationCondition<T>> terminationConditions =
+      new ArrayList<TerminationCondition<T>>();
+
+  /** Number of batches of offspring submitted ahead. */
+  private int batchesInFlight = 2;
+
+  /** Population on which the algorithm works. */
+  private Population<T> population;
+
+  /** Number of individuals in the last submitted batch. */
+  private int batchSize;
+
+  /** Number of replacements done so far. */
+  private long replacements;
+
+  /**
+   * Creates the algorithm.
+   * @param population Initial population.
+   * @param evaluator Evaluator distributing offspring to slaves. Its work
+   * queue (see {@link MasterSlaveEvaluator#setWorkQueue(int, long)}) must be
+   * set, and the chunk size makes the unit of replacement.
+   * @param breeder Operator breeding a batch of offspring from
+   * the population, e.g. crossover and mutation.
+   * @param replacementPolicy Policy integrating evaluated offspring into
+   * the population.
+   */
+  public AsynchronousAlgorithm(final Population<T> population,
+      final MasterSlaveEvaluator<T> evaluator,
+      final Operator<T> breeder,
+      final ReplacementPolicy<T> replacementPolicy) {
+    this.population = population;
+    this.evaluator = evaluator;
+    this.breeder = breeder;
+    this.replacementPolicy = replacementPolicy;
+  }
+
+  /**
+   * Sets the number of batches of offspring submitted ahead. There should be
+   * enough tasks in flight for all slaves.
+   * @param batches Number of batches. Must be positive.
+   */
+  public void setBatchesInFlight(final int batches) {
+    if (batches <= 0) {
+      throw new IllegalArgumentException(
+          "Number of batches has to be positive.");
+    }
+    this.batchesInFlight = batches;
+  }
+
+  /**
+   * Adds termination condition checked after every replacement.
+   * @param terminationCondition Condition which, when met, terminates
+   * the algorithm.
+   */
+  public void addExitPoint(final TerminationCondition<T> terminationCondition) {
+    terminationConditions.add(terminationCondition);
+  }
+
+  /**
+   * Returns number of replacements done so far.
+   * @return Number of replacements.
+   */
+  public long getReplacementNumber() {
+    return replacements;
+  }
+
+  /**
+   * Runs the algorithm. The initial population is evaluated as a whole
+   * first. Offspring still in flight when the algorithm terminates are
+   * abandoned.
+   * @return Final population.
+   * @throws InterruptedException Thrown when interrupted while waiting for
+   * offspring to be evaluated.
+   */
+  public Population<T> run() throws InterruptedException {
+    evaluator.evaluatePopulation(population);
+    if (isSatisfied()) {
+      return population;
+    }
+
+    evaluator.startAsynchronousEvaluation();
+    int pending = 0;
+    for (int i = 0; i < batchesInFlight; i++) {
+      pending += submitBatch();
+    }
+    while (true) {
+      final Population<T> offspring = evaluator.takeEvaluated();
+      pending -= offspring.size();
+      population = replacementPolicy.replace(population, offspring);
+      replacements++;
+      logger.log(Level.FINER, "Replacement " + replacements + " of "
+          + offspring.size() + " offspring");
+      if (isSatisfied()) {
+        return population;
+      }
+      // A new batch is bred once a batch worth of offspring came back, so
+      // that the number of offspring in flight stays constant.
+      while (pending <= (batchesInFlight - 1) * batchSize) {
+        pending += submitBatch();
+      }
+    }
+  }
+
+  /**
+   * Breeds a batch of offspring from the current population and submits it.
+   * @return Number of individuals to be returned by the evaluator.
+   */
+  private int submitBatch() {
+    final Population<T> offspring = breeder.apply(population);
+    final int submitted = evaluator.submit(offspring);
+    if (submitted == 0) {
+      throw new IllegalStateException("Breeder produced no offspring.");
+    }
+    batchSize = submitted;
+    return submitted;
+  }
+
+  /**
+   * Checks termination conditions.
+   * @return True iff any of the conditions is satisfied.
+   */
+  private boolean isSatisfied() {
+    for (TerminationCondition<T> condition : terminationConditions) {
+      if (condition.isSatisfied(population)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
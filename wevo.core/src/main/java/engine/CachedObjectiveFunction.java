@@ -21,13 +21,27 @@
 package engine;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import engine.utils.LruMap;
+import engine.utils.StripedLruCache;
 
 /**
  * Wrapper for an objective function that caches the result of computation.
+ *
+ * Besides the LRU cache, values of the individuals of the last evaluated
+ * population are kept by identity. Individuals which survive to the next
+ * evaluation as the very same objects are recognised without hashing and
+ * regardless of evictions from the cache, so they are not evaluated again.
+ * This relies on individuals never being modified in place once evaluated;
+ * operators have to modify copies instead. The cache still has to be large
+ * enough to hold all new individuals of a population.
+ *
+ * The cache is striped (see {@link StripedLruCache}), so that results of
+ * many slaves are merged in parallel.
  * @author Marcin Brodziak (marcin@nierobcietegowdomu.pl)
  *
  * @param <T> Type of the individual being evaluated.
@@ -37,8 +51,11 @@ public class CachedObjectiveFunction<T> implements ObjectiveFunction<T> {
   private final ObjectiveFunction<T> function;
 
   /** Map &mdash; cache from individual to its value. */
-  private final LruMap<T, Double> map;
+  private final StripedLruCache<T, Double> map;
  
+  /** Values of the individuals of the last evaluated population. */
+  private volatile Map<T, Double> evaluated = new IdentityHashMap<T, Double>();
+
   /** Logger. */
   private final Logger logger = Logger.getLogger(
       CachedObjectiveFunction.class.getCanonicalName());
@@ -46,12 +63,13 @@ public class CachedObjectiveFunction<T> implements ObjectiveFunction<T> {
   /**
    * Creates caching wrapper for given objective function.
    * @param function Objective function to be cached.
-   * @param cacheSize Size of the cache.
+   * @param cacheSize Size of the cache, approximate for large caches (see
+   * {@link StripedLruCache}).
    */
   public CachedObjectiveFunction(ObjectiveFunction<T> function, 
       int cacheSize) {
     this.function = function;
-    map = new LruMap<T, Double>(cacheSize);
+    map = new StripedLruCache<T, Double>(cacheSize);
   }
 
   /**
@@ -59,24 +77,86 @@ public class CachedObjectiveFunction<T> implements ObjectiveFunction<T> {
    * @param individual Individual to be evaluated.
    */
   void computeInternal(T individual) {
-    logger.fine("Computing value of objective function for " + individual);
-    if (map.containsKey(individual)) {
-      map.get(individual); // Update the access time!
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("Computing value of objective function for " + individual);
+    }
+    if (map.get(individual) != null) { // Updates the access time!
       return;
     }
-    double v = function.compute(individual);
-    synchronized (map) {
-      map.put(individual, v);
+    map.put(individual, function.compute(individual));
+  }
+
+  /**
+   * Checks if given object was already evaluated as part of the last
+   * evaluated population.
+   * @param individual Individual to check.
+   * @return True if the value of the individual is known.
+   */
+  boolean isEvaluated(T individual) {
+    return evaluated.containsKey(individual);
+  }
+
+  /**
+   * Checks if the value of given individual is known, either as part of
+   * the last evaluated population or from the cache. Unlike
+   * {@link #isEvaluated}, equal individuals are recognised as well.
+   * @param individual Individual to check.
+   * @return True if the value of the individual is known.
+   */
+  public boolean isCached(T individual) {
+    if (evaluated.containsKey(individual)) {
+      return true;
     }
+    return map.containsKey(individual);
+  }
+
+  /**
+   * Gets the value of given individual, if known, either as part of
+   * the last evaluated population or from the cache, marking its cache entry
+   * as recently used.
+   * @param individual Individual to look up.
+   * @return Value of the individual or null if it is not known.
+   */
+  public Double getCachedValue(T individual) {
+    Double value = evaluated.get(individual);
+    if (value != null) {
+      return value;
+    }
+    return map.get(individual);
+  }
+
+  /**
+   * Remembers values of given individuals of the evaluated population.
+   * Values of individuals of previous populations are forgotten, unless
+   * they are in the cache.
+   * @param individuals Individuals of the evaluated population.
+   */
+  void retain(List<T> individuals) {
+    Map<T, Double> current = new IdentityHashMap<T, Double>(individuals.size());
+    for (T individual : individuals) {
+      Double value = evaluated.get(individual);
+      if (value == null) {
+        value = map.get(individual);
+      }
+      if (value != null) {
+        current.put(individual, value);
+      }
+    }
+    evaluated = current;
   }
 
   /** {@inheritDoc} */
   public double compute(T o) {
-    if (!map.containsKey(o)) {
+    Double value = evaluated.get(o);
+    if (value != null) {
+      return value;
+    }
+    value = map.get(o);
+    if (value == null) {
       throw new IllegalStateException("Cache of objective function values " 
           + "does not contain entry for " + o);
     }
-    return map.get(o);
+    return value;
   }
 
   /**
@@ -88,11 +168,53 @@ public class CachedObjectiveFunction<T> implements ObjectiveFunction<T> {
     map.putAll(input);
   }
 
+  /**
+   * Merges this function's cache with values given by position.
+   * @param individuals Individuals to merge.
+   * @param values Array holding values of the individuals.
+   * @param offset Position of the value of the first individual.
+   * @param stride Distance between values of consecutive individuals.
+   */
+  public void merge(List<T> individuals, double[] values, int offset,
+      int stride) {
+    int position = offset;
+    for (T individual : individuals) {
+      map.put(individual, values[position]);
+      position += stride;
+    }
+  }
+
+  /**
+   * Combines partial values of an individual computed over shards of
+   * the data, as defined by the cached function.
+   * @param partialValues Values of the function, one per shard.
+   * @return Value of the objective function.
+   */
+  @SuppressWarnings("unchecked")
+  public double combine(double[] partialValues) {
+    if (!(function instanceof DecomposableObjectiveFunction)) {
+      throw new IllegalStateException("Objective function " + function
+          + " is not decomposable");
+    }
+    return ((DecomposableObjectiveFunction<T>) function).combine(
+        partialValues);
+  }
+
   /**
    * Returns immutable cache copy.
    * @return Immutable cache copy.
    */
   public Map<T, Double> getCache() {
-    return Collections.unmodifiableMap(map);
+    return Collections.unmodifiableMap(map.copy());
+  }
+
+  /**
+   * Returns a copy of the cache, taken between merges. Entries are ordered
+   * so that merging the copy into an empty cache of the same size
+   * reproduces the original (see {@link StripedLruCache#copy()}).
+   * @return Copy of the cache.
+   */
+  public Map<T, Double> copyCache() {
+    return map.copy();
   }
 }
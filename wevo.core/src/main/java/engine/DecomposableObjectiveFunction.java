@@ -0,0 +1,40 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine;
+
+/**
+ * Objective function whose value over a data set can be assembled from
+ * values over disjoint parts of that set. In data-parallel distribution,
+ * every slave computes the function over its own shard of the data and
+ * the master combines the partial values of all shards.
+ *
+ * @param <T> Type of the individual being evaluated.
+ */
+public interface DecomposableObjectiveFunction<T>
+    extends ObjectiveFunction<T> {
+  /**
+   * Combines values of the function computed over all shards of the data
+   * into the value over the whole data.
+   * @param partialValues Values of the function for the same individual,
+   * one per shard.
+   * @return Value of the objective function.
+   */
+  double combine(double[] partialValues);
+}
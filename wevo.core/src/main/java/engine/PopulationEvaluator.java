@@ -19,6 +19,7 @@
  */
 package engine;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -26,6 +27,10 @@ import java.util.List;
  * It is implemented as an operator so that it can be easily added at any step
  * in the algorithm.
  *
+ * Applied as an operator, it evaluates only individuals which are not the
+ * very same objects as in the previously evaluated population, i.e. new
+ * offspring. Unchanged survivors are skipped in constant time.
+ *
  * @author Marcin Brodziak (marcin.brodziak@gmail.com)
  *
  * @param <T> Type of individuals being evaluated.
@@ -50,10 +55,38 @@ public abstract class PopulationEvaluator<T> implements Operator<T> {
 
   /** {@inheritDoc} */
   public Population<T> apply(Population<T> populationInternal) {
-    evaluatePopulation(populationInternal);
+    List<T> individuals = populationInternal.getIndividuals();
+    List<T> changed = new ArrayList<T>();
+    for (T individual : individuals) {
+      if (!isEvaluated(individual)) {
+        changed.add(individual);
+      }
+    }
+    if (changed.size() == individuals.size()) {
+      evaluatePopulation(populationInternal);
+    } else if (!changed.isEmpty()) {
+      evaluatePopulation(new Population<T>(changed));
+    }
+    for (CachedObjectiveFunction<T> function : objectiveFunctions) {
+      function.retain(individuals);
+    }
     return populationInternal;
   }
 
+  /**
+   * Checks if given individual was evaluated and has not changed since.
+   * @param individual Individual to check.
+   * @return True if all objective functions know the value of the individual.
+   */
+  private boolean isEvaluated(T individual) {
+    for (CachedObjectiveFunction<T> function : objectiveFunctions) {
+      if (!function.isEvaluated(individual)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns list of objective functions to be evaluated.
    * @return List of objective functions to be evaluated.
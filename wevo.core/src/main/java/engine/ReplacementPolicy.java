@@ -0,0 +1,37 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine;
+
+/**
+ * Integrates evaluated offspring into the population of a steady-state
+ * algorithm, which, unlike generational algorithms, changes the population
+ * by a few individuals at a time.
+ *
+ * @param <T> Type of the individuals in the population.
+ */
+public interface ReplacementPolicy<T> {
+  /**
+   * Replaces individuals of the population with offspring.
+   * @param population Current population.
+   * @param offspring Evaluated offspring.
+   * @return Population after replacement.
+   */
+  Population<T> replace(Population<T> population, Population<T> offspring);
+}
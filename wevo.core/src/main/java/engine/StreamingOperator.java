@@ -0,0 +1,45 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine;
+
+import java.util.Iterator;
+
+/**
+ * An operator transforming a stream of individuals into another stream of
+ * individuals lazily, i.e. individuals are pulled from the source only when
+ * the result is consumed. Chains of such operators pass individuals one by
+ * one instead of materializing a {@link Population} after every step, so
+ * both copying and peak memory drop for large populations.
+ *
+ * Operators which need random access to the population, e.g. selections,
+ * cannot stream; they can still be put in a chain wrapped with
+ * {@link engine.operators.MaterializingAdapter}.
+ *
+ * @param <T> Type of the individual in the stream.
+ */
+public interface StreamingOperator<T> {
+  /**
+   * Applies the operator to given stream of individuals. Must not consume
+   * the source before the result is consumed.
+   * @param individuals Source individuals.
+   * @return Individuals after transformation.
+   */
+  Iterator<T> apply(Iterator<T> individuals);
+}
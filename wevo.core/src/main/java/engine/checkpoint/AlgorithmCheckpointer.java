@@ -0,0 +1,150 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.Algorithm;
+import engine.CachedObjectiveFunction;
+import engine.codecs.IndividualCodec;
+
+/**
+ * Writes complete snapshots of the algorithm to a single file in a compact
+ * binary format and restores them after restart. A snapshot contains
+ * the population, contents of objective function caches, iteration number,
+ * state of termination conditions and state of any additional components,
+ * e.g. random number generators used by operators. If all stateful parts
+ * of the algorithm are saved, the resumed run is bit-identical to the
+ * uninterrupted one.
+ *
+ * Encoding is synchronous: the whole snapshot is encoded on the calling
+ * thread before {@link #checkpoint(Algorithm)} returns, as objective function
+ * caches, termination conditions and components such as random number
+ * generators change once the next iteration starts, so holding references to
+ * them would not capture the state. Only the encoded bytes are written to
+ * disk on a background thread. The file is replaced atomically, so a crash
+ * in the middle of the write leaves the previous snapshot intact.
+ *
+ * @param <T> Type of the individuals in the algorithm.
+ */
+public class AlgorithmCheckpointer<T> implements Checkpointer<T> {
+
+  /** Magic number starting every checkpoint file ("WEVO"). */
+  static final int MAGIC = 0x5745564F;
+
+  /** Version of the snapshot format. */
+  static final int VERSION = 1;
+
+  /** Logger. */
+  private final Logger logger =
+      Logger.getLogger(AlgorithmCheckpointer.class.getCanonicalName());
+
+  /** Checkpoint file. */
+  private final File file;
+
+  /** Format of snapshots. */
+  private final SnapshotFormat<T> format;
+
+  /** Writer of the checkpoint file. */
+  private final BackgroundFileWriter writer;
+
+  /** Size of the last snapshot, used to preallocate buffer. */
+  private int lastSize = 0;
+
+  /**
+   * Creates the checkpointer.
+   * @param file Checkpoint file.
+   * @param codec Codec of individuals.
+   * @param objectiveFunctions Objective functions whose caches are saved.
+   * @param components Additional components whose state is saved, e.g.
+   *     random number generators of operators. Components which are not
+   *     {@link Checkpointable} are ignored.
+   */
+  public AlgorithmCheckpointer(
+      final File file,
+      final IndividualCodec<T> codec,
+      final List<CachedObjectiveFunction<T>> objectiveFunctions,
+      final List<?> components) {
+    this.file = file;
+    this.format = new SnapshotFormat<T>(codec, objectiveFunctions, components);
+    this.writer = new BackgroundFileWriter(file);
+  }
+
+  /** {@inheritDoc} */
+  public void checkpoint(Algorithm<T> algorithm) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(lastSize + 1);
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(MAGIC);
+    output.writeByte(VERSION);
+    format.writeSnapshot(output, algorithm);
+    output.flush();
+    lastSize = bytes.size();
+    logger.log(Level.FINE, "Writing checkpoint of " + lastSize + " bytes "
+        + "after iteration " + algorithm.getIterationNumber());
+    writer.replace(bytes.toByteArray());
+  }
+
+  /** {@inheritDoc} */
+  public boolean restore(Algorithm<T> algorithm) throws IOException {
+    BackgroundFileWriter.recover(file);
+    if (!file.exists()) {
+      return false;
+    }
+    DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (input.readInt() != MAGIC) {
+        throw new IOException(file + " is not a checkpoint file.");
+      }
+      final int version = input.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version);
+      }
+      format.readSnapshot(input, algorithm);
+    } finally {
+      input.close();
+    }
+    logger.log(Level.INFO, "Restored checkpoint from " + file
+        + " at iteration " + algorithm.getIterationNumber());
+    return true;
+  }
+
+  /**
+   * Waits until the last checkpoint is written to disk.
+   * @throws IOException Thrown if writing failed.
+   */
+  public void awaitWrites() throws IOException {
+    writer.await();
+  }
+
+  /** Waits for pending writes and stops the background writer. */
+  public void shutDown() {
+    writer.shutDown();
+  }
+}
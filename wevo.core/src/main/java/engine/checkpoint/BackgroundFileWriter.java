@@ -0,0 +1,209 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes checkpoint data to a file on a background thread. At most one write
+ * is in flight at a time: scheduling a write waits for the previous one to
+ * complete, so memory usage stays bounded when the disk is slower than the
+ * algorithm. Package-visibility, as it is an implementation detail of
+ * checkpointers.
+ */
+class BackgroundFileWriter {
+
+  /** Logger. */
+  private final Logger logger =
+      Logger.getLogger(BackgroundFileWriter.class.getCanonicalName());
+
+  /** File being written. */
+  private final File file;
+
+  /** Executor running the writes. */
+  private final ExecutorService executor;
+
+  /** Most recently scheduled write. */
+  private Future<?> lastWrite;
+
+  /**
+   * Creates the writer.
+   * @param file File to write.
+   */
+  BackgroundFileWriter(final File file) {
+    this.file = file;
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Gets the file keeping the previous contents of the file while they are
+   * being replaced.
+   * @param file Replaced file.
+   * @return Backup of the file.
+   */
+  static File getBackup(final File file) {
+    return new File(file.getPath() + ".bak");
+  }
+
+  /**
+   * Restores the file from its backup, if a crash interrupted replacing
+   * the file after it was moved aside.
+   * @param file File to recover.
+   * @throws IOException Thrown when the backup cannot be restored.
+   */
+  static void recover(final File file) throws IOException {
+    final File backup = getBackup(file);
+    if (!file.exists() && backup.exists() && !backup.renameTo(file)) {
+      throw new IOException("Could not restore " + file + " from " + backup);
+    }
+  }
+
+  /**
+   * Schedules atomic replacement of the file contents. Data is written to
+   * a temporary file, synced to disk and renamed over the target, so
+   * a crash in the middle of the write leaves the previous contents intact.
+   * Where renaming over an existing file fails, the previous file is moved
+   * to its backup first and removed only once the new one is in place
+   * (see {@link #recover(File)}).
+   * @param data New contents of the file. Must not be modified afterwards.
+   * @throws IOException Thrown if the previous write failed.
+   */
+  synchronized void replace(final byte[] data) throws IOException {
+    schedule(new Runnable() {
+      public void run() {
+        try {
+          File temporary = new File(file.getPath() + ".tmp");
+          write(temporary, data, false);
+          if (!temporary.renameTo(file)) {
+            final File backup = getBackup(file);
+            backup.delete();
+            if (file.exists() && !file.renameTo(backup)) {
+              throw new IOException("Could not rename " + file
+                  + " to " + backup);
+            }
+            if (!temporary.renameTo(file)) {
+              throw new IOException("Could not rename " + temporary
+                  + " to " + file);
+            }
+            backup.delete();
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Schedules appending data to the file.
+   * @param data Data to append. Must not be modified afterwards.
+   * @throws IOException Thrown if the previous write failed.
+   */
+  synchronized void append(final byte[] data) throws IOException {
+    schedule(new Runnable() {
+      public void run() {
+        try {
+          write(file, data, true);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits until all scheduled writes complete.
+   * @throws IOException Thrown if the last write failed.
+   */
+  synchronized void await() throws IOException {
+    if (lastWrite == null) {
+      return;
+    }
+    try {
+      lastWrite.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for checkpoint.");
+    } catch (ExecutionException e) {
+      logger.log(Level.SEVERE, "Writing checkpoint " + file + " failed.",
+          e.getCause());
+      IOException exception = new IOException(
+          "Writing checkpoint " + file + " failed.");
+      exception.initCause(e.getCause());
+      throw exception;
+    } finally {
+      lastWrite = null;
+    }
+  }
+
+  /** Waits for scheduled writes and stops the background thread. */
+  synchronized void shutDown() {
+    try {
+      await();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Last checkpoint was not written.", e);
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Waits for the previous write and schedules the next one.
+   * @param write Write to schedule.
+   * @throws IOException Thrown if the previous write failed.
+   */
+  private void schedule(final Runnable write) throws IOException {
+    await();
+    lastWrite = executor.submit(write);
+  }
+
+  /**
+   * Writes data to the file and syncs it to disk.
+   * @param target File to write.
+   * @param data Data to write.
+   * @param append Whether to append or truncate.
+   * @throws IOException Thrown on IO errors.
+   */
+  private static void write(final File target, final byte[] data,
+      final boolean append) throws IOException {
+    FileOutputStream output = new FileOutputStream(target, append);
+    try {
+      output.write(data);
+      output.flush();
+      output.getFD().sync();
+    } finally {
+      output.close();
+    }
+  }
+}
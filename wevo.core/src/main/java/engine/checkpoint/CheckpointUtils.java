@@ -0,0 +1,79 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import engine.utils.VarIntUtils;
+
+/**
+ * Common utilities for writing and reading checkpoints.
+ */
+public final class CheckpointUtils {
+
+  /** Utility class. */
+  private CheckpointUtils() {
+  }
+
+  /**
+   * Writes state of the component as a length-prefixed block. Components
+   * that are not {@link Checkpointable} are written as empty blocks.
+   * @param output Output to write to.
+   * @param component Component to write.
+   * @throws IOException Thrown on IO errors.
+   */
+  public static void writeState(DataOutput output, Object component)
+      throws IOException {
+    if (!(component instanceof Checkpointable)) {
+      VarIntUtils.writeUnsignedInt(output, 0);
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream block = new DataOutputStream(bytes);
+    ((Checkpointable) component).writeState(block);
+    block.flush();
+    VarIntUtils.writeUnsignedInt(output, bytes.size());
+    output.write(bytes.toByteArray());
+  }
+
+  /**
+   * Reads block written with {@link #writeState} and restores it into
+   * the component. Blocks of components that are not
+   * {@link Checkpointable} are skipped.
+   * @param input Input to read from.
+   * @param component Component to restore.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  public static void readState(DataInput input, Object component)
+      throws IOException {
+    byte[] block = new byte[VarIntUtils.readUnsignedInt(input)];
+    input.readFully(block);
+    if (component instanceof Checkpointable) {
+      ((Checkpointable) component).readState(
+          new DataInputStream(new ByteArrayInputStream(block)));
+    }
+  }
+}
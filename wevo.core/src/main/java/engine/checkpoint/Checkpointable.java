@@ -0,0 +1,48 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Object whose internal state can be saved in a checkpoint and restored
+ * later, so that a resumed computation continues exactly as the original
+ * one would. Random number generators, termination conditions and stateful
+ * operators implement it.
+ */
+public interface Checkpointable {
+
+  /**
+   * Writes internal state of the object.
+   * @param output Output to write to.
+   * @throws IOException Thrown on IO errors.
+   */
+  void writeState(DataOutput output) throws IOException;
+
+  /**
+   * Replaces internal state of the object with one written by
+   * {@link #writeState}.
+   * @param input Input to read from.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  void readState(DataInput input) throws IOException;
+}
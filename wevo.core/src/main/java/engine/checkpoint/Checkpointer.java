@@ -0,0 +1,49 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.IOException;
+
+import engine.Algorithm;
+
+/**
+ * Saves state of the {@link Algorithm} between iterations and restores it
+ * after restart.
+ * @param <T> Type of the individuals in the algorithm.
+ */
+public interface Checkpointer<T> {
+
+  /**
+   * Saves state of the algorithm. Called by the algorithm between
+   * iterations.
+   * @param algorithm Algorithm to save.
+   * @throws IOException Thrown on IO errors.
+   */
+  void checkpoint(Algorithm<T> algorithm) throws IOException;
+
+  /**
+   * Restores the most recent saved state into the algorithm. The algorithm
+   * has to be set up the same way as the one that was saved.
+   * @param algorithm Algorithm to restore the state into.
+   * @return Whether any saved state was found.
+   * @throws IOException Thrown on IO errors or malformed checkpoint.
+   */
+  boolean restore(Algorithm<T> algorithm) throws IOException;
+}
@@ -0,0 +1,426 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import engine.Algorithm;
+import engine.CachedObjectiveFunction;
+import engine.Population;
+import engine.codecs.IndividualCodec;
+import engine.utils.VarIntUtils;
+
+/**
+ * Writes checkpoints of the algorithm to a log-structured file. The log
+ * starts with a complete snapshot (as written by
+ * {@link AlgorithmCheckpointer}) followed by deltas. A delta contains only
+ * individuals that did not exist in the population at the previous
+ * checkpoint, references to the ones that survived, and cache entries
+ * computed since then, so in steady-state or elitist runs frequent
+ * checkpoints cost a small fraction of a complete snapshot.
+ *
+ * The log is compacted, i.e. atomically replaced with a single complete
+ * snapshot, every given number of deltas or when deltas grow larger than
+ * the last complete snapshot. Each record carries a checksum; a record torn
+ * by a crash is ignored on restore, together with anything after it.
+ *
+ * Survivors are recognised by their encoded form, so individuals modified
+ * in place by operators are correctly treated as new ones.
+ *
+ * @param <T> Type of the individuals in the algorithm.
+ */
+public class IncrementalCheckpointer<T> implements Checkpointer<T> {
+
+  /** Version of the log format. */
+  static final int VERSION = 2;
+
+  /** Record holding a complete snapshot. */
+  static final int FULL_RECORD = 1;
+
+  /** Record holding a delta against the previous record. */
+  static final int DELTA_RECORD = 2;
+
+  /** Logger. */
+  private final Logger logger =
+      Logger.getLogger(IncrementalCheckpointer.class.getCanonicalName());
+
+  /** Checkpoint file. */
+  private final File file;
+
+  /** Format of complete snapshots. */
+  private final SnapshotFormat<T> format;
+
+  /** Maximum number of deltas between complete snapshots. */
+  private final int compactionInterval;
+
+  /** Writer of the checkpoint file. */
+  private final BackgroundFileWriter writer;
+
+  /**
+   * Positions of individuals at the last checkpoint, keyed by their encoded
+   * form. Null until the first complete snapshot is written.
+   */
+  private Map<ByteBuffer, Integer> previousPositions;
+
+  /** Keys of cache entries already in the log, one set per function. */
+  private List<Set<T>> loggedKeys;
+
+  /** Number of deltas written since the last complete snapshot. */
+  private int deltasSinceSnapshot;
+
+  /** Total size of deltas written since the last complete snapshot. */
+  private long deltaBytes;
+
+  /** Size of the last complete snapshot. */
+  private long snapshotBytes;
+
+  /**
+   * Creates the checkpointer.
+   * @param file Checkpoint file.
+   * @param codec Codec of individuals.
+   * @param objectiveFunctions Objective functions whose caches are saved.
+   * @param components Additional components whose state is saved, e.g.
+   *     random number generators of operators. Components which are not
+   *     {@link Checkpointable} are ignored.
+   * @param compactionInterval Maximum number of deltas between complete
+   *     snapshots.
+   */
+  public IncrementalCheckpointer(
+      final File file,
+      final IndividualCodec<T> codec,
+      final List<CachedObjectiveFunction<T>> objectiveFunctions,
+      final List<?> components,
+      final int compactionInterval) {
+    if (compactionInterval <= 0) {
+      throw new IllegalArgumentException(
+          "Compaction interval has to be positive.");
+    }
+    this.file = file;
+    this.format = new SnapshotFormat<T>(codec, objectiveFunctions, components);
+    this.compactionInterval = compactionInterval;
+    this.writer = new BackgroundFileWriter(file);
+  }
+
+  /** {@inheritDoc} */
+  public void checkpoint(Algorithm<T> algorithm) throws IOException {
+    List<T> individuals = algorithm.getPopulation().getIndividuals();
+    List<ByteBuffer> encoded = new ArrayList<ByteBuffer>(individuals.size());
+    for (T individual : individuals) {
+      encoded.add(ByteBuffer.wrap(encode(individual)));
+    }
+
+    final boolean snapshot = previousPositions == null
+        || deltasSinceSnapshot >= compactionInterval
+        || deltaBytes >= snapshotBytes;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    if (snapshot) {
+      writeSnapshot(payload, algorithm, encoded);
+    } else {
+      writeDelta(payload, algorithm, encoded);
+    }
+    payload.flush();
+    byte[] record = frame(snapshot ? FULL_RECORD : DELTA_RECORD,
+        bytes.toByteArray());
+
+    previousPositions = new HashMap<ByteBuffer, Integer>();
+    for (int i = encoded.size() - 1; i >= 0; i--) {
+      previousPositions.put(encoded.get(i), i);
+    }
+
+    if (snapshot) {
+      ByteArrayOutputStream log = new ByteArrayOutputStream(
+          record.length + 2 * 4);
+      DataOutputStream output = new DataOutputStream(log);
+      output.writeInt(AlgorithmCheckpointer.MAGIC);
+      output.writeByte(VERSION);
+      output.write(record);
+      output.flush();
+      snapshotBytes = record.length;
+      deltaBytes = 0;
+      deltasSinceSnapshot = 0;
+      logger.log(Level.FINE, "Writing snapshot of " + record.length
+          + " bytes after iteration " + algorithm.getIterationNumber());
+      writer.replace(log.toByteArray());
+    } else {
+      deltaBytes += record.length;
+      deltasSinceSnapshot++;
+      logger.log(Level.FINE, "Writing delta of " + record.length
+          + " bytes after iteration " + algorithm.getIterationNumber());
+      writer.append(record);
+    }
+  }
+
+  /**
+   * Writes complete snapshot in the format of {@link SnapshotFormat}.
+   * @param output Output to write to.
+   * @param algorithm Algorithm to write.
+   * @param encoded Encoded individuals of the population.
+   * @throws IOException Thrown on IO errors.
+   */
+  private void writeSnapshot(final DataOutput output,
+      final Algorithm<T> algorithm, final List<ByteBuffer> encoded)
+      throws IOException {
+    CheckpointUtils.writeState(output, algorithm);
+    VarIntUtils.writeUnsignedInt(output, encoded.size());
+    for (ByteBuffer individual : encoded) {
+      output.write(individual.array());
+    }
+    List<T> individuals = algorithm.getPopulation().getIndividuals();
+    Map<T, Integer> positions = format.positions(individuals);
+    List<CachedObjectiveFunction<T>> functions =
+        format.getObjectiveFunctions();
+    VarIntUtils.writeUnsignedInt(output, functions.size());
+    loggedKeys = new ArrayList<Set<T>>(functions.size());
+    for (CachedObjectiveFunction<T> function : functions) {
+      Map<T, Double> cache = function.copyCache();
+      format.writeCacheEntries(output, cache, positions);
+      loggedKeys.add(new HashSet<T>(cache.keySet()));
+    }
+    format.writeComponents(output);
+  }
+
+  /**
+   * Writes delta against the previous checkpoint.
+   * @param output Output to write to.
+   * @param algorithm Algorithm to write.
+   * @param encoded Encoded individuals of the population.
+   * @throws IOException Thrown on IO errors.
+   */
+  private void writeDelta(final DataOutput output,
+      final Algorithm<T> algorithm, final List<ByteBuffer> encoded)
+      throws IOException {
+    CheckpointUtils.writeState(output, algorithm);
+    VarIntUtils.writeUnsignedInt(output, encoded.size());
+    for (ByteBuffer individual : encoded) {
+      Integer previous = previousPositions.get(individual);
+      if (previous == null) {
+        VarIntUtils.writeUnsignedInt(output, 0);
+        output.write(individual.array());
+      } else {
+        VarIntUtils.writeUnsignedInt(output, previous + 1);
+      }
+    }
+    List<T> individuals = algorithm.getPopulation().getIndividuals();
+    Map<T, Integer> positions = format.positions(individuals);
+    List<CachedObjectiveFunction<T>> functions =
+        format.getObjectiveFunctions();
+    VarIntUtils.writeUnsignedInt(output, functions.size());
+    for (int i = 0; i < functions.size(); i++) {
+      Set<T> logged = loggedKeys.get(i);
+      Map<T, Double> added = new LinkedHashMap<T, Double>();
+      for (Map.Entry<T, Double> entry
+          : functions.get(i).copyCache().entrySet()) {
+        if (logged.add(entry.getKey())) {
+          added.put(entry.getKey(), entry.getValue());
+        }
+      }
+      format.writeCacheEntries(output, added, positions);
+    }
+    format.writeComponents(output);
+  }
+
+  /** {@inheritDoc} */
+  public boolean restore(Algorithm<T> algorithm) throws IOException {
+    BackgroundFileWriter.recover(file);
+    if (!file.exists()) {
+      return false;
+    }
+    DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)));
+    int records = 0;
+    try {
+      if (input.readInt() != AlgorithmCheckpointer.MAGIC) {
+        throw new IOException(file + " is not a checkpoint file.");
+      }
+      final int version = input.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version);
+      }
+      byte[] payload;
+      while ((payload = readRecord(input)) != null) {
+        DataInputStream record = new DataInputStream(
+            new ByteArrayInputStream(payload, 1, payload.length - 1));
+        if (payload[0] == FULL_RECORD) {
+          format.readSnapshot(record, algorithm);
+        } else if (payload[0] == DELTA_RECORD && records > 0) {
+          readDelta(record, algorithm);
+        } else {
+          throw new IOException("Unexpected record type " + payload[0]);
+        }
+        records++;
+      }
+    } finally {
+      input.close();
+    }
+    if (records == 0) {
+      return false;
+    }
+    logger.log(Level.INFO, "Restored " + records + " checkpoint records from "
+        + file + " up to iteration " + algorithm.getIterationNumber());
+    return true;
+  }
+
+  /**
+   * Reads delta written with {@link #writeDelta} and applies it.
+   * @param input Input to read from.
+   * @param algorithm Algorithm to apply the delta to.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  private void readDelta(final DataInput input, final Algorithm<T> algorithm)
+      throws IOException {
+    CheckpointUtils.readState(input, algorithm);
+    List<T> previous = algorithm.getPopulation().getIndividuals();
+    final int size = VarIntUtils.readUnsignedInt(input);
+    List<T> individuals = new ArrayList<T>(size);
+    for (int i = 0; i < size; i++) {
+      final int reference = VarIntUtils.readUnsignedInt(input);
+      if (reference == 0) {
+        individuals.add(format.getCodec().decode(input));
+      } else if (reference <= previous.size()) {
+        // Survivors are copied, so that no two slots share an object.
+        individuals.add(decode(encode(previous.get(reference - 1))));
+      } else {
+        throw new IOException("Reference " + reference
+            + " points outside of the previous population.");
+      }
+    }
+    algorithm.setPopulation(new Population<T>(individuals));
+    List<CachedObjectiveFunction<T>> functions =
+        format.getObjectiveFunctions();
+    SnapshotFormat.checkCount("objective functions", functions.size(),
+        VarIntUtils.readUnsignedInt(input));
+    for (CachedObjectiveFunction<T> function : functions) {
+      function.merge(format.readCacheEntries(input, individuals));
+    }
+    format.readComponents(input);
+  }
+
+  /**
+   * Builds a record: type, length, payload and checksum.
+   * @param type Type of the record.
+   * @param payload Payload of the record.
+   * @return Framed record.
+   * @throws IOException Never thrown.
+   */
+  private static byte[] frame(final int type, final byte[] payload)
+      throws IOException {
+    ByteArrayOutputStream bytes =
+        new ByteArrayOutputStream(payload.length + 3 * 4);
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(payload.length + 1);
+    output.writeByte(type);
+    output.write(payload);
+    CRC32 checksum = new CRC32();
+    checksum.update(type);
+    checksum.update(payload);
+    output.writeInt((int) checksum.getValue());
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Reads a record built with {@link #frame}.
+   * @param input Input to read from.
+   * @return Type followed by payload, or null if there are no more
+   *     complete and valid records.
+   * @throws IOException Thrown on IO errors.
+   */
+  private byte[] readRecord(final DataInputStream input) throws IOException {
+    try {
+      final int length = input.readInt();
+      if (length <= 0 || length > input.available() - 4) {
+        logger.log(Level.WARNING, "Ignoring truncated checkpoint record.");
+        return null;
+      }
+      byte[] record = new byte[length];
+      input.readFully(record);
+      CRC32 checksum = new CRC32();
+      checksum.update(record);
+      if (input.readInt() != (int) checksum.getValue()) {
+        logger.log(Level.WARNING, "Ignoring corrupted checkpoint record.");
+        return null;
+      }
+      return record;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Encodes single individual.
+   * @param individual Individual to encode.
+   * @return Encoded individual.
+   * @throws IOException Never thrown.
+   */
+  private byte[] encode(final T individual) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    format.getCodec().encode(output, individual);
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes single individual.
+   * @param bytes Encoded individual.
+   * @return Decoded individual.
+   * @throws IOException Thrown on malformed input.
+   */
+  private T decode(final byte[] bytes) throws IOException {
+    return format.getCodec().decode(
+        new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  /**
+   * Waits until all checkpoints are written to disk.
+   * @throws IOException Thrown if writing failed.
+   */
+  public void awaitWrites() throws IOException {
+    writer.await();
+  }
+
+  /** Waits for pending writes and stops the background writer. */
+  public void shutDown() {
+    writer.shutDown();
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import engine.Algorithm;
+import engine.CachedObjectiveFunction;
+import engine.Population;
+import engine.codecs.IndividualCodec;
+import engine.utils.VarIntUtils;
+
+/**
+ * Binary format of a complete snapshot of the algorithm: its own state
+ * (iteration number and termination conditions), the population, contents
+ * of objective function caches and state of additional components such as
+ * random number generators. Cache entries of individuals present in the
+ * population are written as references to the population instead of full
+ * individuals. Package-visibility, shared by checkpointers.
+ * @param <T> Type of the individuals.
+ */
+class SnapshotFormat<T> {
+
+  /** Codec of individuals. */
+  private final IndividualCodec<T> codec;
+
+  /** Objective functions whose caches are saved. */
+  private final List<CachedObjectiveFunction<T>> objectiveFunctions;
+
+  /** Additional components whose state is saved. */
+  private final List<?> components;
+
+  /**
+   * Creates the format.
+   * @param codec Codec of individuals.
+   * @param objectiveFunctions Objective functions whose caches are saved.
+   * @param components Additional components whose state is saved.
+   *     Components which are not {@link Checkpointable} are ignored.
+   */
+  SnapshotFormat(final IndividualCodec<T> codec,
+      final List<CachedObjectiveFunction<T>> objectiveFunctions,
+      final List<?> components) {
+    this.codec = codec;
+    this.objectiveFunctions = objectiveFunctions;
+    this.components = components;
+  }
+
+  /**
+   * Returns codec of individuals.
+   * @return Codec of individuals.
+   */
+  IndividualCodec<T> getCodec() {
+    return codec;
+  }
+
+  /**
+   * Returns objective functions whose caches are saved.
+   * @return Objective functions.
+   */
+  List<CachedObjectiveFunction<T>> getObjectiveFunctions() {
+    return objectiveFunctions;
+  }
+
+  /**
+   * Writes complete snapshot of the algorithm.
+   * @param output Output to write to.
+   * @param algorithm Algorithm to write.
+   * @throws IOException Thrown on IO errors.
+   */
+  void writeSnapshot(final DataOutput output, final Algorithm<T> algorithm)
+      throws IOException {
+    CheckpointUtils.writeState(output, algorithm);
+    List<T> individuals = algorithm.getPopulation().getIndividuals();
+    writeIndividuals(output, individuals);
+    Map<T, Integer> positions = positions(individuals);
+    VarIntUtils.writeUnsignedInt(output, objectiveFunctions.size());
+    for (CachedObjectiveFunction<T> function : objectiveFunctions) {
+      writeCacheEntries(output, function.copyCache(), positions);
+    }
+    writeComponents(output);
+  }
+
+  /**
+   * Reads snapshot written with {@link #writeSnapshot} and restores it.
+   * Caches of objective functions should be empty, otherwise restored
+   * entries are merged into existing ones.
+   * @param input Input to read from.
+   * @param algorithm Algorithm to restore the snapshot into.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  void readSnapshot(final DataInput input, final Algorithm<T> algorithm)
+      throws IOException {
+    CheckpointUtils.readState(input, algorithm);
+    List<T> individuals = readIndividuals(input);
+    algorithm.setPopulation(new Population<T>(individuals));
+    checkCount("objective functions", objectiveFunctions.size(),
+        VarIntUtils.readUnsignedInt(input));
+    for (CachedObjectiveFunction<T> function : objectiveFunctions) {
+      function.merge(readCacheEntries(input, individuals));
+    }
+    readComponents(input);
+  }
+
+  /**
+   * Writes list of individuals.
+   * @param output Output to write to.
+   * @param individuals Individuals to write.
+   * @throws IOException Thrown on IO errors.
+   */
+  void writeIndividuals(final DataOutput output, final List<T> individuals)
+      throws IOException {
+    VarIntUtils.writeUnsignedInt(output, individuals.size());
+    for (T individual : individuals) {
+      codec.encode(output, individual);
+    }
+  }
+
+  /**
+   * Reads list of individuals written with {@link #writeIndividuals}.
+   * @param input Input to read from.
+   * @return Modifiable list of individuals.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  List<T> readIndividuals(final DataInput input) throws IOException {
+    final int size = VarIntUtils.readUnsignedInt(input);
+    List<T> individuals = new ArrayList<T>(size);
+    for (int i = 0; i < size; i++) {
+      individuals.add(codec.decode(input));
+    }
+    return individuals;
+  }
+
+  /**
+   * Writes cache entries. Individuals found in positions map are written
+   * as references, others are encoded in full.
+   * @param output Output to write to.
+   * @param entries Entries to write.
+   * @param positions Positions of individuals that can be referenced.
+   * @throws IOException Thrown on IO errors.
+   */
+  void writeCacheEntries(final DataOutput output,
+      final Map<T, Double> entries, final Map<T, Integer> positions)
+      throws IOException {
+    VarIntUtils.writeUnsignedInt(output, entries.size());
+    for (Map.Entry<T, Double> entry : entries.entrySet()) {
+      Integer position = positions.get(entry.getKey());
+      if (position == null) {
+        VarIntUtils.writeUnsignedInt(output, 0);
+        codec.encode(output, entry.getKey());
+      } else {
+        VarIntUtils.writeUnsignedInt(output, position + 1);
+      }
+      output.writeDouble(entry.getValue());
+    }
+  }
+
+  /**
+   * Reads cache entries written with {@link #writeCacheEntries}.
+   * @param input Input to read from.
+   * @param individuals Individuals references point to.
+   * @return Entries in the order they were written.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  Map<T, Double> readCacheEntries(final DataInput input,
+      final List<T> individuals) throws IOException {
+    final int size = VarIntUtils.readUnsignedInt(input);
+    Map<T, Double> entries = new LinkedHashMap<T, Double>();
+    for (int i = 0; i < size; i++) {
+      final int reference = VarIntUtils.readUnsignedInt(input);
+      T individual;
+      if (reference == 0) {
+        individual = codec.decode(input);
+      } else if (reference <= individuals.size()) {
+        individual = individuals.get(reference - 1);
+      } else {
+        throw new IOException("Reference " + reference
+            + " points outside of the population.");
+      }
+      entries.put(individual, input.readDouble());
+    }
+    return entries;
+  }
+
+  /**
+   * Writes state of additional components.
+   * @param output Output to write to.
+   * @throws IOException Thrown on IO errors.
+   */
+  void writeComponents(final DataOutput output) throws IOException {
+    VarIntUtils.writeUnsignedInt(output, components.size());
+    for (Object component : components) {
+      CheckpointUtils.writeState(output, component);
+    }
+  }
+
+  /**
+   * Reads state of additional components written with
+   * {@link #writeComponents}.
+   * @param input Input to read from.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  void readComponents(final DataInput input) throws IOException {
+    checkCount("components", components.size(),
+        VarIntUtils.readUnsignedInt(input));
+    for (Object component : components) {
+      CheckpointUtils.readState(input, component);
+    }
+  }
+
+  /**
+   * Maps individuals to their first position in the list.
+   * @param individuals List of individuals.
+   * @return Map from individual to its position.
+   */
+  Map<T, Integer> positions(final List<T> individuals) {
+    Map<T, Integer> positions = new HashMap<T, Integer>();
+    int i = 0;
+    for (T individual : individuals) {
+      if (!positions.containsKey(individual)) {
+        positions.put(individual, i);
+      }
+      i++;
+    }
+    return positions;
+  }
+
+  /**
+   * Checks whether the number of saved elements matches the setup.
+   * @param what Name of the elements.
+   * @param expected Number of elements in the current setup.
+   * @param actual Number of saved elements.
+   * @throws IOException Thrown when the numbers differ.
+   */
+  static void checkCount(final String what, final int expected,
+      final int actual) throws IOException {
+    if (expected != actual) {
+      throw new IOException("Checkpoint contains " + actual + " " + what
+          + " while " + expected + " are set up.");
+    }
+  }
+}
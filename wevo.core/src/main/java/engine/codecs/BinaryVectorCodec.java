@@ -0,0 +1,65 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.codecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import engine.individuals.BinaryVector;
+import engine.utils.VarIntUtils;
+
+/**
+ * Codec of {@link BinaryVector} individuals. Bits are packed eight per byte.
+ */
+public class BinaryVectorCodec implements IndividualCodec<BinaryVector> {
+
+  /** Number of bits in a byte. */
+  private static final int BITS = 8;
+
+  /** {@inheritDoc} */
+  public void encode(DataOutput output, BinaryVector individual)
+      throws IOException {
+    final int size = individual.getSize();
+    VarIntUtils.writeUnsignedInt(output, size);
+    for (int offset = 0; offset < size; offset += BITS) {
+      int packed = 0;
+      for (int i = 0; i < BITS && offset + i < size; i++) {
+        if (individual.getBit(offset + i)) {
+          packed |= 1 << i;
+        }
+      }
+      output.writeByte(packed);
+    }
+  }
+
+  /** {@inheritDoc} */
+  public BinaryVector decode(DataInput input) throws IOException {
+    final int size = VarIntUtils.readUnsignedInt(input);
+    boolean[] bits = new boolean[size];
+    for (int offset = 0; offset < size; offset += BITS) {
+      int packed = input.readUnsignedByte();
+      for (int i = 0; i < BITS && offset + i < size; i++) {
+        bits[offset + i] = (packed & (1 << i)) != 0;
+      }
+    }
+    return new BinaryVector(bits);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.codecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary encoding of individuals of given type. Codecs are used
+ * wherever large populations are written out, e.g. in checkpoints, and are
+ * much faster and smaller than Java serialization of the same individuals.
+ * Implementations must be stateless, so a single codec can be shared.
+ * @param <T> Type of encoded individuals.
+ */
+public interface IndividualCodec<T> {
+
+  /**
+   * Writes the individual.
+   * @param output Output to write to.
+   * @param individual Individual to write.
+   * @throws IOException Thrown on IO errors.
+   */
+  void encode(DataOutput output, T individual) throws IOException;
+
+  /**
+   * Reads individual written with {@link #encode}.
+   * @param input Input to read from.
+   * @return Read individual.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  T decode(DataInput input) throws IOException;
+}
@@ -0,0 +1,54 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.codecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import engine.individuals.RealVector;
+import engine.utils.VarIntUtils;
+
+/**
+ * Codec of {@link RealVector} individuals. Values are written as raw
+ * doubles, so decoded individuals are bit-identical to encoded ones.
+ */
+public class RealVectorCodec implements IndividualCodec<RealVector> {
+
+  /** {@inheritDoc} */
+  public void encode(DataOutput output, RealVector individual)
+      throws IOException {
+    final int size = individual.getSize();
+    VarIntUtils.writeUnsignedInt(output, size);
+    for (int i = 0; i < size; i++) {
+      output.writeDouble(individual.getValue(i));
+    }
+  }
+
+  /** {@inheritDoc} */
+  public RealVector decode(DataInput input) throws IOException {
+    final int size = VarIntUtils.readUnsignedInt(input);
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = input.readDouble();
+    }
+    return new RealVector(values);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import engine.Population;
+
+/**
+ * Divides population over a set of slaves by consistent hashing of
+ * individuals, so that an individual evaluated by a slave goes to the same
+ * slave again and hits its cache. Each slave owns a number of points on
+ * a hash ring and an individual goes to the owner of the first point
+ * following its hash code. When a slave joins or leaves, only individuals
+ * of its points move.
+ *
+ * To keep slaves equally loaded, no slave gets more than (1 + load factor)
+ * times the average number of individuals; an individual whose slave is
+ * full goes to the owner of the next point with free capacity.
+ *
+ * @param <T> Type of individual in the population.
+ */
+public class AffinityDistributor<T> implements PopulationDistributor<T> {
+
+  /** Default number of points of a slave on the ring. */
+  public static final int DEFAULT_POINTS_PER_SLAVE = 64;
+
+  /** Default excess of the average load allowed for a slave. */
+  public static final double DEFAULT_LOAD_FACTOR = 0.25;
+
+  /** Number of points of a slave on the ring. */
+  private final int pointsPerSlave;
+
+  /** Excess of the average load allowed for a slave. */
+  private final double loadFactor;
+
+  /** Slaves the ring was built for. */
+  private List<String> ringSlaves;
+
+  /** Sorted positions of points on the ring. */
+  private int[] points;
+
+  /** Slaves owning points, aligned with positions. */
+  private String[] owners;
+
+  /**
+   * Constructor.
+   * @param pointsPerSlave Number of points of a slave on the ring; more
+   * points spread individuals more evenly.
+   * @param loadFactor Excess of the average load allowed for a slave; lower
+   * values balance load at the cost of affinity.
+   */
+  public AffinityDistributor(final int pointsPerSlave,
+      final double loadFactor) {
+    if (pointsPerSlave <= 0) {
+      throw new IllegalArgumentException("Number of points must be positive.");
+    }
+    if (loadFactor < 0) {
+      throw new IllegalArgumentException("Load factor must not be negative.");
+    }
+    this.pointsPerSlave = pointsPerSlave;
+    this.loadFactor = loadFactor;
+  }
+
+  /** Constructor with default parameters. */
+  public AffinityDistributor() {
+    this(DEFAULT_POINTS_PER_SLAVE, DEFAULT_LOAD_FACTOR);
+  }
+
+  /** {@inheritDoc} */
+  public synchronized DistributedPopulation<T> distribute(
+      Population<T> population,
+      List<String> currentSlaves) {
+    if (currentSlaves.isEmpty()) {
+      throw new IllegalArgumentException("No slaves to distribute to.");
+    }
+    if (!currentSlaves.equals(ringSlaves)) {
+      buildRing(currentSlaves);
+    }
+
+    final List<T> individuals = population.getIndividuals();
+    final int capacity = (int) Math.ceil(
+        (1 + loadFactor) * individuals.size() / currentSlaves.size());
+    final Map<String, Integer> loads = new HashMap<String, Integer>();
+    final DistributedPopulationBuilder<T> populationBuilder =
+        new DistributedPopulationBuilder<T>();
+
+    for (T individual : individuals) {
+      int point = findPoint(mix(individual.hashCode()));
+      Integer load = loads.get(owners[point]);
+      // Terminates, as total capacity exceeds the number of individuals.
+      while (load != null && load >= capacity) {
+        point = (point + 1) % points.length;
+        load = loads.get(owners[point]);
+      }
+      loads.put(owners[point], load == null ? 1 : load + 1);
+      populationBuilder.addIndividualToSlave(owners[point], individual);
+    }
+    return populationBuilder.toDistributedPopulation();
+  }
+
+  /**
+   * Places points of given slaves on the ring.
+   * @param slaves Slaves to place.
+   */
+  private void buildRing(final List<String> slaves) {
+    final long[] entries = new long[slaves.size() * pointsPerSlave];
+    int entry = 0;
+    for (int slave = 0; slave < slaves.size(); slave++) {
+      final int slaveHash = slaves.get(slave).hashCode();
+      for (int i = 0; i < pointsPerSlave; i++) {
+        // Position in the upper half, index of the slave in the lower one.
+        final long position = mix(slaveHash * 31 + mix(i));
+        entries[entry++] = (position << Integer.SIZE) | slave;
+      }
+    }
+    Arrays.sort(entries);
+
+    points = new int[entries.length];
+    owners = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      points[i] = (int) (entries[i] >> Integer.SIZE);
+      owners[i] = slaves.get((int) entries[i]);
+    }
+    ringSlaves = new ArrayList<String>(slaves);
+  }
+
+  /**
+   * Finds the first point at or after given position, wrapping around
+   * the ring.
+   * @param position Position on the ring.
+   * @return Index of the point.
+   */
+  private int findPoint(final int position) {
+    int index = Arrays.binarySearch(points, position);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index == points.length ? 0 : index;
+  }
+
+  /**
+   * Spreads bits of a hash code over the whole range, so that similar hash
+   * codes land far apart on the ring.
+   * @param hash Hash code to mix.
+   * @return Mixed hash code.
+   */
+  // MagicNumber off
+  static int mix(final int hash) {
+    int h = hash;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+  // MagicNumber on
+}
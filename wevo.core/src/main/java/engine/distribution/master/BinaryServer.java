@@ -0,0 +1,692 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.master.servlets.RegistrationServlet;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.serialization.ResultSerializer;
+import engine.distribution.serialization.TaskSerializer;
+import engine.distribution.utils.BinaryProtocol;
+import engine.distribution.utils.ProblemData;
+import engine.utils.LruMap;
+
+/**
+ * Non-blocking server speaking {@link BinaryProtocol}, an alternative to
+ * the servlets for exchanging tasks with many slaves. A single thread
+ * multiplexes all connections with a selector, only reading and writing
+ * frames. Complete frames are handled by a pool of worker threads, which
+ * deserialize and merge results and serialize tasks in parallel, so that
+ * I/O of slaves never waits for that work. Each task is serialized once
+ * into a direct buffer, which is then written to every slave getting
+ * the task without further copying. Frames may also be served over other
+ * channels, such as shared memory, by other threads.
+ *
+ * Unlike the distribution servlet, the server neither holds requests until
+ * tasks are available nor compresses tasks; slaves back off when there is
+ * no task.
+ *
+ * @param <T> Type of individuals being evaluated.
+ */
+public class BinaryServer<T> implements Runnable {
+
+  /**
+   * Minimum number of workers, so that a slow frame does not hold all other
+   * frames on hosts with a single processor.
+   */
+  private static final int MIN_WORKERS = 2;
+
+  /** Number of serialized tasks kept for sending to further slaves. */
+  private static final int SERIALIZED_TASKS = 1024;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      BinaryServer.class.getCanonicalName());
+
+  /** Task manager object for distributing population. */
+  private final TaskManager<T> taskManager;
+
+  /** SlaveManager object for slave's information. */
+  private final SlaveManager slaveManager;
+
+  /** StatisticsManager object for slave's statistics data. */
+  private final StatisticsManager statisticsManager;
+
+  /** Serializer object for writing tasks. */
+  private final TaskSerializer<T> taskSerializer;
+
+  /** Serializer object for reading evaluation results. */
+  private final ResultSerializer<T> resultSerializer;
+
+  /** Serialized tasks by their identifiers, guarded by itself. */
+  private final Map<Long, ByteBuffer> serializedTasks =
+      new LruMap<Long, ByteBuffer>(SERIALIZED_TASKS);
+
+  /** Store of problem data referenced by tasks. Default: none. */
+  private ProblemDataStore dataStore;
+
+  /** Selector multiplexing the connections. */
+  private Selector selector;
+
+  /** Channel accepting connections. */
+  private ServerSocketChannel serverChannel;
+
+  /** Connections whose replies were queued by workers. */
+  private final Queue<SelectionKey> repliedKeys =
+      new ConcurrentLinkedQueue<SelectionKey>();
+
+  /** Workers handling complete frames. */
+  private ExecutorService workers;
+
+  /** Thread running the server. */
+  private Thread thread;
+
+  /** Whether the server should keep running. */
+  private volatile boolean running;
+
+  /**
+   * Constructor.
+   * @param taskManager Tool for managing population.
+   * @param slaveManager Tool for managing slaves.
+   * @param statisticsManager Tool for managing slave's statistics.
+   * @param taskSerializer Serializer of tasks.
+   * @param resultSerializer Serializer of results.
+   */
+  public BinaryServer(
+      final TaskManager<T> taskManager,
+      final SlaveManager slaveManager,
+      final StatisticsManager statisticsManager,
+      final TaskSerializer<T> taskSerializer,
+      final ResultSerializer<T> resultSerializer) {
+    this.taskManager = taskManager;
+    this.slaveManager = slaveManager;
+    this.statisticsManager = statisticsManager;
+    this.taskSerializer = taskSerializer;
+    this.resultSerializer = resultSerializer;
+  }
+
+  /**
+   * Makes the server send references to problem data with tasks.
+   * @param store Store of the published data.
+   */
+  public void setDataStore(final ProblemDataStore store) {
+    this.dataStore = store;
+  }
+
+  /**
+   * Starts the server in a new thread.
+   * @param port Port to listen on; zero for any free port.
+   * @return Port the server listens on.
+   * @throws IOException Thrown when unable to listen on the port.
+   */
+  public synchronized int start(final int port) throws IOException {
+    if (thread != null) {
+      throw new IllegalStateException("Server already started.");
+    }
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.socket().setReuseAddress(true);
+    serverChannel.socket().bind(new InetSocketAddress(port));
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    workers = Executors.newFixedThreadPool(Math.max(MIN_WORKERS,
+        Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread worker = new Thread(runnable, "wevo-binary-server-worker");
+            worker.setDaemon(true);
+            return worker;
+          }
+        });
+
+    running = true;
+    thread = new Thread(this, "wevo-binary-server");
+    thread.setDaemon(true);
+    thread.start();
+
+    final int localPort = serverChannel.socket().getLocalPort();
+    logger.log(Level.INFO, "Binary server listening on port " + localPort);
+    return localPort;
+  }
+
+  /** Stops the server and closes all connections. */
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    selector.wakeup();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      logger.log(Level.WARNING, "Interrupted while stopping binary server", e);
+    }
+    workers.shutdown();
+    thread = null;
+  }
+
+  /** {@inheritDoc} */
+  public void run() {
+    try {
+      while (running) {
+        selector.select();
+        writeReplies();
+        final Iterator<SelectionKey> keys =
+            selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (key.isValid() && key.isAcceptable()) {
+              accept();
+            }
+            if (key.isValid() && key.isReadable()) {
+              read(key);
+            }
+            if (key.isValid() && key.isWritable()) {
+              write(key);
+            }
+          } catch (IOException e) {
+            logger.log(Level.FINE, "Closing connection", e);
+            close(key);
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Binary server failed", e);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        close(key);
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to close selector", e);
+      }
+    }
+  }
+
+  /** Writes replies queued by workers since the last call. */
+  private void writeReplies() {
+    SelectionKey key;
+    while ((key = repliedKeys.poll()) != null) {
+      if (!key.isValid()) {
+        continue;
+      }
+      try {
+        write(key);
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Closing connection", e);
+        close(key);
+      }
+    }
+  }
+
+  /**
+   * Accepts a new connection.
+   * @throws IOException Thrown on connection errors.
+   */
+  private void accept() throws IOException {
+    final SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    final Connection connection = new Connection();
+    connection.key =
+        channel.register(selector, SelectionKey.OP_READ, connection);
+    logger.log(Level.FINE, "Accepted connection from "
+        + channel.socket().getRemoteSocketAddress());
+  }
+
+  /**
+   * Reads the next frame of the connection, handing it to a worker.
+   * @param key Key of the connection.
+   * @throws IOException Thrown on connection errors.
+   */
+  private void read(final SelectionKey key) throws IOException {
+    serve((SocketChannel) key.channel(), (Connection) key.attachment());
+    updateInterest(key);
+  }
+
+  /**
+   * Writes queued replies to the connection.
+   * @param key Key of the connection.
+   * @throws IOException Thrown on connection errors.
+   */
+  private void write(final SelectionKey key) throws IOException {
+    flush((SocketChannel) key.channel(), (Connection) key.attachment());
+    updateInterest(key);
+  }
+
+  /**
+   * Makes the selector wait for the channel to be writable iff not all
+   * replies could be written at once, and to be readable unless a frame of
+   * the connection is being handled.
+   * @param key Key of the connection.
+   */
+  private void updateInterest(final SelectionKey key) {
+    final Connection connection = (Connection) key.attachment();
+    synchronized (connection) {
+      int interest = connection.handling ? 0 : SelectionKey.OP_READ;
+      if (!connection.output.isEmpty()) {
+        interest |= SelectionKey.OP_WRITE;
+      }
+      key.interestOps(interest);
+    }
+  }
+
+  /**
+   * Writes as much of the queued replies as possible and reads the next
+   * frame from a non-blocking channel, handing it to a worker once complete.
+   * Further frames are not read until the reply is queued. Package
+   * visibility for other transports.
+   * @param channel Non-blocking channel of the connection.
+   * @param connection State of the connection.
+   * @return True iff any bytes were read or written.
+   * @throws IOException Thrown on connection errors.
+   */
+  boolean serve(final ByteChannel channel, final Connection connection)
+      throws IOException {
+    boolean progress = flush(channel, connection);
+    synchronized (connection) {
+      if (connection.handling) {
+        return progress;
+      }
+    }
+    if (connection.payload == null) {
+      progress |= readSome(channel, connection.header);
+      if (connection.header.hasRemaining()) {
+        return progress;
+      }
+      connection.header.flip();
+      connection.payload = ByteBuffer.allocate(
+          BinaryProtocol.decodePayloadLength(connection.header));
+    }
+    progress |= readSome(channel, connection.payload);
+    if (connection.payload.hasRemaining()) {
+      return progress;
+    }
+
+    final byte type = BinaryProtocol.decodeType(connection.header);
+    final byte[] payload = connection.payload.array();
+    connection.header.clear();
+    connection.payload = null;
+    synchronized (connection) {
+      connection.handling = true;
+    }
+    try {
+      workers.execute(new Runnable() {
+        public void run() {
+          queueReply(connection, handle(connection, type, payload));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      throw new IOException("Server is stopped");
+    }
+    return true;
+  }
+
+  /**
+   * Queues the reply to the connection and makes the selector write it,
+   * unless the connection is served by other threads.
+   * @param connection State of the connection.
+   * @param reply Buffers of the reply frame.
+   */
+  private void queueReply(final Connection connection,
+      final ByteBuffer[] reply) {
+    synchronized (connection) {
+      for (ByteBuffer buffer : reply) {
+        connection.output.addLast(buffer);
+      }
+      connection.handling = false;
+    }
+    if (connection.key != null) {
+      repliedKeys.add(connection.key);
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Reads available bytes from the channel.
+   * @param channel Non-blocking channel to read from.
+   * @param buffer Buffer to read to.
+   * @return True iff any bytes were read.
+   * @throws IOException Thrown on connection errors or when the slave
+   * closed the connection.
+   */
+  private boolean readSome(final ByteChannel channel, final ByteBuffer buffer)
+      throws IOException {
+    final int read = channel.read(buffer);
+    if (read < 0) {
+      throw new EOFException("Connection closed by slave");
+    }
+    return read > 0;
+  }
+
+  /**
+   * Writes as much of queued replies as possible.
+   * @param channel Non-blocking channel of the connection.
+   * @param connection State of the connection.
+   * @return True iff any bytes were written.
+   * @throws IOException Thrown on connection errors.
+   */
+  private boolean flush(final ByteChannel channel,
+      final Connection connection) throws IOException {
+    synchronized (connection) {
+      return flushQueued(channel, connection);
+    }
+  }
+
+  /**
+   * Writes as much of queued replies as possible, holding the lock of
+   * the connection.
+   * @param channel Non-blocking channel of the connection.
+   * @param connection State of the connection.
+   * @return True iff any bytes were written.
+   * @throws IOException Thrown on connection errors.
+   */
+  private boolean flushQueued(final ByteChannel channel,
+      final Connection connection) throws IOException {
+    long written = 0;
+    if (channel instanceof GatheringByteChannel) {
+      written = ((GatheringByteChannel) channel).write(
+          connection.output.toArray(
+              new ByteBuffer[connection.output.size()]));
+    } else {
+      for (ByteBuffer buffer : connection.output) {
+        written += channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          break;
+        }
+      }
+    }
+    while (!connection.output.isEmpty()
+        && !connection.output.getFirst().hasRemaining()) {
+      connection.output.removeFirst();
+    }
+    return written > 0;
+  }
+
+  /**
+   * Closes the connection.
+   * @param key Key of the connection.
+   */
+  private void close(final SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Failed to close connection", e);
+    }
+  }
+
+  /**
+   * Handles a request frame. Package visibility for testing purposes.
+   * @param connection State of the connection the frame came from.
+   * @param type Type of the frame.
+   * @param payload Payload of the frame.
+   * @return Buffers of the reply frame, ready to be written.
+   */
+  ByteBuffer[] handle(final Connection connection, final byte type,
+      final byte[] payload) {
+    final DataInputStream input =
+        new DataInputStream(new ByteArrayInputStream(payload));
+    try {
+      switch (type) {
+        case BinaryProtocol.REGISTER:
+          return register(input, connection);
+
+        case BinaryProtocol.GET_TASK:
+          final String slaveId = readSlaveId(input, connection);
+          logger.log(Level.FINE, "Handling request for task from slave "
+              + slaveId);
+          return writeTask(slaveId, pollTask(slaveId));
+
+        case BinaryProtocol.SEND_RESULT:
+          return receiveResult(input, connection);
+
+        case BinaryProtocol.HEARTBEAT:
+          slaveManager.updateLastContactTimestamp(
+              readSlaveId(input, connection));
+          return new ByteBuffer[] {
+              BinaryProtocol.encodeHeader(BinaryProtocol.ACCEPTED, 0)};
+
+        default:
+          throw new IOException("Unknown frame type " + type);
+      }
+    } catch (final Exception e) {
+      logger.log(Level.WARNING, "Error occurred while handling frame of "
+          + "type " + type, e);
+      return new ByteBuffer[] {writeError(e)};
+    }
+  }
+
+  /**
+   * Reads ID of the slave sending the request, remembering it as the slave
+   * of the connection.
+   * @param input Payload of the request.
+   * @param connection State of the connection.
+   * @return ID of the slave.
+   * @throws IOException Thrown on malformed payload.
+   */
+  private String readSlaveId(final DataInputStream input,
+      final Connection connection) throws IOException {
+    final String slaveId = input.readUTF();
+    connection.slaveId = slaveId;
+    return slaveId;
+  }
+
+  /**
+   * Registers a slave.
+   * @param input Payload of the request.
+   * @param connection State of the connection.
+   * @return Reply holding ID assigned to the slave.
+   * @throws IOException Thrown on malformed payload.
+   */
+  private ByteBuffer[] register(final DataInputStream input,
+      final Connection connection) throws IOException {
+    String slaveName = input.readUTF();
+    final int shard = input.readInt();
+    if (slaveName.equals("")) {
+      slaveName = RegistrationServlet.DEFAULT_SLAVE_NAME;
+    }
+
+    final String slaveId = SlaveIdGenerator.generateId(slaveName);
+    connection.slaveId = slaveId;
+    slaveManager.addSlave(slaveId, new SlaveInformation());
+    statisticsManager.addSlave(slaveId);
+    if (shard >= 0) {
+      slaveManager.setShard(slaveId, shard);
+    }
+
+    logger.log(Level.FINE, "Slave " + slaveName
+        + " assigned with slave ID: " + slaveId);
+    return new ByteBuffer[] {
+        BinaryProtocol.encodeFrame(BinaryProtocol.REGISTERED, slaveId)};
+  }
+
+  /**
+   * Updates the task with the result sent by a slave.
+   * @param input Payload of the request.
+   * @param connection State of the connection.
+   * @return Reply, holding the next task if the slave asked for it.
+   * @throws IOException Thrown on malformed payload.
+   * @throws ClassNotFoundException Thrown when result definition was not
+   * found.
+   */
+  private ByteBuffer[] receiveResult(final DataInputStream input,
+      final Connection connection)
+      throws IOException, ClassNotFoundException {
+    final String slaveId = readSlaveId(input, connection);
+    final long taskId = input.readLong();
+    final boolean askForTask = input.readBoolean();
+    final EvaluationResult<T> result = resultSerializer.deserialize(input);
+
+    logger.log(Level.FINE, "Handling result of task " + taskId
+        + " from slave " + slaveId);
+    taskManager.updateTask(slaveId, taskId, result);
+    slaveManager.updateLastContactTimestamp(slaveId);
+    statisticsManager.afterReceivingResult(slaveId, taskId, result);
+
+    if (askForTask) {
+      return writeTask(slaveId, pollTask(slaveId));
+    }
+    return new ByteBuffer[] {
+        BinaryProtocol.encodeHeader(BinaryProtocol.ACCEPTED, 0)};
+  }
+
+  /**
+   * Gets task for the slave, if any is available.
+   * @param slaveId ID of the slave asking for a task.
+   * @return Task to send or null.
+   */
+  private EvaluationTask<T> pollTask(final String slaveId) {
+    if (taskManager.isDistributionEnabled()
+        && taskManager.isTaskAvailableForSlave(slaveId)) {
+      return taskManager.getTaskForSlave(slaveId);
+    }
+    return null;
+  }
+
+  /**
+   * Creates reply holding the task, serializing the task unless it was
+   * sent before.
+   * @param slaveId ID of the slave receiving the task.
+   * @param task Task to send or null if none is available.
+   * @return Buffers of the reply frame.
+   * @throws IOException Thrown on serialization errors.
+   */
+  private ByteBuffer[] writeTask(final String slaveId,
+      final EvaluationTask<T> task) throws IOException {
+    if (task == null) {
+      return new ByteBuffer[] {
+          BinaryProtocol.encodeHeader(BinaryProtocol.NO_TASK, 0)};
+    }
+
+    ByteBuffer serialized;
+    synchronized (serializedTasks) {
+      serialized = serializedTasks.get(task.getId());
+    }
+    if (serialized == null) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      taskSerializer.serialize(output, task);
+      serialized = ByteBuffer.allocateDirect(output.size());
+      serialized.put(output.toByteArray());
+      serialized.flip();
+      if (task.getId() != EvaluationTask.NO_ID) {
+        synchronized (serializedTasks) {
+          serializedTasks.put(task.getId(), serialized);
+        }
+      }
+    }
+
+    ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(prefix);
+    output.writeLong(task.getId());
+    output.writeUTF(dataStore == null ? ""
+        : ProblemData.formatReferences(dataStore.getReferences()));
+
+    logger.log(Level.FINER, "Sending " + serialized.remaining()
+        + " bytes of task " + task.getId() + " to " + slaveId);
+    slaveManager.updateLastContactTimestamp(slaveId);
+    statisticsManager.afterSendingTask(slaveId, task);
+    return new ByteBuffer[] {
+        BinaryProtocol.encodeHeader(BinaryProtocol.TASK,
+            prefix.size() + serialized.remaining()),
+        ByteBuffer.wrap(prefix.toByteArray()),
+        serialized.duplicate()};
+  }
+
+  /**
+   * Creates reply describing the failure of the request.
+   * @param failure Failure of the request.
+   * @return Error frame.
+   */
+  private ByteBuffer writeError(final Exception failure) {
+    try {
+      return BinaryProtocol.encodeFrame(BinaryProtocol.ERROR,
+          String.valueOf(failure.getMessage()));
+    } catch (IOException e) {
+      return BinaryProtocol.encodeFrame(BinaryProtocol.ERROR, new byte[0]);
+    }
+  }
+
+  /**
+   * State of a connection with a slave. Package visibility for other
+   * transports. Frames are read by a single thread; the queued replies and
+   * the handling flag are guarded by the connection.
+   */
+  static class Connection {
+
+    /** Header of the frame being read. */
+    private final ByteBuffer header =
+        ByteBuffer.allocate(BinaryProtocol.HEADER_LENGTH);
+
+    /** Payload of the frame being read; null until the header is read. */
+    private ByteBuffer payload;
+
+    /** Buffers waiting to be written. */
+    private final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+
+    /** Whether a frame of the connection is being handled by a worker. */
+    private boolean handling;
+
+    /** Key of the socket connection; null for other transports. */
+    private volatile SelectionKey key;
+
+    /** ID of the slave of the last request; null until it is known. */
+    private volatile String slaveId;
+
+    /**
+     * Gets ID of the slave using the connection.
+     * @return ID of the slave or null if not known yet.
+     */
+    String getSlaveId() {
+      return slaveId;
+    }
+  }
+}
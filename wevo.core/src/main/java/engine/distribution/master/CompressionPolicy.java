@@ -0,0 +1,197 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.serialization.Compression;
+
+/**
+ * Decides whether and how to compress payloads sent to particular slaves.
+ * Payloads below the size threshold are always sent uncompressed. Larger
+ * ones are compressed with whichever compression accepted by the slave
+ * minimizes the estimated time of compressing and transferring the payload,
+ * based on exponentially smoothed measurements of the compression speed and
+ * ratio of every compression and of the throughput of the link to every
+ * slave. Each compression is tried once before its measurements are
+ * trusted.
+ */
+public class CompressionPolicy implements SlaveListener {
+
+  /** Default minimum size of a compressed payload in bytes. */
+  public static final int DEFAULT_MINIMUM_SIZE = 16 * 1024;
+
+  /** Weight of the newest measurement in smoothed averages. */
+  static final double SMOOTHING = 0.3;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      CompressionPolicy.class.getCanonicalName());
+
+  /** Minimum size of a compressed payload in bytes. */
+  private final int minimumSize;
+
+  /** Compressions accepted by slaves, in order of slaves' preference. */
+  private final Map<String, List<Compression>> accepted =
+      new HashMap<String, List<Compression>>();
+
+  /** Smoothed throughput of links to slaves in bytes per nanosecond. */
+  private final Map<String, Double> throughput = new HashMap<String, Double>();
+
+  /** Smoothed speed of compressions in input bytes per nanosecond. */
+  private final Map<Compression, Double> speed =
+      new EnumMap<Compression, Double>(Compression.class);
+
+  /** Smoothed ratio of compressed to uncompressed payload size. */
+  private final Map<Compression, Double> ratio =
+      new EnumMap<Compression, Double>(Compression.class);
+
+  /**
+   * Creates the policy.
+   * @param minimumSize Minimum size of a compressed payload in bytes.
+   */
+  public CompressionPolicy(final int minimumSize) {
+    this.minimumSize = minimumSize;
+  }
+
+  /** Creates the policy with default payload size threshold. */
+  public CompressionPolicy() {
+    this(DEFAULT_MINIMUM_SIZE);
+  }
+
+  /**
+   * Records compressions accepted by a slave.
+   * @param slaveId ID of the slave.
+   * @param compressions Compressions accepted by the slave.
+   */
+  public synchronized void addSlave(
+      final String slaveId,
+      final List<Compression> compressions) {
+    logger.log(Level.FINE, "Slave " + slaveId + " accepts compressions "
+        + compressions);
+    accepted.put(slaveId, new ArrayList<Compression>(compressions));
+    throughput.remove(slaveId);
+  }
+
+  /**
+   * Forgets compressions accepted by the removed slave and the throughput
+   * of the link to it.
+   * @param slaveId ID of the removed slave.
+   */
+  public synchronized void slaveRemoved(final String slaveId) {
+    accepted.remove(slaveId);
+    throughput.remove(slaveId);
+  }
+
+  /**
+   * Chooses the compression of a payload sent to the slave.
+   * @param slaveId ID of the receiving slave.
+   * @param size Size of the uncompressed payload in bytes.
+   * @return Compression to use. Never null.
+   */
+  public synchronized Compression choose(
+      final String slaveId, final int size) {
+    final List<Compression> compressions = accepted.get(slaveId);
+    if (size < minimumSize || compressions == null) {
+      return Compression.NONE;
+    }
+
+    for (Compression compression : compressions) {
+      if (compression != Compression.NONE && !ratio.containsKey(compression)) {
+        return compression;
+      }
+    }
+
+    final Double linkThroughput = throughput.get(slaveId);
+    if (linkThroughput == null) {
+      return compressions.isEmpty() ? Compression.NONE : compressions.get(0);
+    }
+
+    Compression best = Compression.NONE;
+    double bestTime = size / linkThroughput;
+    for (Compression compression : compressions) {
+      if (compression == Compression.NONE) {
+        continue;
+      }
+      final double time = size / speed.get(compression)
+          + size * ratio.get(compression) / linkThroughput;
+      if (time < bestTime) {
+        best = compression;
+        bestTime = time;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Records a measurement of a compression.
+   * @param compression Measured compression.
+   * @param size Size of the uncompressed payload in bytes.
+   * @param compressedSize Size of the compressed payload in bytes.
+   * @param nanos Time spent on compression in nanoseconds.
+   */
+  public synchronized void recordCompression(
+      final Compression compression,
+      final int size,
+      final int compressedSize,
+      final long nanos) {
+    if (compression == Compression.NONE || size == 0) {
+      return;
+    }
+    update(ratio, compression, (double) compressedSize / size);
+    update(speed, compression, (double) size / Math.max(nanos, 1));
+  }
+
+  /**
+   * Records a measurement of a transfer to the slave, as reported by the
+   * slave. Transfers of payloads below the size threshold are ignored, as
+   * they mostly measure latency.
+   * @param slaveId ID of the receiving slave.
+   * @param size Number of bytes transferred.
+   * @param nanos Time spent on the transfer in nanoseconds.
+   */
+  public synchronized void recordTransfer(
+      final String slaveId, final int size, final long nanos) {
+    if (size < minimumSize) {
+      return;
+    }
+    update(throughput, slaveId, (double) size / Math.max(nanos, 1));
+  }
+
+  /**
+   * Updates a smoothed average with a measurement.
+   * @param <K> Type of the key of the average.
+   * @param averages Averages to update.
+   * @param key Key of the updated average.
+   * @param value Measured value.
+   */
+  private static <K> void update(
+      final Map<K, Double> averages, final K key, final double value) {
+    final Double average = averages.get(key);
+    averages.put(key, average == null
+        ? value : SMOOTHING * value + (1 - SMOOTHING) * average);
+  }
+}
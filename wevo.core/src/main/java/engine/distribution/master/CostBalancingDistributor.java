@@ -0,0 +1,137 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.utils.SystemClock;
+import engine.utils.WevoClock;
+
+/**
+ * Divides population over a set of slaves so that their estimated
+ * evaluation costs, rather than numbers of individuals, are balanced.
+ * Individuals are given out by the longest processing time first rule:
+ * the most expensive remaining individual goes to the slave with the least
+ * cost so far. The cost estimator learns from the time between sending
+ * a task and receiving its result.
+ *
+ * @param <T> Type of individual in the population.
+ */
+public class CostBalancingDistributor<T>
+    implements PopulationDistributor<T>, EvaluationListener {
+
+  /** Estimator of costs of individuals. */
+  private final CostEstimator<T> estimator;
+
+  /** Time measurement utility. */
+  private final WevoClock clock;
+
+  /** Tasks sent to slaves with times of sending. */
+  private final SentTasks sentTasks = new SentTasks();
+
+  /**
+   * Constructor.
+   * @param estimator Estimator of costs of individuals.
+   * @param clock Time measurement utility.
+   */
+  public CostBalancingDistributor(final CostEstimator<T> estimator,
+      final WevoClock clock) {
+    this.estimator = estimator;
+    this.clock = clock;
+  }
+
+  /**
+   * Constructor using system clock.
+   * @param estimator Estimator of costs of individuals.
+   */
+  public CostBalancingDistributor(final CostEstimator<T> estimator) {
+    this(estimator, new SystemClock());
+  }
+
+  /** {@inheritDoc} */
+  public void afterSendingTask(
+      final String slaveId, final EvaluationTask<?> task) {
+    sentTasks.add(slaveId, task, clock.getCurrentTimeMillis());
+  }
+
+  /** {@inheritDoc} */
+  @SuppressWarnings("unchecked")
+  public void afterReceivingResult(final String slaveId, final long taskId,
+      final EvaluationResult<?> result) {
+    final SentTasks.SentTask sentTask = sentTasks.remove(slaveId, taskId);
+    if (sentTask == null) {
+      return;
+    }
+    final List<?> individuals =
+        sentTask.getTask().getPopulation().getIndividuals();
+    if (individuals.size() != result.size()) {
+      return;
+    }
+    // Tasks sent to slaves hold individuals distributed by this class.
+    estimator.addMeasurement((List<T>) individuals,
+        clock.getCurrentTimeMillis() - sentTask.getTime());
+  }
+
+  /** {@inheritDoc} */
+  public DistributedPopulation<T> distribute(
+      final Population<T> population,
+      final List<String> currentSlaves) {
+    sentTasks.retainSlaves(currentSlaves);
+    final List<T> individuals = population.getIndividuals();
+    final double[] costs = new double[individuals.size()];
+    final List<Integer> order = new ArrayList<Integer>(individuals.size());
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = estimator.estimateCost(individuals.get(i));
+      order.add(i);
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      public int compare(Integer first, Integer second) {
+        return Double.compare(costs[second], costs[first]);
+      }
+    });
+
+    final DistributedPopulationBuilder<T> populationBuilder =
+        new DistributedPopulationBuilder<T>();
+    final double[] loads = new double[currentSlaves.size()];
+    final int[] counts = new int[loads.length];
+    for (int index : order) {
+      int lightest = 0;
+      for (int i = 1; i < loads.length; i++) {
+        // Equal loads, e.g. of individuals estimated to cost nothing, are
+        // balanced by count.
+        if (loads[i] < loads[lightest] || (loads[i] == loads[lightest]
+            && counts[i] < counts[lightest])) {
+          lightest = i;
+        }
+      }
+      loads[lightest] += costs[index];
+      counts[lightest]++;
+      populationBuilder.addIndividualToSlave(
+          currentSlaves.get(lightest), individuals.get(index));
+    }
+    return populationBuilder.toDistributedPopulation();
+  }
+}
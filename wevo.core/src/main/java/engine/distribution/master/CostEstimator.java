@@ -0,0 +1,46 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.List;
+
+/**
+ * Estimates the cost of evaluating individuals, learning from measured
+ * evaluation times of tasks.
+ *
+ * @param <T> Type of the individuals.
+ */
+public interface CostEstimator<T> {
+
+  /**
+   * Estimates the cost of evaluating an individual.
+   * @param individual Individual to estimate.
+   * @return Estimated cost, in milliseconds once measurements are known.
+   * Must not be negative.
+   */
+  double estimateCost(T individual);
+
+  /**
+   * Learns from the measured evaluation time of a task.
+   * @param individuals Individuals of the task.
+   * @param elapsedMillis Time of evaluating the task, in milliseconds.
+   */
+  void addMeasurement(List<T> individuals, long elapsedMillis);
+}
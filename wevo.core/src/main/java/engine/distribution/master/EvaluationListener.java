@@ -0,0 +1,47 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+
+/**
+ * Listener notified by {@link StatisticsManager} about tasks sent to slaves
+ * and results received from them.
+ */
+public interface EvaluationListener {
+
+  /**
+   * Called just after sending a task to the slave.
+   * @param slaveId Identifier of slave which gets the task.
+   * @param task Evaluation task which was sent.
+   */
+  void afterSendingTask(String slaveId, EvaluationTask<?> task);
+
+  /**
+   * Called just after receiving a result from the slave.
+   * @param slaveId Identifier of slave which posts the result.
+   * @param taskId Identifier of the evaluated task or
+   * {@link EvaluationTask#NO_ID} for the oldest task leased to the slave.
+   * @param result Result received from slave.
+   */
+  void afterReceivingResult(String slaveId, long taskId,
+      EvaluationResult<?> result);
+}
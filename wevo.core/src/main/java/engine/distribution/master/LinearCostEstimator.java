@@ -0,0 +1,172 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.ObjectiveFunction;
+
+/**
+ * Estimates the cost of an individual as a linear function of its
+ * complexity, e.g. the number of intervals of a rule or the number of
+ * non-zero weights of a portfolio: cost = base + perUnit * complexity.
+ * Coefficients are fitted online by least squares over measured tasks,
+ * whose time is the sum of costs of their individuals, with older
+ * measurements weighted down exponentially. Until the first measurement
+ * every individual costs the same.
+ *
+ * @param <T> Type of the individuals.
+ */
+public class LinearCostEstimator<T> implements CostEstimator<T> {
+
+  /** Default weight of the newest measurement. */
+  public static final double DEFAULT_SMOOTHING = 0.1;
+
+  /** Determinants smaller than that make the fit degenerate. */
+  private static final double EPSILON = 1e-9;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      LinearCostEstimator.class.getCanonicalName());
+
+  /** Complexity measure of individuals; higher values cost more. */
+  private final ObjectiveFunction<T> complexity;
+
+  /** Weight of the newest measurement. */
+  private final double smoothing;
+
+  /** Weighted average of squared numbers of individuals in tasks. */
+  private double countCount;
+
+  /** Weighted average of numbers of individuals times total complexity. */
+  private double countComplexity;
+
+  /** Weighted average of squared total complexity of tasks. */
+  private double complexityComplexity;
+
+  /** Weighted average of numbers of individuals times task time. */
+  private double countTime;
+
+  /** Weighted average of total complexity times task time. */
+  private double complexityTime;
+
+  /** Whether any measurement was added. */
+  private boolean measured;
+
+  /** Cost of an individual regardless of its complexity. */
+  private double base = 1;
+
+  /** Cost of a unit of complexity. */
+  private double perUnit;
+
+  /**
+   * Constructor.
+   * @param complexity Complexity measure of individuals. Must not be
+   * negative.
+   * @param smoothing Weight of the newest measurement.
+   */
+  public LinearCostEstimator(final ObjectiveFunction<T> complexity,
+      final double smoothing) {
+    if (smoothing <= 0 || smoothing > 1) {
+      throw new IllegalArgumentException("Smoothing must be in (0, 1].");
+    }
+    this.complexity = complexity;
+    this.smoothing = smoothing;
+  }
+
+  /**
+   * Constructor using default smoothing.
+   * @param complexity Complexity measure of individuals.
+   */
+  public LinearCostEstimator(final ObjectiveFunction<T> complexity) {
+    this(complexity, DEFAULT_SMOOTHING);
+  }
+
+  /** {@inheritDoc} */
+  public synchronized double estimateCost(final T individual) {
+    return base + perUnit * complexity.compute(individual);
+  }
+
+  /** {@inheritDoc} */
+  public synchronized void addMeasurement(final List<T> individuals,
+      final long elapsedMillis) {
+    if (individuals.isEmpty()) {
+      return;
+    }
+    final double count = individuals.size();
+    double total = 0;
+    for (T individual : individuals) {
+      total += complexity.compute(individual);
+    }
+    final double weight = measured ? smoothing : 1;
+    measured = true;
+    countCount = average(countCount, count * count, weight);
+    countComplexity = average(countComplexity, count * total, weight);
+    complexityComplexity = average(complexityComplexity, total * total,
+        weight);
+    countTime = average(countTime, count * elapsedMillis, weight);
+    complexityTime = average(complexityTime, total * elapsedMillis, weight);
+    fit();
+
+    logger.log(Level.FINE, "Task of " + individuals.size() + " individuals "
+        + "took " + elapsedMillis + " ms, cost estimated as " + base + " + "
+        + perUnit + " per unit of complexity");
+  }
+
+  /**
+   * Solves the normal equations for both coefficients. If complexity does
+   * not vary enough or a coefficient comes out negative, the other one is
+   * fitted alone.
+   */
+  private void fit() {
+    final double determinant = countCount * complexityComplexity
+        - countComplexity * countComplexity;
+    if (Math.abs(determinant) > EPSILON * countCount * complexityComplexity) {
+      base = (countTime * complexityComplexity
+          - complexityTime * countComplexity) / determinant;
+      perUnit = (complexityTime * countCount
+          - countTime * countComplexity) / determinant;
+      if (base >= 0 && perUnit >= 0) {
+        return;
+      }
+      if (perUnit > 0) {
+        base = 0;
+        perUnit = complexityTime / complexityComplexity;
+        return;
+      }
+    }
+    base = Math.max(0, countTime / countCount);
+    perUnit = 0;
+  }
+
+  /**
+   * Updates an exponentially weighted moving average.
+   * @param average Current average.
+   * @param value New value.
+   * @param weight Weight of the new value.
+   * @return Updated average.
+   */
+  private static double average(final double average, final double value,
+      final double weight) {
+    return weight * value + (1 - weight) * average;
+  }
+}
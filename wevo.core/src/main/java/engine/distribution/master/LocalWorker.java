@@ -0,0 +1,224 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.CachedObjectiveFunction;
+import engine.PopulationEvaluator;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+
+/**
+ * Slave running inside the master process, so that the master evaluates
+ * individuals instead of idling while remote slaves do. It registers with
+ * the slave manager and takes tasks from the task manager like remote
+ * slaves, but passes them directly to a local population evaluator, without
+ * HTTP or serialization. It is best combined with the work queue or
+ * speculation, which keep it busy until the last task is evaluated.
+ * A task the worker fails to evaluate is released, so that other slaves
+ * may evaluate it, and the worker carries on.
+ *
+ * @param <T> Type of individuals being evaluated.
+ */
+public class LocalWorker<T> implements Runnable, TaskListener {
+
+  /**
+   * Milliseconds to wait for new tasks before asking again, in case tasks
+   * became available without notification, e.g. when leases expired.
+   */
+  private static final long POLL_MILLIS = 50;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      LocalWorker.class.getCanonicalName());
+
+  /** Task manager to take tasks from. */
+  private final TaskManager<T> taskManager;
+
+  /** Slave manager to register with. */
+  private final SlaveManager slaveManager;
+
+  /** Evaluator computing values of tasks. */
+  private final PopulationEvaluator<T> evaluator;
+
+  /** Identifier of the worker among slaves. */
+  private final String slaveId;
+
+  /** Monitor signalled when new tasks may be available. */
+  private final Object monitor = new Object();
+
+  /** Whether tasks became available since the worker last checked. */
+  private boolean tasksAvailable;
+
+  /** Thread running the worker. */
+  private Thread thread;
+
+  /** Whether the worker should keep running. */
+  private volatile boolean running;
+
+  /**
+   * Constructor.
+   * @param taskManager Task manager to take tasks from.
+   * @param slaveManager Slave manager to register with.
+   * @param evaluator Evaluator computing values of tasks. Its objective
+   * functions must not be shared with the master evaluator, since both
+   * cache values concurrently.
+   * @param slaveId Identifier of the worker among slaves.
+   */
+  public LocalWorker(final TaskManager<T> taskManager,
+      final SlaveManager slaveManager,
+      final PopulationEvaluator<T> evaluator,
+      final String slaveId) {
+    this.taskManager = taskManager;
+    this.slaveManager = slaveManager;
+    this.evaluator = evaluator;
+    this.slaveId = slaveId;
+  }
+
+  /**
+   * Gets identifier of the worker among slaves.
+   * @return Identifier of the worker.
+   */
+  public String getSlaveId() {
+    return slaveId;
+  }
+
+  /** Registers the worker and starts it in a new thread. */
+  public synchronized void start() {
+    if (thread != null) {
+      throw new IllegalStateException("Worker already started.");
+    }
+    slaveManager.addSlave(slaveId, new SlaveInformation());
+    taskManager.addTaskListener(this);
+    running = true;
+    thread = new Thread(this, "wevo-local-worker-" + slaveId);
+    thread.setDaemon(true);
+    thread.start();
+    logger.log(Level.INFO, "Local worker " + slaveId + " started");
+  }
+
+  /**
+   * Stops the worker, after the task it evaluates, and unregisters it.
+   */
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    synchronized (monitor) {
+      monitor.notifyAll();
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      logger.log(Level.WARNING, "Interrupted while stopping local worker", e);
+    }
+    thread = null;
+    slaveManager.removeSlave(slaveId);
+  }
+
+  /** {@inheritDoc} */
+  public void tasksAvailable() {
+    synchronized (monitor) {
+      tasksAvailable = true;
+      monitor.notifyAll();
+    }
+  }
+
+  /** {@inheritDoc} */
+  public void run() {
+    try {
+      while (running) {
+        slaveManager.updateLastContactTimestamp(slaveId);
+        final EvaluationTask<T> task = taskManager.isDistributionEnabled()
+            ? taskManager.getTaskForSlave(slaveId) : null;
+        if (task == null) {
+          waitForTasks();
+          continue;
+        }
+        final EvaluationResult<T> result;
+        try {
+          result = evaluate(task);
+        } catch (RuntimeException e) {
+          // Other slaves may still evaluate the task.
+          logger.log(Level.WARNING, "Local worker " + slaveId
+              + " failed to evaluate task " + task.getId(), e);
+          taskManager.releaseTask(slaveId, task.getId());
+          pause();
+          continue;
+        }
+        taskManager.updateTask(slaveId, task.getId(), result);
+      }
+    } catch (InterruptedException e) {
+      logger.log(Level.WARNING, "Local worker was interrupted", e);
+    }
+  }
+
+  /**
+   * Waits until tasks may be available or the poll time passes.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  private void waitForTasks() throws InterruptedException {
+    synchronized (monitor) {
+      if (!tasksAvailable && running) {
+        monitor.wait(POLL_MILLIS);
+      }
+      tasksAvailable = false;
+    }
+  }
+
+  /**
+   * Waits the poll time or until woken, so that a failing task is not
+   * retried at once.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  private void pause() throws InterruptedException {
+    synchronized (monitor) {
+      if (running) {
+        monitor.wait(POLL_MILLIS);
+      }
+    }
+  }
+
+  /**
+   * Evaluates the task with the local evaluator. Package visibility for
+   * testing purposes.
+   * @param task Task to evaluate.
+   * @return Values aligned to the order of individuals in the task.
+   */
+  EvaluationResult<T> evaluate(final EvaluationTask<T> task) {
+    final List<T> individuals = task.getPopulation().getIndividuals();
+    evaluator.evaluatePopulation(task.getPopulation());
+
+    final List<CachedObjectiveFunction<T>> functions =
+        evaluator.getObjectiveFunctions();
+    final double[] values = new double[individuals.size() * functions.size()];
+    int position = 0;
+    for (T individual : individuals) {
+      for (CachedObjectiveFunction<T> function : functions) {
+        values[position++] = function.compute(individual);
+      }
+    }
+    return new EvaluationResult<T>(individuals.size(), values);
+  }
+}
@@ -19,8 +19,18 @@
  */
 package engine.distribution.master;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,6 +42,7 @@ import org.mortbay.jetty.servlet.ServletHolder;
 import engine.CachedObjectiveFunction;
 import engine.Population;
 import engine.PopulationEvaluator;
+import engine.distribution.master.servlets.DataServlet;
 import engine.distribution.master.servlets.DistributionServlet;
 import engine.distribution.master.servlets.RegistrationServlet;
 import engine.distribution.master.servlets.StatisticsServlet;
@@ -39,6 +50,7 @@ import engine.distribution.serialization.JavaIOResultSerializer;
 import engine.distribution.serialization.JavaIOTaskSerializer;
 import engine.distribution.serialization.ResultSerializer;
 import engine.distribution.serialization.TaskSerializer;
+import engine.distribution.utils.SharedMemoryChannel;
 
 /**
  * Population evaluator responsible for performing distributed evaluation
@@ -60,6 +72,9 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
   /** Mapping for statistics servlet. */
   public static final String STATISTICS_ADDRESS = "/statistics";
 
+  /** Mapping for problem data servlet. */
+  public static final String DATA_ADDRESS = "/data";
+
   /** Time to sleep while starting the server. */
   private static final int SLEEP_TIME = 5;
 
@@ -67,6 +82,18 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
   private final Logger logger = Logger.getLogger(
       MasterSlaveEvaluator.class.getCanonicalName());
 
+  /** Serializer of tasks; null until initialized. */
+  private TaskSerializer<T> taskSerializer;
+
+  /** Serializer of results; null until initialized. */
+  private ResultSerializer<T> resultSerializer;
+
+  /** Server speaking the binary protocol; null unless started. */
+  private BinaryServer<T> binaryServer;
+
+  /** Server of slaves on the same host; null unless started. */
+  private SharedMemoryServer sharedMemoryServer;
+
   /** Server that runs the distribution. */
   private final Server server;
 
@@ -82,6 +109,9 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
   /** Tool for keeping history of computation. */
   private StatisticsManager statisticsManager; // initialize, evaluate, setters
 
+  /** Problem data published to slaves. */
+  private final ProblemDataStore dataStore = new ProblemDataStore();
+
   /** Minimum number of slaves to run the distribution. */
   private int minimumSlaves = 1;
 
@@ -91,6 +121,50 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
   /** Number of evaluation trials for each iteration. Default: infinite. */
   private int trialsPerIteration = -1;
 
+  /**
+   * Maximum number of individuals in a task pulled by slaves from a queue.
+   * Default: queue disabled, population distributor is used.
+   */
+  private int chunkSize = -1;
+
+  /** Time after which tasks pulled from the queue are requeued. */
+  private long leaseMillis;
+
+  /**
+   * Number of shards of the problem data held by slaves in data-parallel
+   * evaluation. Default: data-parallel evaluation disabled.
+   */
+  private int shardCount = -1;
+
+  /**
+   * Fraction of evaluated tasks after which the remaining ones are copied
+   * to idle slaves. Default: speculation disabled.
+   */
+  private double speculationThreshold = -1;
+
+  /**
+   * Milliseconds the server holds requests of slaves when no task is
+   * available. Default: requests are answered immediately.
+   */
+  private long longPollTimeout = -1;
+
+  /**
+   * Populations evaluated in the asynchronous mode; null unless the mode
+   * is started.
+   */
+  private BlockingQueue<Population<T>> evaluatedPopulations;
+
+  /**
+   * Values of cached individuals submitted in the asynchronous mode, by
+   * the population returning them, put back to caches when it is taken.
+   */
+  private final Map<Population<T>, List<Map<T, Double>>> knownPopulations =
+      new IdentityHashMap<Population<T>, List<Map<T, Double>>>();
+
+  /** Slaves running inside the master process. */
+  private final List<LocalWorker<T>> localWorkers =
+      new ArrayList<LocalWorker<T>>();
+
   /**
    * Constructor. Package-visibility for testing purposes.
    * @param objectiveFunctions List of objective functions
@@ -118,6 +192,10 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
     this.taskManager = taskManager;
     this.slaveManager = slaveManager;
     this.statisticsManager = statisticsManager;
+    if (populationDistributor instanceof EvaluationListener) {
+      statisticsManager.addListener(
+          (EvaluationListener) populationDistributor);
+    }
   }
   // ParameterNumber on
 
@@ -245,6 +323,109 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
     this.trialsPerIteration = trialsPerIteration;
   }
 
+  /**
+   * Makes slaves pull small tasks from a queue instead of getting shards
+   * assigned by the population distributor, so that faster slaves evaluate
+   * more tasks. Tasks not evaluated within the lease time are given
+   * to other slaves.
+   * @param newChunkSize Maximum number of individuals in a task; non-positive
+   * value disables the queue.
+   * @param newLeaseMillis Lease time of a task in milliseconds.
+   */
+  public void setWorkQueue(final int newChunkSize, final long newLeaseMillis) {
+    this.chunkSize = newChunkSize;
+    this.leaseMillis = newLeaseMillis;
+  }
+
+  /**
+   * Makes every slave evaluate the whole population over its shard of
+   * the problem data instead of distributing the population. Slaves announce
+   * their shards on registration (see
+   * {@link engine.distribution.slave.Slave#setShard(int)}), and partial
+   * values of all shards are combined by objective functions, which must be
+   * {@link engine.DecomposableObjectiveFunction}s. Minimum number of slaves
+   * should be at least the number of shards.
+   * @param newShardCount Number of shards; non-positive value disables
+   * data-parallel evaluation.
+   * @param newLeaseMillis Time in milliseconds after which a shard not
+   * evaluated is given to another slave holding the shard.
+   */
+  public void setDataSharding(final int newShardCount,
+      final long newLeaseMillis) {
+    this.shardCount = newShardCount;
+    this.leaseMillis = newLeaseMillis;
+  }
+
+  /**
+   * Sets the number of tasks a slave may hold at once. Slaves fetching tasks
+   * ahead (see {@link engine.distribution.slave.Slave#run(int, int, int)})
+   * keep evaluating while the next task and the previous result are in
+   * transit; over HTTP they ask to hold as many tasks as they need.
+   * @param tasksPerSlave Maximum number of unevaluated tasks per slave.
+   */
+  public void setTasksPerSlave(final int tasksPerSlave) {
+    taskManager.setMaxTasksPerSlave(tasksPerSlave);
+  }
+
+  /**
+   * Makes idle slaves evaluate copies of the remaining tasks once the given
+   * fraction of tasks is evaluated, so that a single slow slave does not
+   * hold the iteration. The first result of a task is used.
+   * @param threshold Fraction of evaluated tasks, e.g. 0.8; non-positive
+   * value disables speculation.
+   */
+  public void setSpeculationThreshold(final double threshold) {
+    taskManager.setSpeculationThreshold(threshold);
+    this.speculationThreshold = threshold;
+  }
+
+  /**
+   * Makes the server hold requests of slaves until tasks are available, so
+   * that slaves get tasks as soon as the distribution starts. Must be called
+   * before {@link #initialize(TaskSerializer, ResultSerializer)}.
+   * @param timeout Milliseconds to hold a request; non-positive value makes
+   * the server answer immediately and slaves back off.
+   */
+  public void setLongPollTimeout(final long timeout) {
+    this.longPollTimeout = timeout;
+  }
+
+  /**
+   * Makes the master evaluate tasks itself, as an additional slave running
+   * in the master process, which gets tasks without HTTP or serialization.
+   * The worker counts towards the minimum number of slaves and takes no
+   * part in data-parallel evaluation. The work queue (see
+   * {@link #setWorkQueue(int, long)}) or speculation keep it busy until
+   * the population is evaluated. May be called several times, e.g. with
+   * evaluators using different cores.
+   * @param localEvaluator Evaluator of tasks, e.g.
+   * a {@link engine.MultiThreadedEvaluator}. Its objective functions must
+   * be instances other than the ones of this evaluator.
+   * @return Identifier of the worker among slaves.
+   */
+  public synchronized String addLocalWorker(
+      final PopulationEvaluator<T> localEvaluator) {
+    final LocalWorker<T> worker = new LocalWorker<T>(taskManager,
+        slaveManager, localEvaluator, "local-" + localWorkers.size());
+    worker.start();
+    localWorkers.add(worker);
+    return worker.getSlaveId();
+  }
+
+  /**
+   * Publishes static data of objective functions, e.g. a learning set,
+   * to slaves. Slaves fetch the data once by the hash of its content
+   * and keep it on disk (see {@link engine.distribution.slave.DataCache}),
+   * tasks carry only references to the data. Publishing new data under
+   * the same name replaces the old one.
+   * @param name Name of the data; must not contain commas or equals signs.
+   * @param data Content of the data. Must not be modified afterwards.
+   * @return Hash identifying the content.
+   */
+  public String publishData(final String name, final byte[] data) {
+    return dataStore.publish(name, data);
+  }
+
   /**
    * Sets timeout for slaves.
    * @param slaveTimeout Timeout to set (in milliseconds);
@@ -287,27 +468,41 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
   public void initialize(
       TaskSerializer<T> taskSerializer,
       ResultSerializer<T> resultSerializer) throws Exception {
-    
+    this.taskSerializer = taskSerializer;
+    this.resultSerializer = resultSerializer;
 
     Context servletContext = new Context(server, "/");
+    CompressionPolicy compressionPolicy = new CompressionPolicy();
+    slaveManager.addListener(compressionPolicy);
+    slaveManager.addListener(taskManager);
 
     logger.log(Level.FINE, "Registering distribution servlet.");
+    DistributionServlet<T> distributionServlet = new DistributionServlet<T>(
+        taskManager,
+        slaveManager,
+        statisticsManager,
+        taskSerializer,
+        resultSerializer,
+        compressionPolicy);
+    distributionServlet.setLongPollTimeout(longPollTimeout);
+    distributionServlet.setDataStore(dataStore);
     servletContext.addServlet(
-        new ServletHolder(
-            new DistributionServlet<T>(
-                taskManager,
-                slaveManager,
-                statisticsManager,
-                taskSerializer,
-                resultSerializer)),
+        new ServletHolder(distributionServlet),
             EXCHANGE_ADDRESS);
 
     logger.log(Level.FINE, "Registering registration servlet.");
     servletContext.addServlet(
         new ServletHolder(
-            new RegistrationServlet(slaveManager, statisticsManager)),
+            new RegistrationServlet(slaveManager, statisticsManager,
+                compressionPolicy)),
             REGISTER_ADDRESS);
 
+    logger.log(Level.FINE, "Registering problem data servlet.");
+    servletContext.addServlet(
+        new ServletHolder(
+            new DataServlet(dataStore)),
+            DATA_ADDRESS);
+
     logger.log(Level.FINE, "Registering statistics servlet.");
     servletContext.addServlet(
         new ServletHolder(
@@ -333,12 +528,64 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
     }
   }
 
+  /**
+   * Starts a non-blocking server speaking the binary protocol, besides
+   * the servlets, for slaves created with
+   * {@link engine.distribution.slave.Slave#createBinarySlave}. It handles
+   * many more requests per second than the servlets, but neither holds
+   * requests nor compresses tasks. Slaves on the same host are served over
+   * shared memory, if the directory of shared memory files (see
+   * {@link SharedMemoryChannel#getDirectory}) is available. Must be called
+   * after the evaluator is initialized.
+   * @param port Port to listen on; zero for any free port.
+   * @return Port the server listens on.
+   * @throws IOException Thrown when unable to listen on the port.
+   */
+  public int startBinaryServer(final int port) throws IOException {
+    if (taskSerializer == null) {
+      throw new IllegalStateException("Evaluator must be initialized first.");
+    }
+    binaryServer = new BinaryServer<T>(taskManager, slaveManager,
+        statisticsManager, taskSerializer, resultSerializer);
+    binaryServer.setDataStore(dataStore);
+    final int localPort = binaryServer.start(port);
+
+    final File directory = SharedMemoryChannel.getDirectory(localPort);
+    if (directory.getParentFile().isDirectory()
+        && SharedMemoryChannel.isSupported()) {
+      sharedMemoryServer = new SharedMemoryServer(binaryServer, directory);
+      slaveManager.addListener(sharedMemoryServer);
+      sharedMemoryServer.start();
+    } else {
+      logger.log(Level.INFO, "Shared memory unavailable, slaves on this "
+          + "host use sockets");
+    }
+    return localPort;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void evaluatePopulation(final Population<T> populationInternal) {
+    synchronized (this) {
+      evaluatedPopulations = null;
+      knownPopulations.clear();
+    }
     statisticsManager.atIterationStart(new Population<T>(populationInternal));
+    final int speculativeTasks = speculationThreshold > 0
+        ? taskManager.getSpeculativeTaskCount() : 0;
+    final int discardedResults = speculationThreshold > 0
+        ? taskManager.getDiscardedResultCount() : 0;
     int times = trialsPerIteration;
-    Population<T> populationToEvaluate = populationInternal;
+    final List<Map<T, Double>> knownValues = createValueMaps();
+    Population<T> populationToEvaluate =
+        removeKnownIndividuals(populationInternal, knownValues);
+    statisticsManager.afterDeduplication(
+        populationInternal.size() - populationToEvaluate.size());
+    if (populationToEvaluate.size() == 0) {
+      statisticsManager.atIterationEnd(new Population<T>(populationInternal));
+      return;
+    }
+
     while (times > 0) {
       times = Math.max(0, times - 1);
 
@@ -349,6 +596,12 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
       }
 
       if (populationToEvaluate == null) {
+        restoreValues(knownValues);
+        if (speculationThreshold > 0) {
+          statisticsManager.afterSpeculation(
+              taskManager.getSpeculativeTaskCount() - speculativeTasks,
+              taskManager.getDiscardedResultCount() - discardedResults);
+        }
         statisticsManager.atIterationEnd(
             new Population<T>(populationInternal));
         return;
@@ -358,6 +611,165 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
     throw new IllegalStateException("Population may not be fully evaluated.");
   }
 
+  /**
+   * Starts the asynchronous mode, in which populations are submitted with
+   * {@link #submit(Population)} and slaves evaluate them continuously,
+   * without waiting for the rest of the generation. Tasks are pulled from
+   * the work queue (see {@link #setWorkQueue(int, long)}), which must be
+   * set. Calling {@link #evaluatePopulation(Population)} ends the mode.
+   */
+  public synchronized void startAsynchronousEvaluation() {
+    if (chunkSize <= 0) {
+      throw new IllegalStateException("Work queue must be set.");
+    }
+    slaveManager.getAvailableSlaves(minimumSlaves);
+    evaluatedPopulations = new LinkedBlockingQueue<Population<T>>();
+    knownPopulations.clear();
+    taskManager.enableStream(leaseMillis, objectiveFunctions,
+        evaluatedPopulations);
+  }
+
+  /**
+   * Submits individuals to be evaluated in the asynchronous mode. Cached
+   * individuals are returned as evaluated at once, with values captured in
+   * case merges evict them before they are taken, and equal individuals are
+   * evaluated and returned once.
+   * @param population Individuals to evaluate.
+   * @return Number of individuals to be returned as evaluated.
+   */
+  public synchronized int submit(final Population<T> population) {
+    if (evaluatedPopulations == null) {
+      throw new IllegalStateException("Asynchronous mode is not started.");
+    }
+    final List<T> known = new ArrayList<T>();
+    final Set<T> unknown = new LinkedHashSet<T>();
+    final List<Map<T, Double>> knownValues = createValueMaps();
+    for (T individual : population.getIndividuals()) {
+      if (captureValues(individual, knownValues)) {
+        known.add(individual);
+      } else {
+        unknown.add(individual);
+      }
+    }
+    if (!known.isEmpty()) {
+      final Population<T> knownPopulation = new Population<T>(known);
+      knownPopulations.put(knownPopulation, knownValues);
+      evaluatedPopulations.add(knownPopulation);
+    }
+    if (!unknown.isEmpty()) {
+      taskManager.addToQueue(new Population<T>(new ArrayList<T>(unknown)),
+          chunkSize);
+    }
+    return known.size() + unknown.size();
+  }
+
+  /**
+   * Waits for individuals submitted in the asynchronous mode to be
+   * evaluated. Their values are cached by the objective functions, values
+   * of submitted individuals which were already cached are put back.
+   * @return Evaluated individuals of a single task, or submitted individuals
+   * which were already cached.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  public Population<T> takeEvaluated() throws InterruptedException {
+    final BlockingQueue<Population<T>> queue;
+    synchronized (this) {
+      queue = evaluatedPopulations;
+    }
+    if (queue == null) {
+      throw new IllegalStateException("Asynchronous mode is not started.");
+    }
+    final Population<T> population = queue.take();
+    final List<Map<T, Double>> knownValues;
+    synchronized (this) {
+      knownValues = knownPopulations.remove(population);
+    }
+    if (knownValues != null) {
+      restoreValues(knownValues);
+    }
+    return population;
+  }
+
+  /**
+   * Removes individuals whose values are cached and collapses equal
+   * individuals, so that slaves evaluate only new ones. Values of cached
+   * individuals are captured, as merging values of new ones may evict them,
+   * and are put back with {@link #restoreValues(List)}. Values of removed
+   * duplicates are looked up in the caches, which match individuals by
+   * equality, so caches must hold all distinct individuals of
+   * the population.
+   * @param population Population to be evaluated.
+   * @param knownValues Maps filled with captured values, one per objective
+   * function.
+   * @return Distinct individuals not cached, or the given population if
+   * there are no such individuals to remove.
+   */
+  private Population<T> removeKnownIndividuals(
+      final Population<T> population,
+      final List<Map<T, Double>> knownValues) {
+    final List<T> individuals = population.getIndividuals();
+    final Set<T> unknown = new LinkedHashSet<T>();
+    for (T individual : individuals) {
+      if (!captureValues(individual, knownValues)) {
+        unknown.add(individual);
+      }
+    }
+    if (unknown.size() == individuals.size()) {
+      return population;
+    }
+
+    logger.log(Level.FINE, "Skipping " + (individuals.size() - unknown.size())
+        + " cached or duplicate individuals out of " + individuals.size());
+    return new Population<T>(new ArrayList<T>(unknown));
+  }
+
+  /**
+   * Creates empty maps of values, one per objective function.
+   * @return Maps of values.
+   */
+  private List<Map<T, Double>> createValueMaps() {
+    final List<Map<T, Double>> values =
+        new ArrayList<Map<T, Double>>(objectiveFunctions.size());
+    for (int i = 0; i < objectiveFunctions.size(); i++) {
+      values.add(new HashMap<T, Double>());
+    }
+    return values;
+  }
+
+  /**
+   * Captures values of the individual, if all objective functions know
+   * them.
+   * @param individual Individual to look up.
+   * @param knownValues Maps of values to fill, one per objective function.
+   * @return True if the individual is cached by all objective functions.
+   */
+  private boolean captureValues(final T individual,
+      final List<Map<T, Double>> knownValues) {
+    final Double[] values = new Double[objectiveFunctions.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = objectiveFunctions.get(i).getCachedValue(individual);
+      if (values[i] == null) {
+        return false;
+      }
+    }
+    for (int i = 0; i < values.length; i++) {
+      knownValues.get(i).put(individual, values[i]);
+    }
+    return true;
+  }
+
+  /**
+   * Puts captured values back to caches of objective functions.
+   * @param knownValues Maps of values, one per objective function.
+   */
+  private void restoreValues(final List<Map<T, Double>> knownValues) {
+    for (int i = 0; i < knownValues.size(); i++) {
+      if (!knownValues.get(i).isEmpty()) {
+        objectiveFunctions.get(i).merge(knownValues.get(i));
+      }
+    }
+  }
+
   /**
    * Executes single evaluation step without any time limit.
    * @param populationToEvaluate Population to be evaluated.
@@ -417,6 +829,16 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
     List<String> currentSlaves =
         slaveManager.getAvailableSlaves(minimumSlaves);
 
+    if (shardCount > 0) {
+      return taskManager.enableShards(populationToEvaluate, shardCount,
+          slaveManager.getShards(), leaseMillis, objectiveFunctions);
+    }
+
+    if (chunkSize > 0) {
+      return taskManager.enableQueue(populationToEvaluate, chunkSize,
+          leaseMillis, objectiveFunctions);
+    }
+
     DistributedPopulation<T> distributedPopulation =
         populationDistributor.distribute(
             populationToEvaluate, currentSlaves);
@@ -432,6 +854,17 @@ public class MasterSlaveEvaluator<T> extends PopulationEvaluator<T> {
    * @throws Exception Thrown on server stop failures.
    */
   public void shutdown() throws Exception {
+     for (LocalWorker<T> worker : localWorkers) {
+       worker.stop();
+     }
+     if (sharedMemoryServer != null) {
+       logger.log(Level.INFO, "Shutting down shared memory server");
+       sharedMemoryServer.stop();
+     }
+     if (binaryServer != null) {
+       logger.log(Level.INFO, "Shutting down binary server");
+       binaryServer.stop();
+     }
      logger.log(Level.INFO, "Shutting down Jetty server");
      server.stop();
      logger.log(Level.FINE, "Server shut down");
@@ -0,0 +1,99 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.utils.ProblemData;
+
+/**
+ * Keeps problem data published by the master, i.e. named, static data of
+ * objective functions, such as learning sets or graphs. Slaves fetch data
+ * by the hash of its content once and keep it on disk, so that it is sent
+ * neither with every task nor again after restarting a slave.
+ */
+public class ProblemDataStore {
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      ProblemDataStore.class.getCanonicalName());
+
+  /** Hashes of published data by name. */
+  private final Map<String, String> hashes =
+      new LinkedHashMap<String, String>();
+
+  /** Published data by hash. */
+  private final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+  /**
+   * Publishes data under given name, replacing data previously published
+   * under the name.
+   * @param name Name of the data; must not contain commas or equals signs.
+   * @param data Content of the data. Must not be modified afterwards.
+   * @return Hash identifying the content.
+   */
+  public synchronized String publish(final String name, final byte[] data) {
+    if (!ProblemData.isValidName(name)) {
+      throw new IllegalArgumentException("Invalid problem data name " + name);
+    }
+
+    final String hash = ProblemData.hash(data);
+    final String previousHash = hashes.put(name, hash);
+    contents.put(hash, data);
+    if (previousHash != null && !previousHash.equals(hash)
+        && !hashes.containsValue(previousHash)) {
+      contents.remove(previousHash);
+    }
+
+    logger.log(Level.INFO, "Published " + data.length + " bytes of problem "
+        + "data " + name + " (" + hash + ")");
+    return hash;
+  }
+
+  /**
+   * Returns hash of the data published under given name.
+   * @param name Name of the data.
+   * @return Hash of the data or null if nothing is published under the name.
+   */
+  public synchronized String getHash(final String name) {
+    return hashes.get(name);
+  }
+
+  /**
+   * Returns published data.
+   * @param hash Hash of the data.
+   * @return Content of the data or null if it is not published.
+   */
+  public synchronized byte[] getData(final String hash) {
+    return contents.get(hash);
+  }
+
+  /**
+   * Returns references to all published data.
+   * @return Map from names of the data to their hashes.
+   */
+  public synchronized Map<String, String> getReferences() {
+    return new LinkedHashMap<String, String>(hashes);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import engine.distribution.serialization.EvaluationTask;
+
+/**
+ * Tasks sent to slaves with the times of sending, matched with results by
+ * task identifier, as a slave may hold several tasks and copies of a task
+ * may be held by several slaves. Slaves evaluate their tasks in order, so
+ * matching a result drops the older tasks of the slave, whose results are
+ * not coming back, e.g. because their leases expired.
+ */
+class SentTasks {
+
+  /** Task sent to a slave. */
+  static final class SentTask {
+
+    /** Sent task. */
+    private final EvaluationTask<?> task;
+
+    /** Time of sending in milliseconds. */
+    private final long time;
+
+    /**
+     * Constructor.
+     * @param task Sent task.
+     * @param time Time of sending in milliseconds.
+     */
+    SentTask(final EvaluationTask<?> task, final long time) {
+      this.task = task;
+      this.time = time;
+    }
+
+    /**
+     * Gets the sent task.
+     * @return Sent task.
+     */
+    EvaluationTask<?> getTask() {
+      return task;
+    }
+
+    /**
+     * Gets the time of sending.
+     * @return Time of sending in milliseconds.
+     */
+    long getTime() {
+      return time;
+    }
+  }
+
+  /** Tasks sent to slaves, by slave and task identifier, oldest first. */
+  private final Map<String, LinkedHashMap<Long, SentTask>> sent =
+      new HashMap<String, LinkedHashMap<Long, SentTask>>();
+
+  /**
+   * Records the task sent to the slave.
+   * @param slaveId ID of the slave.
+   * @param task Sent task.
+   * @param time Time of sending in milliseconds.
+   */
+  synchronized void add(final String slaveId, final EvaluationTask<?> task,
+      final long time) {
+    LinkedHashMap<Long, SentTask> tasks = sent.get(slaveId);
+    if (tasks == null) {
+      tasks = new LinkedHashMap<Long, SentTask>();
+      sent.put(slaveId, tasks);
+    }
+    tasks.remove(task.getId());
+    tasks.put(task.getId(), new SentTask(task, time));
+  }
+
+  /**
+   * Removes the task whose result was received from the slave, together
+   * with the tasks sent to the slave before it.
+   * @param slaveId ID of the slave.
+   * @param taskId Identifier of the task or {@link EvaluationTask#NO_ID}
+   * for the oldest task sent to the slave.
+   * @return Sent task or null if it is not known.
+   */
+  synchronized SentTask remove(final String slaveId, final long taskId) {
+    final LinkedHashMap<Long, SentTask> tasks = sent.get(slaveId);
+    if (tasks == null || (taskId != EvaluationTask.NO_ID
+        && !tasks.containsKey(taskId))) {
+      return null;
+    }
+
+    final Iterator<SentTask> iterator = tasks.values().iterator();
+    while (iterator.hasNext()) {
+      final SentTask sentTask = iterator.next();
+      iterator.remove();
+      if (taskId == EvaluationTask.NO_ID
+          || sentTask.getTask().getId() == taskId) {
+        return sentTask;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Forgets tasks sent to slaves other than the given ones.
+   * @param slaveIds IDs of the slaves to keep tasks of.
+   */
+  synchronized void retainSlaves(final Collection<String> slaveIds) {
+    sent.keySet().retainAll(slaveIds);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.utils.SharedMemoryChannel;
+
+/**
+ * Serves slaves on the same host as the master over
+ * {@link SharedMemoryChannel}s instead of sockets, handling their frames
+ * with the binary server. Slaves create channels in the directory of
+ * the master, which a single thread scans for new channels and polls for
+ * frames, spinning briefly and then parking when idle. Channels of slaves
+ * removed by the slave manager, e.g. dead ones, are closed and their files
+ * removed, as such slaves never close them.
+ */
+public class SharedMemoryServer implements Runnable, SlaveListener {
+
+  /** Milliseconds between scans of the directory for new channels. */
+  private static final long SCAN_MILLIS = 100;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      SharedMemoryServer.class.getCanonicalName());
+
+  /** Server handling the frames. */
+  private final BinaryServer<?> server;
+
+  /** Directory in which slaves create channels. */
+  private final File directory;
+
+  /**
+   * Open channels with their connection states. Accessed only by the server
+   * thread.
+   */
+  private final Map<SharedMemoryChannel, BinaryServer.Connection> channels =
+      new LinkedHashMap<SharedMemoryChannel, BinaryServer.Connection>();
+
+  /** Files of channels already opened or failed to open. */
+  private final Set<File> knownFiles = new HashSet<File>();
+
+  /** IDs of removed slaves whose channels are to be closed. */
+  private final Queue<String> removedSlaves =
+      new ConcurrentLinkedQueue<String>();
+
+  /** Thread running the server. */
+  private Thread thread;
+
+  /** Whether the server should keep running. */
+  private volatile boolean running;
+
+  /**
+   * Constructor.
+   * @param server Server handling the frames.
+   * @param directory Directory in which slaves create channels (see
+   * {@link SharedMemoryChannel#getDirectory}).
+   */
+  public SharedMemoryServer(final BinaryServer<?> server,
+      final File directory) {
+    this.server = server;
+    this.directory = directory;
+  }
+
+  /**
+   * Creates the directory and starts the server in a new thread.
+   * @throws IOException Thrown when unable to create the directory.
+   */
+  public synchronized void start() throws IOException {
+    if (thread != null) {
+      throw new IllegalStateException("Server already started.");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create directory " + directory);
+    }
+    running = true;
+    thread = new Thread(this, "wevo-shared-memory-server");
+    thread.setDaemon(true);
+    thread.start();
+    logger.log(Level.INFO, "Shared memory server serving " + directory);
+  }
+
+  /** Stops the server, closes all channels and removes the directory. */
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      logger.log(Level.WARNING, "Interrupted while stopping shared memory "
+          + "server", e);
+    }
+    thread = null;
+  }
+
+  /** {@inheritDoc} */
+  public void run() {
+    long lastScan = 0;
+    int idleIterations = 0;
+    try {
+      while (running) {
+        final long now = System.currentTimeMillis();
+        if (now - lastScan >= SCAN_MILLIS) {
+          scan();
+          lastScan = now;
+        }
+        closeRemovedSlaves();
+        if (serveChannels()) {
+          idleIterations = 0;
+        } else {
+          SharedMemoryChannel.idle(idleIterations++);
+        }
+      }
+    } finally {
+      for (SharedMemoryChannel channel : channels.keySet()) {
+        close(channel);
+      }
+      channels.clear();
+      final File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      directory.delete();
+    }
+  }
+
+  /** {@inheritDoc} */
+  public void slaveRemoved(final String slaveId) {
+    removedSlaves.add(slaveId);
+  }
+
+  /** Closes channels of slaves removed since the last call. */
+  private void closeRemovedSlaves() {
+    String slaveId;
+    while ((slaveId = removedSlaves.poll()) != null) {
+      final Iterator<Entry<SharedMemoryChannel, BinaryServer.Connection>>
+          iterator = channels.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final Entry<SharedMemoryChannel, BinaryServer.Connection> entry =
+            iterator.next();
+        if (slaveId.equals(entry.getValue().getSlaveId())) {
+          logger.log(Level.INFO, "Slave " + slaveId + " removed, closing "
+              + "channel " + entry.getKey().getFile());
+          iterator.remove();
+          close(entry.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * Serves all open channels once.
+   * @return True iff any bytes were read or written.
+   */
+  private boolean serveChannels() {
+    boolean progress = false;
+    final Iterator<Entry<SharedMemoryChannel, BinaryServer.Connection>>
+        iterator = channels.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Entry<SharedMemoryChannel, BinaryServer.Connection> entry =
+          iterator.next();
+      try {
+        progress |= server.serve(entry.getKey(), entry.getValue());
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Closing channel "
+            + entry.getKey().getFile(), e);
+        iterator.remove();
+        close(entry.getKey());
+      }
+    }
+    return progress;
+  }
+
+  /** Opens channels created by slaves since the last scan. */
+  private void scan() {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (!file.getName().endsWith(SharedMemoryChannel.SUFFIX)
+          || knownFiles.contains(file)) {
+        continue;
+      }
+      knownFiles.add(file);
+      try {
+        channels.put(SharedMemoryChannel.open(file),
+            new BinaryServer.Connection());
+        logger.log(Level.FINE, "Opened channel " + file);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to open channel " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Closes the channel and removes its file.
+   * @param channel Channel to close.
+   */
+  private void close(final SharedMemoryChannel channel) {
+    channel.close();
+    channel.getFile().delete();
+    knownFiles.remove(channel.getFile());
+  }
+}
@@ -20,10 +20,13 @@
 package engine.distribution.master;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,6 +50,14 @@ public class SlaveManager {
   /** List of all registered slaves. */
   private final LinkedHashMap<String, SlaveInformation> slaves;
 
+  /** Shards of the problem data held by slaves, by slave id. */
+  private final Map<String, Integer> shards =
+      new ConcurrentHashMap<String, Integer>();
+
+  /** Listeners notified about removed slaves. */
+  private final List<SlaveListener> listeners =
+      new CopyOnWriteArrayList<SlaveListener>();
+
   /** Signal for collecting slaves. */
   private CountDownLatch slavesToCollect;
 
@@ -127,6 +138,37 @@ public class SlaveManager {
   public synchronized void removeSlave(String slaveId) {
     logger.log(Level.INFO, "Removing slave " + slaveId);
     slaves.remove(slaveId);
+    shards.remove(slaveId);
+    for (SlaveListener listener : listeners) {
+      listener.slaveRemoved(slaveId);
+    }
+  }
+
+  /**
+   * Adds listener notified about removed slaves.
+   * @param listener Listener to add.
+   */
+  public void addListener(final SlaveListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Records the shard of the problem data held by the slave.
+   * @param slaveId Slave identifier.
+   * @param shard Index of the shard, from zero.
+   */
+  public void setShard(final String slaveId, final int shard) {
+    logger.log(Level.FINE, "Slave " + slaveId + " holds shard " + shard);
+    shards.put(slaveId, shard);
+  }
+
+  /**
+   * Gets shards of the problem data held by slaves. The returned view
+   * reflects later registrations.
+   * @return Unmodifiable mapping from slave id to index of its shard.
+   */
+  public Map<String, Integer> getShards() {
+    return Collections.unmodifiableMap(shards);
   }
 
   /**
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 import engine.Population;
@@ -53,6 +54,10 @@ public class StatisticsManager {
     /** Gathered single iteration statistics. */
     private IterationStatistics iterationStatistics;
 
+    /** Listeners notified about sent tasks and received results. */
+    private final List<EvaluationListener> listeners =
+        new CopyOnWriteArrayList<EvaluationListener>();
+
     /**
      * Constructor.
      * Package visibility for testing purposes.
@@ -137,6 +142,14 @@ public class StatisticsManager {
       return generalStatistic.getIteration(iterationNumber);
     }
 
+    /**
+     * Adds listener notified about tasks sent and results received.
+     * @param listener Listener to add.
+     */
+    public void addListener(final EvaluationListener listener) {
+      listeners.add(listener);
+    }
+
     /**
      * Adds new slave. Should be called on slave registration.
      * @param slaveId Slave's identifier.
@@ -199,6 +212,29 @@ public class StatisticsManager {
       iterationCounter.incrementAndGet();
     }
 
+    /**
+     * Records speculative execution in the current iteration.
+     * @param speculativeTasks Number of tasks copied to idle slaves.
+     * @param discardedResults Number of results discarded, as their tasks
+     * had already been evaluated.
+     */
+    public void afterSpeculation(int speculativeTasks, int discardedResults) {
+      iterationStatistics.addCounterValue(
+          IterationStatistics.SPECULATIVE_TASKS, speculativeTasks);
+      iterationStatistics.addCounterValue(
+          IterationStatistics.DISCARDED_RESULTS, discardedResults);
+    }
+
+    /**
+     * Records individuals of the current iteration not sent to slaves.
+     * @param skippedIndividuals Number of individuals whose values were
+     * cached or which duplicated other individuals.
+     */
+    public void afterDeduplication(int skippedIndividuals) {
+      iterationStatistics.addCounterValue(
+          IterationStatistics.SKIPPED_INDIVIDUALS, skippedIndividuals);
+    }
+
     /**
      * This method is called just after sending new task to slave
      * (before return point of {@link DistributionServlet#doGet}).
@@ -209,7 +245,9 @@ public class StatisticsManager {
      * @param task Evaluation task which was sent.
      */
     public void afterSendingTask(String slaveId, EvaluationTask<?> task) {
-      return;
+      for (EvaluationListener listener : listeners) {
+        listener.afterSendingTask(slaveId, task);
+      }
     }
 
     /**
@@ -219,10 +257,14 @@ public class StatisticsManager {
      * in statistics. This is counter-partner method of
      * {@link StatisticsManager#doAfterSendingResult}. 
      * @param slaveId Identifier of slave which posts the result.
+     * @param taskId Identifier of the evaluated task or
+     * {@link EvaluationTask#NO_ID} for the oldest task leased to the slave.
      * @param result Result received from slave.
      */
-    public void afterReceivingResult(String slaveId, 
+    public void afterReceivingResult(String slaveId, long taskId,
         EvaluationResult<?> result) {
-      return;
+      for (EvaluationListener listener : listeners) {
+        listener.afterReceivingResult(slaveId, taskId, result);
+      }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.CachedObjectiveFunction;
+import engine.distribution.slave.Slave;
+
+/**
+ * Inner node of a tree of masters and slaves, relieving the master of
+ * very large slave pools. Towards its master, a sub-master is a single slave;
+ * each task it gets is distributed among its own slaves by a master-slave
+ * evaluator, and their results are sent upstream as one result. Values of
+ * objective functions are never computed by the sub-master itself.
+ *
+ * A sub-master is usually much faster than an ordinary slave, so its master
+ * should size tasks by measured speed, using {@link ThroughputDistributor}
+ * or the work queue with large chunks.
+ *
+ * @param <T> Type of individuals being evaluated.
+ */
+public class SubMaster<T> {
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      SubMaster.class.getCanonicalName());
+
+  /** Evaluator distributing tasks among slaves of the sub-master. */
+  private final MasterSlaveEvaluator<T> evaluator;
+
+  /** Slave exchanging tasks with the master. */
+  private final Slave<T> upstream;
+
+  /**
+   * Constructor. Package visibility for testing purposes.
+   * @param evaluator Evaluator distributing tasks among own slaves.
+   * @param upstream Slave exchanging tasks with the master, evaluating
+   * them with the evaluator.
+   */
+  SubMaster(final MasterSlaveEvaluator<T> evaluator,
+      final Slave<T> upstream) {
+    this.evaluator = evaluator;
+    this.upstream = upstream;
+  }
+
+  /**
+   * Creates sub-master with JavaIO serializer tools, serving its slaves with
+   * a new Jetty server. Evaluation of a task is retried until all its
+   * individuals are evaluated by the slaves.
+   * @param objectiveFunctions List of objective functions used in evaluation.
+   * @param populationDistributor Population distributor for own slaves.
+   * @param serverPort Port on which own slaves are served.
+   * @param name Name under which the sub-master registers with its master.
+   * @param masterUrl URL of the master.
+   * @param <T> Type of individual in the population.
+   * @return Configured and initialized sub-master.
+   * @throws Exception Thrown on initialization failures.
+   */
+  public static <T> SubMaster<T> createSubMaster(
+      final List<CachedObjectiveFunction<T>> objectiveFunctions,
+      final PopulationDistributor<T> populationDistributor,
+      final int serverPort,
+      final String name,
+      final String masterUrl) throws Exception {
+    MasterSlaveEvaluator<T> evaluator =
+        MasterSlaveEvaluator.createStandardEvaluator(objectiveFunctions,
+            populationDistributor, serverPort);
+    evaluator.setTrialsPerIteration(Integer.MAX_VALUE);
+    return new SubMaster<T>(evaluator,
+        Slave.createSlave(evaluator, name, masterUrl));
+  }
+
+  /**
+   * Gets the evaluator distributing tasks among own slaves, e.g. to
+   * configure the work queue or speculation.
+   * @return Evaluator of the sub-master.
+   */
+  public MasterSlaveEvaluator<T> getEvaluator() {
+    return evaluator;
+  }
+
+  /**
+   * Registers with the master and keeps evaluating its tasks.
+   * @param registerCycles Maximum number of times to try to register.
+   * Negative value indicates infinite loop.
+   * @param backoff Number of milliseconds to seize asking the master after
+   * a rejection or failure.
+   * @param timeout Number of seconds after which connection failures stop
+   * the sub-master; negative value disables timing-out.
+   * @throws ClassNotFoundException Thrown when definition of a class
+   * sent by the master was not found.
+   */
+  public void run(final int registerCycles, final int backoff,
+      final int timeout) throws ClassNotFoundException {
+    logger.log(Level.INFO, "Starting sub-master");
+    upstream.register(registerCycles, backoff, timeout);
+    upstream.run(backoff, timeout);
+  }
+
+  /**
+   * Shuts down the server of own slaves.
+   * @throws Exception Thrown on server stop failures.
+   */
+  public void shutdown() throws Exception {
+    evaluator.shutdown();
+  }
+}
@@ -19,10 +19,19 @@
  */
 package engine.distribution.master;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,48 +40,185 @@ import engine.CachedObjectiveFunction;
 import engine.Population;
 import engine.distribution.serialization.EvaluationResult;
 import engine.distribution.serialization.EvaluationTask;
+import engine.utils.SystemClock;
+import engine.utils.WevoClock;
 
 /**
  * This class is responsible for synchronized access from servlets
  * to distributed population. It works as a mediator between servlets
  * and MasterEvaluator.
+ *
+ * Tasks are either assigned to slaves up front, or put into a queue from
+ * which slaves pull them when idle. A task given to a slave is leased to it,
+ * and a slave may hold several leases at once to overlap evaluation with
+ * communication; results name their tasks by identifier. In queue mode,
+ * tasks whose lease expires before the result arrives go back to the queue.
+ * Once the given fraction of tasks is evaluated, idle slaves may also get
+ * speculative copies of the remaining tasks. The first result of a task wins
+ * and later ones are discarded.
+ *
+ * In data-parallel mode every slave holds a shard of the problem data and
+ * there is one task per shard, each holding the whole population. Tasks are
+ * given only to slaves holding their shard, and once all shards are
+ * evaluated, their partial values are combined by the objective functions.
+ *
+ * In streaming mode there is no distribution to finish: tasks are added to
+ * the queue at any time, and each evaluated task is handed over to the
+ * master as soon as its values are merged.
  * @param <T> Type of the individuals in the population.
  *
  * @author Karol Stosiek (karol.stosiek@gmail.com)
  * @author Michal Anglart (anglart.michal@gmail.com)
  */
-public class TaskManager<T> {
+public class TaskManager<T> implements SlaveListener {
 
   /** Logging utility. */
   private final Logger logger =
       Logger.getLogger(TaskManager.class.getCanonicalName());
 
-  /** Population to be distributed among slaves. */
+  /** Time measurement utility. */
+  private final WevoClock clock;
+
+  /**
+   * Tasks leased to slaves in order of leasing, by the keys of the leases,
+   * possibly from previous distributions, so that late results are still
+   * merged. Leases of evaluated or replaced tasks are pruned when the slave
+   * asks for a task, as its results are in by then; leases of removed slaves
+   * are dropped.
+   */
+  private final Map<String, LinkedHashMap<Long, Lease<T>>> leases =
+      new HashMap<String, LinkedHashMap<Long, Lease<T>>>();
+
+  /**
+   * Leases of tasks of the current distribution in order of expiry, which is
+   * the order of leasing or renewal, as all leases of a distribution last
+   * equally long.
+   */
+  private final Set<Lease<T>> expiringLeases = new LinkedHashSet<Lease<T>>();
+
+  /** Key of the next lease of a task without identifier. */
+  private long nextAnonymousLeaseKey = EvaluationTask.NO_ID - 1;
+
+  /** Identifier of the next task created. */
+  private long nextTaskId;
+
+  /** Maximum number of unevaluated tasks leased to a single slave. */
+  private int maxTasksPerSlave = 1;
+
+  /** Numbers of tasks slaves fetching tasks ahead asked to hold. */
+  private final Map<String, Integer> slaveTaskLimits =
+      new HashMap<String, Integer>();
+
+  /** Listeners notified when new tasks may be available. */
+  private final List<TaskListener> taskListeners =
+      new CopyOnWriteArrayList<TaskListener>();
+
+  /** All tasks of the current distribution. */
+  private List<EvaluationTask<T>> tasks;
+
+  /** Tasks of the current distribution, for identity lookups. */
+  private Map<EvaluationTask<T>, Boolean> currentTasks;
+
+  /** Tasks of the current distribution by their identifiers. */
+  private Map<Long, EvaluationTask<T>> currentTasksById;
+
+  /** Tasks assigned to slaves up front; null in queue mode. */
   private Map<String, EvaluationTask<T>> taskDistribution;
 
+  /** Tasks waiting to be pulled by slaves; null unless in queue mode. */
+  private LinkedList<EvaluationTask<T>> pendingTasks;
+
+  /**
+   * Shards of the tasks of the current distribution; null unless in
+   * data-parallel mode.
+   */
+  private Map<EvaluationTask<T>, Integer> taskShards;
+
+  /** Shards of the problem data held by slaves, by slave id. */
+  private Map<String, Integer> slaveShards;
+
+  /** Partial values of the evaluated shards, by shard. */
+  private double[][] shardValues;
+
+  /** Time after which leased tasks are given to other slaves. */
+  private long leaseMillis;
+
+  /**
+   * Fraction of evaluated tasks after which the remaining ones are copied
+   * to idle slaves. Non-positive value disables speculation.
+   */
+  private double speculationThreshold = -1;
+
+  /** Tasks of the current distribution copied to idle slaves. */
+  private Map<EvaluationTask<T>, Boolean> speculatedTasks =
+      new IdentityHashMap<EvaluationTask<T>, Boolean>();
+
+  /** Number of tasks copied to idle slaves so far. */
+  private int speculativeTasks;
+
+  /** Number of results discarded so far. */
+  private int discardedResults;
+
   /** Signal indicating whether population evaluation is over or not. */
   private CountDownLatch unevaluatedPopulationShards;
 
   /** List of objective functions to calculate individual values. */
   private List<CachedObjectiveFunction<T>> objectiveFunctions;
 
+  /**
+   * Queue receiving populations of evaluated tasks; null unless in
+   * streaming mode.
+   */
+  private BlockingQueue<Population<T>> evaluatedPopulations;
+
+  /**
+   * Constructor.
+   * @param clock Time measurement utility for lease expiry.
+   */
+  public TaskManager(final WevoClock clock) {
+    this.clock = clock;
+  }
+
+  /** Constructor. */
+  public TaskManager() {
+    this(new SystemClock());
+  }
+
+  /**
+   * Adds listener notified when new tasks may be available.
+   * @param listener Listener to add.
+   */
+  public void addTaskListener(final TaskListener listener) {
+    taskListeners.add(listener);
+  }
+
+  /** Notifies listeners that new tasks may be available. */
+  private void notifyTaskListeners() {
+    for (TaskListener listener : taskListeners) {
+      listener.tasksAvailable();
+    }
+  }
+
   /**
    * Sets population to be distributed. Package visibility for testing purposes.
    * @param newTaskDistribution Distribution of the tasks among slaves.
    * @param newObjectiveFunctions List of objective functions.
    * @return Signal object indicating whether population is evaluated or not.
    */
-  CountDownLatch enableDistribution(
+  synchronized CountDownLatch enableDistribution(
       final Map<String, EvaluationTask<T>> newTaskDistribution,
       final List<CachedObjectiveFunction<T>> newObjectiveFunctions) {
 
-    logger.log(Level.FINEST, "Enabling distribution. Task distribution "
-        + "(" + newTaskDistribution.size() + "): " + newTaskDistribution);
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Enabling distribution. Task distribution "
+          + "(" + newTaskDistribution.size() + "): " + newTaskDistribution);
+    }
 
+    setTasks(new ArrayList<EvaluationTask<T>>(newTaskDistribution.values()));
     this.taskDistribution = newTaskDistribution;
+    this.pendingTasks = null;
     this.objectiveFunctions = newObjectiveFunctions;
-    this.unevaluatedPopulationShards =
-        new CountDownLatch(newTaskDistribution.size());
+    notifyTaskListeners();
     return unevaluatedPopulationShards;
   }
 
@@ -83,51 +229,641 @@ public class TaskManager<T> {
    * @param newObjectiveFunctions List of cached objective functions.
    * @return Signal object indicating whether population is evaluated or not.
    */
-  public CountDownLatch enableDistribution(
+  public synchronized CountDownLatch enableDistribution(
       final DistributedPopulation<T> newDistributedPopulation,
       final List<CachedObjectiveFunction<T>> newObjectiveFunctions) {
 
-    logger.log(Level.FINEST, "Turning distributed population into task "
-        + "distribution.Distributed population: "
-        + newDistributedPopulation.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Turning distributed population into task "
+          + "distribution.Distributed population: "
+          + newDistributedPopulation.toString());
+    }
 
     Map<String, EvaluationTask<T>> newTaskDistribution =
         new LinkedHashMap<String, EvaluationTask<T>>();
     for (Entry<String, Population<T>> mapping : newDistributedPopulation) {
       newTaskDistribution.put(mapping.getKey(),
-          new EvaluationTask<T>(mapping.getValue()));
+          new EvaluationTask<T>(mapping.getValue(), nextTaskId++));
     }
 
-    logger.log(Level.FINEST, "Resulting task distribution: \n"
-        + newTaskDistribution.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Resulting task distribution: \n"
+          + newTaskDistribution.toString());
+    }
 
     return enableDistribution(newTaskDistribution, newObjectiveFunctions);
   }
 
+  /**
+   * Splits population into tasks to be pulled by slaves. This method should
+   * be called only by MasterEvaluator.
+   * @param population Population to be evaluated.
+   * @param chunkSize Maximum number of individuals in a single task.
+   * @param newLeaseMillis Time after which a task not evaluated by the slave
+   * that pulled it is given to another slave.
+   * @param newObjectiveFunctions List of cached objective functions.
+   * @return Signal object indicating whether population is evaluated or not.
+   */
+  public synchronized CountDownLatch enableQueue(
+      final Population<T> population,
+      final int chunkSize,
+      final long newLeaseMillis,
+      final List<CachedObjectiveFunction<T>> newObjectiveFunctions) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive.");
+    }
+
+    final List<T> individuals = population.getIndividuals();
+    LinkedList<EvaluationTask<T>> newTasks =
+        new LinkedList<EvaluationTask<T>>();
+    for (int i = 0; i < individuals.size(); i += chunkSize) {
+      newTasks.add(new EvaluationTask<T>(new Population<T>(new ArrayList<T>(
+          individuals.subList(i, Math.min(i + chunkSize,
+              individuals.size())))), nextTaskId++));
+    }
+
+    logger.log(Level.FINE, "Enabling queue of " + newTasks.size()
+        + " tasks of at most " + chunkSize + " individuals");
+
+    setTasks(new ArrayList<EvaluationTask<T>>(newTasks));
+    this.taskDistribution = null;
+    this.pendingTasks = newTasks;
+    this.leaseMillis = newLeaseMillis;
+    this.objectiveFunctions = newObjectiveFunctions;
+    notifyTaskListeners();
+    return unevaluatedPopulationShards;
+  }
+
+  /**
+   * Creates one task per shard of the problem data, each holding the whole
+   * population, to be pulled by slaves holding the shard. This method should
+   * be called only by MasterEvaluator.
+   * @param population Population to be evaluated.
+   * @param shardCount Number of shards of the problem data.
+   * @param newSlaveShards Shards held by slaves, by slave id. Slaves
+   * registered later may be added to the map.
+   * @param newLeaseMillis Time after which a task not evaluated by the slave
+   * that pulled it is given to another slave holding the shard.
+   * @param newObjectiveFunctions List of cached objective functions; they
+   * must combine partial values of the shards.
+   * @return Signal object indicating whether population is evaluated or not.
+   */
+  public synchronized CountDownLatch enableShards(
+      final Population<T> population,
+      final int shardCount,
+      final Map<String, Integer> newSlaveShards,
+      final long newLeaseMillis,
+      final List<CachedObjectiveFunction<T>> newObjectiveFunctions) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Shard count must be positive.");
+    }
+
+    LinkedList<EvaluationTask<T>> newTasks =
+        new LinkedList<EvaluationTask<T>>();
+    Map<EvaluationTask<T>, Integer> newTaskShards =
+        new IdentityHashMap<EvaluationTask<T>, Integer>();
+    for (int shard = 0; shard < shardCount; shard++) {
+      EvaluationTask<T> task = new EvaluationTask<T>(population, nextTaskId++);
+      newTasks.add(task);
+      newTaskShards.put(task, shard);
+    }
+
+    logger.log(Level.FINE, "Enabling " + shardCount + " shards of "
+        + population.size() + " individuals");
+
+    setTasks(new ArrayList<EvaluationTask<T>>(newTasks));
+    this.taskDistribution = null;
+    this.pendingTasks = newTasks;
+    this.taskShards = newTaskShards;
+    this.slaveShards = newSlaveShards;
+    this.shardValues = new double[shardCount][];
+    this.leaseMillis = newLeaseMillis;
+    this.objectiveFunctions = newObjectiveFunctions;
+    notifyTaskListeners();
+    return unevaluatedPopulationShards;
+  }
+
+  /**
+   * Starts streaming mode, in which tasks added with
+   * {@link #addToQueue(Population, int)} are pulled by slaves like in queue
+   * mode, but evaluation never finishes. Populations of evaluated tasks are
+   * put to the given queue. Speculation does not apply to streamed tasks.
+   * @param newLeaseMillis Time after which a task not evaluated by the slave
+   * that pulled it is given to another slave.
+   * @param newObjectiveFunctions List of cached objective functions.
+   * @param newEvaluatedPopulations Queue receiving evaluated populations.
+   */
+  public synchronized void enableStream(
+      final long newLeaseMillis,
+      final List<CachedObjectiveFunction<T>> newObjectiveFunctions,
+      final BlockingQueue<Population<T>> newEvaluatedPopulations) {
+    logger.log(Level.FINE, "Enabling streaming mode");
+    setTasks(new LinkedList<EvaluationTask<T>>());
+    // Never counted down, so that slaves keep asking for tasks.
+    this.unevaluatedPopulationShards = new CountDownLatch(1);
+    this.taskDistribution = null;
+    this.pendingTasks = new LinkedList<EvaluationTask<T>>();
+    this.leaseMillis = newLeaseMillis;
+    this.objectiveFunctions = newObjectiveFunctions;
+    this.evaluatedPopulations = newEvaluatedPopulations;
+  }
+
+  /**
+   * Splits population into tasks and adds them to the queue of streaming
+   * mode.
+   * @param population Population to be evaluated.
+   * @param chunkSize Maximum number of individuals in a task.
+   */
+  public synchronized void addToQueue(final Population<T> population,
+      final int chunkSize) {
+    if (evaluatedPopulations == null) {
+      throw new IllegalStateException("Streaming mode is not enabled.");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive.");
+    }
+    final List<T> individuals = population.getIndividuals();
+    for (int i = 0; i < individuals.size(); i += chunkSize) {
+      final EvaluationTask<T> task = new EvaluationTask<T>(
+          new Population<T>(new ArrayList<T>(individuals.subList(i,
+              Math.min(i + chunkSize, individuals.size())))), nextTaskId++);
+      tasks.add(task);
+      currentTasks.put(task, Boolean.TRUE);
+      currentTasksById.put(task.getId(), task);
+      pendingTasks.addLast(task);
+    }
+    notifyTaskListeners();
+  }
+
+  /**
+   * Replaces tasks of the current distribution.
+   * @param newTasks Tasks of the new distribution.
+   */
+  private void setTasks(final List<EvaluationTask<T>> newTasks) {
+    this.tasks = newTasks;
+    this.currentTasks = new IdentityHashMap<EvaluationTask<T>, Boolean>();
+    this.currentTasksById = new HashMap<Long, EvaluationTask<T>>();
+    for (EvaluationTask<T> task : newTasks) {
+      currentTasks.put(task, Boolean.TRUE);
+      if (task.getId() != EvaluationTask.NO_ID) {
+        currentTasksById.put(task.getId(), task);
+      }
+    }
+    this.speculatedTasks = new IdentityHashMap<EvaluationTask<T>, Boolean>();
+    // Tasks of previous distributions are never requeued.
+    this.expiringLeases.clear();
+    this.taskShards = null;
+    this.shardValues = null;
+    this.unevaluatedPopulationShards = new CountDownLatch(newTasks.size());
+    this.evaluatedPopulations = null;
+  }
+
+  /**
+   * Sets the fraction of evaluated tasks after which idle slaves get copies
+   * of the remaining tasks.
+   * @param threshold Fraction of evaluated tasks; non-positive value
+   * disables speculation.
+   */
+  public synchronized void setSpeculationThreshold(final double threshold) {
+    if (threshold > 1) {
+      throw new IllegalArgumentException("Speculation threshold must not "
+          + "exceed 1.");
+    }
+    this.speculationThreshold = threshold;
+  }
+
+  /**
+   * Sets the maximum number of unevaluated tasks leased to a single slave,
+   * allowing slaves to fetch tasks ahead while evaluating.
+   * @param maximum Maximum number of tasks per slave. Must be positive.
+   */
+  public synchronized void setMaxTasksPerSlave(final int maximum) {
+    if (maximum <= 0) {
+      throw new IllegalArgumentException("Maximum number of tasks per slave "
+          + "must be positive.");
+    }
+    this.maxTasksPerSlave = maximum;
+  }
+
+  /**
+   * Lets the slave hold the given number of unevaluated tasks, if it exceeds
+   * the maximum for all slaves, as asked by slaves fetching tasks ahead.
+   * @param slaveId ID of the slave.
+   * @param maximum Number of tasks held by the slave.
+   */
+  public synchronized void setMaxTasksForSlave(final String slaveId,
+      final int maximum) {
+    slaveTaskLimits.put(slaveId, maximum);
+  }
+
+  /**
+   * Gets the maximum number of unevaluated tasks leased to the slave.
+   * @param slaveId ID of the slave.
+   * @return Maximum number of tasks.
+   */
+  private int getMaxTasks(final String slaveId) {
+    final Integer limit = slaveTaskLimits.get(slaveId);
+    return limit == null ? maxTasksPerSlave
+        : Math.max(limit, maxTasksPerSlave);
+  }
+
+  /**
+   * Gets the number of tasks copied to idle slaves so far.
+   * @return Number of speculative tasks.
+   */
+  public synchronized int getSpeculativeTaskCount() {
+    return speculativeTasks;
+  }
+
+  /**
+   * Gets the number of results discarded so far, as their tasks had already
+   * been evaluated.
+   * @return Number of discarded results.
+   */
+  public synchronized int getDiscardedResultCount() {
+    return discardedResults;
+  }
+
+  /**
+   * Gets the number of leases held by all slaves. Package visibility for
+   * testing purposes.
+   * @return Number of leases.
+   */
+  synchronized int getLeaseCount() {
+    int count = 0;
+    for (Map<Long, Lease<T>> slaveLeases : leases.values()) {
+      count += slaveLeases.size();
+    }
+    return count;
+  }
+
   /**
    * Indicates whether population is available for distribution.
    * @return True iff population is available for distribution among slaves.
    */
   public synchronized boolean isDistributionEnabled() {
-    return taskDistribution != null
+    return tasks != null
         && unevaluatedPopulationShards != null
         && unevaluatedPopulationShards.getCount() > 0;
   }
 
   /**
-   * Gets population for given slave.
+   * Gets population for given slave. A slave already holding the maximum
+   * number of unevaluated tasks gets the oldest of them again, with
+   * a renewed lease.
    * @param slaveId Slave asking for population.
    * @return Population for a slave to be evaluated or null, if there is
    * no population to be evaluated.
    */
   public synchronized EvaluationTask<T> getTaskForSlave(String slaveId) {
     logger.log(Level.INFO, "Getting task for slave " + slaveId);
-    EvaluationTask<T> evaluationTask = taskDistribution.get(slaveId);
+    pruneLeases(slaveId);
+    if (pendingTasks != null) {
+      requeueExpiredLeases();
+    }
+    final List<Lease<T>> outstanding = getOutstandingLeases(slaveId);
+    Lease<T> lease = null;
+    if (outstanding.size() >= getMaxTasks(slaveId)) {
+      lease = outstanding.get(0);
+    } else {
+      lease = leaseNewTask(slaveId);
+    }
+
+    EvaluationTask<T> evaluationTask = null;
+    if (lease != null) {
+      lease.expiry = clock.getCurrentTimeMillis() + leaseMillis;
+      evaluationTask = lease.task;
+      if (pendingTasks != null) {
+        expiringLeases.remove(lease);
+        expiringLeases.add(lease);
+      }
+    }
+
     logger.log(Level.FINER, "Task for slave " + slaveId + ": "
-        + evaluationTask.toString());
+        + evaluationTask);
     return evaluationTask;
   }
 
+  /**
+   * Leases a task not leased to the slave yet: its own task assigned up
+   * front or the next one from the queue, or a copy of a straggling task.
+   * @param slaveId Slave asking for a task.
+   * @return New lease or null if there is no task for the slave.
+   */
+  private Lease<T> leaseNewTask(final String slaveId) {
+    EvaluationTask<T> evaluationTask = null;
+    if (pendingTasks == null) {
+      evaluationTask = getOwnTask(slaveId);
+      if (evaluationTask != null && isLeasedTo(slaveId, evaluationTask)) {
+        evaluationTask = null;
+      }
+    } else {
+      evaluationTask = findPendingTask(slaveId, true);
+    }
+
+    boolean speculative = false;
+    if (evaluationTask == null) {
+      evaluationTask = findStraggler(slaveId);
+      if (evaluationTask == null) {
+        return null;
+      }
+      logger.log(Level.INFO, "Copying straggling task to slave " + slaveId);
+      speculatedTasks.put(evaluationTask, Boolean.TRUE);
+      speculativeTasks++;
+      speculative = true;
+    }
+
+    final long key = evaluationTask.getId() != EvaluationTask.NO_ID
+        ? evaluationTask.getId() : nextAnonymousLeaseKey--;
+    Lease<T> lease = new Lease<T>(slaveId, evaluationTask, key);
+    // Speculative copies are never requeued, the original lease is.
+    lease.requeued = speculative;
+    lease.shard = getShard(evaluationTask);
+    LinkedHashMap<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    if (slaveLeases == null) {
+      slaveLeases = new LinkedHashMap<Long, Lease<T>>();
+      leases.put(slaveId, slaveLeases);
+    }
+    slaveLeases.put(key, lease);
+    return lease;
+  }
+
+  /**
+   * Drops leases of the slave whose tasks are evaluated or belong to
+   * a previous distribution.
+   * @param slaveId ID of the slave.
+   */
+  private void pruneLeases(final String slaveId) {
+    final Map<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    if (slaveLeases == null) {
+      return;
+    }
+    final Iterator<Lease<T>> iterator = slaveLeases.values().iterator();
+    while (iterator.hasNext()) {
+      final Lease<T> lease = iterator.next();
+      if (lease.task.isClaimed() || currentTasks == null
+          || !currentTasks.containsKey(lease.task)) {
+        iterator.remove();
+        expiringLeases.remove(lease);
+      }
+    }
+    if (slaveLeases.isEmpty()) {
+      leases.remove(slaveId);
+    }
+  }
+
+  /**
+   * Drops leases of the removed slave. In queue mode its unevaluated tasks
+   * go back to the queue at once, instead of waiting for leases to expire.
+   * @param slaveId ID of the removed slave.
+   */
+  public synchronized void slaveRemoved(final String slaveId) {
+    slaveTaskLimits.remove(slaveId);
+    final Map<Long, Lease<T>> slaveLeases = leases.remove(slaveId);
+    if (slaveLeases == null) {
+      return;
+    }
+    expiringLeases.removeAll(slaveLeases.values());
+    boolean requeued = false;
+    for (Lease<T> lease : slaveLeases.values()) {
+      if (requeue(lease)) {
+        logger.log(Level.INFO, "Slave " + slaveId
+            + " removed, requeueing its task");
+        requeued = true;
+      }
+    }
+    if (requeued) {
+      notifyTaskListeners();
+    }
+  }
+
+  /**
+   * Drops the lease of the task that the slave failed to evaluate. In queue
+   * mode the task goes back to the queue at once, instead of waiting for
+   * the lease to expire.
+   * @param slaveId ID of the slave.
+   * @param taskId ID of the task.
+   */
+  public synchronized void releaseTask(final String slaveId,
+      final long taskId) {
+    final Map<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    final Lease<T> lease = findLease(slaveLeases, taskId);
+    if (lease == null) {
+      return;
+    }
+    removeLease(slaveLeases, lease);
+    if (slaveLeases.isEmpty()) {
+      leases.remove(slaveId);
+    }
+    if (requeue(lease)) {
+      logger.log(Level.INFO, "Slave " + slaveId
+          + " released task " + taskId + ", requeueing it");
+      notifyTaskListeners();
+    }
+  }
+
+  /**
+   * Puts the task of a dropped lease back to the queue, unless not in queue
+   * mode, requeued already, evaluated or of a previous distribution.
+   * @param lease Dropped lease.
+   * @return True iff the task was requeued.
+   */
+  private boolean requeue(final Lease<T> lease) {
+    if (pendingTasks == null || lease.requeued || lease.task.isClaimed()
+        || !currentTasks.containsKey(lease.task)) {
+      return false;
+    }
+    pendingTasks.addLast(lease.task);
+    return true;
+  }
+
+  /**
+   * Gets leases of unevaluated tasks of the current distribution held by
+   * the slave, oldest first.
+   * @param slaveId ID of the slave.
+   * @return Outstanding leases of the slave.
+   */
+  private List<Lease<T>> getOutstandingLeases(final String slaveId) {
+    List<Lease<T>> outstanding = new ArrayList<Lease<T>>();
+    final Map<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    if (slaveLeases != null && tasks != null) {
+      for (Lease<T> lease : slaveLeases.values()) {
+        if (!lease.task.isEvaluated() && currentTasks.containsKey(lease.task)) {
+          outstanding.add(lease);
+        }
+      }
+    }
+    return outstanding;
+  }
+
+  /**
+   * Indicates whether the task is leased to the slave.
+   * @param slaveId ID of the slave.
+   * @param task Task to check.
+   * @return True iff the slave holds a lease of the task.
+   */
+  private boolean isLeasedTo(final String slaveId,
+      final EvaluationTask<T> task) {
+    return findLease(slaveId, task) != null;
+  }
+
+  /**
+   * Finds the lease of the task held by the slave.
+   * @param slaveId ID of the slave.
+   * @param task Task to find.
+   * @return Lease of the task or null.
+   */
+  private Lease<T> findLease(final String slaveId,
+      final EvaluationTask<T> task) {
+    final Map<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    if (slaveLeases == null) {
+      return null;
+    }
+    if (task.getId() != EvaluationTask.NO_ID) {
+      final Lease<T> lease = slaveLeases.get(task.getId());
+      return lease != null && lease.task == task ? lease : null;
+    }
+    for (Lease<T> lease : slaveLeases.values()) {
+      if (lease.task == task) {
+        return lease;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the lease of the task with given identifier among leases of
+   * a slave.
+   * @param slaveLeases Leases of the slave, possibly null.
+   * @param taskId Identifier of the task or {@link EvaluationTask#NO_ID}
+   * for the oldest lease.
+   * @return Lease of the task or null.
+   */
+  private Lease<T> findLease(final Map<Long, Lease<T>> slaveLeases,
+      final long taskId) {
+    if (slaveLeases == null) {
+      return null;
+    }
+    if (taskId != EvaluationTask.NO_ID) {
+      return slaveLeases.get(taskId);
+    }
+    final Iterator<Lease<T>> iterator = slaveLeases.values().iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * Gets the task assigned to the slave up front, if not evaluated yet.
+   * @param slaveId ID of the slave.
+   * @return Task of the slave or null.
+   */
+  private EvaluationTask<T> getOwnTask(final String slaveId) {
+    EvaluationTask<T> task = taskDistribution.get(slaveId);
+    return task == null || task.isClaimed() ? null : task;
+  }
+
+  /**
+   * Gets the shard of the task of the current distribution.
+   * @param task Task of the current distribution.
+   * @return Index of the shard or -1 if not in data-parallel mode.
+   */
+  private int getShard(final EvaluationTask<T> task) {
+    if (taskShards == null) {
+      return -1;
+    }
+    final Integer shard = taskShards.get(task);
+    return shard == null ? -1 : shard;
+  }
+
+  /**
+   * Indicates whether the slave may evaluate the task, that is whether it
+   * holds the shard of the task in data-parallel mode.
+   * @param slaveId ID of the slave.
+   * @param task Task of the current distribution.
+   * @return True iff the task may be given to the slave.
+   */
+  private boolean canEvaluate(final String slaveId,
+      final EvaluationTask<T> task) {
+    if (taskShards == null) {
+      return true;
+    }
+    final Integer shard = slaveShards.get(slaveId);
+    return shard != null && shard == getShard(task);
+  }
+
+  /**
+   * Finds a task to be copied to an idle slave, if enough tasks are
+   * evaluated. Only tasks not copied yet and not leased to the slave are
+   * considered. Streamed tasks are never copied, as there is no distribution
+   * to finish and evaluated ones are forgotten.
+   * @param slaveId ID of the idle slave.
+   * @return Task to be copied or null.
+   */
+  private EvaluationTask<T> findStraggler(final String slaveId) {
+    if (speculationThreshold <= 0 || tasks == null
+        || evaluatedPopulations != null
+        || (pendingTasks != null
+            && findPendingTask(slaveId, false) != null)) {
+      return null;
+    }
+    final long unevaluated = unevaluatedPopulationShards.getCount();
+    if (unevaluated == 0
+        || tasks.size() - unevaluated < speculationThreshold * tasks.size()) {
+      return null;
+    }
+    for (EvaluationTask<T> task : tasks) {
+      if (!task.isClaimed() && !speculatedTasks.containsKey(task)
+          && !isLeasedTo(slaveId, task) && canEvaluate(slaveId, task)) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Puts tasks with expired leases back to the queue. Only the expired
+   * leases are visited, as they are the oldest ones.
+   */
+  private void requeueExpiredLeases() {
+    final long now = clock.getCurrentTimeMillis();
+    final Iterator<Lease<T>> iterator = expiringLeases.iterator();
+    while (iterator.hasNext()) {
+      final Lease<T> lease = iterator.next();
+      if (lease.expiry > now) {
+        return;
+      }
+      iterator.remove();
+      if (requeue(lease)) {
+        logger.log(Level.INFO, "Lease of slave " + lease.slaveId
+            + " expired, requeueing its task");
+        lease.requeued = true;
+      }
+    }
+  }
+
+  /**
+   * Finds a task waiting in the queue that the slave may evaluate, dropping
+   * tasks evaluated since they were requeued.
+   * @param slaveId ID of the slave asking for a task.
+   * @param remove Whether to remove the found task from the queue.
+   * @return Task to be pulled or null.
+   */
+  private EvaluationTask<T> findPendingTask(final String slaveId,
+      final boolean remove) {
+    final Iterator<EvaluationTask<T>> iterator = pendingTasks.iterator();
+    while (iterator.hasNext()) {
+      final EvaluationTask<T> task = iterator.next();
+      if (task.isClaimed()) {
+        iterator.remove();
+      } else if (canEvaluate(slaveId, task)) {
+        if (remove) {
+          iterator.remove();
+        }
+        return task;
+      }
+    }
+    return null;
+  }
+
   /**
    * Indicates whether given slave has a population to evaluate or not.
    * @param slaveId ID of the slave asking for population.
@@ -135,59 +871,243 @@ public class TaskManager<T> {
    */
   public synchronized boolean isTaskAvailableForSlave(String slaveId) {
     logger.log(Level.INFO, "Checking if there is a task for slave " + slaveId);
-    EvaluationTask<T> potentialTask = taskDistribution.get(slaveId);
+    if (tasks == null) {
+      return false;
+    }
+    if (pendingTasks != null) {
+      requeueExpiredLeases();
+    }
+    final int outstanding = getOutstandingLeases(slaveId).size();
+    boolean available;
+    if (outstanding >= getMaxTasks(slaveId)) {
+      available = true;
+    } else if (pendingTasks == null) {
+      final EvaluationTask<T> ownTask = getOwnTask(slaveId);
+      available = ownTask != null && !isLeasedTo(slaveId, ownTask);
+    } else {
+      available = findPendingTask(slaveId, false) != null;
+    }
+    available = available || findStraggler(slaveId) != null;
+
     logger.log(Level.FINEST, "Task for slave " + slaveId + ": "
-        + potentialTask.toString() + (potentialTask == null 
-            ? "unknown" : potentialTask.isEvaluated() 
-                ? "evaluated" : "not evaluated"));
+        + (available ? "available" : "not available"));
+    return available;
+  }
 
-    return potentialTask != null && !potentialTask.isEvaluated();
+  /**
+   * Updates slave's task with given evaluation result. The result is
+   * matched with the oldest task leased to the slave.
+   * @param slaveId ID of the slave whom task is being updated.
+   * @param evaluationResult Result of the evaluation.
+   */
+  public void updateTask(
+      final String slaveId,
+      final EvaluationResult<T> evaluationResult) {
+    updateTask(slaveId, EvaluationTask.NO_ID, evaluationResult);
   }
 
   /**
-   * Updates slave's task with given evaluation result.
+   * Updates slave's task with given evaluation result. Only finding and
+   * claiming the task holds the task manager locked; values are merged with
+   * the objective functions outside the lock, so results of many slaves are
+   * merged in parallel.
    * @param slaveId ID of the slave whom task is being updated.
+   * @param taskId Identifier of the evaluated task or
+   * {@link EvaluationTask#NO_ID} for the oldest task leased to the slave.
    * @param evaluationResult Result of the evaluation.
    */
-  public synchronized void updateTask(
+  public void updateTask(
       final String slaveId,
+      final long taskId,
       final EvaluationResult<T> evaluationResult) {
 
-    logger.log(Level.INFO, "Updating task for slave " + slaveId
+    logger.log(Level.FINE, "Updating task for slave " + slaveId
         + " with evaluation results");
-    logger.log(Level.FINEST, "Evaluation result (" 
-        + evaluationResult.size() + "): \n"
-        + evaluationResult.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Evaluation result ("
+          + evaluationResult.size() + "): \n"
+          + evaluationResult.toString());
+    }
+
+    final Claim<T> claim = claimTask(slaveId, taskId, evaluationResult);
+    if (claim == null) {
+      return;
+    }
+    final EvaluationTask<T> task = claim.task;
+    final List<CachedObjectiveFunction<T>> functions = claim.functions;
+    if (claim.shardValues != null) {
+      combineShards(functions, task.getPopulation().getIndividuals(),
+          claim.shardValues);
+    } else {
+      for (int i = 0; i < functions.size(); i++) {
+        // Values are aligned to the order of individuals in the task.
+        functions.get(i).merge(task.getPopulation().getIndividuals(),
+            evaluationResult.getValues(), i, functions.size());
+      }
+    }
+    task.markAsEvaluated();
 
-    EvaluationTask<T> assignedTask = taskDistribution.get(slaveId);
-    assignedTask.markAsEvaluated();
+    if (claim.evaluatedPopulations != null) {
+      claim.evaluatedPopulations.add(task.getPopulation());
+      return;
+    }
+    if (claim.signal == null) {
+      // Late result of a task abandoned by a previous distribution; its
+      // values are still valid, but it does not count towards this one.
+      logger.log(Level.FINE, "Merged late result of slave " + slaveId);
+      return;
+    }
+    claim.signal.countDown();
+    if (logger.isLoggable(Level.FINER)) {
+      logger.log(Level.FINER, "Tasks to evaluate left: "
+          + claim.signal.getCount());
+    }
+    if (claim.signal.getCount() > 0) {
+      synchronized (this) {
+        if (speculationThreshold > 0
+            && claim.signal == unevaluatedPopulationShards) {
+          // Remaining tasks may have become stragglers to copy.
+          notifyTaskListeners();
+        }
+      }
+    }
+  }
 
-    logger.log(Level.FINEST, "Updated task (" 
-        + assignedTask.size() + "): \n"
-        + assignedTask.toString());
+  /**
+   * Finds the task of the result and claims it, so that no other result of
+   * the task is merged. Partial results of data-parallel tasks are stored
+   * instead; the last one is claimed with partial values of all shards, to
+   * be combined outside the lock.
+   * @param slaveId ID of the slave whom task is being updated.
+   * @param taskId Identifier of the evaluated task or
+   * {@link EvaluationTask#NO_ID} for the oldest task leased to the slave.
+   * @param evaluationResult Result of the evaluation.
+   * @return Claimed task with the state needed to merge its values, or null
+   * if there is nothing more to merge.
+   */
+  private synchronized Claim<T> claimTask(
+      final String slaveId,
+      final long taskId,
+      final EvaluationResult<T> evaluationResult) {
+    final Map<Long, Lease<T>> slaveLeases = leases.get(slaveId);
+    final Lease<T> lease = findLease(slaveLeases, taskId);
+
+    EvaluationTask<T> assignedTask = null;
+    if (lease != null) {
+      assignedTask = lease.task;
+    } else if (taskId != EvaluationTask.NO_ID && currentTasksById != null) {
+      assignedTask = currentTasksById.get(taskId);
+    } else if (taskDistribution != null) {
+      assignedTask = taskDistribution.get(slaveId);
+    }
+    if (assignedTask == null) {
+      logger.log(Level.WARNING, "Ignoring result of slave " + slaveId
+          + " without a task");
+      return null;
+    }
+    if (assignedTask.isClaimed()) {
+      logger.log(Level.FINE, "Discarding result of slave " + slaveId
+          + " for a task already evaluated");
+      removeLease(slaveLeases, lease);
+      discardedResults++;
+      return null;
+    }
+    final int shard = lease != null ? lease.shard : getShard(assignedTask);
+    if (shard >= 0 && !currentTasks.containsKey(assignedTask)) {
+      // Partial values are useless without the other shards of their
+      // distribution.
+      logger.log(Level.FINE, "Discarding partial result of slave " + slaveId
+          + " for a previous distribution");
+      removeLease(slaveLeases, lease);
+      discardedResults++;
+      return null;
+    }
+
+    final List<T> individuals = assignedTask.getPopulation().getIndividuals();
+    if (evaluationResult.size() != individuals.size()
+        || evaluationResult.getNumberOfObjectives()
+            != objectiveFunctions.size()) {
+      throw new IllegalArgumentException("Result of " 
+          + evaluationResult.size() + " individuals and "
+          + evaluationResult.getNumberOfObjectives() + " objective functions "
+          + "does not match task of slave " + slaveId);
+    }
+    if (!assignedTask.claim()) {
+      return null;
+    }
+    removeLease(slaveLeases, lease);
 
-    logger.log(Level.FINE, "Merging evaluation results with objective "
-        + "functions data");
-    for (int i = 0; i < objectiveFunctions.size(); i++) {
-      final CachedObjectiveFunction<T> cachedObjectiveFunction =
-          objectiveFunctions.get(i);
-      final Map<T, Double> singleEvaluationResult =
-          evaluationResult.getResult(i);
+    if (shard >= 0) {
+      shardValues[shard] = evaluationResult.getValues();
+      if (unevaluatedPopulationShards.getCount() == 1) {
+        // Values are merged before the evaluator is signalled.
+        final Claim<T> claim =
+            new Claim<T>(assignedTask, objectiveFunctions);
+        claim.shardValues = shardValues;
+        claim.signal = unevaluatedPopulationShards;
+        return claim;
+      }
+      assignedTask.markAsEvaluated();
+      unevaluatedPopulationShards.countDown();
+      if (speculationThreshold > 0
+          && unevaluatedPopulationShards.getCount() > 0) {
+        notifyTaskListeners();
+      }
+      return null;
+    }
 
-      logger.log(Level.FINEST, "Merging objective function's ("
-          + cachedObjectiveFunction.toString() + ") cache (" 
-          + cachedObjectiveFunction.getCache().size() + "):"
-          + cachedObjectiveFunction.getCache().toString()
-          + " with evaluation result ("
-          + singleEvaluationResult.size() + "): \n"
-          + singleEvaluationResult.toString());
+    final Claim<T> claim = new Claim<T>(assignedTask, objectiveFunctions);
+    if (currentTasks.containsKey(assignedTask)) {
+      if (evaluatedPopulations != null) {
+        // Streamed tasks are forgotten once evaluated, so that only tasks in
+        // flight are kept.
+        tasks.remove(assignedTask);
+        currentTasks.remove(assignedTask);
+        currentTasksById.remove(assignedTask.getId());
+        claim.evaluatedPopulations = evaluatedPopulations;
+      } else {
+        claim.signal = unevaluatedPopulationShards;
+      }
+    }
+    return claim;
+  }
 
-      cachedObjectiveFunction.merge(singleEvaluationResult);
+  /**
+   * Combines partial values of all shards and merges them with objective
+   * functions data.
+   * @param functions Objective functions of the distribution.
+   * @param individuals Individuals of the population, in order of values.
+   * @param shardValues Partial values of all shards, by shard.
+   */
+  private void combineShards(final List<CachedObjectiveFunction<T>> functions,
+      final List<T> individuals, final double[][] shardValues) {
+    logger.log(Level.FINE, "Combining partial results of "
+        + shardValues.length + " shards");
+    final int objectives = functions.size();
+    final double[] values = new double[shardValues[0].length];
+    final double[] partialValues = new double[shardValues.length];
+    for (int i = 0; i < values.length; i++) {
+      for (int shard = 0; shard < shardValues.length; shard++) {
+        partialValues[shard] = shardValues[shard][i];
+      }
+      values[i] = functions.get(i % objectives).combine(partialValues);
     }
+    for (int i = 0; i < objectives; i++) {
+      functions.get(i).merge(individuals, values, i, objectives);
+    }
+  }
 
-    unevaluatedPopulationShards.countDown();
-    logger.log(Level.FINER, "Tasks to evaluate left: "
-        + unevaluatedPopulationShards.getCount());
+  /**
+   * Removes the lease from leases of a slave.
+   * @param slaveLeases Leases of the slave, possibly null.
+   * @param lease Lease to remove, possibly null.
+   */
+  private void removeLease(final Map<Long, Lease<T>> slaveLeases,
+      final Lease<T> lease) {
+    if (slaveLeases != null && lease != null) {
+      slaveLeases.remove(lease.key);
+      expiringLeases.remove(lease);
+    }
   }
 
   /**
@@ -196,11 +1116,96 @@ public class TaskManager<T> {
    */
   public synchronized Population<T> getUnevaluatedPart() {
     Population<T> unevaluatedPart = new Population<T>();
-    for (EvaluationTask<T> task : taskDistribution.values()) {
+    for (EvaluationTask<T> task : tasks) {
       if (!task.isEvaluated()) {
         unevaluatedPart.mergeWith(task.getPopulation());
+        if (taskShards != null) {
+          // Every shard task holds the whole population.
+          break;
+        }
       }
     }
     return unevaluatedPart;
   }
+
+  /**
+   * Task claimed by a result, with the state of its distribution needed to
+   * merge the values outside the lock.
+   * @param <T> Type of the individuals in the task.
+   */
+  private static class Claim<T> {
+
+    /** Claimed task. */
+    private final EvaluationTask<T> task;
+
+    /** Objective functions of the distribution of the task. */
+    private final List<CachedObjectiveFunction<T>> functions;
+
+    /**
+     * Signal of the distribution to count down; null if the task does not
+     * count towards the current distribution.
+     */
+    private CountDownLatch signal;
+
+    /** Queue receiving the task if streamed; null otherwise. */
+    private BlockingQueue<Population<T>> evaluatedPopulations;
+
+    /**
+     * Partial values of all shards to combine, by shard; null unless
+     * the task is the last shard of a data-parallel distribution.
+     */
+    private double[][] shardValues;
+
+    /**
+     * Creates the claim.
+     * @param task Claimed task.
+     * @param functions Objective functions of the distribution of the task.
+     */
+    Claim(final EvaluationTask<T> task,
+        final List<CachedObjectiveFunction<T>> functions) {
+      this.task = task;
+      this.functions = functions;
+    }
+  }
+
+  /**
+   * Task leased to a slave.
+   * @param <T> Type of the individuals in the task.
+   */
+  private static class Lease<T> {
+
+    /** ID of the slave holding the lease. */
+    private final String slaveId;
+
+    /** Leased task. */
+    private final EvaluationTask<T> task;
+
+    /**
+     * Key of the lease among leases of the slave: identifier of the task or
+     * a unique negative number if the task has none.
+     */
+    private final long key;
+
+    /** Time at which the lease expires. */
+    private long expiry;
+
+    /** Whether the task has been put back to the queue. */
+    private boolean requeued;
+
+    /** Shard of the task or -1 if not in data-parallel mode. */
+    private int shard;
+
+    /**
+     * Creates the lease.
+     * @param slaveId ID of the slave holding the lease.
+     * @param task Leased task.
+     * @param key Key of the lease among leases of the slave.
+     */
+    Lease(final String slaveId, final EvaluationTask<T> task,
+        final long key) {
+      this.slaveId = slaveId;
+      this.task = task;
+      this.key = key;
+    }
+  }
 }
@@ -0,0 +1,194 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.utils.SystemClock;
+import engine.utils.WevoClock;
+
+/**
+ * Divides population over a set of slaves proportionally to their measured
+ * speed, so that all slaves finish at about the same time. Speed of a slave
+ * is an exponentially weighted moving average of individuals evaluated per
+ * second, measured from the time a task is sent to the time its result is
+ * received. Slaves not measured yet are assumed to be as fast as an average
+ * measured slave; every slave gets at least one individual, so that its
+ * speed keeps being measured.
+ *
+ * @param <T> Type of individual in the population.
+ */
+public class ThroughputDistributor<T>
+    implements PopulationDistributor<T>, EvaluationListener {
+
+  /** Default weight of the newest measurement in moving averages. */
+  public static final double DEFAULT_SMOOTHING = 0.3;
+
+  /** Milliseconds in a second. */
+  private static final double MILLIS_PER_SECOND = 1000.0;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      ThroughputDistributor.class.getCanonicalName());
+
+  /** Time measurement utility. */
+  private final WevoClock clock;
+
+  /** Weight of the newest measurement in moving averages. */
+  private final double smoothing;
+
+  /** Tasks sent to slaves with times of sending. */
+  private final SentTasks sentTasks = new SentTasks();
+
+  /** Moving averages of individuals evaluated per second by slaves. */
+  private final Map<String, Double> throughputs =
+      new HashMap<String, Double>();
+
+  /**
+   * Constructor.
+   * @param clock Time measurement utility.
+   * @param smoothing Weight of the newest measurement in moving averages.
+   */
+  public ThroughputDistributor(final WevoClock clock, final double smoothing) {
+    if (smoothing <= 0 || smoothing > 1) {
+      throw new IllegalArgumentException("Smoothing must be in (0, 1].");
+    }
+    this.clock = clock;
+    this.smoothing = smoothing;
+  }
+
+  /** Constructor using system clock and default smoothing. */
+  public ThroughputDistributor() {
+    this(new SystemClock(), DEFAULT_SMOOTHING);
+  }
+
+  /** {@inheritDoc} */
+  public synchronized void afterSendingTask(
+      final String slaveId, final EvaluationTask<?> task) {
+    sentTasks.add(slaveId, task, clock.getCurrentTimeMillis());
+  }
+
+  /** {@inheritDoc} */
+  public synchronized void afterReceivingResult(final String slaveId,
+      final long taskId, final EvaluationResult<?> result) {
+    final SentTasks.SentTask sentTask = sentTasks.remove(slaveId, taskId);
+    if (sentTask == null || result.size() == 0) {
+      return;
+    }
+    final long elapsed = Math.max(1,
+        clock.getCurrentTimeMillis() - sentTask.getTime());
+    final double throughput = result.size() * MILLIS_PER_SECOND / elapsed;
+    final Double average = throughputs.get(slaveId);
+    throughputs.put(slaveId, average == null
+        ? throughput : smoothing * throughput + (1 - smoothing) * average);
+
+    logger.log(Level.FINE, "Slave " + slaveId + " evaluated "
+        + result.size() + " individuals in " + elapsed + " ms, average "
+        + throughputs.get(slaveId) + " individuals per second");
+  }
+
+  /**
+   * Gets the measured speed of the slave.
+   * @param slaveId ID of the slave.
+   * @return Average number of individuals evaluated per second or null,
+   * if the slave was not measured yet.
+   */
+  public synchronized Double getThroughput(final String slaveId) {
+    return throughputs.get(slaveId);
+  }
+
+  /** {@inheritDoc} */
+  public DistributedPopulation<T> distribute(
+      final Population<T> population,
+      final List<String> currentSlaves) {
+    sentTasks.retainSlaves(currentSlaves);
+    final int[] shares = computeShares(population.size(), currentSlaves);
+    final DistributedPopulationBuilder<T> populationBuilder =
+        new DistributedPopulationBuilder<T>();
+
+    final List<T> individuals = population.getIndividuals();
+    int position = 0;
+    for (int i = 0; i < shares.length; i++) {
+      for (int j = 0; j < shares[i]; j++) {
+        populationBuilder.addIndividualToSlave(
+            currentSlaves.get(i), individuals.get(position++));
+      }
+    }
+    return populationBuilder.toDistributedPopulation();
+  }
+
+  /**
+   * Computes numbers of individuals given to slaves, proportional to their
+   * speed, by the largest remainder method. Package visibility for testing.
+   * @param size Number of individuals to distribute.
+   * @param slaves Slaves to distribute among.
+   * @return Number of individuals for each slave.
+   */
+  synchronized int[] computeShares(final int size, final List<String> slaves) {
+    final double[] speeds = new double[slaves.size()];
+    double known = 0;
+    int knownCount = 0;
+    for (String slaveId : slaves) {
+      final Double throughput = throughputs.get(slaveId);
+      if (throughput != null) {
+        known += throughput;
+        knownCount++;
+      }
+    }
+    final double fallback = knownCount == 0 ? 1 : known / knownCount;
+    double total = 0;
+    for (int i = 0; i < speeds.length; i++) {
+      final Double throughput = throughputs.get(slaves.get(i));
+      speeds[i] = throughput == null ? fallback : throughput;
+      total += speeds[i];
+    }
+
+    final int[] shares = new int[speeds.length];
+    final int minimum = size >= speeds.length ? 1 : 0;
+    final int remaining = size - minimum * speeds.length;
+    final double[] remainders = new double[speeds.length];
+    int assigned = 0;
+    for (int i = 0; i < speeds.length; i++) {
+      final double quota = remaining * speeds[i] / total;
+      shares[i] = minimum + (int) quota;
+      remainders[i] = quota - (int) quota;
+      assigned += shares[i];
+    }
+    while (assigned < size) {
+      int largest = 0;
+      for (int i = 1; i < remainders.length; i++) {
+        if (remainders[i] > remainders[largest]) {
+          largest = i;
+        }
+      }
+      shares[largest]++;
+      remainders[largest] = -1;
+      assigned++;
+    }
+    return shares;
+  }
+}
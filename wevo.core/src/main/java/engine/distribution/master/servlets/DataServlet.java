@@ -0,0 +1,107 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master.servlets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mortbay.jetty.Request;
+
+import engine.distribution.master.ProblemDataStore;
+
+/**
+ * Servlet sending problem data published by the master to slaves. Data is
+ * requested by hash or, when the slave does not know the hash yet, by name;
+ * the hash is sent with the data in both cases.
+ */
+public class DataServlet extends HttpServlet {
+
+  /** Header property name holding the hash of problem data. */
+  public static final String DATA_HASH_PROPERTY = "dataHashProperty";
+
+  /** Header property name holding the name of problem data. */
+  public static final String DATA_NAME_PROPERTY = "dataNameProperty";
+
+  /**
+   * Header property name holding references to problem data, sent
+   * with tasks.
+   */
+  public static final String DATA_REFERENCES_PROPERTY =
+      "dataReferencesProperty";
+
+  /** Generated serial version UID. */
+  private static final long serialVersionUID = -3186309462915723164L;
+
+  /** Logger. */
+  private final Logger logger =
+      Logger.getLogger(DataServlet.class.getCanonicalName());
+
+  /** Store of the published data. */
+  private final ProblemDataStore dataStore;
+
+  /**
+   * Constructor.
+   * @param dataStore Store of the published data.
+   */
+  public DataServlet(final ProblemDataStore dataStore) {
+    this.dataStore = dataStore;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response) {
+
+    String hash = request.getHeader(DATA_HASH_PROPERTY);
+    if (hash == null) {
+      hash = dataStore.getHash(request.getHeader(DATA_NAME_PROPERTY));
+    }
+    final byte[] data = hash == null ? null : dataStore.getData(hash);
+
+    try {
+      if (data == null) {
+        logger.log(Level.WARNING, "Problem data requested by "
+            + request.getRemoteHost() + " is not published");
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      } else {
+        logger.log(Level.FINE, "Sending problem data " + hash + " to "
+            + request.getRemoteHost());
+        response.setHeader(DATA_HASH_PROPERTY, hash);
+        response.setContentType("application/octet-stream");
+        response.setContentLength(data.length);
+        response.setStatus(HttpServletResponse.SC_OK);
+        OutputStream output = response.getOutputStream();
+        output.write(data);
+        output.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error occurred while sending problem data "
+          + "to " + request.getRemoteHost(), e);
+    }
+    ((Request) request).setHandled(true);
+  }
+}
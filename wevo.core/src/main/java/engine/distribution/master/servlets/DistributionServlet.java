@@ -19,7 +19,16 @@
  */
 package engine.distribution.master.servlets;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,14 +37,21 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.mortbay.jetty.Request;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
 
+import engine.distribution.master.CompressionPolicy;
+import engine.distribution.master.ProblemDataStore;
 import engine.distribution.master.SlaveManager;
 import engine.distribution.master.StatisticsManager;
+import engine.distribution.master.TaskListener;
 import engine.distribution.master.TaskManager;
+import engine.distribution.serialization.Compression;
 import engine.distribution.serialization.EvaluationResult;
 import engine.distribution.serialization.EvaluationTask;
 import engine.distribution.serialization.ResultSerializer;
 import engine.distribution.serialization.TaskSerializer;
+import engine.distribution.utils.ProblemData;
 
 /**
  * Servlet responsible for exchanging populations between master and slaves.
@@ -49,6 +65,50 @@ public class DistributionServlet<T> extends HttpServlet {
   /** Request property name for exchaning slave ids. */
   public static final String SLAVE_ID_PROPERTY = "slaveIdProperty";
 
+  /** Header property name holding the identifier of the task. */
+  public static final String TASK_ID_PROPERTY = "taskIdProperty";
+
+  /**
+   * Header property name set by slaves posting a result that want the next
+   * task in the response.
+   */
+  public static final String NEXT_TASK_PROPERTY = "nextTaskProperty";
+
+  /** Header property name holding the compression of the payload. */
+  public static final String COMPRESSION_PROPERTY = "compressionProperty";
+
+  /** Header property name listing compressions accepted by the slave. */
+  public static final String ACCEPTED_COMPRESSIONS_PROPERTY =
+      "acceptedCompressionsProperty";
+
+  /**
+   * Header property name holding the long poll timeout, set when the request
+   * was held by the server; the slave may ask again without backing off.
+   */
+  public static final String LONG_POLL_PROPERTY = "longPollProperty";
+
+  /**
+   * Header property name holding the index of the shard of the problem
+   * data held by a registering slave.
+   */
+  public static final String SHARD_PROPERTY = "shardProperty";
+
+  /**
+   * Header property name holding the size in bytes and the time in
+   * nanoseconds of the transfer of the last task payload, as measured by
+   * the slave from the arrival of the response headers.
+   */
+  public static final String TRANSFER_PROPERTY = "transferProperty";
+
+  /**
+   * Header property name holding the number of tasks a slave fetching tasks
+   * ahead holds at once.
+   */
+  public static final String TASKS_HELD_PROPERTY = "tasksHeldProperty";
+
+  /** Separator of the size and the time of the transfer. */
+  public static final String TRANSFER_SEPARATOR = ",";
+
   /** Logger. */
   private final Logger logger =
       Logger.getLogger(RegistrationServlet.class.getCanonicalName());
@@ -68,6 +128,25 @@ public class DistributionServlet<T> extends HttpServlet {
   /** StatisticsManager object for slave's statistics data. */
   private StatisticsManager statisticsManager;
 
+  /** Policy choosing compression of tasks sent to slaves. */
+  private final CompressionPolicy compressionPolicy;
+
+  /**
+   * Milliseconds a request is held when no task is available.
+   * Default: requests are answered immediately.
+   */
+  private long longPollTimeout;
+
+  /** Store of problem data referenced by tasks. Default: none. */
+  private ProblemDataStore dataStore;
+
+  /** Requests held until tasks are available. */
+  private final Set<Continuation> waitingRequests =
+      Collections.synchronizedSet(new HashSet<Continuation>());
+
+  /** Number of notifications about available tasks. */
+  private final AtomicLong taskGeneration = new AtomicLong();
+
   /**
    * Constructor.
    * @param taskManager Tool for managing population.
@@ -75,18 +154,65 @@ public class DistributionServlet<T> extends HttpServlet {
    * @param slaveManager Tool for managing slave's statistics.
    * @param statisticsManager Serializer tool.
    * @param taskSerializer Serializer tool.
+   * @param compressionPolicy Policy choosing compression of tasks. Must be
+   * shared with the registration servlet.
    */
   public DistributionServlet(
       final TaskManager<T> taskManager,
       final SlaveManager slaveManager,
       final StatisticsManager statisticsManager,
       final TaskSerializer<T> taskSerializer,
-      final ResultSerializer<T> resultSerializer) {
+      final ResultSerializer<T> resultSerializer,
+      final CompressionPolicy compressionPolicy) {
     this.taskManager = taskManager;
     this.slaveManager = slaveManager;
     this.statisticsManager = statisticsManager;
     this.taskSerializer = taskSerializer;
     this.resultSerializer = resultSerializer;
+    this.compressionPolicy = compressionPolicy;
+    taskManager.addTaskListener(new TaskListener() {
+      public void tasksAvailable() {
+        resumeWaitingRequests();
+      }
+    });
+  }
+
+  /**
+   * Constructor sending all tasks uncompressed.
+   * @param taskManager Tool for managing population.
+   * @param resultSerializer Tool for managing slave's.
+   * @param slaveManager Tool for managing slave's statistics.
+   * @param statisticsManager Serializer tool.
+   * @param taskSerializer Serializer tool.
+   */
+  public DistributionServlet(
+      final TaskManager<T> taskManager,
+      final SlaveManager slaveManager,
+      final StatisticsManager statisticsManager,
+      final TaskSerializer<T> taskSerializer,
+      final ResultSerializer<T> resultSerializer) {
+    this(taskManager, slaveManager, statisticsManager, taskSerializer,
+        resultSerializer, new CompressionPolicy());
+  }
+
+  /**
+   * Makes the servlet hold requests for tasks until a task is available
+   * or the timeout passes, so that slaves neither poll the server nor wait
+   * for their backoff when the distribution starts.
+   * @param timeout Timeout in milliseconds; non-positive value makes the
+   * servlet answer immediately.
+   */
+  public void setLongPollTimeout(final long timeout) {
+    this.longPollTimeout = timeout;
+  }
+
+  /**
+   * Makes the servlet send references to problem data with tasks, so that
+   * slaves fetch new data when it is published.
+   * @param store Store of the published data.
+   */
+  public void setDataStore(final ProblemDataStore store) {
+    this.dataStore = store;
   }
 
   /**
@@ -112,16 +238,25 @@ public class DistributionServlet<T> extends HttpServlet {
     String slaveId = retrieveSlaveId(request);
 
     try {
-      if (taskManager.isDistributionEnabled()
-          && taskManager.isTaskAvailableForSlave(slaveId)) {
+      readTasksHeld(slaveId, request);
+      EvaluationTask<T> task = pollTask(slaveId);
+      if (task == null && longPollTimeout > 0) {
+        task = awaitTask(slaveId, request);
+      }
+      // Held requests are dispatched again, so this is reached only once.
+      recordTransfer(slaveId, request);
 
-        EvaluationTask<T> task = taskManager.getTaskForSlave(slaveId);
+      if (task != null) {
         writeTask(slaveId, request, response, task);
 
         finalizeGetResponse(slaveId, request, response,
             HttpServletResponse.SC_OK);
         statisticsManager.afterSendingTask(slaveId, task);
       } else {
+        if (longPollTimeout > 0) {
+          response.setHeader(LONG_POLL_PROPERTY,
+              String.valueOf(longPollTimeout));
+        }
         finalizeGetResponse(slaveId, request, response,
             HttpServletResponse.SC_NO_CONTENT);
       }
@@ -133,6 +268,90 @@ public class DistributionServlet<T> extends HttpServlet {
     }
   }
 
+  /**
+   * Lets the slave hold as many tasks as it asks for in the request, if it
+   * fetches tasks ahead.
+   * @param slaveId ID of the slave asking for a task.
+   * @param request Request to read from.
+   */
+  private void readTasksHeld(final String slaveId,
+      final HttpServletRequest request) {
+    final String tasksHeld = request.getHeader(TASKS_HELD_PROPERTY);
+    if (tasksHeld == null) {
+      return;
+    }
+    try {
+      taskManager.setMaxTasksForSlave(slaveId, Integer.parseInt(tasksHeld));
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, "Malformed number of tasks " + tasksHeld
+          + " held by slave " + slaveId, e);
+    }
+  }
+
+  /**
+   * Gets task for the slave, if any is available.
+   * @param slaveId ID of the slave asking for a task.
+   * @return Task to send or null.
+   */
+  private EvaluationTask<T> pollTask(final String slaveId) {
+    if (taskManager.isDistributionEnabled()
+        && taskManager.isTaskAvailableForSlave(slaveId)) {
+      // May be null when other slaves pulled the remaining tasks.
+      return taskManager.getTaskForSlave(slaveId);
+    }
+    return null;
+  }
+
+  /**
+   * Holds the request until tasks are available or the long poll timeout
+   * passes. On non-blocking connectors suspending the continuation throws
+   * RetryRequest, which must not be caught; the request is dispatched again
+   * when resumed or timed out.
+   * @param slaveId ID of the slave asking for a task.
+   * @param request Request to hold.
+   * @return Task to send or null if none is available after the timeout.
+   */
+  private EvaluationTask<T> awaitTask(
+      final String slaveId,
+      final HttpServletRequest request) {
+    final Continuation continuation =
+        ContinuationSupport.getContinuation(request, null);
+    if (continuation.isNew()) {
+      final long generation = taskGeneration.get();
+      waitingRequests.add(continuation);
+      EvaluationTask<T> task = pollTask(slaveId);
+      if (task != null) {
+        waitingRequests.remove(continuation);
+        return task;
+      }
+
+      logger.log(Level.FINER, "Holding request of slave " + slaveId
+          + " (" + request.getRemoteHost() + ")");
+      // Continuations synchronize on themselves, so resuming waits until
+      // the continuation is suspended and is not lost.
+      synchronized (continuation) {
+        if (generation == taskGeneration.get()) {
+          continuation.suspend(longPollTimeout);
+        }
+      }
+    }
+    waitingRequests.remove(continuation);
+    return pollTask(slaveId);
+  }
+
+  /** Resumes requests held until tasks are available. */
+  private void resumeWaitingRequests() {
+    taskGeneration.incrementAndGet();
+    final List<Continuation> resumed;
+    synchronized (waitingRequests) {
+      resumed = new ArrayList<Continuation>(waitingRequests);
+      waitingRequests.clear();
+    }
+    for (Continuation continuation : resumed) {
+      continuation.resume();
+    }
+  }
+
   /**
    * Serializes the given population and writes it to the response.
    * @param slaveId ID of the slave receiving the response.
@@ -147,15 +366,90 @@ public class DistributionServlet<T> extends HttpServlet {
       final HttpServletResponse response,
       EvaluationTask<T> evaluationTask) throws IOException {
 
-    logger.log(Level.FINEST, "Writing evaluation task ("
-        + evaluationTask.size() +  ") "
-        + evaluationTask.toString() + "  to the response to "
-        + slaveId + " (" + request.getRemoteHost() + ")");
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Writing evaluation task ("
+          + evaluationTask.size() +  ") "
+          + evaluationTask.toString() + "  to the response to "
+          + slaveId + " (" + request.getRemoteHost() + ")");
+    }
+
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    taskSerializer.serialize(serialized, evaluationTask);
+    byte[] payload = serialized.toByteArray();
+
+    final Compression compression =
+        compressionPolicy.choose(slaveId, payload.length);
+    if (compression != Compression.NONE) {
+      payload = compress(compression, payload);
+    }
+    response.setHeader(COMPRESSION_PROPERTY, compression.getName());
+    response.setHeader(TASK_ID_PROPERTY,
+        String.valueOf(evaluationTask.getId()));
+    if (dataStore != null) {
+      final Map<String, String> references = dataStore.getReferences();
+      if (!references.isEmpty()) {
+        response.setHeader(DataServlet.DATA_REFERENCES_PROPERTY,
+            ProblemData.formatReferences(references));
+      }
+    }
+
+    logger.log(Level.FINER, "Sending " + payload.length + " bytes of task to "
+        + slaveId + " with compression " + compression.getName());
+
+    OutputStream output = response.getOutputStream();
+    output.write(payload);
+    output.close();
 
-    taskSerializer.serialize(response.getOutputStream(), evaluationTask);
     slaveManager.updateLastContactTimestamp(slaveId);
   }
 
+  /**
+   * Records the transfer of the previous task reported by the slave in
+   * the request, if any. Sending the payload only fills buffers for all but
+   * the largest payloads, so the transfer is measured by the receiver.
+   * @param slaveId ID of the slave sending the request.
+   * @param request Request to read the measurement from.
+   */
+  private void recordTransfer(
+      final String slaveId,
+      final HttpServletRequest request) {
+    final String transfer = request.getHeader(TRANSFER_PROPERTY);
+    if (transfer == null) {
+      return;
+    }
+
+    final String[] measurement = transfer.split(TRANSFER_SEPARATOR);
+    try {
+      if (measurement.length != 2) {
+        throw new NumberFormatException("Expected size and time");
+      }
+      compressionPolicy.recordTransfer(slaveId,
+          Integer.parseInt(measurement[0]), Long.parseLong(measurement[1]));
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, "Malformed transfer " + transfer
+          + " reported by slave " + slaveId, e);
+    }
+  }
+
+  /**
+   * Compresses the payload, recording the measurements in the policy.
+   * @param compression Compression to apply.
+   * @param payload Uncompressed payload.
+   * @return Compressed payload.
+   * @throws IOException Thrown on compression errors.
+   */
+  private byte[] compress(final Compression compression, final byte[] payload)
+      throws IOException {
+    final long start = System.nanoTime();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    OutputStream output = compression.compress(compressed);
+    output.write(payload);
+    output.close();
+    compressionPolicy.recordCompression(compression, payload.length,
+        compressed.size(), System.nanoTime() - start);
+    return compressed.toByteArray();
+  }
+
   /**
    * Sets headers and prepares the response to be sent.
    * @param slaveId ID of the slave receiving the response.
@@ -177,10 +471,12 @@ public class DistributionServlet<T> extends HttpServlet {
     response.setStatus(statusCode);
     ((Request) request).setHandled(true);
 
-    logger.log(Level.FINEST, "GET response to " + slaveId
-        + " (" + request.getRemoteHost() + ") "
-        + "with status code " + statusCode + " finalized: "
-        + response.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "GET response to " + slaveId
+          + " (" + request.getRemoteHost() + ") "
+          + "with status code " + statusCode + " finalized: "
+          + response.toString());
+    }
   }
 
   /** {@inheritDoc} */
@@ -191,21 +487,75 @@ public class DistributionServlet<T> extends HttpServlet {
 
     String slaveId = retrieveSlaveId(request); 
 
+    final EvaluationResult<T> evaluationResult;
     try {
-      EvaluationResult<T> evaluationResult =
-          readEvaluationResult(request);
+      evaluationResult = readEvaluationResult(request);
+    } catch (IOException e) {
+      rejectPost(slaveId, request, response,
+          HttpServletResponse.SC_BAD_REQUEST, e);
+      return;
+    } catch (ClassNotFoundException e) {
+      rejectPost(slaveId, request, response,
+          HttpServletResponse.SC_BAD_REQUEST, e);
+      return;
+    }
 
+    try {
       updateTaskForSlave(slaveId, evaluationResult, request);
+      recordTransfer(slaveId, request);
 
-      finalizePostResponse(slaveId, request, response,
-          HttpServletResponse.SC_ACCEPTED);
+      // The next task is sent only if available at once; the slave asks
+      // for it separately otherwise, so that posts are never held.
+      EvaluationTask<T> task = null;
+      if (Boolean.parseBoolean(request.getHeader(NEXT_TASK_PROPERTY))) {
+        task = pollTask(slaveId);
+      }
+
+      if (task != null) {
+        writeTask(slaveId, request, response, task);
+        finalizePostResponse(slaveId, request, response,
+            HttpServletResponse.SC_OK);
+      } else {
+        finalizePostResponse(slaveId, request, response,
+            HttpServletResponse.SC_ACCEPTED);
+      }
 
       slaveManager.updateLastContactTimestamp(slaveId);
-      statisticsManager.afterReceivingResult(slaveId, evaluationResult);
+      statisticsManager.afterReceivingResult(slaveId, readTaskId(request),
+          evaluationResult);
+      if (task != null) {
+        statisticsManager.afterSendingTask(slaveId, task);
+      }
+    } catch (IllegalArgumentException e) {
+      // The result does not match the task of the slave.
+      rejectPost(slaveId, request, response,
+          HttpServletResponse.SC_BAD_REQUEST, e);
     } catch (final Exception e) {
-      logger.log(Level.WARNING, "Error occurred while handling "
-          + "GET request from slave " + slaveId
-          + " (" + request.getRemoteHost() + ")", e);
+      rejectPost(slaveId, request, response,
+          HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e);
+    }
+  }
+
+  /**
+   * Logs the failure of handling a POST request and answers it with
+   * an error status, unless the response has already been sent.
+   * @param slaveId ID of the slave sending the request.
+   * @param request Request that failed.
+   * @param response Response to the request.
+   * @param statusCode Error status code to be set to the response.
+   * @param cause Cause of the failure.
+   */
+  private void rejectPost(
+      final String slaveId,
+      final HttpServletRequest request,
+      final HttpServletResponse response,
+      final int statusCode,
+      final Exception cause) {
+    logger.log(Level.WARNING, "Error occurred while handling "
+        + "POST request from slave " + slaveId
+        + " (" + request.getRemoteHost() + ")", cause);
+    if (!response.isCommitted()) {
+      finalizePostResponse(slaveId, request, response, statusCode);
     }
   }
 
@@ -220,13 +570,34 @@ public class DistributionServlet<T> extends HttpServlet {
       EvaluationResult<T> evaluationResult,
       HttpServletRequest request) {
 
-    logger.log(Level.FINEST, "Slave " + slaveId
-        + " (" + request.getRemoteHost() + "): "
-        + "updated central population with evaluation result ("
-        + evaluationResult.size() + ") :"
-        + evaluationResult.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Slave " + slaveId
+          + " (" + request.getRemoteHost() + "): "
+          + "updated central population with evaluation result ("
+          + evaluationResult.size() + ") :"
+          + evaluationResult.toString());
+    }
+
+    taskManager.updateTask(slaveId, readTaskId(request), evaluationResult);
+  }
 
-    taskManager.updateTask(slaveId, evaluationResult);
+  /**
+   * Reads identifier of the evaluated task from the request.
+   * @param request Request to read from.
+   * @return Identifier of the task or {@link EvaluationTask#NO_ID} if
+   * the slave did not send it.
+   */
+  private long readTaskId(final HttpServletRequest request) {
+    final String taskId = request.getHeader(TASK_ID_PROPERTY);
+    if (taskId == null) {
+      return EvaluationTask.NO_ID;
+    }
+    try {
+      return Long.parseLong(taskId);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid task identifier "
+          + taskId, e);
+    }
   }
 
   /**
@@ -240,8 +611,10 @@ public class DistributionServlet<T> extends HttpServlet {
   private EvaluationResult<T> readEvaluationResult(
         final HttpServletRequest request)
       throws IOException, ClassNotFoundException {
-    EvaluationResult<T> result = 
-        resultSerializer.deserialize(request.getInputStream());
+    final Compression compression =
+        Compression.forName(request.getHeader(COMPRESSION_PROPERTY));
+    EvaluationResult<T> result = resultSerializer.deserialize(
+        compression.decompress(request.getInputStream()));
     return result;
   }
 
@@ -266,8 +639,10 @@ public class DistributionServlet<T> extends HttpServlet {
     response.setStatus(statusCode);
     ((Request) request).setHandled(true);
 
-    logger.log(Level.FINEST, "POST response to slave "
-        + slaveId + " (" + request.getRemoteHost() + ") finalized: "
-        + response.toString());
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "POST response to slave "
+          + slaveId + " (" + request.getRemoteHost() + ") finalized: "
+          + response.toString());
+    }
   }
 }
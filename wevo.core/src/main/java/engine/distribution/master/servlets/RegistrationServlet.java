@@ -28,10 +28,12 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.mortbay.jetty.Request;
 
+import engine.distribution.master.CompressionPolicy;
 import engine.distribution.master.SlaveIdGenerator;
 import engine.distribution.master.SlaveInformation;
 import engine.distribution.master.SlaveManager;
 import engine.distribution.master.StatisticsManager;
+import engine.distribution.serialization.Compression;
 
 /**
  * Servlet responsible for registering slaves.
@@ -56,16 +58,34 @@ public class RegistrationServlet extends HttpServlet {
   /** StatisticsManager object for registering new slave. */
   private StatisticsManager statisticsManager;
 
+  /** Policy recording compressions accepted by slaves. */
+  private CompressionPolicy compressionPolicy;
+
   /**
    * Constructor.
    * @param slaveManager Slave's managing tool.
    * @param statisticsManager Slave's stats managing tool.
+   * @param compressionPolicy Policy recording compressions accepted by
+   * slaves. Must be shared with the distribution servlet.
    */
   public RegistrationServlet(
         SlaveManager slaveManager,
-        StatisticsManager statisticsManager) {
+        StatisticsManager statisticsManager,
+        CompressionPolicy compressionPolicy) {
     this.slaveManager = slaveManager;
     this.statisticsManager = statisticsManager;
+    this.compressionPolicy = compressionPolicy;
+  }
+
+  /**
+   * Constructor ignoring compressions accepted by slaves.
+   * @param slaveManager Slave's managing tool.
+   * @param statisticsManager Slave's stats managing tool.
+   */
+  public RegistrationServlet(
+        SlaveManager slaveManager,
+        StatisticsManager statisticsManager) {
+    this(slaveManager, statisticsManager, new CompressionPolicy());
   }
 
   /** {@inheritDoc} */
@@ -81,6 +101,9 @@ public class RegistrationServlet extends HttpServlet {
 
     String slaveId = registerSlave(
         getSlaveName(request));
+    compressionPolicy.addSlave(slaveId, Compression.parse(request.getHeader(
+        DistributionServlet.ACCEPTED_COMPRESSIONS_PROPERTY)));
+    registerShard(request, slaveId);
 
     finalizeResponse(request, response,
         slaveId);
@@ -132,6 +155,25 @@ public class RegistrationServlet extends HttpServlet {
     return slaveId;
   }
 
+  /**
+   * Records the shard of the problem data held by the slave, if any.
+   * @param request Registration request of the slave.
+   * @param slaveId ID assigned to the slave.
+   */
+  private void registerShard(final HttpServletRequest request,
+      final String slaveId) {
+    final String shard = request.getHeader(
+        DistributionServlet.SHARD_PROPERTY);
+    if (shard == null) {
+      return;
+    }
+    try {
+      slaveManager.setShard(slaveId, Integer.parseInt(shard));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid shard: " + shard, e);
+    }
+  }
+
   /**
    * Validates the POST request.
    * @param request Request to be validated.
@@ -65,6 +65,18 @@ public class IterationStatistics {
     /** Counter name. Holds number of seconds spent in this iteration. */
     public static final String TIME_SPENT_IN_SECONDS = "time_spent_in_seconds";
 
+    /** Counter name. Holds number of tasks copied to idle slaves. */
+    public static final String SPECULATIVE_TASKS = "speculative_tasks";
+
+    /** Counter name. Holds number of results of tasks already evaluated. */
+    public static final String DISCARDED_RESULTS = "discarded_results";
+
+    /**
+     * Counter name. Holds number of individuals not sent to slaves, as their
+     * values were cached or they duplicated other individuals.
+     */
+    public static final String SKIPPED_INDIVIDUALS = "skipped_individuals";
+
     /** Exact time when iteration started. */
     private GregorianCalendar iterationStartTime;
 
@@ -165,5 +177,8 @@ public class IterationStatistics {
       addCounterValue(AVERAGE_INDIVIDUAL_VALUE, 0.0);
       addCounterValue(STD_DEVIATION_INDIVIDUAL_VALUE, 0.0);
       addCounterValue(TIME_SPENT_IN_SECONDS, 0.0);
+      addCounterValue(SPECULATIVE_TASKS, 0.0);
+      addCounterValue(DISCARDED_RESULTS, 0.0);
+      addCounterValue(SKIPPED_INDIVIDUALS, 0.0);
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import engine.utils.VarIntUtils;
+
+/**
+ * Compact binary result serializer. Sends the number of individuals and
+ * objective functions followed by a single block of raw doubles, holding
+ * values of all objective functions for consecutive individuals of the task.
+ * @param <T> Type of the individual in the result.
+ */
+public class BinaryResultSerializer<T> implements ResultSerializer<T> {
+
+  /** {@inheritDoc} */
+  public EvaluationResult<T> deserialize(final InputStream inputStream)
+      throws IOException {
+    DataInputStream input =
+        new DataInputStream(new BufferedInputStream(inputStream));
+    BinaryTaskSerializer.checkVersion(input.readUnsignedByte());
+    final int size = VarIntUtils.readUnsignedInt(input);
+    final int objectives = VarIntUtils.readUnsignedInt(input);
+    final long length = (long) size * objectives;
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Result of " + size + " individuals and "
+          + objectives + " objective functions is too large.");
+    }
+    double[] values = new double[(int) length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = input.readDouble();
+    }
+    return new EvaluationResult<T>(size, values);
+  }
+
+  /** {@inheritDoc} */
+  public void serialize(
+      final OutputStream outputStream,
+      final EvaluationResult<T> result) throws IOException {
+    DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(outputStream));
+    output.writeByte(BinaryTaskSerializer.FORMAT_VERSION);
+    VarIntUtils.writeUnsignedInt(output, result.size());
+    VarIntUtils.writeUnsignedInt(output, result.getNumberOfObjectives());
+    for (double value : result.getValues()) {
+      output.writeDouble(value);
+    }
+    output.flush();
+    output.close();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import engine.Population;
+import engine.codecs.IndividualCodec;
+import engine.utils.VarIntUtils;
+
+/**
+ * Compact binary task serializer. Instead of the object graph written by
+ * {@link JavaIOTaskSerializer}, only the number of individuals and the
+ * individuals encoded with given codec are sent, without class descriptors
+ * or boxing.
+ * @param <T> Type of individual in a population.
+ */
+public class BinaryTaskSerializer<T> implements TaskSerializer<T> {
+
+  /** Version of the format of tasks and results, sent first. */
+  static final int FORMAT_VERSION = 2;
+
+  /** Upper bound of preallocated list size, guards against bad input. */
+  static final int MAX_PREALLOCATION = 1024;
+
+  /** Codec of individuals. */
+  private final IndividualCodec<T> codec;
+
+  /**
+   * Creates the serializer.
+   * @param codec Codec of individuals.
+   */
+  public BinaryTaskSerializer(final IndividualCodec<T> codec) {
+    this.codec = codec;
+  }
+
+  /** {@inheritDoc} */
+  public EvaluationTask<T> deserialize(final InputStream inputStream)
+      throws IOException {
+    DataInputStream input =
+        new DataInputStream(new BufferedInputStream(inputStream));
+    checkVersion(input.readUnsignedByte());
+    final int size = VarIntUtils.readUnsignedInt(input);
+    List<T> individuals =
+        new ArrayList<T>(Math.min(size, MAX_PREALLOCATION));
+    for (int i = 0; i < size; i++) {
+      individuals.add(codec.decode(input));
+    }
+    return new EvaluationTask<T>(new Population<T>(individuals));
+  }
+
+  /** {@inheritDoc} */
+  public void serialize(
+      final OutputStream outputStream,
+      final EvaluationTask<T> task) throws IOException {
+    DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(outputStream));
+    output.writeByte(FORMAT_VERSION);
+    List<T> individuals = task.getPopulation().getIndividuals();
+    VarIntUtils.writeUnsignedInt(output, individuals.size());
+    for (T individual : individuals) {
+      codec.encode(output, individual);
+    }
+    output.flush();
+    output.close();
+  }
+
+  /**
+   * Checks version of received data.
+   * @param version Received version.
+   * @throws IOException Thrown if the version is not supported.
+   */
+  static void checkVersion(final int version) throws IOException {
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported binary format version " + version);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stream compression applied to serialized tasks and results. Master and
+ * slave agree on the set of compressions at registration; the compression
+ * of a particular payload is sent along with it, so that every payload can
+ * be compressed differently.
+ */
+public enum Compression {
+
+  /** Payload sent as is. */
+  NONE("none") {
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream compress(final OutputStream output) {
+      return output;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream decompress(final InputStream input) {
+      return input;
+    }
+  },
+
+  /** Fast LZ compression with a modest ratio. */
+  LZF("lzf") {
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream compress(final OutputStream output) {
+      return new LzfOutputStream(output);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream decompress(final InputStream input) {
+      return new LzfInputStream(input);
+    }
+  },
+
+  /** Deflate compression, slower but with a better ratio. */
+  DEFLATE("deflate") {
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream compress(final OutputStream output) {
+      return new DeflaterOutputStream(output);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream decompress(final InputStream input) {
+      return new InflaterInputStream(input);
+    }
+  };
+
+  /** Separator of compression names in a list. */
+  private static final String SEPARATOR = ",";
+
+  /** Name of the compression used in the protocol. */
+  private final String name;
+
+  /**
+   * Creates the compression.
+   * @param name Name of the compression used in the protocol.
+   */
+  private Compression(final String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name of the compression used in the protocol.
+   * @return Name of the compression.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Wraps the stream so that data written to it gets compressed.
+   * Closing the returned stream finishes compression and closes the
+   * underlying stream.
+   * @param output Stream to write compressed data to.
+   * @return Stream to write uncompressed data to.
+   * @throws IOException Thrown on write errors.
+   */
+  public abstract OutputStream compress(OutputStream output)
+      throws IOException;
+
+  /**
+   * Wraps the stream so that data read from it gets decompressed.
+   * @param input Stream to read compressed data from.
+   * @return Stream to read uncompressed data from.
+   * @throws IOException Thrown on read errors.
+   */
+  public abstract InputStream decompress(InputStream input)
+      throws IOException;
+
+  /**
+   * Finds the compression by its name.
+   * @param name Name of the compression. Null means no compression.
+   * @return Compression with the given name.
+   * @throws IOException Thrown when the compression is unknown.
+   */
+  public static Compression forName(final String name) throws IOException {
+    if (name == null) {
+      return NONE;
+    }
+    for (Compression compression : values()) {
+      if (compression.name.equals(name)) {
+        return compression;
+      }
+    }
+    throw new IOException("Unknown compression " + name + ".");
+  }
+
+  /**
+   * Parses a list of compression names. Unknown names are skipped, so that
+   * peers supporting more compressions can talk to older ones.
+   * @param names Comma separated names. Null means an empty list.
+   * @return Known compressions in the order of the list.
+   */
+  public static List<Compression> parse(final String names) {
+    List<Compression> compressions = new ArrayList<Compression>();
+    if (names == null) {
+      return compressions;
+    }
+    for (String name : names.split(SEPARATOR)) {
+      for (Compression compression : values()) {
+        if (compression.name.equals(name.trim())
+            && !compressions.contains(compression)) {
+          compressions.add(compression);
+        }
+      }
+    }
+    return compressions;
+  }
+
+  /**
+   * Formats a list of compressions, so that it can be parsed back.
+   * @param compressions Compressions to format.
+   * @return Comma separated names.
+   */
+  public static String format(final List<Compression> compressions) {
+    StringBuilder builder = new StringBuilder();
+    for (Compression compression : compressions) {
+      if (builder.length() > 0) {
+        builder.append(SEPARATOR);
+      }
+      builder.append(compression.name);
+    }
+    return builder.toString();
+  }
+}
@@ -20,12 +20,19 @@
 package engine.distribution.serialization;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Evaluation result returned by slaves.
+ * Evaluation result returned by slaves. Values of objective functions are
+ * positional: they are kept in a single array, aligned to the order of
+ * individuals in the evaluated task, with values of all objective functions
+ * for the first individual followed by values for the second one, etc.
+ * Individuals themselves are not sent back; the master maps the values
+ * to the individuals of the task by position.
  * @author Karol Stosiek (karol.stosiek@gmail.com)
  * @author Michał Anglart (anglart.michal@gmail.com)
  * 
@@ -34,45 +41,135 @@ import java.util.Map;
 public class EvaluationResult<T> implements Serializable {
 
   /** Generated serial version UID. */
-  private static final long serialVersionUID = -7594432628684891270L;
+  private static final long serialVersionUID = 2183573478905934471L;
 
-  /** Evaluation result. */
-  private Map<T, List<Double>> result;
+  /** Number of evaluated individuals. */
+  private final int size;
+
+  /** Values of objective functions for consecutive individuals. */
+  private final double[] values;
+
+  /**
+   * Evaluated individuals, known only where the result was built from
+   * individual-keyed maps. Never sent.
+   */
+  private transient List<T> individuals;
+
+  /**
+   * Creates positional result.
+   * @param size Number of evaluated individuals.
+   * @param values Values of objective functions for consecutive individuals;
+   *     the length must be a multiple of size.
+   */
+  public EvaluationResult(final int size, final double[] values) {
+    if (size < 0 || (size == 0 && values.length != 0)
+        || (size > 0 && values.length % size != 0)) {
+      throw new IllegalArgumentException(values.length
+          + " values do not match " + size + " individuals.");
+    }
+    this.size = size;
+    this.values = values;
+  }
+
+  /**
+   * Creates positional result of given individuals.
+   * @param individuals Evaluated individuals.
+   * @param values Values of objective functions for the individuals.
+   */
+  EvaluationResult(final List<T> individuals, final double[] values) {
+    this(individuals.size(), values);
+    this.individuals = individuals;
+  }
 
   /**
-   * Constructor.
+   * Creates the result from mapping of individuals to values of objective
+   * functions.
    * @param newResult Result to be wrapped.
    */
   public EvaluationResult(Map<T, List<Double>> newResult) {
-    this.result = newResult;
+    this(new ArrayList<T>(newResult.keySet()), toValues(newResult));
+  }
+
+  /**
+   * Flattens mapping of individuals to values of objective functions.
+   * @param result Mapping to flatten.
+   * @param <T> Type of the individual evaluated.
+   * @return Values of objective functions for consecutive individuals.
+   */
+  private static <T> double[] toValues(final Map<T, List<Double>> result) {
+    int objectives = 0;
+    for (List<Double> functionValues : result.values()) {
+      objectives = functionValues.size();
+      break;
+    }
+    double[] values = new double[result.size() * objectives];
+    int position = 0;
+    for (List<Double> functionValues : result.values()) {
+      for (int i = 0; i < objectives; i++) {
+        values[position++] = functionValues.get(i);
+      }
+    }
+    return values;
   }
 
   /**
    * Returns mapping from individuals to their objective function values.
+   * Available only where the result was built, as individuals are not sent.
    * @param objectiveFunctionNo Number of the objective function to return
    * values for.
    * @return Mapping from individuals to their objective function values.
    */
   public Map<T, Double> getResult(final int objectiveFunctionNo) {
+    if (individuals == null) {
+      throw new IllegalStateException("Individuals of a received result "
+          + "are known only by position.");
+    }
     Map<T, Double> singleResult = new LinkedHashMap<T, Double>();
-    for (T individual : result.keySet()) {
-      singleResult.put(individual,
-          result.get(individual).get(objectiveFunctionNo));
+    for (int i = 0; i < size; i++) {
+      singleResult.put(individuals.get(i), getValue(i, objectiveFunctionNo));
     }
     return singleResult;
   }
 
+  /**
+   * Returns value of objective function for an individual.
+   * @param individualNo Position of the individual in the task.
+   * @param objectiveFunctionNo Number of the objective function.
+   * @return Value of the objective function.
+   */
+  public double getValue(final int individualNo,
+      final int objectiveFunctionNo) {
+    return values[individualNo * getNumberOfObjectives()
+        + objectiveFunctionNo];
+  }
+
+  /**
+   * Returns values of objective functions for consecutive individuals.
+   * @return Values of objective functions. Must not be modified.
+   */
+  public double[] getValues() {
+    return values;
+  }
+
+  /**
+   * Returns number of objective functions in the result.
+   * @return Number of objective functions, zero for an empty result.
+   */
+  public int getNumberOfObjectives() {
+    return size == 0 ? 0 : values.length / size;
+  }
+
   /**
    * Returns size of the evaluation result.
    * @return Size of the evaluation result.
    */
   public int size() {
-    return result.size();
+    return size;
   }
 
   /** {@inheritDoc} */
   @Override
   public String toString() {
-    return result.toString();
+    return Arrays.toString(values);
   }
 }
@@ -20,13 +20,8 @@
 package engine.distribution.serialization;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,35 +58,28 @@ public class EvaluationResultBuilder<T> {
 
     if (partialResult.isEmpty()) {
       logger.log(Level.FINER, "Returning empty evaluation result.");
-      return new EvaluationResult<T>(new HashMap<T, List<Double>>());
+      return new EvaluationResult<T>(0, new double[0]);
     }
 
-    final Set<T> individuals = new LinkedHashSet<T>(
+    final List<T> individuals = new ArrayList<T>(
         partialResult.get(0).keySet());
-    final Map<T, List<Double>> results = new LinkedHashMap<T, List<Double>>();
-    for (T individual : individuals) {
-      results.put(individual, new LinkedList<Double>());
-    }
+    final int objectives = partialResult.size();
+    final double[] values = new double[individuals.size() * objectives];
 
-    for (int i = 0; i < partialResult.size(); i++) {
+    for (int i = 0; i < objectives; i++) {
       Map<T, Double> objectiveFunctionResults = partialResult.get(i);
- 
-      logger.log(Level.FINEST, "Merging data from objective function "
-          + partialResult.get(i) + " with data:"
-          + objectiveFunctionResults);
 
-      for (T individual : individuals) {
-        List<Double> functionValues = results.get(individual);
-        Double nextValue = objectiveFunctionResults.get(individual);
-        functionValues.add(nextValue);
+      logger.log(Level.FINEST, "Merging data from objective function "
+          + i + " with data:" + objectiveFunctionResults);
 
-        logger.log(Level.FINEST, "Individual processed: " + individual
-            + " (" + nextValue + ")");
+      for (int j = 0; j < individuals.size(); j++) {
+        values[j * objectives + i] =
+            objectiveFunctionResults.get(individuals.get(j));
       }
     }
 
     final EvaluationResult<T> evaluationResult =
-        new EvaluationResult<T>(results);
+        new EvaluationResult<T>(individuals, values);
 
     logger.log(Level.FINEST, "Returning evaluation result ("
         + evaluationResult.size() + "): "
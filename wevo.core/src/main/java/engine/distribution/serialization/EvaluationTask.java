@@ -20,6 +20,7 @@
 package engine.distribution.serialization;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReference;
 
 import engine.Population;
 
@@ -35,31 +36,58 @@ public class EvaluationTask<T> implements Serializable {
   /** Generated serial version UID. */
   private static final long serialVersionUID = 7335573552212749764L;
 
+  /** Identifier of a task not known to the master. */
+  public static final long NO_ID = -1;
+
   /** State of the task. */
-  private enum State { NOT_EVALUATED, EVALUATED };
+  private enum State { NOT_EVALUATED, CLAIMED, EVALUATED };
 
   /** Population that has to be evaluated. */
   private final Population<T> population;
 
-  /** State of the evaluation task. */
-  private State state;
+  /** State of the evaluation task, changed without locks. */
+  private final AtomicReference<State> state;
+
+  /** Identifier of the task assigned by the master. */
+  private final long id;
 
   /**
    * Constructor.
    * @param newPopulation Population to create task from.
    * @param newState State of the task.
+   * @param newId Identifier of the task.
    */
-  EvaluationTask(final Population<T> newPopulation, final State newState) {
+  EvaluationTask(final Population<T> newPopulation, final State newState,
+      final long newId) {
     this.population = newPopulation;
-    this.state = newState;
+    this.state = new AtomicReference<State>(newState);
+    this.id = newId;
   }
 
   /**
    * Constructor of inevaluated task.
    * @param newPopulation Population to create task from.
+   * @param newId Identifier of the task, used to match results with tasks
+   * when a slave evaluates several tasks at once.
+   */
+  public EvaluationTask(final Population<T> newPopulation, final long newId) {
+    this(newPopulation, State.NOT_EVALUATED, newId);
+  }
+
+  /**
+   * Constructor of inevaluated task without identifier.
+   * @param newPopulation Population to create task from.
    */
   public EvaluationTask(final Population<T> newPopulation) {
-    this(newPopulation, State.NOT_EVALUATED);
+    this(newPopulation, NO_ID);
+  }
+
+  /**
+   * Gets the identifier of the task.
+   * @return Identifier of the task or {@link #NO_ID}.
+   */
+  public long getId() {
+    return id;
   }
 
   /**
@@ -75,12 +103,29 @@ public class EvaluationTask<T> implements Serializable {
    * @return True iff the task is evaluated, false otherwise.
    */
   public boolean isEvaluated() {
-    return state == State.EVALUATED;
+    return state.get() == State.EVALUATED;
+  }
+
+  /**
+   * Claims the task for a result about to be merged, so that results of
+   * the same task evaluated by several slaves are merged once.
+   * @return True iff the task was neither claimed nor evaluated before.
+   */
+  public boolean claim() {
+    return state.compareAndSet(State.NOT_EVALUATED, State.CLAIMED);
+  }
+
+  /**
+   * Checks if the task is claimed or evaluated.
+   * @return True iff a result of the task is merged or being merged.
+   */
+  public boolean isClaimed() {
+    return state.get() != State.NOT_EVALUATED;
   }
 
   /** Marks the task as already evaluated. */
   public void markAsEvaluated() {
-    state = State.EVALUATED;
+    state.set(State.EVALUATED);
   }
 
   /**
@@ -0,0 +1,192 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Block codec in the LZF format: a byte-oriented LZ77 variant without
+ * entropy coding, trading compression ratio for speed. Literal runs are
+ * preceded by a control byte below 32 holding the run length minus one;
+ * back references hold the match length minus two in the upper three bits
+ * of the control byte (seven meaning that an extra length byte follows) and
+ * a 13-bit offset spread over the rest of the control byte and the next one.
+ */
+final class LzfCodec {
+
+  /** Number of bits of the match finder hash. */
+  private static final int HASH_BITS = 14;
+
+  /** Longest literal run encoded by a single control byte. */
+  private static final int MAX_LITERAL = 32;
+
+  /** Largest distance of a back reference. */
+  private static final int MAX_OFFSET = 1 << 13;
+
+  /** Shortest match encoded as a back reference. */
+  private static final int MIN_MATCH = 3;
+
+  // MagicNumber off
+  /** Longest match encoded as a back reference. */
+  private static final int MAX_MATCH = 7 + 255 + 2;
+
+  /** Hash table of the most recent positions of three-byte sequences. */
+  private final int[] table = new int[1 << HASH_BITS];
+
+  /**
+   * Compresses a block of data.
+   * @param input Data to compress.
+   * @param length Number of bytes of the input to compress.
+   * @param output Buffer for the compressed data, at least as long as the
+   * input.
+   * @return Length of the compressed data or -1 if the data could not be
+   * compressed to fewer bytes than the input.
+   */
+  int compress(final byte[] input, final int length, final byte[] output) {
+    Arrays.fill(table, -1);
+    final int limit = length - 1;
+    int literals = 0;
+    // Each literal run starts with a reserved control byte.
+    int op = 1;
+    int ip = 0;
+    while (ip < length) {
+      int offset = MAX_OFFSET;
+      int reference = -1;
+      if (ip < length - 2) {
+        final int hash = hash(input, ip);
+        reference = table[hash];
+        table[hash] = ip;
+        offset = ip - reference - 1;
+      }
+      if (reference >= 0 && offset < MAX_OFFSET
+          && input[reference] == input[ip]
+          && input[reference + 1] == input[ip + 1]
+          && input[reference + 2] == input[ip + 2]) {
+        if (op + 4 > limit) {
+          return -1;
+        }
+        final int maxLength = Math.min(MAX_MATCH, length - ip);
+        int matchLength = MIN_MATCH;
+        while (matchLength < maxLength
+            && input[reference + matchLength] == input[ip + matchLength]) {
+          matchLength++;
+        }
+        if (literals > 0) {
+          output[op - literals - 1] = (byte) (literals - 1);
+        } else {
+          op--;
+        }
+        final int encodedLength = matchLength - 2;
+        if (encodedLength < 7) {
+          output[op++] = (byte) ((encodedLength << 5) + (offset >> 8));
+        } else {
+          output[op++] = (byte) ((7 << 5) + (offset >> 8));
+          output[op++] = (byte) (encodedLength - 7);
+        }
+        output[op++] = (byte) offset;
+        literals = 0;
+        op++;
+        ip += matchLength;
+      } else {
+        if (op + 1 > limit) {
+          return -1;
+        }
+        output[op++] = input[ip++];
+        literals++;
+        if (literals == MAX_LITERAL) {
+          output[op - literals - 1] = (byte) (literals - 1);
+          literals = 0;
+          op++;
+        }
+      }
+    }
+    if (literals > 0) {
+      output[op - literals - 1] = (byte) (literals - 1);
+    } else {
+      op--;
+    }
+    return op <= limit ? op : -1;
+  }
+
+  /**
+   * Decompresses a block of data.
+   * @param input Compressed data.
+   * @param length Number of bytes of the compressed data.
+   * @param output Buffer for the decompressed data.
+   * @param expectedLength Exact length of the decompressed data.
+   * @throws IOException Thrown when the data is corrupted.
+   */
+  static void decompress(final byte[] input, final int length,
+      final byte[] output, final int expectedLength) throws IOException {
+    int ip = 0;
+    int op = 0;
+    while (ip < length) {
+      final int control = input[ip++] & 0xff;
+      if (control < MAX_LITERAL) {
+        final int run = control + 1;
+        if (ip + run > length || op + run > expectedLength) {
+          throw new IOException("Corrupted literal run at " + ip + ".");
+        }
+        System.arraycopy(input, ip, output, op, run);
+        ip += run;
+        op += run;
+      } else {
+        int matchLength = control >> 5;
+        if (matchLength == 7) {
+          if (ip >= length) {
+            throw new IOException("Truncated back reference at " + ip + ".");
+          }
+          matchLength += input[ip++] & 0xff;
+        }
+        if (ip >= length) {
+          throw new IOException("Truncated back reference at " + ip + ".");
+        }
+        int reference = op - ((control & 0x1f) << 8) - (input[ip++] & 0xff) - 1;
+        matchLength += 2;
+        if (reference < 0 || op + matchLength > expectedLength) {
+          throw new IOException("Corrupted back reference at " + ip + ".");
+        }
+        // Byte by byte, as the match may overlap the bytes being written.
+        for (int i = 0; i < matchLength; i++) {
+          output[op++] = output[reference++];
+        }
+      }
+    }
+    if (op != expectedLength) {
+      throw new IOException("Block decompressed to " + op
+          + " bytes instead of " + expectedLength + ".");
+    }
+  }
+
+  /**
+   * Hashes three consecutive bytes.
+   * @param input Data.
+   * @param position Position of the first byte.
+   * @return Index in the hash table.
+   */
+  private static int hash(final byte[] input, final int position) {
+    final int value = ((input[position] & 0xff) << 16)
+        | ((input[position + 1] & 0xff) << 8)
+        | (input[position + 2] & 0xff);
+    return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+  }
+  // MagicNumber on
+}
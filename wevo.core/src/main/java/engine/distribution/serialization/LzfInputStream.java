@@ -0,0 +1,132 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import engine.utils.VarIntUtils;
+
+/**
+ * Input stream decompressing data written by {@link LzfOutputStream}.
+ */
+class LzfInputStream extends InputStream {
+
+  /** Underlying stream. */
+  private final DataInputStream input;
+
+  /** Decompressed data of the current block. */
+  private final byte[] buffer = new byte[LzfOutputStream.BLOCK_SIZE];
+
+  /** Compressed data of the current block. */
+  private final byte[] compressed = new byte[LzfOutputStream.BLOCK_SIZE];
+
+  /** Position of the next byte to return from the current block. */
+  private int position;
+
+  /** Number of bytes in the current block. */
+  private int limit;
+
+  /** Whether the terminating block has been read. */
+  private boolean finished;
+
+  /**
+   * Creates the stream.
+   * @param input Stream to read compressed data from.
+   */
+  LzfInputStream(final InputStream input) {
+    this.input = new DataInputStream(input);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read() throws IOException {
+    if (position == limit && !readBlock()) {
+      return -1;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (position == limit && !readBlock()) {
+      return -1;
+    }
+    final int chunk = Math.min(length, limit - position);
+    System.arraycopy(buffer, position, bytes, offset, chunk);
+    position += chunk;
+    return chunk;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int available() {
+    return limit - position;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  /**
+   * Reads the next block from the underlying stream.
+   * @return Whether a block was read, false at the end of the stream.
+   * @throws IOException Thrown on read errors or corrupted data.
+   */
+  private boolean readBlock() throws IOException {
+    if (finished) {
+      return false;
+    }
+    final int length = VarIntUtils.readUnsignedInt(input);
+    if (length == 0) {
+      finished = true;
+      return false;
+    }
+    if (length > LzfOutputStream.BLOCK_SIZE) {
+      throw new IOException("Block of " + length + " bytes exceeds the "
+          + "maximum block size.");
+    }
+    final int flag = input.readUnsignedByte();
+    if (flag == LzfOutputStream.STORED) {
+      input.readFully(buffer, 0, length);
+    } else if (flag == LzfOutputStream.COMPRESSED) {
+      final int compressedLength = VarIntUtils.readUnsignedInt(input);
+      if (compressedLength >= length) {
+        throw new IOException("Compressed block of " + compressedLength
+            + " bytes is not smaller than its content.");
+      }
+      input.readFully(compressed, 0, compressedLength);
+      LzfCodec.decompress(compressed, compressedLength, buffer, length);
+    } else {
+      throw new IOException("Unknown block flag " + flag + ".");
+    }
+    position = 0;
+    limit = length;
+    return true;
+  }
+}
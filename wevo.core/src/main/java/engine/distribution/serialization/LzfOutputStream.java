@@ -0,0 +1,136 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import engine.utils.VarIntUtils;
+
+/**
+ * Output stream compressing data in independent LZF blocks. Every block
+ * starts with its uncompressed length and a flag telling whether the block
+ * is compressed (followed by the compressed length) or stored; blocks that
+ * do not shrink are stored. A zero length terminates the stream.
+ */
+class LzfOutputStream extends OutputStream {
+
+  /** Maximum number of uncompressed bytes in a block. */
+  static final int BLOCK_SIZE = 0xFFFF;
+
+  /** Flag of a block stored without compression. */
+  static final int STORED = 0;
+
+  /** Flag of a compressed block. */
+  static final int COMPRESSED = 1;
+
+  /** Underlying stream. */
+  private final DataOutputStream output;
+
+  /** Codec compressing the blocks. */
+  private final LzfCodec codec = new LzfCodec();
+
+  /** Uncompressed data of the current block. */
+  private final byte[] buffer = new byte[BLOCK_SIZE];
+
+  /** Compressed data of the current block. */
+  private final byte[] compressed = new byte[BLOCK_SIZE];
+
+  /** Number of bytes in the current block. */
+  private int count;
+
+  /** Whether the stream has been closed. */
+  private boolean closed;
+
+  /**
+   * Creates the stream.
+   * @param output Stream to write compressed data to.
+   */
+  LzfOutputStream(final OutputStream output) {
+    this.output = new DataOutputStream(output);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(final int b) throws IOException {
+    buffer[count++] = (byte) b;
+    if (count == BLOCK_SIZE) {
+      writeBlock();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    int position = offset;
+    int remaining = length;
+    while (remaining > 0) {
+      final int chunk = Math.min(remaining, BLOCK_SIZE - count);
+      System.arraycopy(bytes, position, buffer, count, chunk);
+      count += chunk;
+      position += chunk;
+      remaining -= chunk;
+      if (count == BLOCK_SIZE) {
+        writeBlock();
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush() throws IOException {
+    writeBlock();
+    output.flush();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      writeBlock();
+      VarIntUtils.writeUnsignedInt(output, 0);
+      output.close();
+      closed = true;
+    }
+  }
+
+  /**
+   * Writes the current block to the underlying stream.
+   * @throws IOException Thrown on write errors.
+   */
+  private void writeBlock() throws IOException {
+    if (count == 0) {
+      return;
+    }
+    VarIntUtils.writeUnsignedInt(output, count);
+    final int length = codec.compress(buffer, count, compressed);
+    if (length < 0) {
+      output.writeByte(STORED);
+      output.write(buffer, 0, count);
+    } else {
+      output.writeByte(COMPRESSED);
+      VarIntUtils.writeUnsignedInt(output, length);
+      output.write(compressed, 0, length);
+    }
+    count = 0;
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.slave;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.serialization.ResultSerializer;
+import engine.distribution.serialization.TaskSerializer;
+import engine.distribution.utils.BinaryProtocol;
+import engine.distribution.utils.ProblemData;
+import engine.distribution.utils.SharedMemoryChannel;
+
+/**
+ * Connection of a slave with the master speaking {@link BinaryProtocol}.
+ * Requests are sent one at a time over a single persistent connection,
+ * which is established again after failures. The connection may be shared
+ * by threads of a slave. When the master runs on the same host and accepts
+ * {@link SharedMemoryChannel}s, one is used instead of a socket.
+ *
+ * @param <T> Type of individuals evaluated on the server.
+ */
+public class BinaryConnection<T> {
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      BinaryConnection.class.getCanonicalName());
+
+  /** Address of the master. */
+  private final InetSocketAddress address;
+
+  /** Utility used for deserialization of task. */
+  private final TaskSerializer<T> taskSerializer;
+
+  /** Utility used for serialization of the evaluation result. */
+  private final ResultSerializer<T> resultSerializer;
+
+  /** Header of the frame being read. */
+  private final ByteBuffer header =
+      ByteBuffer.allocateDirect(BinaryProtocol.HEADER_LENGTH);
+
+  /** Channel connected to the master; null when not connected. */
+  private ByteChannel channel;
+
+  /** Whether shared memory is used when available. */
+  private boolean sharedMemory = true;
+
+  /** Cache of problem data referenced by tasks. Default: none. */
+  private DataCache dataCache;
+
+  /**
+   * Constructor.
+   * @param host Host of the master.
+   * @param port Port of the binary server of the master.
+   * @param taskSerializer Serializer used for task deserialization.
+   * @param resultSerializer Serializer used for result serialization.
+   */
+  public BinaryConnection(
+      final String host,
+      final int port,
+      final TaskSerializer<T> taskSerializer,
+      final ResultSerializer<T> resultSerializer) {
+    this.address = new InetSocketAddress(host, port);
+    this.taskSerializer = taskSerializer;
+    this.resultSerializer = resultSerializer;
+  }
+
+  /**
+   * Sets cache to be updated with references to problem data sent
+   * with tasks.
+   * @param cache Cache of problem data.
+   */
+  public synchronized void setDataCache(final DataCache cache) {
+    this.dataCache = cache;
+  }
+
+  /**
+   * Sets whether shared memory is used instead of a socket when the master
+   * runs on the same host and accepts shared memory channels. Takes effect
+   * on the next connection.
+   * @param enabled True to use shared memory when available.
+   */
+  public synchronized void setSharedMemory(final boolean enabled) {
+    this.sharedMemory = enabled;
+  }
+
+  /**
+   * Registers the slave.
+   * @param slaveName Name of slave under which it would be registered.
+   * @param shard Shard of the problem data held by the slave; negative
+   * if none.
+   * @return Slave ID allocated by master.
+   * @throws IOException Thrown on connection issues.
+   */
+  public synchronized String register(final String slaveName,
+      final int shard) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(payload);
+    output.writeUTF(slaveName);
+    output.writeInt(shard);
+    return exchange(BinaryProtocol.REGISTER, payload,
+        BinaryProtocol.REGISTERED).input.readUTF();
+  }
+
+  /**
+   * Asks the master for a task.
+   * @param slaveId ID of the slave.
+   * @return Task to evaluate or null if none is available.
+   * @throws IOException Thrown on connection issues.
+   * @throws ClassNotFoundException Thrown when definition for object found
+   * in the stream does not exist.
+   */
+  public synchronized EvaluationTask<T> getTask(final String slaveId)
+      throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    new DataOutputStream(payload).writeUTF(slaveId);
+    return readTask(exchange(BinaryProtocol.GET_TASK, payload,
+        BinaryProtocol.TASK, BinaryProtocol.NO_TASK));
+  }
+
+  /**
+   * Sends the result of a task to the master.
+   * @param result Result to be sent to the server.
+   * @param slaveId ID of the slave.
+   * @param taskId Identifier of the evaluated task.
+   * @param askForTask Whether to ask for the next task in the reply.
+   * @return Next task to evaluate or null if none was asked for or is
+   * available.
+   * @throws IOException Thrown on connection issues.
+   * @throws ClassNotFoundException Thrown when definition for object found
+   * in the stream does not exist.
+   */
+  public synchronized EvaluationTask<T> sendResult(
+      final EvaluationResult<T> result,
+      final String slaveId,
+      final long taskId,
+      final boolean askForTask) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(payload);
+    output.writeUTF(slaveId);
+    output.writeLong(taskId);
+    output.writeBoolean(askForTask);
+    resultSerializer.serialize(output, result);
+    return readTask(exchange(BinaryProtocol.SEND_RESULT, payload,
+        BinaryProtocol.TASK, BinaryProtocol.NO_TASK,
+        BinaryProtocol.ACCEPTED));
+  }
+
+  /**
+   * Reports to the master that the slave is alive.
+   * @param slaveId ID of the slave.
+   * @throws IOException Thrown on connection issues.
+   */
+  public synchronized void heartbeat(final String slaveId)
+      throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    new DataOutputStream(payload).writeUTF(slaveId);
+    exchange(BinaryProtocol.HEARTBEAT, payload, BinaryProtocol.ACCEPTED);
+  }
+
+  /** Closes the connection; it is established again on the next request. */
+  public synchronized void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Failed to close connection", e);
+      }
+      channel = null;
+    }
+  }
+
+  /**
+   * Reads the task from the reply, if any.
+   * @param reply Reply of the master, positioned after the type.
+   * @return Task or null if the reply holds no task.
+   * @throws IOException Thrown on deserialization issues.
+   * @throws ClassNotFoundException Thrown when definition for object found
+   * in the stream does not exist.
+   */
+  private EvaluationTask<T> readTask(final Reply reply)
+      throws IOException, ClassNotFoundException {
+    if (reply.type != BinaryProtocol.TASK) {
+      return null;
+    }
+    final long taskId = reply.input.readLong();
+    final String references = reply.input.readUTF();
+    EvaluationTask<T> task = taskSerializer.deserialize(reply.input);
+    if (task.getId() != taskId) {
+      task = new EvaluationTask<T>(task.getPopulation(), taskId);
+    }
+    if (dataCache != null) {
+      dataCache.updateReferences(ProblemData.parseReferences(references));
+    }
+    return task;
+  }
+
+  /**
+   * Sends a request and reads the reply, connecting first if needed.
+   * The connection is closed on failures.
+   * @param type Type of the request.
+   * @param payload Payload of the request.
+   * @param expectedTypes Types of replies expected.
+   * @return Reply of the master.
+   * @throws IOException Thrown on connection issues or an error reply.
+   */
+  private Reply exchange(final byte type,
+      final ByteArrayOutputStream payload, final byte... expectedTypes)
+      throws IOException {
+    try {
+      if (channel == null) {
+        channel = connect();
+      }
+      final ByteBuffer request =
+          BinaryProtocol.encodeFrame(type, payload.toByteArray());
+      while (request.hasRemaining()) {
+        channel.write(request);
+      }
+
+      header.clear();
+      readFully(header);
+      header.flip();
+      final ByteBuffer replyPayload = ByteBuffer.allocate(
+          BinaryProtocol.decodePayloadLength(header));
+      readFully(replyPayload);
+
+      final Reply reply = new Reply(BinaryProtocol.decodeType(header),
+          new DataInputStream(new ByteArrayInputStream(
+              replyPayload.array())));
+      if (reply.type == BinaryProtocol.ERROR) {
+        throw new IOException("Master failed to handle request: "
+            + reply.input.readUTF());
+      }
+      for (byte expectedType : expectedTypes) {
+        if (reply.type == expectedType) {
+          return reply;
+        }
+      }
+      throw new IOException("Unexpected reply of type " + reply.type);
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Connects to the master, over shared memory if possible.
+   * @return Blocking channel connected to the master.
+   * @throws IOException Thrown on connection issues.
+   */
+  private ByteChannel connect() throws IOException {
+    final File directory =
+        SharedMemoryChannel.getDirectory(address.getPort());
+    if (sharedMemory && directory.isDirectory()
+        && isLocal(address.getAddress())) {
+      logger.log(Level.FINE, "Connecting to master over shared memory ("
+          + directory + ")");
+      final SharedMemoryChannel sharedMemoryChannel =
+          SharedMemoryChannel.create(directory,
+              SharedMemoryChannel.DEFAULT_CAPACITY);
+      sharedMemoryChannel.configureBlocking(true);
+      return sharedMemoryChannel;
+    }
+
+    logger.log(Level.FINE, "Connecting to master (" + address + ")");
+    final SocketChannel socketChannel = SocketChannel.open(address);
+    socketChannel.socket().setTcpNoDelay(true);
+    return socketChannel;
+  }
+
+  /**
+   * Indicates whether the address belongs to this host.
+   * @param inetAddress Address to check, possibly null if unresolved.
+   * @return True iff the address is local.
+   * @throws IOException Thrown when unable to list network interfaces.
+   */
+  private static boolean isLocal(final InetAddress inetAddress)
+      throws IOException {
+    return inetAddress != null
+        && (inetAddress.isLoopbackAddress()
+            || inetAddress.isAnyLocalAddress()
+            || NetworkInterface.getByInetAddress(inetAddress) != null);
+  }
+
+  /**
+   * Reads from the channel until the buffer is full.
+   * @param buffer Buffer to fill.
+   * @throws IOException Thrown on connection issues.
+   */
+  private void readFully(final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Connection closed by master");
+      }
+    }
+  }
+
+  /** Reply frame of the master. */
+  private static class Reply {
+
+    /** Type of the reply. */
+    private final byte type;
+
+    /** Payload of the reply. */
+    private final DataInputStream input;
+
+    /**
+     * Constructor.
+     * @param type Type of the reply.
+     * @param input Payload of the reply.
+     */
+    Reply(final byte type, final DataInputStream input) {
+      this.type = type;
+      this.input = input;
+    }
+  }
+}
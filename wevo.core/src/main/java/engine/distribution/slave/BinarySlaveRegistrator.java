@@ -0,0 +1,51 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.slave;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import engine.distribution.serialization.Compression;
+import engine.distribution.utils.WevoURL;
+
+/**
+ * Registers slave in the distribution over a {@link BinaryConnection}
+ * instead of HTTP.
+ */
+public class BinarySlaveRegistrator extends SlaveRegistrator {
+
+  /** Connection with the master. */
+  private final BinaryConnection<?> connection;
+
+  /**
+   * Constructor.
+   * @param connection Connection with the master.
+   */
+  public BinarySlaveRegistrator(final BinaryConnection<?> connection) {
+    super((WevoURL) null, Collections.<Compression>emptyList());
+    this.connection = connection;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String register(final String slaveName) throws IOException {
+    return connection.register(slaveName, getShard());
+  }
+}
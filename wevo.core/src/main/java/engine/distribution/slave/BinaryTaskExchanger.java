@@ -0,0 +1,128 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.slave;
+
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.utils.WevoURL;
+
+/**
+ * Exchanges tasks with the master over a {@link BinaryConnection} instead
+ * of HTTP.
+ *
+ * @param <T> Type of individuals evaluated on the server.
+ */
+public class BinaryTaskExchanger<T> extends TaskExchanger<T> {
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      BinaryTaskExchanger.class.getCanonicalName());
+
+  /** Connection with the master. */
+  private final BinaryConnection<T> connection;
+
+  /** Milliseconds between heartbeats; non-positive value disables them. */
+  private final long heartbeatMillis;
+
+  /** Timer sending heartbeats; null until the first task is asked for. */
+  private Timer heartbeat;
+
+  /**
+   * Constructor.
+   * @param connection Connection with the master.
+   * @param heartbeatMillis Milliseconds between heartbeats reporting that
+   * the slave is alive while evaluating long tasks; non-positive value
+   * disables heartbeats.
+   */
+  public BinaryTaskExchanger(final BinaryConnection<T> connection,
+      final long heartbeatMillis) {
+    super(null, null, (WevoURL) null);
+    this.connection = connection;
+    this.heartbeatMillis = heartbeatMillis;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setDataCache(final DataCache cache) {
+    connection.setDataCache(cache);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public EvaluationTask<T> getTask(final String slaveId, int backoffMillis)
+      throws IOException, ClassNotFoundException {
+    startHeartbeat(slaveId);
+    EvaluationTask<T> task = connection.getTask(slaveId);
+    while (task == null) {
+      waitForTask(backoffMillis);
+      task = connection.getTask(slaveId);
+    }
+    return task;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void sendResult(final EvaluationResult<T> result,
+      final String slaveId, final long taskId) throws IOException {
+    try {
+      connection.sendResult(result, slaveId, taskId, false);
+    } catch (ClassNotFoundException e) {
+      // Replies without a task are never deserialized.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public EvaluationTask<T> sendResultAndGetTask(
+      final EvaluationResult<T> result,
+      final String slaveId,
+      final long taskId) throws IOException, ClassNotFoundException {
+    return connection.sendResult(result, slaveId, taskId, true);
+  }
+
+  /**
+   * Starts sending heartbeats of the slave, unless started already or
+   * disabled.
+   * @param slaveId ID of the slave.
+   */
+  private synchronized void startHeartbeat(final String slaveId) {
+    if (heartbeatMillis <= 0 || heartbeat != null) {
+      return;
+    }
+    heartbeat = new Timer("wevo-heartbeat", true);
+    heartbeat.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        try {
+          connection.heartbeat(slaveId);
+        } catch (IOException e) {
+          logger.log(Level.FINE, "Failed to send heartbeat", e);
+        }
+      }
+    }, heartbeatMillis, heartbeatMillis);
+  }
+}
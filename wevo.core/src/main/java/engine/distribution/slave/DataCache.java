@@ -0,0 +1,216 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.slave;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.distribution.master.MasterSlaveEvaluator;
+import engine.distribution.master.servlets.DataServlet;
+import engine.distribution.utils.ProblemData;
+import engine.distribution.utils.WevoURL;
+
+/**
+ * Slave-side cache of problem data published by the master (see
+ * {@link MasterSlaveEvaluator#publishData(String, byte[])}). Data is fetched
+ * lazily, when an objective function asks for it, and kept on disk under
+ * the hash of its content, so that it is fetched once even if the slave
+ * is restarted.
+ */
+public class DataCache {
+
+  /** Size of the buffer for copying data. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Logging utility. */
+  private final Logger logger = Logger.getLogger(
+      DataCache.class.getCanonicalName());
+
+  /** URL address of the problem data servlet. */
+  private final WevoURL dataUrl;
+
+  /** Directory holding the fetched data. */
+  private final File directory;
+
+  /** Hashes of the data by name, as last referenced by the master. */
+  private final Map<String, String> references =
+      new ConcurrentHashMap<String, String>();
+
+  /**
+   * Constructor. Package visibility for testing purposes.
+   * @param dataUrl URL address of the problem data servlet.
+   * @param directory Directory holding the fetched data.
+   */
+  DataCache(final WevoURL dataUrl, final File directory) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Cannot create directory "
+          + directory);
+    }
+    this.dataUrl = dataUrl;
+    this.directory = directory;
+  }
+
+  /**
+   * Constructor for public use.
+   * @param serverUrl URL address of the master. Must not be null.
+   * @param directory Directory holding the fetched data.
+   * @throws MalformedURLException Thrown when unable to create necessary URLs.
+   */
+  public DataCache(final String serverUrl, final File directory)
+      throws MalformedURLException {
+    this(new WevoURL(serverUrl + MasterSlaveEvaluator.DATA_ADDRESS),
+        directory);
+  }
+
+  /**
+   * Updates hashes of the data referenced by the master. Called with every
+   * task, so that data published again under the same name is fetched.
+   * @param newReferences Map from names of the data to their hashes.
+   */
+  public void updateReferences(final Map<String, String> newReferences) {
+    references.putAll(newReferences);
+  }
+
+  /**
+   * Returns data published under given name.
+   * @param name Name of the data.
+   * @return Content of the data.
+   * @throws IOException Thrown when the data is not published or cannot
+   * be fetched.
+   */
+  public byte[] get(final String name) throws IOException {
+    final String hash = references.get(name);
+    if (hash != null) {
+      return getByHash(hash);
+    }
+
+    final byte[] data = fetch(DataServlet.DATA_NAME_PROPERTY, name);
+    references.put(name, ProblemData.hash(data));
+    return data;
+  }
+
+  /**
+   * Returns data with content of given hash.
+   * @param hash Hash of the content.
+   * @return Content of the data.
+   * @throws IOException Thrown when the data is not published or cannot
+   * be fetched.
+   */
+  public byte[] getByHash(final String hash) throws IOException {
+    final File file = new File(directory, hash);
+    if (file.isFile()) {
+      logger.log(Level.FINE, "Reading problem data " + hash + " from disk");
+      return read(new FileInputStream(file));
+    }
+
+    final byte[] data = fetch(DataServlet.DATA_HASH_PROPERTY, hash);
+    if (!ProblemData.hash(data).equals(hash)) {
+      throw new IOException("Problem data " + hash + " is corrupted.");
+    }
+    return data;
+  }
+
+  /**
+   * Fetches data from the master and stores it on disk.
+   * @param property Header property identifying the data.
+   * @param value Name or hash of the data.
+   * @return Content of the data.
+   * @throws IOException Thrown when the data is not published or cannot
+   * be fetched.
+   */
+  private byte[] fetch(final String property, final String value)
+      throws IOException {
+    logger.log(Level.INFO, "Fetching problem data " + value + " from master");
+
+    HttpURLConnection connection = dataUrl.openConnection();
+    connection.setDoInput(true);
+    connection.setUseCaches(false);
+    connection.setRequestMethod("GET");
+    connection.setRequestProperty(property, value);
+    connection.connect();
+
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      dataUrl.release(connection);
+      throw new IOException("Problem data " + value + " is not available. "
+          + "Server responded with error code "
+          + connection.getResponseCode());
+    }
+    // Reading the whole response keeps the connection alive.
+    final byte[] data = read(connection.getInputStream());
+
+    store(ProblemData.hash(data), data);
+    return data;
+  }
+
+  /**
+   * Stores data on disk. The data is written to a temporary file first,
+   * so that other slaves sharing the directory never read partial data.
+   * @param hash Hash of the content.
+   * @param data Content of the data.
+   * @throws IOException Thrown on write errors.
+   */
+  private void store(final String hash, final byte[] data) throws IOException {
+    final File file = new File(directory, hash);
+    final File temporary = File.createTempFile(hash, ".part", directory);
+    OutputStream output = new FileOutputStream(temporary);
+    try {
+      output.write(data);
+    } finally {
+      output.close();
+    }
+    if (!temporary.renameTo(file)) {
+      // Another slave may have stored the same data in the meantime.
+      temporary.delete();
+    }
+    logger.log(Level.FINE, "Stored problem data " + hash + " ("
+        + data.length + " bytes) in " + file);
+  }
+
+  /**
+   * Reads stream to the end and closes it.
+   * @param input Stream to read.
+   * @return Bytes read.
+   * @throws IOException Thrown on read errors.
+   */
+  private static byte[] read(final InputStream input) throws IOException {
+    try {
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = input.read(buffer)) >= 0) {
+        output.write(buffer, 0, read);
+      }
+      return output.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -21,8 +21,17 @@ package engine.distribution.slave;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,7 +39,6 @@ import engine.CachedObjectiveFunction;
 import engine.Population;
 import engine.PopulationEvaluator;
 import engine.distribution.serialization.EvaluationResult;
-import engine.distribution.serialization.EvaluationResultBuilder;
 import engine.distribution.serialization.EvaluationTask;
 import engine.distribution.serialization.JavaIOResultSerializer;
 import engine.distribution.serialization.JavaIOTaskSerializer;
@@ -48,6 +56,9 @@ import engine.utils.WevoClock;
  */
 public class Slave<T> {
 
+  /** Seconds to wait for results being sent when the slave stops. */
+  private static final int SENDING_TIMEOUT = 60;
+
   /** Logging utility. Package visibility for testing. */
   private final Logger logger = Logger.getLogger(
       Slave.class.getCanonicalName());
@@ -153,6 +164,55 @@ public class Slave<T> {
         new SystemClock());
   }
 
+  /**
+   * Creates slave unit talking to the binary server of the master (see
+   * {@link engine.distribution.master.MasterSlaveEvaluator#startBinaryServer})
+   * instead of its servlets.
+   * @param evaluator Population evaluator to use.
+   * @param slaveName Name of this slave unit.
+   * @param host Host of the master unit.
+   * @param port Port of the binary server of the master unit.
+   * @param heartbeatMillis Milliseconds between heartbeats sent while
+   * evaluating; non-positive value disables heartbeats.
+   * @param <T> Type of an individual in the population evaluated.
+   * @return Slave unit using the binary protocol.
+   */
+  public static <T> Slave<T> createBinarySlave(
+      final PopulationEvaluator<T> evaluator,
+      final String slaveName,
+      final String host,
+      final int port,
+      final long heartbeatMillis) {
+    BinaryConnection<T> connection = new BinaryConnection<T>(host, port,
+        new JavaIOTaskSerializer<T>(), new JavaIOResultSerializer<T>());
+    return new Slave<T>(
+        host + ":" + port,
+        evaluator,
+        new BinaryTaskExchanger<T>(connection, heartbeatMillis),
+        new BinarySlaveRegistrator(connection),
+        slaveName,
+        new SystemClock());
+  }
+
+  /**
+   * Makes the slave keep the cache of problem data up to date with data
+   * referenced by tasks. Objective functions get the data from the cache.
+   * @param dataCache Cache of problem data.
+   */
+  public void setDataCache(final DataCache dataCache) {
+    exchanger.setDataCache(dataCache);
+  }
+
+  /**
+   * Makes the slave hold given shard of the problem data in data-parallel
+   * evaluation. Objective functions of the slave must then compute partial
+   * values over that shard only. Must be called before the slave runs.
+   * @param shard Index of the shard, from zero.
+   */
+  public void setShard(final int shard) {
+    registrator.setShard(shard);
+  }
+
   /**
    * Setter for slaveId. For testing purposes only!
    * @param slaveId Id of slave to set.
@@ -227,22 +287,29 @@ public class Slave<T> {
     }
 
     int iteration = 0;
+    EvaluationTask<T> nextTask = null;
     while (true) {
       final long startTime = clock.getCurrentTimeMillis();
       try {
         logger.log(Level.INFO, "Starting iteration " + (++iteration));
-        logger.log(Level.INFO, "Retrieving evaluation task from server.");
-        EvaluationTask<T> evaluationTask = exchanger.getTask(slaveId, backoff);
-        logger.log(Level.FINEST, "Task retrieved (: "
-            + evaluationTask.size() + ") : \n" + evaluationTask.toString());
+        EvaluationTask<T> evaluationTask = nextTask;
+        nextTask = null;
+        if (evaluationTask == null) {
+          logger.log(Level.INFO, "Retrieving evaluation task from server.");
+          evaluationTask = exchanger.getTask(slaveId, backoff);
+        }
+        if (logger.isLoggable(Level.FINEST)) {
+          logger.log(Level.FINEST, "Task retrieved (: "
+              + evaluationTask.size() + ") : \n" + evaluationTask.toString());
+        }
 
         logger.log(Level.INFO, "Starting task evaluation.");
         evaluator.evaluatePopulation(evaluationTask.getPopulation());
         logger.log(Level.INFO, "Task evaluated.");
 
         logger.log(Level.INFO, "Sending evaluation result to server.");
-        exchanger.sendResult(createEvaluationResult(
-            evaluationTask.getPopulation()), slaveId);
+        nextTask = exchanger.sendResultAndGetTask(createEvaluationResult(
+            evaluationTask.getPopulation()), slaveId, evaluationTask.getId());
         logger.log(Level.INFO, "Evaluation result sent to server.");
 
       } catch (IOException exception) {
@@ -256,53 +323,196 @@ public class Slave<T> {
   }
 
   /**
-   * Creates an evaluation result from the data in the evaluator.
-   * @param currentPopulation Population limiting the evaluation result size.
-   * @return Evaluation result.
+   * Runs the slave main routine, fetching tasks ahead and sending results
+   * in the background, so that evaluation does not wait for communication.
+   * Slave must be registered before this method is called. The slave asks
+   * the master to let it hold tasksAhead + 1 tasks; a task the slave already
+   * holds, sent again by a master limiting the number of tasks per slave,
+   * is skipped rather than evaluated twice.
+   * @param backoff Number of milliseconds for slave to seize asking master
+   * for population after a single rejection.
+   * @param timeout Timeout (in seconds).
+   * @param tasksAhead Number of tasks fetched ahead of the evaluated one.
+   * @throws ClassNotFoundException Thrown when definition for classes sent
+   * by master are missing.
    */
-  private EvaluationResult<T> createEvaluationResult(
-      final Population<T> currentPopulation) { 
-    EvaluationResultBuilder<T> evaluationResultBuilder =
-        new EvaluationResultBuilder<T>();
-    for (CachedObjectiveFunction<T> objectiveFunction 
-        : evaluator.getObjectiveFunctions()) {
-      logger.log(Level.INFO, "Storing evaluation results in local cache");
-      logger.log(Level.FINEST, "Local cache content ("
-          + objectiveFunction.getCache().size() + "): "
-          + objectiveFunction.getCache().toString());
-
-      evaluationResultBuilder.appendObjectiveFunctionResults(cropCache(
-          objectiveFunction.getCache(), currentPopulation));
+  public void run(final int backoff, final int timeout, final int tasksAhead)
+      throws ClassNotFoundException {
+
+    if (slaveId == null) {
+        throw new IllegalStateException("Must be registered first");
+    }
+    if (tasksAhead <= 0) {
+      throw new IllegalArgumentException("Number of tasks fetched ahead "
+          + "must be positive.");
     }
 
-    EvaluationResult<T> evaluationResult =
-        evaluationResultBuilder.toEvaluationResult();
+    final BlockingQueue<EvaluationTask<T>> fetchedTasks =
+        new LinkedBlockingQueue<EvaluationTask<T>>();
+    final Set<Long> heldTasks = Collections.synchronizedSet(
+        new HashSet<Long>());
+    final Semaphore freeSlots = new Semaphore(tasksAhead);
+    exchanger.setTasksHeld(tasksAhead + 1);
+    final AtomicReference<Exception> failure =
+        new AtomicReference<Exception>();
+    final ExecutorService sender = Executors.newSingleThreadExecutor();
+    final Thread fetcher = new Thread(new Runnable() {
+      public void run() {
+        fetchTasks(fetchedTasks, heldTasks, freeSlots, failure, backoff,
+            timeout);
+      }
+    }, "wevo-task-fetcher");
+    fetcher.setDaemon(true);
+    fetcher.start();
 
-    logger.log(Level.FINEST, "Evaluation result ("
-        + evaluationResult.size() + "): \n"
-        + evaluationResult.toString());
+    try {
+      while (true) {
+        final EvaluationTask<T> evaluationTask =
+            fetchedTasks.poll(Math.max(backoff, 1), TimeUnit.MILLISECONDS);
+        if (evaluationTask == null) {
+          rethrow(failure.get());
+          continue;
+        }
+        freeSlots.release();
+
+        logger.log(Level.INFO, "Starting evaluation of task "
+            + evaluationTask.getId());
+        evaluator.evaluatePopulation(evaluationTask.getPopulation());
+        final EvaluationResult<T> result =
+            createEvaluationResult(evaluationTask.getPopulation());
+        sender.execute(new Runnable() {
+          public void run() {
+            try {
+              exchanger.sendResult(result, slaveId, evaluationTask.getId());
+              logger.log(Level.INFO, "Evaluation result of task "
+                  + evaluationTask.getId() + " sent to server.");
+            } catch (IOException exception) {
+              // The master gives the task to another slave.
+              logger.log(Level.SEVERE, "Failed to send result of task "
+                  + evaluationTask.getId(), exception);
+            } finally {
+              heldTasks.remove(evaluationTask.getId());
+            }
+          }
+        });
+      }
+    } catch (InterruptedException exception) {
+      logger.log(Level.WARNING, "Slave was interrupted.", exception);
+    } finally {
+      fetcher.interrupt();
+      sender.shutdown();
+      awaitSending(sender);
+    }
+  }
 
-    return evaluationResult;
+  /**
+   * Fetches tasks from the master whenever there is a free slot, until
+   * interrupted or failed. Tasks already held are skipped.
+   * @param fetchedTasks Queue to put fetched tasks to.
+   * @param heldTasks Identifiers of tasks fetched and not sent back yet.
+   * @param freeSlots Number of tasks that may be fetched.
+   * @param failure Holder of the failure stopping the fetching.
+   * @param backoff Number of milliseconds for slave to seize asking master
+   * for population after a single rejection.
+   * @param timeout Timeout (in seconds).
+   */
+  private void fetchTasks(
+      final BlockingQueue<EvaluationTask<T>> fetchedTasks,
+      final Set<Long> heldTasks,
+      final Semaphore freeSlots,
+      final AtomicReference<Exception> failure,
+      final int backoff,
+      final int timeout) {
+    try {
+      freeSlots.acquire();
+      long startTime = clock.getCurrentTimeMillis();
+      while (true) {
+        try {
+          final EvaluationTask<T> task = exchanger.getTask(slaveId, backoff);
+          startTime = clock.getCurrentTimeMillis();
+          if (task.getId() != EvaluationTask.NO_ID
+              && !heldTasks.add(task.getId())) {
+            logger.log(Level.FINE, "Skipping task " + task.getId()
+                + " already held");
+            // Regexp off
+            Thread.sleep(backoff);
+            // Regexp on
+            continue;
+          }
+          fetchedTasks.put(task);
+          freeSlots.acquire();
+        } catch (IOException exception) {
+          logException(exception, backoff);
+          maybeTimeout(timeout, startTime);
+        }
+      }
+    } catch (InterruptedException exception) {
+      logger.log(Level.FINE, "Task fetching interrupted.");
+    } catch (ClassNotFoundException exception) {
+      failure.set(exception);
+    } catch (RuntimeException exception) {
+      failure.set(exception);
+    }
+  }
+
+  /**
+   * Waits for results being sent.
+   * @param sender Executor sending results, already shut down.
+   */
+  private void awaitSending(final ExecutorService sender) {
+    try {
+      if (!sender.awaitTermination(SENDING_TIMEOUT, TimeUnit.SECONDS)) {
+        logger.log(Level.WARNING, "Some results were not sent to server.");
+      }
+    } catch (InterruptedException exception) {
+      logger.log(Level.WARNING, "Slave was interrupted.", exception);
+    }
   }
 
   /**
-   * Returns copy of the given cache, cropped to given set of individuals.
-   * @param cache Cache to be cropped.
-   * @param currentPopulation Set of individuals to retain in the cache.
-   * @return Copy of the given cache cropped to the given set of individuals.
+   * Rethrows the failure of the task fetching, if any.
+   * @param failure Failure or null.
+   * @throws ClassNotFoundException Thrown when task classes are missing.
    */
-  private Map<T, Double> cropCache(final Map<T, Double> cache,
-      final Population<T> currentPopulation) {
-    LinkedHashMap<T, Double> croppedCache =
-        new LinkedHashMap<T, Double>();
-    for (T individual : currentPopulation.getIndividuals()) {
-      if (!cache.containsKey(individual)) {
-        throw new IllegalStateException("Ouch! Missing " + individual
-            + "in cache");
+  private void rethrow(final Exception failure)
+      throws ClassNotFoundException {
+    if (failure instanceof ClassNotFoundException) {
+      throw (ClassNotFoundException) failure;
+    }
+    if (failure != null) {
+      throw (RuntimeException) failure;
+    }
+  }
+
+  /**
+   * Creates an evaluation result from the data in the evaluator. Values are
+   * aligned to the order of individuals in the task.
+   * @param currentPopulation Population limiting the evaluation result size.
+   * @return Evaluation result.
+   */
+  private EvaluationResult<T> createEvaluationResult(
+      final Population<T> currentPopulation) { 
+    final List<CachedObjectiveFunction<T>> functions =
+        evaluator.getObjectiveFunctions();
+    final List<T> individuals = currentPopulation.getIndividuals();
+    final double[] values = new double[individuals.size() * functions.size()];
+    int position = 0;
+    for (T individual : individuals) {
+      for (CachedObjectiveFunction<T> function : functions) {
+        values[position++] = function.compute(individual);
       }
-      croppedCache.put(individual, cache.get(individual));
     }
-    return croppedCache;
+
+    EvaluationResult<T> evaluationResult =
+        new EvaluationResult<T>(individuals.size(), values);
+
+    if (logger.isLoggable(Level.FINEST)) {
+      logger.log(Level.FINEST, "Evaluation result ("
+          + evaluationResult.size() + "): \n"
+          + evaluationResult.toString());
+    }
+
+    return evaluationResult;
   }
 
   /**
@@ -22,9 +22,12 @@ package engine.distribution.slave;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.List;
 
 import engine.distribution.master.MasterSlaveEvaluator;
 import engine.distribution.master.servlets.DistributionServlet;
+import engine.distribution.serialization.Compression;
 import engine.distribution.utils.WevoURL;
 
 /**
@@ -35,26 +38,73 @@ import engine.distribution.utils.WevoURL;
  */
 public class SlaveRegistrator {
 
+  /** Compressions accepted by default, in order of preference. */
+  public static final List<Compression> DEFAULT_COMPRESSIONS =
+      Arrays.asList(Compression.LZF, Compression.DEFLATE);
+
   /** URL address of the registration servlet. */
   private final WevoURL registrationUrl;
 
+  /** Compressions accepted by the slave, in order of preference. */
+  private final List<Compression> compressions;
+
+  /** Shard of the problem data held by the slave; negative if none. */
+  private int shard = -1;
+
   /**
    * Main TaskExchanger constructor. Package visibility
    * for testing purposes only.
    * @param registrationUrl Registration URL.
+   * @param compressions Compressions accepted by the slave.
    */
-  SlaveRegistrator(final WevoURL registrationUrl) {
+  SlaveRegistrator(final WevoURL registrationUrl,
+      final List<Compression> compressions) {
     this.registrationUrl = registrationUrl;
+    this.compressions = compressions;
   }
 
   /**
    * Connector constructor for public use.
    * @param serverUrl URL address of the master. Must not be null.
+   * @param compressions Compressions accepted by the slave, in order of
+   * preference. Empty list disables compression.
+   * @throws MalformedURLException Thrown when unable to create necessary URLs.
+   */
+  public SlaveRegistrator(final String serverUrl,
+      final List<Compression> compressions) throws MalformedURLException {
+    this(new WevoURL(serverUrl + MasterSlaveEvaluator.REGISTER_ADDRESS),
+        compressions);
+  }
+
+  /**
+   * Connector constructor for public use, accepting default compressions.
+   * @param serverUrl URL address of the master. Must not be null.
    * @throws MalformedURLException Thrown when unable to create necessary URLs.
    */
   public SlaveRegistrator(final String serverUrl)
       throws MalformedURLException {
-    this(new WevoURL(serverUrl + MasterSlaveEvaluator.REGISTER_ADDRESS));
+    this(serverUrl, DEFAULT_COMPRESSIONS);
+  }
+
+  /**
+   * Sets the shard of the problem data held by the slave, announced to
+   * the master on registration.
+   * @param newShard Index of the shard, from zero.
+   */
+  public void setShard(final int newShard) {
+    if (newShard < 0) {
+      throw new IllegalArgumentException("Shard must not be negative.");
+    }
+    this.shard = newShard;
+  }
+
+  /**
+   * Gets the shard of the problem data held by the slave. Package
+   * visibility for registrators using other transports.
+   * @return Index of the shard or a negative value if none.
+   */
+  int getShard() {
+    return shard;
   }
 
   /**
@@ -80,6 +130,14 @@ public class SlaveRegistrator {
     connection.setRequestProperty(
         DistributionServlet.SLAVE_ID_PROPERTY,
         slaveName);
+    connection.setRequestProperty(
+        DistributionServlet.ACCEPTED_COMPRESSIONS_PROPERTY,
+        Compression.format(compressions));
+    if (shard >= 0) {
+      connection.setRequestProperty(
+          DistributionServlet.SHARD_PROPERTY,
+          Integer.toString(shard));
+    }
 
     connection.connect();
     connection.getResponseMessage();
@@ -87,7 +145,7 @@ public class SlaveRegistrator {
     String slaveId = connection.getHeaderField(
         DistributionServlet.SLAVE_ID_PROPERTY);
 
-    connection.disconnect();
+    registrationUrl.release(connection);
 
     return slaveId;
   }
@@ -19,7 +19,10 @@
  */
 package engine.distribution.slave;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -27,11 +30,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import engine.distribution.master.MasterSlaveEvaluator;
+import engine.distribution.master.servlets.DataServlet;
 import engine.distribution.master.servlets.DistributionServlet;
+import engine.distribution.serialization.Compression;
 import engine.distribution.serialization.EvaluationResult;
 import engine.distribution.serialization.EvaluationTask;
 import engine.distribution.serialization.ResultSerializer;
 import engine.distribution.serialization.TaskSerializer;
+import engine.distribution.utils.ProblemData;
 import engine.distribution.utils.WevoURL;
 
 /**
@@ -43,6 +49,9 @@ import engine.distribution.utils.WevoURL;
  */
 public class TaskExchanger<T> {
 
+  /** Length of chunks in which results are streamed to the master. */
+  private static final int CHUNK_LENGTH = 8192;
+
   /** Logging utility. */
   private final Logger logger = Logger.getLogger(
       TaskExchanger.class.getCanonicalName());
@@ -56,6 +65,27 @@ public class TaskExchanger<T> {
   /** Utility used for serialization of the evaluation result. */
   private ResultSerializer<T> resultSerializer;
 
+  /**
+   * Compression of the last task retrieved from the master, used for
+   * results as well, as the master compresses only for slow links.
+   */
+  private volatile Compression compression = Compression.NONE;
+
+  /**
+   * Size and duration of the transfer of the last task, reported to the
+   * master with the next request. Null when already reported.
+   */
+  private volatile String transfer;
+
+  /**
+   * Number of tasks the slave asks the master to let it hold at once.
+   * Default: 0, leaving it to the master.
+   */
+  private int tasksHeld;
+
+  /** Cache of problem data referenced by tasks. Default: none. */
+  private DataCache dataCache;
+
   /**
    * Main TaskExchanger constructor. Package visibility
    * for testing purposes only.
@@ -87,11 +117,30 @@ public class TaskExchanger<T> {
         new WevoURL(serverUrl + MasterSlaveEvaluator.EXCHANGE_ADDRESS));
   }
 
+  /**
+   * Sets cache to be updated with references to problem data sent
+   * with tasks.
+   * @param cache Cache of problem data.
+   */
+  public void setDataCache(final DataCache cache) {
+    this.dataCache = cache;
+  }
+
+  /**
+   * Sets the number of tasks the slave asks the master to let it hold at
+   * once, when fetching tasks ahead.
+   * @param tasks Number of tasks held by the slave.
+   */
+  public void setTasksHeld(final int tasks) {
+    this.tasksHeld = tasks;
+  }
+
   /**
    * Retrieves population to evaluate from the master.
    * @param slaveId ID of the slave to get population for.
    * @param backoffMillis Milliseconds the slave should seize
-   * to ask for population (to avoid server flooding).
+   * to ask for population (to avoid server flooding). Not used when
+   * the server holds requests until a task is available.
    * @return Population retrieved from the server. Never null.
    * @throws IOException Thrown on deserialization or connection issues.
    * @throws ClassNotFoundException Thrown when definition for object found
@@ -118,6 +167,12 @@ public class TaskExchanger<T> {
       connection.setRequestProperty(
           DistributionServlet.SLAVE_ID_PROPERTY,
           slaveId);
+      if (tasksHeld > 0) {
+        connection.setRequestProperty(
+            DistributionServlet.TASKS_HELD_PROPERTY,
+            String.valueOf(tasksHeld));
+      }
+      reportTransfer(connection);
 
       connection.connect();
 
@@ -129,14 +184,18 @@ public class TaskExchanger<T> {
           break;
 
         case HttpURLConnection.HTTP_NO_CONTENT:
-          waitForTask(backoffMillis);
+          // Server that held the request already waited for a task.
+          if (connection.getHeaderField(
+              DistributionServlet.LONG_POLL_PROPERTY) == null) {
+            waitForTask(backoffMillis);
+          }
           break;
 
         default:
           stopTrying(connection);
       }
 
-      connection.disconnect();
+      exchangeUrl.release(connection);
       logger.log(Level.FINE, "Population retrieved successfully.");
     }
 
@@ -162,9 +221,10 @@ public class TaskExchanger<T> {
 
   /**
    * Stops trying to retrieve population from master for a while.
+   * Package visibility for exchangers using other transports.
    * @param backoffMillis Number of milliseconds to wait.
    */
-  private void waitForTask(int backoffMillis) {
+  void waitForTask(int backoffMillis) {
     logger.log(Level.INFO, "Request accepted, no population available. "
         + "Sleeping...");
 
@@ -195,14 +255,65 @@ public class TaskExchanger<T> {
 
     logger.log(Level.FINE, "Request accepted, deserializing population");
 
+    compression = Compression.forName(connection.getHeaderField(
+        DistributionServlet.COMPRESSION_PROPERTY));
+    // Response headers are already read, so only the payload is timed.
+    final long start = System.nanoTime();
+    final byte[] payload = readPayload(connection.getInputStream());
+    transfer = payload.length + DistributionServlet.TRANSFER_SEPARATOR
+        + (System.nanoTime() - start);
     evaluationTask = taskSerializer.deserialize(
-        connection.getInputStream());
+        compression.decompress(new ByteArrayInputStream(payload)));
+
+    final String taskId = connection.getHeaderField(
+        DistributionServlet.TASK_ID_PROPERTY);
+    if (taskId != null && Long.parseLong(taskId) != evaluationTask.getId()) {
+      evaluationTask = new EvaluationTask<T>(
+          evaluationTask.getPopulation(), Long.parseLong(taskId));
+    }
+
+    if (dataCache != null) {
+      dataCache.updateReferences(ProblemData.parseReferences(
+          connection.getHeaderField(DataServlet.DATA_REFERENCES_PROPERTY)));
+    }
 
     logger.log(Level.FINER, "Population deserialized.");
 
     return evaluationTask;
   }
 
+  /**
+   * Reads the payload to the end, leaving the stream open, so that the
+   * connection may be reused.
+   * @param input Stream to read.
+   * @return Bytes read.
+   * @throws IOException Thrown on read errors.
+   */
+  private static byte[] readPayload(final InputStream input)
+      throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[CHUNK_LENGTH];
+    int read;
+    while ((read = input.read(buffer)) >= 0) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Reports the measurement of the last task transfer to the master in
+   * the request, unless it was reported already.
+   * @param connection Connection with the request to send.
+   */
+  private void reportTransfer(final HttpURLConnection connection) {
+    final String measurement = transfer;
+    if (measurement != null) {
+      transfer = null;
+      connection.setRequestProperty(
+          DistributionServlet.TRANSFER_PROPERTY, measurement);
+    }
+  }
+
   /**
    * Sends population to the server.
    * @param result Result to be sent to the server.
@@ -212,31 +323,112 @@ public class TaskExchanger<T> {
   public void sendResult(
       final EvaluationResult<T> result,
       final String slaveId) throws IOException {
+    sendResult(result, slaveId, EvaluationTask.NO_ID);
+  }
+
+  /**
+   * Sends population to the server.
+   * @param result Result to be sent to the server.
+   * @param slaveId ID of the slave sending population.
+   * @param taskId Identifier of the evaluated task.
+   * @throws IOException Thrown on connection issues.
+   */
+  public void sendResult(
+      final EvaluationResult<T> result,
+      final String slaveId,
+      final long taskId) throws IOException {
 
     logger.log(Level.INFO, "Sending evaluation result to the master");
 
-    HttpURLConnection connection =
-        (HttpURLConnection) exchangeUrl.openConnection();
+    HttpURLConnection connection = postResult(result, slaveId, taskId, false);
+    connection.getResponseMessage();
+
+    logger.log(Level.FINEST, "Response ("
+        + connection.getResponseCode() + "): "
+        + connection.getResponseMessage());
+    exchangeUrl.release(connection);
+    logger.log(Level.INFO, "Evaluation result sent to the master");
+  }
+
+  /**
+   * Sends population to the server and retrieves the next task in the same
+   * round trip, if the master has one available.
+   * @param result Result to be sent to the server.
+   * @param slaveId ID of the slave sending population.
+   * @param taskId Identifier of the evaluated task.
+   * @return Next task to evaluate or null if none is available at once.
+   * @throws IOException Thrown on connection issues.
+   * @throws ClassNotFoundException Thrown when definition for object found
+   * in the stream does not exist.
+   */
+  public EvaluationTask<T> sendResultAndGetTask(
+      final EvaluationResult<T> result,
+      final String slaveId,
+      final long taskId) throws IOException, ClassNotFoundException {
+
+    logger.log(Level.INFO, "Sending evaluation result to the master "
+        + "and asking for the next task");
+
+    HttpURLConnection connection = postResult(result, slaveId, taskId, true);
+    EvaluationTask<T> nextTask = null;
+    if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+      nextTask = retrieveTask(connection);
+    }
+    exchangeUrl.release(connection);
+
+    logger.log(Level.INFO, "Evaluation result sent to the master, "
+        + (nextTask == null ? "no task" : "task") + " received");
+    return nextTask;
+  }
+
+  /**
+   * Posts the result to the server, streaming it in chunks.
+   * @param result Result to be sent to the server.
+   * @param slaveId ID of the slave sending population.
+   * @param taskId Identifier of the evaluated task.
+   * @param askForTask Whether to ask for the next task in the response.
+   * @return Connection with the request sent.
+   * @throws IOException Thrown on connection issues.
+   */
+  private HttpURLConnection postResult(
+      final EvaluationResult<T> result,
+      final String slaveId,
+      final long taskId,
+      final boolean askForTask) throws IOException {
+
+    HttpURLConnection connection = exchangeUrl.openConnection();
 
     connection.setDoOutput(true);
     connection.setUseCaches(false);
     connection.setRequestMethod("POST");
+    connection.setChunkedStreamingMode(CHUNK_LENGTH);
     connection.setRequestProperty("Content-Type",
         "application/octet-stream");
     connection.setRequestProperty(
         DistributionServlet.SLAVE_ID_PROPERTY,
         slaveId);
+    if (taskId != EvaluationTask.NO_ID) {
+      connection.setRequestProperty(
+          DistributionServlet.TASK_ID_PROPERTY,
+          String.valueOf(taskId));
+    }
+    if (askForTask) {
+      connection.setRequestProperty(
+          DistributionServlet.NEXT_TASK_PROPERTY,
+          Boolean.TRUE.toString());
+    }
+    reportTransfer(connection);
+    final Compression resultCompression = compression;
+    if (resultCompression != Compression.NONE) {
+      connection.setRequestProperty(
+          DistributionServlet.COMPRESSION_PROPERTY,
+          resultCompression.getName());
+    }
 
     connection.connect();
 
-    resultSerializer.serialize(connection.getOutputStream(), result);
-
-    connection.getResponseMessage();
-    connection.disconnect();
-
-    logger.log(Level.FINEST, "Response (" 
-        + connection.getResponseCode() + "): " 
-        + connection.getResponseMessage());
-    logger.log(Level.INFO, "Evaluation result sent to the master");
+    resultSerializer.serialize(
+        resultCompression.compress(connection.getOutputStream()), result);
+    return connection;
   }
 }
@@ -0,0 +1,154 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed binary protocol between the master and slaves, used as
+ * an alternative to the HTTP servlets. Each frame consists of the length of
+ * the payload (four bytes), the type of the frame (one byte) and the payload.
+ * Strings in payloads are written with {@link DataOutputStream#writeUTF};
+ * tasks and results are written by the serializers at the end of payloads.
+ * Every request frame of a slave is answered by exactly one reply frame.
+ * <ul>
+ * <li>{@link #REGISTER}: slave name, shard (-1 if none); answered with
+ * {@link #REGISTERED} holding the slave ID.</li>
+ * <li>{@link #GET_TASK}: slave ID; answered with {@link #TASK} or
+ * {@link #NO_TASK}.</li>
+ * <li>{@link #SEND_RESULT}: slave ID, task ID, whether the next task is
+ * wanted, result; answered with {@link #TASK}, {@link #NO_TASK} or
+ * {@link #ACCEPTED}.</li>
+ * <li>{@link #HEARTBEAT}: slave ID; answered with {@link #ACCEPTED}.</li>
+ * </ul>
+ * {@link #TASK} holds the task ID, references to problem data (see
+ * {@link ProblemData#formatReferences}) and the task. Any request may be
+ * answered with {@link #ERROR} holding the message.
+ */
+public final class BinaryProtocol {
+
+  /** Request registering the slave. */
+  public static final byte REGISTER = 1;
+
+  /** Request for a task. */
+  public static final byte GET_TASK = 2;
+
+  /** Request sending the result of a task. */
+  public static final byte SEND_RESULT = 3;
+
+  /** Request reporting that the slave is alive. */
+  public static final byte HEARTBEAT = 4;
+
+  /** Reply holding ID assigned to the registered slave. */
+  public static final byte REGISTERED = 16;
+
+  /** Reply holding a task. */
+  public static final byte TASK = 17;
+
+  /** Reply indicating that no task is available. */
+  public static final byte NO_TASK = 18;
+
+  /** Reply acknowledging the request. */
+  public static final byte ACCEPTED = 19;
+
+  /** Reply indicating failure of the request. */
+  public static final byte ERROR = 20;
+
+  /** Length of the frame header. */
+  public static final int HEADER_LENGTH = 5;
+
+  /** Maximum length of a payload. */
+  public static final int MAX_PAYLOAD_LENGTH = 256 * 1024 * 1024;
+
+  /** Utility class. */
+  private BinaryProtocol() {
+  }
+
+  /**
+   * Creates the header of a frame, ready to be written.
+   * @param type Type of the frame.
+   * @param payloadLength Length of the payload.
+   * @return Header of the frame.
+   */
+  public static ByteBuffer encodeHeader(final byte type,
+      final int payloadLength) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    header.putInt(payloadLength);
+    header.put(type);
+    header.flip();
+    return header;
+  }
+
+  /**
+   * Creates a frame, ready to be written.
+   * @param type Type of the frame.
+   * @param payload Payload of the frame.
+   * @return Frame holding the payload.
+   */
+  public static ByteBuffer encodeFrame(final byte type, final byte[] payload) {
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+    frame.putInt(payload.length);
+    frame.put(type);
+    frame.put(payload);
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Creates a frame holding a single string.
+   * @param type Type of the frame.
+   * @param value String to hold.
+   * @return Frame holding the string.
+   * @throws IOException Thrown when the string is too long.
+   */
+  public static ByteBuffer encodeFrame(final byte type, final String value)
+      throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    new DataOutputStream(payload).writeUTF(value);
+    return encodeFrame(type, payload.toByteArray());
+  }
+
+  /**
+   * Gets the length of the payload from a complete frame header.
+   * @param header Header of the frame, positioned at its start.
+   * @return Length of the payload.
+   * @throws IOException Thrown when the length is invalid.
+   */
+  public static int decodePayloadLength(final ByteBuffer header)
+      throws IOException {
+    final int length = header.getInt(header.position());
+    if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+      throw new IOException("Invalid frame length " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Gets the type of the frame from a complete frame header.
+   * @param header Header of the frame, positioned at its start.
+   * @return Type of the frame.
+   */
+  public static byte decodeType(final ByteBuffer header) {
+    return header.get(header.position() + HEADER_LENGTH - 1);
+  }
+}
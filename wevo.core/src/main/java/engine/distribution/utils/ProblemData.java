@@ -0,0 +1,118 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Utilities for problem data, i.e. static data of objective functions
+ * published by the master and identified by hashes of their content.
+ */
+public final class ProblemData {
+
+  /** Algorithm of the content hash. */
+  private static final String HASH_ALGORITHM = "SHA-1";
+
+  /** Hexadecimal digits. */
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Bits in a hexadecimal digit. */
+  private static final int DIGIT_BITS = 4;
+
+  /** Mask of a hexadecimal digit. */
+  private static final int DIGIT_MASK = 0xf;
+
+  /** Utility class. */
+  private ProblemData() {
+  }
+
+  /**
+   * Computes hash of the content of problem data.
+   * @param data Content of problem data.
+   * @return Hexadecimal hash of the content.
+   */
+  public static String hash(final byte[] data) {
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(HASH_ALGORITHM + " is not supported.");
+    }
+
+    final StringBuilder builder = new StringBuilder(2 * digest.length);
+    for (byte b : digest) {
+      builder.append(DIGITS[(b >> DIGIT_BITS) & DIGIT_MASK]);
+      builder.append(DIGITS[b & DIGIT_MASK]);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Checks if the name can be used for problem data.
+   * @param name Name to check.
+   * @return True if the name is not empty and contains no separators.
+   */
+  public static boolean isValidName(final String name) {
+    return name != null && name.length() > 0
+        && name.indexOf(',') < 0 && name.indexOf('=') < 0;
+  }
+
+  /**
+   * Formats references to problem data as a header value.
+   * @param references Map from names of problem data to their hashes.
+   * @return Comma separated list of name=hash pairs.
+   */
+  public static String formatReferences(final Map<String, String> references) {
+    final StringBuilder builder = new StringBuilder();
+    for (Entry<String, String> reference : references.entrySet()) {
+      if (builder.length() > 0) {
+        builder.append(',');
+      }
+      builder.append(reference.getKey()).append('=')
+          .append(reference.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Parses references to problem data formatted by
+   * {@link #formatReferences(Map)}. Malformed pairs are skipped.
+   * @param header Header value, possibly null.
+   * @return Map from names of problem data to their hashes.
+   */
+  public static Map<String, String> parseReferences(final String header) {
+    final Map<String, String> references = new LinkedHashMap<String, String>();
+    if (header == null) {
+      return references;
+    }
+    for (String pair : header.split(",")) {
+      final int separator = pair.indexOf('=');
+      if (separator > 0 && separator < pair.length() - 1) {
+        references.put(pair.substring(0, separator).trim(),
+            pair.substring(separator + 1).trim());
+      }
+    }
+    return references;
+  }
+}
@@ -0,0 +1,449 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import sun.misc.Unsafe;
+
+/**
+ * Channel between a slave and the master on the same host over a memory
+ * mapped file, carrying the frames of {@link BinaryProtocol} without
+ * sockets. The file, created by the slave in the directory of the master
+ * (see {@link #getDirectory}), holds two ring buffers: one from the slave
+ * to the master and one back. Each ring has a single writer and a single
+ * reader, which exchange counters of written and read bytes. Data is
+ * accessed plainly, while the counters and the closing flag are stored and
+ * loaded with volatile accesses of {@link Unsafe}: a store of a counter
+ * releases the data accessed before it and a load acquires the data
+ * accessed after it, on any processor. Channels are unavailable when
+ * {@link Unsafe} is not (see {@link #isSupported}).
+ *
+ * In non-blocking mode reads and writes transfer whatever fits and return
+ * at once. In blocking mode they wait, spinning briefly and then parking,
+ * until at least one byte is transferred.
+ */
+public class SharedMemoryChannel implements ByteChannel {
+
+  /** System property overriding the directory of shared memory files. */
+  public static final String DIRECTORY_PROPERTY = "wevo.shm.directory";
+
+  /** Default directory of shared memory files. */
+  public static final String DEFAULT_DIRECTORY = "/dev/shm";
+
+  /** Suffix of files of channels ready to be opened by the master. */
+  public static final String SUFFIX = ".ring";
+
+  /** Default capacity of each ring in bytes. */
+  public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+  /** Distance between counters, keeping them in separate cache lines. */
+  private static final int COUNTER_SPACING = 64;
+
+  /** Length of the control block of a ring. */
+  private static final int CONTROL_LENGTH = 3 * COUNTER_SPACING;
+
+  /** Number of idle iterations spent spinning before parking. */
+  private static final int SPINS = 1000;
+
+  /** Nanoseconds to park when idle for long. */
+  private static final long PARK_NANOS = 50000;
+
+  /** Idle iterations between checks whether the file still exists. */
+  private static final int EXISTENCE_CHECK = 16 * 1024;
+
+  /** Access to the mapping; null if unavailable. */
+  private static final Unsafe UNSAFE;
+
+  /** Offset of the address of direct buffers in {@link Buffer}. */
+  private static final long ADDRESS_OFFSET;
+
+  static {
+    Unsafe unsafe = null;
+    long addressOffset = -1;
+    try {
+      final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = (Unsafe) field.get(null);
+      addressOffset = unsafe.objectFieldOffset(
+          Buffer.class.getDeclaredField("address"));
+    } catch (Exception e) {
+      unsafe = null;
+    }
+    UNSAFE = unsafe;
+    ADDRESS_OFFSET = addressOffset;
+  }
+
+  /** File of the channel. */
+  private final File file;
+
+  /** Ring this side reads from. */
+  private final Ring input;
+
+  /** Ring this side writes to. */
+  private final Ring output;
+
+  /** Whether reads and writes wait until something is transferred. */
+  private volatile boolean blocking;
+
+  /** Whether the channel is open. */
+  private volatile boolean open = true;
+
+  /**
+   * Constructor.
+   * @param file File of the channel.
+   * @param buffer Mapping of the whole file.
+   * @param capacity Capacity of each ring.
+   * @param master Whether this is the master side of the channel.
+   */
+  private SharedMemoryChannel(final File file, final MappedByteBuffer buffer,
+      final int capacity, final boolean master) {
+    this.file = file;
+    final Ring toMaster = new Ring(buffer, 0, capacity);
+    final Ring toSlave = new Ring(buffer, CONTROL_LENGTH + capacity, capacity);
+    this.input = master ? toMaster : toSlave;
+    this.output = master ? toSlave : toMaster;
+  }
+
+  /**
+   * Gets the directory in which slaves create channels to the master
+   * listening on the given port. The directory exists only while
+   * the master accepts such channels.
+   * @param port Port of the binary server of the master.
+   * @return Directory of the channels.
+   */
+  public static File getDirectory(final int port) {
+    return new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY),
+        "wevo-" + port);
+  }
+
+  /**
+   * Indicates whether the virtual machine supports the channels.
+   * @return True iff channels may be created and opened.
+   */
+  public static boolean isSupported() {
+    return UNSAFE != null;
+  }
+
+  /**
+   * Creates a new channel in the directory of the master. Used by slaves.
+   * @param directory Directory of the master.
+   * @param capacity Capacity of each ring in bytes.
+   * @return Slave side of the channel.
+   * @throws IOException Thrown when unable to create the file.
+   */
+  public static SharedMemoryChannel create(final File directory,
+      final int capacity) throws IOException {
+    ensureSupported();
+    final File temporary = File.createTempFile("slave", ".tmp", directory);
+    final MappedByteBuffer buffer =
+        map(temporary, 2 * (CONTROL_LENGTH + capacity));
+    final File file = new File(directory, temporary.getName().replace(
+        ".tmp", SUFFIX));
+    // The master opens only files of initialized channels.
+    if (!temporary.renameTo(file)) {
+      temporary.delete();
+      throw new IOException("Failed to publish channel " + file);
+    }
+    return new SharedMemoryChannel(file, buffer, capacity, false);
+  }
+
+  /**
+   * Opens a channel created by a slave. Used by the master.
+   * @param file File of the channel.
+   * @return Master side of the channel.
+   * @throws IOException Thrown when unable to map the file.
+   */
+  public static SharedMemoryChannel open(final File file) throws IOException {
+    ensureSupported();
+    final long length = file.length();
+    if (length <= 2 * CONTROL_LENGTH || length % 2 != 0) {
+      throw new IOException("Invalid channel file " + file);
+    }
+    return new SharedMemoryChannel(file, map(file, (int) length),
+        (int) (length / 2 - CONTROL_LENGTH), true);
+  }
+
+  /**
+   * Throws if the channels are not supported.
+   * @throws IOException Thrown when the channels are not supported.
+   */
+  private static void ensureSupported() throws IOException {
+    if (!isSupported()) {
+      throw new IOException("Shared memory channels are not supported");
+    }
+  }
+
+  /**
+   * Maps the file, extending it to the given length.
+   * @param file File to map.
+   * @param length Length of the mapping.
+   * @return Mapping of the file.
+   * @throws IOException Thrown when unable to map the file.
+   */
+  private static MappedByteBuffer map(final File file, final int length)
+      throws IOException {
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      randomAccessFile.setLength(length);
+      return randomAccessFile.getChannel().map(
+          FileChannel.MapMode.READ_WRITE, 0, length);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Waits a while after the given number of idle iterations, spinning at
+   * first and parking later.
+   * @param idleIterations Number of iterations without any progress.
+   */
+  public static void idle(final int idleIterations) {
+    if (idleIterations < SPINS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  /**
+   * Gets the file of the channel.
+   * @return File of the channel.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Sets whether reads and writes wait until something is transferred.
+   * @param newBlocking True for blocking mode.
+   */
+  public void configureBlocking(final boolean newBlocking) {
+    this.blocking = newBlocking;
+  }
+
+  /** {@inheritDoc} */
+  public int read(final ByteBuffer destination) throws IOException {
+    int idleIterations = 0;
+    while (true) {
+      ensureOpen();
+      final int read = input.read(destination);
+      if (read != 0 || !blocking || !destination.hasRemaining()) {
+        return read;
+      }
+      awaitPeer(idleIterations++);
+    }
+  }
+
+  /** {@inheritDoc} */
+  public int write(final ByteBuffer source) throws IOException {
+    int idleIterations = 0;
+    while (true) {
+      ensureOpen();
+      if (input.isClosed()) {
+        throw new ClosedChannelException();
+      }
+      final int written = output.write(source);
+      if (written != 0 || !blocking || !source.hasRemaining()) {
+        return written;
+      }
+      awaitPeer(idleIterations++);
+    }
+  }
+
+  /** {@inheritDoc} */
+  public boolean isOpen() {
+    return open;
+  }
+
+  /** {@inheritDoc} */
+  public void close() {
+    if (open) {
+      open = false;
+      output.close();
+    }
+  }
+
+  /**
+   * Throws if the channel is closed.
+   * @throws ClosedChannelException Thrown when the channel is closed.
+   */
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  /**
+   * Waits for the other side, failing if it removed the file meanwhile.
+   * @param idleIterations Number of iterations without any progress.
+   * @throws IOException Thrown when the file was removed.
+   */
+  private void awaitPeer(final int idleIterations) throws IOException {
+    if (idleIterations % EXISTENCE_CHECK == EXISTENCE_CHECK - 1
+        && !file.exists()) {
+      throw new IOException("Channel " + file + " was removed");
+    }
+    idle(idleIterations);
+  }
+
+  /** Ring buffer with a single writer and a single reader. */
+  private static class Ring {
+
+    /** Address of the counter of written bytes. */
+    private final long writtenAddress;
+
+    /** Address of the counter of read bytes. */
+    private final long readAddress;
+
+    /** Address of the flag set when the writer closes the ring. */
+    private final long closedAddress;
+
+    /** Capacity of the ring. */
+    private final int capacity;
+
+    /** Mapping of the whole file, kept reachable while in use. */
+    private final ByteBuffer mapping;
+
+    /** Mapping of the data. */
+    private final ByteBuffer data;
+
+    /**
+     * Constructor.
+     * @param buffer Mapping of the whole file.
+     * @param offset Offset of the ring in the file.
+     * @param capacity Capacity of the ring.
+     */
+    Ring(final ByteBuffer buffer, final int offset, final int capacity) {
+      final long address = UNSAFE.getLong(buffer, ADDRESS_OFFSET) + offset;
+      this.writtenAddress = address;
+      this.readAddress = address + COUNTER_SPACING;
+      this.closedAddress = address + 2 * COUNTER_SPACING;
+      this.capacity = capacity;
+      this.mapping = buffer;
+      ByteBuffer view = buffer.duplicate();
+      view.position(offset + CONTROL_LENGTH);
+      view.limit(offset + CONTROL_LENGTH + capacity);
+      this.data = view.slice();
+    }
+
+    /**
+     * Writes as many bytes as fit into the ring.
+     * @param source Bytes to write.
+     * @return Number of bytes written.
+     */
+    int write(final ByteBuffer source) {
+      final long written = UNSAFE.getLong(writtenAddress);
+      // The reader is done with the space it freed.
+      final long read = UNSAFE.getLongVolatile(null, readAddress);
+      final int length = Math.min(source.remaining(),
+          capacity - (int) (written - read));
+      copy(source, (int) (written % capacity), length, true);
+      UNSAFE.putLongVolatile(null, writtenAddress, written + length);
+      return length;
+    }
+
+    /**
+     * Reads as many bytes as available in the ring.
+     * @param destination Buffer to read to.
+     * @return Number of bytes read or -1 if the ring is empty and closed.
+     */
+    int read(final ByteBuffer destination) {
+      if (!destination.hasRemaining()) {
+        return 0;
+      }
+      // Flag is read first, so no data written before closing is missed.
+      final boolean closed = isClosed();
+      final long written = UNSAFE.getLongVolatile(null, writtenAddress);
+      final long read = UNSAFE.getLong(readAddress);
+      if (written == read) {
+        return closed ? -1 : 0;
+      }
+      final int length = Math.min(destination.remaining(),
+          (int) (written - read));
+      copy(destination, (int) (read % capacity), length, false);
+      // Data is copied out before the writer may overwrite it.
+      UNSAFE.putLongVolatile(null, readAddress, read + length);
+      return length;
+    }
+
+    /**
+     * Indicates whether the writer closed the ring.
+     * @return True iff the ring is closed.
+     */
+    boolean isClosed() {
+      return UNSAFE.getIntVolatile(null, closedAddress) != 0;
+    }
+
+    /** Closes the ring; the reader gets the remaining data first. */
+    void close() {
+      UNSAFE.putIntVolatile(null, closedAddress, 1);
+    }
+
+    /**
+     * Copies bytes between the buffer and the ring, wrapping around its end.
+     * @param buffer Buffer to copy from or to.
+     * @param position Position in the ring.
+     * @param length Number of bytes to copy.
+     * @param toRing Whether to copy from the buffer to the ring.
+     */
+    private void copy(final ByteBuffer buffer, final int position,
+        final int length, final boolean toRing) {
+      final int first = Math.min(length, capacity - position);
+      copySegment(buffer, position, first, toRing);
+      copySegment(buffer, 0, length - first, toRing);
+    }
+
+    /**
+     * Copies a contiguous segment between the buffer and the ring.
+     * @param buffer Buffer to copy from or to.
+     * @param position Position in the ring.
+     * @param length Number of bytes to copy.
+     * @param toRing Whether to copy from the buffer to the ring.
+     */
+    private void copySegment(final ByteBuffer buffer, final int position,
+        final int length, final boolean toRing) {
+      if (length == 0) {
+        return;
+      }
+      data.limit(position + length);
+      data.position(position);
+      if (toRing) {
+        final int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        data.put(buffer);
+        buffer.limit(limit);
+      } else {
+        buffer.put(data);
+      }
+      data.clear();
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package engine.distribution.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -32,6 +33,9 @@ import java.net.URL;
  */
 public class WevoURL {
 
+  /** Size of the buffer for reading the rest of a response. */
+  private static final int BUFFER_SIZE = 4096;
+
   /** Proxed URL. */
   private final URL proxiedURL;
 
@@ -60,4 +64,33 @@ public class WevoURL {
   public HttpURLConnection openConnection() throws IOException {
     return (HttpURLConnection) proxiedURL.openConnection();
   }
+
+  /**
+   * Releases connection opened with {@link #openConnection()}. Instead of
+   * closing the socket, the rest of the response is read, so that the
+   * persistent connection is kept alive and reused by the next request
+   * to the server.
+   * @param connection Connection to release.
+   */
+  public void release(final HttpURLConnection connection) {
+    InputStream input;
+    try {
+      input = connection.getInputStream();
+    } catch (IOException exception) {
+      input = connection.getErrorStream();
+    }
+    if (input == null) {
+      return;
+    }
+
+    try {
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      while (input.read(buffer) >= 0) {
+        // Skipping the rest of the response.
+      }
+      input.close();
+    } catch (IOException exception) {
+      connection.disconnect();
+    }
+  }
 }
@@ -19,12 +19,16 @@
  */
 package engine.exitcriteria;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
 
 import engine.ObjectiveFunction;
 import engine.Population;
 import engine.TerminationCondition;
+import engine.checkpoint.Checkpointable;
 
 /**
  * Terminates the evolution after for given number of iterations the
@@ -35,12 +39,15 @@ import engine.TerminationCondition;
  * @param <T> Type of the individual for which it is evaluated.
  */
 public class IndividualHasntImproved<T> 
-    implements TerminationCondition<T> {
+    implements TerminationCondition<T>, Checkpointable {
   /** Number of iterations the individual is allowed to not change. */
   private final int maxIter;
 
-  /** Best individual so far. */
-  private T individual;
+  /** Objective function value of the best individual so far. */
+  private double bestValue;
+
+  /** Whether any individual has been seen so far. */
+  private boolean hasBestValue;
 
   /** Number of iterations individual hasn't changed. */
   private int iterationsWithNoChange;
@@ -69,11 +76,12 @@ public class IndividualHasntImproved<T>
               ? 1 : -1;
         }
       });
-    if (individual != null && objFunction.compute(bestIndividual) 
-          <= objFunction.compute(individual)) {
+    final double value = objFunction.compute(bestIndividual);
+    if (hasBestValue && value <= bestValue) {
       iterationsWithNoChange++;
     } else {
-      individual = bestIndividual;
+      bestValue = value;
+      hasBestValue = true;
       iterationsWithNoChange = 0;
     }
     return iterationsWithNoChange > maxIter - 1;
@@ -83,4 +91,18 @@ public class IndividualHasntImproved<T>
   public void reset() {
     iterationsWithNoChange = 0;
   }
+
+  /** {@inheritDoc} */
+  public void writeState(DataOutput output) throws IOException {
+    output.writeBoolean(hasBestValue);
+    output.writeDouble(bestValue);
+    output.writeInt(iterationsWithNoChange);
+  }
+
+  /** {@inheritDoc} */
+  public void readState(DataInput input) throws IOException {
+    hasBestValue = input.readBoolean();
+    bestValue = input.readDouble();
+    iterationsWithNoChange = input.readInt();
+  }
 }
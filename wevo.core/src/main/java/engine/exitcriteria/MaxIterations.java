@@ -19,8 +19,13 @@
  */
 package engine.exitcriteria;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import engine.Population;
 import engine.TerminationCondition;
+import engine.checkpoint.Checkpointable;
 
 /**
  * Terminates the evolution after given number of iterations has passed.
@@ -28,7 +33,8 @@ import engine.TerminationCondition;
  *
  * @param <T> Type of the individual for which it is evaluated.
  */
-public class MaxIterations<T> implements TerminationCondition<T> {
+public class MaxIterations<T>
+    implements TerminationCondition<T>, Checkpointable {
   /** Number of iterations. */
   private final int maxIter;
  
@@ -54,4 +60,14 @@ public class MaxIterations<T> implements TerminationCondition<T> {
   public void reset() {
     this.currentIter = 0;
   }
+
+  /** {@inheritDoc} */
+  public void writeState(DataOutput output) throws IOException {
+    output.writeInt(currentIter);
+  }
+
+  /** {@inheritDoc} */
+  public void readState(DataInput input) throws IOException {
+    currentIter = input.readInt();
+  }
 }
@@ -60,6 +60,14 @@ public class BinaryVector implements Serializable {
     }
   }
 
+  /**
+   * Copying constructor.
+   * @param individual Individual to be copied.
+   */
+  public BinaryVector(BinaryVector individual) {
+    this(individual.bits);
+  }
+
   /**
    * Sets the ith bit in the vector.
    * @param i Which bit to set.
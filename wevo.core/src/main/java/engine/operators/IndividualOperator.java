@@ -0,0 +1,72 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import engine.Operator;
+import engine.Population;
+import engine.StreamingOperator;
+
+/**
+ * Base class of operators transforming each individual independently, e.g.
+ * mutations. Can be used both as a regular and as a streaming operator;
+ * in both cases individuals are transformed in order, so given the same
+ * random number generator the results are the same.
+ * @param <T> Type of the individual.
+ */
+public abstract class IndividualOperator<T>
+    implements Operator<T>, StreamingOperator<T> {
+
+  /** {@inheritDoc} */
+  public Population<T> apply(Population<T> population) {
+    List<T> result = new ArrayList<T>(population.size());
+    for (T individual : population.getIndividuals()) {
+      result.add(transform(individual));
+    }
+    return new Population<T>(result);
+  }
+
+  /** {@inheritDoc} */
+  public Iterator<T> apply(final Iterator<T> individuals) {
+    return new Iterator<T>() {
+      public boolean hasNext() {
+        return individuals.hasNext();
+      }
+
+      public T next() {
+        return transform(individuals.next());
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Transforms single individual.
+   * @param individual Individual to transform.
+   * @return Transformed individual.
+   */
+  protected abstract T transform(T individual);
+}
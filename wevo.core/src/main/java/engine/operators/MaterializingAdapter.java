@@ -0,0 +1,84 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import engine.Operator;
+import engine.Population;
+import engine.StreamingOperator;
+
+/**
+ * Lets a regular operator, e.g. a selection that needs random access to the
+ * population, take part in a chain of streaming operators. The source stream
+ * is materialized when the first individual of the result is requested.
+ * @param <T> Type of the individual.
+ */
+public class MaterializingAdapter<T> implements StreamingOperator<T> {
+
+  /** Adapted operator. */
+  private final Operator<T> operator;
+
+  /**
+   * Creates the adapter.
+   * @param operator Operator to adapt.
+   */
+  public MaterializingAdapter(final Operator<T> operator) {
+    this.operator = operator;
+  }
+
+  /** {@inheritDoc} */
+  public Iterator<T> apply(final Iterator<T> individuals) {
+    return new Iterator<T>() {
+      /** Result of the operator, null until requested. */
+      private Iterator<T> result;
+
+      public boolean hasNext() {
+        return result().hasNext();
+      }
+
+      public T next() {
+        return result().next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      /**
+       * Applies the operator on first use.
+       * @return Iterator over the result.
+       */
+      private Iterator<T> result() {
+        if (result == null) {
+          List<T> source = new ArrayList<T>();
+          while (individuals.hasNext()) {
+            source.add(individuals.next());
+          }
+          result = operator.apply(new Population<T>(source))
+              .getIndividuals().iterator();
+        }
+        return result;
+      }
+    };
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import engine.Operator;
+import engine.Population;
+import engine.StreamingOperator;
+
+/**
+ * Base class of operators combining consecutive pairs of individuals, e.g.
+ * crossovers. The last individual of an odd-sized population is passed
+ * unchanged. Can be used both as a regular and as a streaming operator;
+ * in both cases pairs are combined in order, so given the same random number
+ * generator the results are the same.
+ * @param <T> Type of the individual.
+ */
+public abstract class PairwiseOperator<T>
+    implements Operator<T>, StreamingOperator<T> {
+
+  /** {@inheritDoc} */
+  public Population<T> apply(Population<T> population) {
+    List<T> individuals = population.getIndividuals();
+    List<T> result = new ArrayList<T>(individuals.size());
+    Iterator<T> iterator = apply(individuals.iterator());
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
+    }
+    return new Population<T>(result);
+  }
+
+  /** {@inheritDoc} */
+  public Iterator<T> apply(final Iterator<T> individuals) {
+    return new Iterator<T>() {
+      /** Offspring of the last pair not returned yet. */
+      private final LinkedList<T> pending = new LinkedList<T>();
+
+      public boolean hasNext() {
+        return !pending.isEmpty() || individuals.hasNext();
+      }
+
+      public T next() {
+        if (pending.isEmpty()) {
+          T first = individuals.next();
+          if (individuals.hasNext()) {
+            pending.addAll(combine(first, individuals.next()));
+          } else {
+            pending.add(first);
+          }
+        }
+        return pending.removeFirst();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Combines two individuals.
+   * @param first First parent.
+   * @param second Second parent.
+   * @return Offspring of the parents.
+   */
+  protected abstract List<T> combine(T first, T second);
+}
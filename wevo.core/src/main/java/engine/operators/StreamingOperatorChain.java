@@ -0,0 +1,65 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import engine.Operator;
+import engine.Population;
+import engine.StreamingOperator;
+
+/**
+ * Applies a sequence of streaming operators as a single regular operator.
+ * Individuals are pulled through the whole chain one by one and the
+ * population is materialized only once, at the end of the chain (and
+ * wherever a {@link MaterializingAdapter} is put).
+ * @param <T> Type of the individual.
+ */
+public class StreamingOperatorChain<T> implements Operator<T> {
+
+  /** Operators in order of application. */
+  private final List<StreamingOperator<T>> operators =
+      new ArrayList<StreamingOperator<T>>();
+
+  /**
+   * Appends an operator to the chain.
+   * @param operator Operator to append.
+   * @return This chain.
+   */
+  public StreamingOperatorChain<T> add(final StreamingOperator<T> operator) {
+    operators.add(operator);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  public Population<T> apply(Population<T> population) {
+    Iterator<T> iterator = population.getIndividuals().iterator();
+    for (StreamingOperator<T> operator : operators) {
+      iterator = operator.apply(iterator);
+    }
+    List<T> result = new ArrayList<T>(population.size());
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
+    }
+    return new Population<T>(result);
+  }
+}
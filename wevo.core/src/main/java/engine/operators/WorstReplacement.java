@@ -0,0 +1,89 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.ReplacementPolicy;
+
+/**
+ * Replaces the worst individual of the population with each offspring which
+ * is better, so that the population keeps its size. Values of the returned
+ * population are kept, so that replacing offspring into it again computes
+ * values of the offspring only; the returned population must not be
+ * modified.
+ *
+ * @param <T> Type of the individuals the policy should work on.
+ */
+public class WorstReplacement<T> implements ReplacementPolicy<T> {
+
+  /** Objective function that scores individuals. */
+  private final ObjectiveFunction<T> objectiveFunction;
+
+  /** Population returned by the last replacement. */
+  private Population<T> lastPopulation;
+
+  /** Values of individuals of the last returned population. */
+  private double[] values;
+
+  /**
+   * Creates the policy.
+   * @param objectiveFunction Objective function to score individuals against;
+   * higher values are better.
+   */
+  public WorstReplacement(ObjectiveFunction<T> objectiveFunction) {
+    this.objectiveFunction = objectiveFunction;
+  }
+
+  /** {@inheritDoc} */
+  public Population<T> replace(Population<T> population,
+      Population<T> offspring) {
+    List<T> individuals = new ArrayList<T>(population.getIndividuals());
+    if (individuals.isEmpty()) {
+      return new Population<T>(individuals);
+    }
+    if (population != lastPopulation
+        || values.length != individuals.size()) {
+      values = new double[individuals.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = objectiveFunction.compute(individuals.get(i));
+      }
+    }
+
+    for (T child : offspring.getIndividuals()) {
+      int worst = 0;
+      for (int i = 1; i < values.length; i++) {
+        if (values[i] < values[worst]) {
+          worst = i;
+        }
+      }
+      double value = objectiveFunction.compute(child);
+      if (value > values[worst]) {
+        individuals.set(worst, child);
+        values[worst] = value;
+      }
+    }
+    lastPopulation = new Population<T>(individuals);
+    return lastPopulation;
+  }
+}
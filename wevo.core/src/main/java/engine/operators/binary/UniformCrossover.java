@@ -19,13 +19,11 @@
  */
 package engine.operators.binary;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
-import engine.Operator;
-import engine.Population;
 import engine.individuals.BinaryVector;
+import engine.operators.PairwiseOperator;
 import engine.utils.JavaRandom;
 import engine.utils.WevoRandom;
 
@@ -35,7 +33,7 @@ import engine.utils.WevoRandom;
  * 
  * @author Marcin Brodziak (marcin@nierobcietegowdomu.pl)
  */
-public class UniformCrossover implements Operator<BinaryVector> {
+public class UniformCrossover extends PairwiseOperator<BinaryVector> {
 
   /** Head-tail probability. */
   private static final double DEFAULT_PROBABILITY = 0.5;
@@ -52,30 +50,23 @@ public class UniformCrossover implements Operator<BinaryVector> {
   }
 
   /** {@inheritDoc} */
-  public Population<BinaryVector> apply(
-      Population<BinaryVector> population) {
-    Iterator<BinaryVector> iterator = population.getIndividuals().iterator();
-    List<BinaryVector> output = new LinkedList<BinaryVector>();
-
-    while (iterator.hasNext()) {
-      BinaryVector b1 = iterator.next();
-      BinaryVector b2 = iterator.next();
-
-      boolean[] o1 = new boolean[b1.getSize()];
-      boolean[] o2 = new boolean[b1.getSize()];
-      for (int i = 0; i < b1.getSize(); i++) {
-        if (random.nextDouble(0.0, 1.0) < DEFAULT_PROBABILITY) {
-          o1[i] = b1.getBit(i);
-          o2[i] = b2.getBit(i);
-        } else {
-          o1[i] = b2.getBit(i);
-          o2[i] = b1.getBit(i);
-        }
+  @Override
+  protected List<BinaryVector> combine(
+      final BinaryVector b1, final BinaryVector b2) {
+    boolean[] o1 = new boolean[b1.getSize()];
+    boolean[] o2 = new boolean[b1.getSize()];
+    for (int i = 0; i < b1.getSize(); i++) {
+      if (random.nextDouble(0.0, 1.0) < DEFAULT_PROBABILITY) {
+        o1[i] = b1.getBit(i);
+        o2[i] = b2.getBit(i);
+      } else {
+        o1[i] = b2.getBit(i);
+        o2[i] = b1.getBit(i);
       }
-      output.add(new BinaryVector(o1));
-      output.add(new BinaryVector(o2));
     }
-
-    return new Population<BinaryVector>(output);
+    List<BinaryVector> offspring = new ArrayList<BinaryVector>(2);
+    offspring.add(new BinaryVector(o1));
+    offspring.add(new BinaryVector(o2));
+    return offspring;
   }
 }
@@ -19,22 +19,18 @@
  */
 package engine.operators.binary;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-
-import engine.Operator;
-import engine.Population;
 import engine.individuals.BinaryVector;
+import engine.operators.IndividualOperator;
 import engine.utils.WevoRandom;
 
 /**
  * Performs mutation of the individual by randomly negating one 
- * bit with some probability.
+ * bit with some probability. Mutated individuals are copies, the source
+ * individuals stay intact.
  * @author Marcin Brodziak (marcin@nierobcietegowdomu.pl)
  */
 public class UniformProbabilityNegationMutation 
-    implements Operator<BinaryVector> {
+    extends IndividualOperator<BinaryVector> {
  
   /** For each bit, probability of negating it. */
   private final double mutationProbability;
@@ -57,20 +53,14 @@ public class UniformProbabilityNegationMutation
 
 
   /** {@inheritDoc} */
-  public Population<BinaryVector> 
-      apply(Population<BinaryVector> population) {
-    Iterator<BinaryVector> iterator = population.getIndividuals().iterator();
-    List<BinaryVector> output = new LinkedList<BinaryVector>();
- 
-    while (iterator.hasNext()) {
-      BinaryVector binaryIndividual = iterator.next();
-      if (random.nextDouble(0.0, 1.0) < mutationProbability) {
-        binaryIndividual.negateBit(
-            random.nextInt(0, binaryIndividual.getSize()));
-      } 
-      output.add(binaryIndividual);
+  @Override
+  protected BinaryVector transform(final BinaryVector binaryIndividual) {
+    if (random.nextDouble(0.0, 1.0) >= mutationProbability) {
+      return binaryIndividual;
     }
-    return population;
+    BinaryVector mutated = new BinaryVector(binaryIndividual);
+    mutated.negateBit(random.nextInt(0, binaryIndividual.getSize()));
+    return mutated;
   }
 
 }
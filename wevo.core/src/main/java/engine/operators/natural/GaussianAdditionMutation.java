@@ -19,12 +19,8 @@
  */
 package engine.operators.natural;
 
-import java.util.LinkedList;
-import java.util.List;
-
-import engine.Operator;
-import engine.Population;
 import engine.individuals.NaturalVector;
+import engine.operators.IndividualOperator;
 import engine.utils.WevoRandom;
 
 /**
@@ -33,7 +29,8 @@ import engine.utils.WevoRandom;
  * deviation sigma and mean 0, adds it to the value of the gene.
  * @author Marcin Brodziak (marcin.brodziak@gmail.com)
  */
-public class GaussianAdditionMutation implements Operator<NaturalVector> {
+public class GaussianAdditionMutation
+    extends IndividualOperator<NaturalVector> {
  
   /** Random number generator. */
   private final WevoRandom random;
@@ -63,21 +60,16 @@ public class GaussianAdditionMutation implements Operator<NaturalVector> {
   }
 
   /** {@inheritDoc}. */
-  public Population<NaturalVector> apply(Population<NaturalVector> population) {
-    List<NaturalVector> result = new LinkedList<NaturalVector>();
-    List<NaturalVector> individuals = population.getIndividuals();
-    for (NaturalVector parent : individuals) {
-      NaturalVector offspring = new NaturalVector(parent.getSize());
-      for (int i = 0; i < offspring.getSize(); i++) {
-        double delta = 0;
-        if (random.nextDouble(0.0, 1.0) < probability) {
-          delta = random.nextGaussian() * sigma; 
-        }
-        offspring.setValue(i, Math.round(parent.getValue(i) + delta));
+  @Override
+  protected NaturalVector transform(final NaturalVector parent) {
+    NaturalVector offspring = new NaturalVector(parent.getSize());
+    for (int i = 0; i < offspring.getSize(); i++) {
+      double delta = 0;
+      if (random.nextDouble(0.0, 1.0) < probability) {
+        delta = random.nextGaussian() * sigma; 
       }
-      result.add(offspring);
+      offspring.setValue(i, Math.round(parent.getValue(i) + delta));
     }
-
-    return new Population<NaturalVector>(result);
+    return offspring;
   }
 }
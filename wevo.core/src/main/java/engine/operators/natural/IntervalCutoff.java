@@ -19,12 +19,8 @@
  */
 package engine.operators.natural;
 
-import java.util.LinkedList;
-import java.util.List;
-
-import engine.Operator;
-import engine.Population;
 import engine.individuals.NaturalVector;
+import engine.operators.IndividualOperator;
 
 /**
  * For each gene of each individual if the gene is not within an interval
@@ -32,7 +28,7 @@ import engine.individuals.NaturalVector;
  * and larger values with b.
  * @author Marcin Brodziak (marcin.brodziak@gmail.com)
  */
-public class IntervalCutoff implements Operator<NaturalVector> {
+public class IntervalCutoff extends IndividualOperator<NaturalVector> {
 
   /** Minimum allowed value for a gene. */
   private final int min;
@@ -52,23 +48,23 @@ public class IntervalCutoff implements Operator<NaturalVector> {
     this.max = max;
   }
 
-  /** {@inheritDoc}. */
-  public Population<NaturalVector> apply(Population<NaturalVector> population) {
-    List<NaturalVector> result = new LinkedList<NaturalVector>();
-    List<NaturalVector> individuals = population.getIndividuals();
-    for (NaturalVector parent : individuals) {
-      NaturalVector offspring = new NaturalVector(parent.getSize());
-      for (int i = 0; i < offspring.getSize(); i++) {
-        if (parent.getValue(i) < min) {
-          offspring.setValue(i, min);
-        } else if (parent.getValue(i) > max) {
-          offspring.setValue(i, max);
-        } else {
-          offspring.setValue(i, parent.getValue(i));
-        }
+  /**
+   * {@inheritDoc} Individuals within the interval are returned as they are,
+   * so that evaluators recognise unchanged survivors.
+   */
+  @Override
+  protected NaturalVector transform(final NaturalVector parent) {
+    NaturalVector offspring = null;
+    for (int i = 0; i < parent.getSize(); i++) {
+      final long value = parent.getValue(i);
+      if (value >= min && value <= max) {
+        continue;
+      }
+      if (offspring == null) {
+        offspring = new NaturalVector(parent);
       }
-      result.add(offspring);
+      offspring.setValue(i, value < min ? min : max);
     }
-    return new Population<NaturalVector>(result);
+    return offspring == null ? parent : offspring;
   }
 }
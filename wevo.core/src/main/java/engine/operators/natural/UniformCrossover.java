@@ -20,13 +20,12 @@
 package engine.operators.natural;
 
 import java.security.SecureRandom;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import engine.Operator;
-import engine.Population;
 import engine.individuals.NaturalVector;
+import engine.operators.PairwiseOperator;
 
 /**
  * Performs a crossover of two natural number individuals by
@@ -35,7 +34,7 @@ import engine.individuals.NaturalVector;
  * 
  * @author Marcin Brodziak (marcin.brodziak@gmail.com)
  */
-public class UniformCrossover implements Operator<NaturalVector> {
+public class UniformCrossover extends PairwiseOperator<NaturalVector> {
 
   /** 0.5. */
   private static final double DEFAULT_PROBABILITY = 0.5;
@@ -59,34 +58,27 @@ public class UniformCrossover implements Operator<NaturalVector> {
   }
 
   /** {@inheritDoc}. */
-  public Population<NaturalVector> apply(
-      Population<NaturalVector> population) {
-    List<NaturalVector> result = new LinkedList<NaturalVector>();
-    List<NaturalVector> individuals = population.getIndividuals();
-    for (int i = 0; i < individuals.size() / 2; i++) {
-      long[] p1 = individuals.get(2 * i).getValues();
-      long[] p2 = individuals.get(2 * i + 1).getValues();
-      long[] o1 = new long[p1.length];
-      long[] o2 = new long[p1.length];
+  @Override
+  protected List<NaturalVector> combine(
+      final NaturalVector first, final NaturalVector second) {
+    long[] p1 = first.getValues();
+    long[] p2 = second.getValues();
+    long[] o1 = new long[p1.length];
+    long[] o2 = new long[p1.length];
 
-      for (int j = 0; j < p1.length; j++) {
-        if (random.nextDouble() < DEFAULT_PROBABILITY) {
-          o1[j] = p1[j];
-          o2[j] = p2[j];
-        } else {
-          o1[j] = p2[j];
-          o2[j] = p1[j];
-        }
+    for (int j = 0; j < p1.length; j++) {
+      if (random.nextDouble() < DEFAULT_PROBABILITY) {
+        o1[j] = p1[j];
+        o2[j] = p2[j];
+      } else {
+        o1[j] = p2[j];
+        o2[j] = p1[j];
       }
-      result.add(new NaturalVector(o1));
-      result.add(new NaturalVector(o2));
     }
-
-    if (result.size() < individuals.size()) {
-      result.add(individuals.get(result.size()));
-    }
-
-    return new Population<NaturalVector>(result);
+    List<NaturalVector> offspring = new ArrayList<NaturalVector>(2);
+    offspring.add(new NaturalVector(o1));
+    offspring.add(new NaturalVector(o2));
+    return offspring;
   }
 
 }
@@ -19,9 +19,8 @@
  */
 package engine.operators.permutation;
 
-import engine.Operator;
-import engine.Population;
 import engine.individuals.Permutation;
+import engine.operators.IndividualOperator;
 import engine.utils.WevoRandom;
 
 /**
@@ -35,7 +34,7 @@ import engine.utils.WevoRandom;
  * @author Karol Asgaroth Stosiek (karol.stosiek@gmail.com)
  * @author Szymon Fogiel (szymek.fogiel@gmail.com)
  */
-public class InversionMutation implements Operator<Permutation> {
+public class InversionMutation extends IndividualOperator<Permutation> {
 
   /** Probability that a mutation will happen to individual. */
   private double mutationProbability;
@@ -56,18 +55,12 @@ public class InversionMutation implements Operator<Permutation> {
   }
 
   /** {@inheritDoc} */
-  public Population<Permutation> apply(Population<Permutation> population) {
-    Population<Permutation> result = new Population<Permutation>();
-
-    for (Permutation individual : population.getIndividuals()) {
-      if (randomGenerator.nextDouble(0.0, 1.0) >= mutationProbability) {
-        result.addIndividual(individual);
-      } else {
-        result.addIndividual(mutate(individual));
-      }
+  @Override
+  protected Permutation transform(final Permutation individual) {
+    if (randomGenerator.nextDouble(0.0, 1.0) >= mutationProbability) {
+      return individual;
     }
-
-    return result;
+    return mutate(individual);
   }
 
   /**
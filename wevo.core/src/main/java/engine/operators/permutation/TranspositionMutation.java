@@ -19,9 +19,8 @@
  */
 package engine.operators.permutation;
 
-import engine.Operator;
-import engine.Population;
 import engine.individuals.Permutation;
+import engine.operators.IndividualOperator;
 import engine.utils.WevoRandom;
 
 /**
@@ -34,7 +33,7 @@ import engine.utils.WevoRandom;
  * Previous version: Donata Malecka, Piotr Baraniak.
  */
 public class TranspositionMutation
-    implements Operator<Permutation> {
+    extends IndividualOperator<Permutation> {
 
   /** Probability that a mutation will happen to individual. */
   private double mutationProbability;
@@ -55,18 +54,12 @@ public class TranspositionMutation
   }
 
   /** {@inheritDoc} */
-  public Population<Permutation> apply(Population<Permutation> population) {
-    Population<Permutation> result = new Population<Permutation>();
-
-    for (Permutation individual : population.getIndividuals()) {
-      if (randomGenerator.nextDouble(0.0, 1.0) >= mutationProbability) {
-        result.addIndividual(individual);
-      } else {
-        result.addIndividual(mutate(individual));
-      }
+  @Override
+  protected Permutation transform(final Permutation individual) {
+    if (randomGenerator.nextDouble(0.0, 1.0) >= mutationProbability) {
+      return individual;
     }
-
-    return result;
+    return mutate(individual);
   }
 
   /**
@@ -19,14 +19,23 @@
  */
 package engine.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Random;
 
+import engine.checkpoint.Checkpointable;
+
 /**
  * Standard random number generator based on Java random number generator.
  * @author Karol Stosiek (karol.stosiek@gmail.com)
  * @author Michal Anglart (anglart.michal@gmail.com)
  */
-public class JavaRandom implements WevoRandom {
+public class JavaRandom implements WevoRandom, Checkpointable {
 
   /** Random number generator. */
   private Random generator;
@@ -85,4 +94,37 @@ public class JavaRandom implements WevoRandom {
     return generator.nextGaussian();
   }
 
+  /**
+   * {@inheritDoc} The only portable way to capture complete state of
+   * {@link Random}, including the cached gaussian, is its serialized form.
+   */
+  public void writeState(DataOutput output) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+    objectOutput.writeObject(generator);
+    objectOutput.close();
+    VarIntUtils.writeUnsignedInt(output, bytes.size());
+    output.write(bytes.toByteArray());
+  }
+
+  /**
+   * {@inheritDoc} Replaces the inner generator, so references obtained
+   * earlier with {@link #getInnerGenerator()} become stale.
+   */
+  public void readState(DataInput input) throws IOException {
+    byte[] bytes = new byte[VarIntUtils.readUnsignedInt(input)];
+    input.readFully(bytes);
+    ObjectInputStream objectInput =
+        new ObjectInputStream(new ByteArrayInputStream(bytes));
+    try {
+      generator = (Random) objectInput.readObject();
+    } catch (ClassNotFoundException e) {
+      IOException exception =
+          new IOException("Cannot restore random number generator.");
+      exception.initCause(e);
+      throw exception;
+    } finally {
+      objectInput.close();
+    }
+  }
 }
@@ -42,6 +42,25 @@ public class ListUtils {
     return list;
   }
  
+  /**
+   * Gets a shard of the list. The list is split into the given number of
+   * contiguous shards whose sizes differ by at most one.
+   * @param <T> Type of the elements in a list.
+   * @param list List to be split.
+   * @param shard Index of the shard, from zero.
+   * @param shards Number of shards.
+   * @return Elements of the shard.
+   */
+  public static <T> List<T> getShard(List<T> list, int shard, int shards) {
+    if (shard < 0 || shard >= shards) {
+      throw new IllegalArgumentException("Shard " + shard
+          + " out of " + shards + " shards");
+    }
+    final int from = (int) ((long) list.size() * shard / shards);
+    final int to = (int) ((long) list.size() * (shard + 1) / shards);
+    return new ArrayList<T>(list.subList(from, to));
+  }
+
   /**
    * Compares two arrays of doubles with given precision.
    * @param a1 First array to compare.
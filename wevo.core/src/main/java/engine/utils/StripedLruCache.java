@@ -0,0 +1,154 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of least recently used objects split into stripes by hash, each
+ * guarded by its own lock, so that threads touching different keys rarely
+ * wait for each other. Each stripe evicts its own least recently used
+ * entries. Since keys do not spread over stripes exactly evenly, stripes
+ * hold a quarter more than their share of the size. The size of a striped
+ * cache is thus an approximate bound: it may hold up to a quarter more
+ * entries, and may evict entries before it is full. Small caches are not
+ * striped at all and behave exactly like {@link LruMap}.
+ * @param <K> Type of keys.
+ * @param <V> Type of values.
+ */
+public class StripedLruCache<K, V> {
+
+  /** Minimum number of entries of a stripe. */
+  private static final int MIN_STRIPE_SIZE = 256;
+
+  /** Maximum number of stripes. */
+  private static final int MAX_STRIPES = 16;
+
+  /** Divisor of a stripe's share of the size giving its slack. */
+  private static final int SLACK_DIVISOR = 4;
+
+  /** Stripes; their number is a power of two. */
+  private final List<LruMap<K, V>> stripes;
+
+  /**
+   * Creates the cache.
+   * @param size Approximate maximum size of the cache, exact if it is
+   * too small to be striped.
+   */
+  public StripedLruCache(final int size) {
+    int count = 1;
+    while (count < MAX_STRIPES && size / (count * 2) >= MIN_STRIPE_SIZE) {
+      count *= 2;
+    }
+    final int stripeSize = count == 1
+        ? size : size / count + size / (count * SLACK_DIVISOR);
+    stripes = new ArrayList<LruMap<K, V>>(count);
+    for (int i = 0; i < count; i++) {
+      stripes.add(new LruMap<K, V>(stripeSize));
+    }
+  }
+
+  /**
+   * Gets the stripe holding the key.
+   * @param key Key to look up.
+   * @return Stripe of the key.
+   */
+  private LruMap<K, V> stripe(final Object key) {
+    final int hash = key.hashCode();
+    // MagicNumber off
+    return stripes.get((hash ^ (hash >>> 16)) & (stripes.size() - 1));
+    // MagicNumber on
+  }
+
+  /**
+   * Gets the value of the key, marking it as recently used.
+   * @param key Key to look up.
+   * @return Value or null if the key is not in the cache.
+   */
+  public V get(final K key) {
+    final LruMap<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      return stripe.get(key);
+    }
+  }
+
+  /**
+   * Checks if the key is in the cache, without marking it as used.
+   * @param key Key to look up.
+   * @return True iff the key is in the cache.
+   */
+  public boolean containsKey(final K key) {
+    final LruMap<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      return stripe.containsKey(key);
+    }
+  }
+
+  /**
+   * Puts the value of the key, evicting the least recently used entry of
+   * its stripe if the stripe is full.
+   * @param key Key to put.
+   * @param value Value of the key.
+   */
+  public void put(final K key, final V value) {
+    final LruMap<K, V> stripe = stripe(key);
+    synchronized (stripe) {
+      stripe.put(key, value);
+    }
+  }
+
+  /**
+   * Puts all entries of the map.
+   * @param input Entries to put.
+   */
+  public void putAll(final Map<? extends K, ? extends V> input) {
+    for (Map.Entry<? extends K, ? extends V> entry : input.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Returns a copy of the cache. Each stripe is copied atomically, and its
+   * entries are ordered from the least to the most recently used, so
+   * putting the copy into an empty cache of the same size reproduces
+   * the original.
+   * @return Copy of the cache.
+   */
+  public Map<K, V> copy() {
+    final Map<K, V> copy = new LinkedHashMap<K, V>();
+    for (LruMap<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        copy.putAll(stripe);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Gets the number of stripes. Package visibility for testing purposes.
+   * @return Number of stripes.
+   */
+  int getStripeCount() {
+    return stripes.size();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Utilities for writing non-negative integers in variable-length encoding.
+ * Each byte carries seven bits of the value, least significant first, and
+ * the highest bit signals that more bytes follow. Small values, which are
+ * the common case for lengths and indices, take a single byte.
+ */
+public class VarIntUtils {
+
+  /** Mask of the payload bits in a single byte. */
+  private static final int PAYLOAD = 0x7F;
+
+  /** Bit signalling that more bytes follow. */
+  private static final int CONTINUATION = 0x80;
+
+  /** Number of payload bits in a single byte. */
+  private static final int BITS_PER_BYTE = 7;
+
+  /** Maximum number of bytes of an encoded int. */
+  private static final int MAX_BYTES = 5;
+
+  /** Bits that may be set in the last byte of an encoded int. */
+  private static final int LAST_BYTE_MASK = 0x07;
+
+  /**
+   * Writes non-negative integer in variable-length encoding.
+   * @param output Output to write to.
+   * @param value Value to write. Must be non-negative.
+   * @throws IOException Thrown on IO errors.
+   */
+  public static void writeUnsignedInt(DataOutput output, int value)
+      throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value: " + value);
+    }
+    int remaining = value;
+    while ((remaining & ~PAYLOAD) != 0) {
+      output.writeByte((remaining & PAYLOAD) | CONTINUATION);
+      remaining >>>= BITS_PER_BYTE;
+    }
+    output.writeByte(remaining);
+  }
+
+  /**
+   * Reads non-negative integer written with {@link #writeUnsignedInt}.
+   * @param input Input to read from.
+   * @return Read value.
+   * @throws IOException Thrown on IO errors or malformed input.
+   */
+  public static int readUnsignedInt(DataInput input) throws IOException {
+    int value = 0;
+    for (int i = 0; i < MAX_BYTES; i++) {
+      int b = input.readUnsignedByte();
+      if (i == MAX_BYTES - 1 && (b & ~LAST_BYTE_MASK) != 0) {
+        break;
+      }
+      value |= (b & PAYLOAD) << (i * BITS_PER_BYTE);
+      if ((b & CONTINUATION) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer.");
+  }
+}
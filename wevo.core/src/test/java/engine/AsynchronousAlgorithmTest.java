@@ -0,0 +1,86 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine;
+
+import java.util.Arrays;
+
+import org.easymock.classextension.EasyMock;
+import org.easymock.classextension.IMocksControl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.distribution.master.MasterSlaveEvaluator;
+import engine.operators.WorstReplacement;
+
+/**
+ * Tests for {@link AsynchronousAlgorithm}.
+ */
+public class AsynchronousAlgorithmTest {
+
+  /**
+   * Tests that offspring are submitted ahead and integrated as soon as
+   * they are evaluated.
+   * @throws Exception Never thrown.
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testRun() throws Exception {
+    IMocksControl control = EasyMock.createControl();
+    MasterSlaveEvaluator<String> evaluator =
+        control.createMock(MasterSlaveEvaluator.class);
+    Population<String> initial =
+        new Population<String>(Arrays.asList("a", "bb"));
+    Population<String> offspring =
+        new Population<String>(Arrays.asList("ccc"));
+
+    evaluator.evaluatePopulation(initial);
+    evaluator.startAsynchronousEvaluation();
+    EasyMock.expect(evaluator.submit(offspring)).andReturn(1).times(2);
+    EasyMock.expect(evaluator.takeEvaluated()).andReturn(offspring);
+    control.replay();
+
+    final Population<String> bred = offspring;
+    AsynchronousAlgorithm<String> algorithm = new AsynchronousAlgorithm<String>(
+        initial, evaluator,
+        new Operator<String>() {
+          public Population<String> apply(Population<String> population) {
+            return bred;
+          }
+        },
+        new WorstReplacement<String>(new ObjectiveFunction<String>() {
+          public double compute(String individual) {
+            return individual.length();
+          }
+        }));
+    algorithm.addExitPoint(new TerminationCondition<String>() {
+      public boolean isSatisfied(Population<String> population) {
+        return population.getIndividuals().contains("ccc");
+      }
+
+      public void reset() {
+      }
+    });
+
+    Assert.assertEquals(algorithm.run().getIndividuals(),
+        Arrays.asList("ccc", "bb"));
+    Assert.assertEquals(algorithm.getReplacementNumber(), 1);
+    control.verify();
+  }
+}
@@ -79,4 +79,16 @@ public class CachedObjectiveFunctionTest {
     assertEquals(function.compute("b"), 2.0);
     function.compute("a");
   }
+
+  /** Tests that equal individuals are recognised as cached. */
+  @Test
+  public void testIsCached() {
+    CachedObjectiveFunction<String> function = new
+        CachedObjectiveFunction<String>(new SampleObjectiveFunction(), 1);
+    assertFalse(function.isCached("a"));
+    function.computeInternal(new String("a"));
+    assertTrue(function.isCached("a"));
+    function.computeInternal("b");
+    assertFalse(function.isCached("a"));
+  }
 }
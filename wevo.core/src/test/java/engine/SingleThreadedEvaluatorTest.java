@@ -19,6 +19,10 @@
  */
 package engine;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 /**
@@ -34,4 +38,41 @@ public class SingleThreadedEvaluatorTest extends PopulationEvaluatorTest {
     return new SingleThreadedEvaluator<DummyIndividual>(
         createObjectiveFunctions());
   }
+
+  /**
+   * Tests that only new individuals are evaluated again, even if survivors
+   * are evicted from the cache by them.
+   */
+  public void testUnchangedSurvivorsAreSkipped() {
+    final int[] calls = new int[1];
+    final CachedObjectiveFunction<DummyIndividual> function =
+        new CachedObjectiveFunction<DummyIndividual>(
+            new ObjectiveFunction<DummyIndividual>() {
+              public double compute(DummyIndividual individual) {
+                return ++calls[0];
+              }
+            }, 2);
+    List<CachedObjectiveFunction<DummyIndividual>> functions =
+        new ArrayList<CachedObjectiveFunction<DummyIndividual>>();
+    functions.add(function);
+    SingleThreadedEvaluator<DummyIndividual> evaluator =
+        new SingleThreadedEvaluator<DummyIndividual>(functions);
+
+    DummyIndividual survivor = new DummyIndividual();
+    Population<DummyIndividual> population = new Population<DummyIndividual>();
+    population.addIndividual(survivor);
+    population.addIndividual(new DummyIndividual());
+    evaluator.apply(population);
+    Assert.assertEquals(calls[0], 2);
+
+    DummyIndividual offspring = new DummyIndividual();
+    Population<DummyIndividual> next = new Population<DummyIndividual>();
+    next.addIndividual(offspring);
+    next.addIndividual(survivor);
+    evaluator.apply(next);
+    Assert.assertEquals(calls[0], 3);
+    Assert.assertFalse(function.getCache().containsKey(survivor));
+    Assert.assertEquals(function.compute(survivor), 1.0);
+    Assert.assertEquals(function.compute(offspring), 3.0);
+  }
 }
@@ -0,0 +1,220 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.Algorithm;
+import engine.CachedObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+import engine.codecs.PermutationCodec;
+import engine.exitcriteria.IndividualHasntImproved;
+import engine.exitcriteria.MaxIterations;
+import engine.individuals.Permutation;
+import engine.operators.permutation.InversionMutation;
+import engine.operators.permutation.TranspositionMutation;
+import engine.utils.JavaRandom;
+
+/**
+ * Tests for {@link AlgorithmCheckpointer}.
+ */
+public class AlgorithmCheckpointerTest {
+  // MagicNumber off
+
+  /** Number of iterations of the tested algorithm. */
+  private static final int ITERATIONS = 20;
+
+  /** Checkpoint file. */
+  private File file;
+
+  /**
+   * Creates temporary checkpoint file.
+   * @throws IOException Never thrown.
+   */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = File.createTempFile("checkpoint", ".bin");
+    file.delete();
+  }
+
+  /** Removes checkpoint file. */
+  @AfterMethod
+  public void tearDown() {
+    file.delete();
+    BackgroundFileWriter.getBackup(file).delete();
+  }
+
+  /** Objective function rewarding sorted permutations. */
+  private static class Sortedness implements ObjectiveFunction<Permutation> {
+    /** {@inheritDoc} */
+    public double compute(Permutation individual) {
+      double value = 0.0;
+      for (int i = 0; i < individual.getSize(); i++) {
+        value += i * individual.getValue(i);
+      }
+      return value;
+    }
+  }
+
+  /** Algorithm under test together with its stateful parts. */
+  private static class Setup {
+    /** Algorithm. */
+    private final Algorithm<Permutation> algorithm;
+
+    /** Random number generator of operators. */
+    private final JavaRandom random;
+
+    /** Cached objective functions. */
+    private final List<CachedObjectiveFunction<Permutation>> functions;
+
+    /**
+     * Builds the algorithm.
+     * @param seed Seed of the generator and initial population.
+     */
+    Setup(final long seed) {
+      random = new JavaRandom(seed);
+      functions = new ArrayList<CachedObjectiveFunction<Permutation>>();
+      functions.add(new CachedObjectiveFunction<Permutation>(
+          new Sortedness(), 1000));
+      algorithm = new Algorithm<Permutation>(
+          Permutation.generatePopulationOfRandomIndividuals(
+              new JavaRandom(seed), 30, 20));
+      SingleThreadedEvaluator<Permutation> evaluator =
+          new SingleThreadedEvaluator<Permutation>(functions);
+      algorithm.addEvaluationPoint(evaluator);
+      algorithm.addExitPoint(new MaxIterations<Permutation>(ITERATIONS));
+      algorithm.addExitPoint(new IndividualHasntImproved<Permutation>(
+          ITERATIONS, functions.get(0)));
+      algorithm.addOperator(new InversionMutation(random, 0.5));
+      algorithm.addOperator(new TranspositionMutation(random, 0.5));
+      algorithm.addEvaluationPoint(evaluator);
+    }
+
+    /**
+     * Creates checkpointer of this algorithm.
+     * @param file Checkpoint file.
+     * @return Checkpointer.
+     */
+    AlgorithmCheckpointer<Permutation> checkpointer(final File file) {
+      List<Object> components = new ArrayList<Object>();
+      components.add(random);
+      return new AlgorithmCheckpointer<Permutation>(
+          file, new PermutationCodec(), functions, components);
+    }
+  }
+
+  /**
+   * Tests that the run resumed from a checkpoint finishes with exactly
+   * the same population as the uninterrupted run.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testResumedRunIsIdentical() throws IOException {
+    Setup uninterrupted = new Setup(1);
+    uninterrupted.algorithm.run();
+
+    Setup checkpointed = new Setup(1);
+    AlgorithmCheckpointer<Permutation> checkpointer =
+        checkpointed.checkpointer(file);
+    checkpointed.algorithm.setCheckpointer(checkpointer, 7);
+    checkpointed.algorithm.run();
+    checkpointer.shutDown();
+    Assert.assertEquals(checkpointed.algorithm.getPopulation(),
+        uninterrupted.algorithm.getPopulation());
+
+    // Different seed, so everything has to come from the checkpoint.
+    Setup resumed = new Setup(2);
+    AlgorithmCheckpointer<Permutation> restorer = resumed.checkpointer(file);
+    Assert.assertTrue(restorer.restore(resumed.algorithm));
+    Assert.assertEquals(resumed.algorithm.getIterationNumber(), 14L);
+    Assert.assertFalse(resumed.functions.get(0).getCache().isEmpty());
+    resumed.algorithm.run();
+    restorer.shutDown();
+
+    Assert.assertEquals(resumed.algorithm.getPopulation(),
+        uninterrupted.algorithm.getPopulation());
+    Assert.assertEquals(resumed.algorithm.getIterationNumber(),
+        uninterrupted.algorithm.getIterationNumber());
+  }
+
+  /**
+   * Tests that nothing is restored without a checkpoint file.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRestoreWithoutCheckpoint() throws IOException {
+    Setup setup = new Setup(1);
+    Population<Permutation> initial = setup.algorithm.getPopulation();
+    Assert.assertFalse(setup.checkpointer(file).restore(setup.algorithm));
+    Assert.assertSame(setup.algorithm.getPopulation(), initial);
+  }
+
+  /**
+   * Tests that the checkpoint is restored from its backup, when a crash
+   * interrupted replacing it after the previous file was moved aside.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRestoreFromBackup() throws IOException {
+    Setup setup = new Setup(1);
+    setup.algorithm.run();
+    AlgorithmCheckpointer<Permutation> checkpointer = setup.checkpointer(file);
+    checkpointer.checkpoint(setup.algorithm);
+    checkpointer.shutDown();
+    Assert.assertTrue(file.renameTo(BackgroundFileWriter.getBackup(file)));
+
+    Setup resumed = new Setup(2);
+    AlgorithmCheckpointer<Permutation> restorer = resumed.checkpointer(file);
+    Assert.assertTrue(restorer.restore(resumed.algorithm));
+    restorer.shutDown();
+    Assert.assertTrue(file.exists());
+    Assert.assertEquals(resumed.algorithm.getPopulation(),
+        setup.algorithm.getPopulation());
+  }
+
+  /**
+   * Tests that a checkpoint is not restored into a differently set up
+   * algorithm.
+   * @throws IOException Expected.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testRestoreIntoDifferentSetup() throws IOException {
+    Setup setup = new Setup(1);
+    AlgorithmCheckpointer<Permutation> checkpointer = setup.checkpointer(file);
+    checkpointer.checkpoint(setup.algorithm);
+    checkpointer.awaitWrites();
+
+    Setup other = new Setup(1);
+    new AlgorithmCheckpointer<Permutation>(file, new PermutationCodec(),
+        other.functions, new ArrayList<Object>()).restore(other.algorithm);
+  }
+
+  // MagicNumber on
+}
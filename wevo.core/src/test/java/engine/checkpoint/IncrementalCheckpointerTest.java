@@ -0,0 +1,220 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.checkpoint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.Algorithm;
+import engine.CachedObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+import engine.codecs.PermutationCodec;
+import engine.exitcriteria.MaxIterations;
+import engine.individuals.Permutation;
+import engine.operators.permutation.InversionMutation;
+import engine.utils.JavaRandom;
+
+/**
+ * Tests for {@link IncrementalCheckpointer}.
+ */
+public class IncrementalCheckpointerTest {
+  // MagicNumber off
+
+  /** Number of iterations of the tested algorithm. */
+  private static final int ITERATIONS = 20;
+
+  /** Last iteration which is checkpointed. */
+  private static final int LAST_CHECKPOINT = 10;
+
+  /** Checkpoint file. */
+  private File file;
+
+  /**
+   * Creates temporary checkpoint file.
+   * @throws IOException Never thrown.
+   */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = File.createTempFile("checkpoint", ".log");
+    file.delete();
+  }
+
+  /** Removes checkpoint file. */
+  @AfterMethod
+  public void tearDown() {
+    file.delete();
+  }
+
+  /** Objective function rewarding sorted permutations. */
+  private static class Sortedness implements ObjectiveFunction<Permutation> {
+    /** {@inheritDoc} */
+    public double compute(Permutation individual) {
+      double value = 0.0;
+      for (int i = 0; i < individual.getSize(); i++) {
+        value += i * individual.getValue(i);
+      }
+      return value;
+    }
+  }
+
+  /** Algorithm under test together with its stateful parts. */
+  private static class Setup {
+    /** Algorithm. */
+    private final Algorithm<Permutation> algorithm;
+
+    /** Random number generator of operators. */
+    private final JavaRandom random;
+
+    /** Cached objective functions. */
+    private final List<CachedObjectiveFunction<Permutation>> functions;
+
+    /**
+     * Builds the algorithm.
+     * @param seed Seed of the generator and initial population.
+     * @param probability Probability of mutation.
+     */
+    Setup(final long seed, final double probability) {
+      random = new JavaRandom(seed);
+      functions = new ArrayList<CachedObjectiveFunction<Permutation>>();
+      functions.add(new CachedObjectiveFunction<Permutation>(
+          new Sortedness(), 1000));
+      algorithm = new Algorithm<Permutation>(
+          Permutation.generatePopulationOfRandomIndividuals(
+              new JavaRandom(seed), 30, 20));
+      SingleThreadedEvaluator<Permutation> evaluator =
+          new SingleThreadedEvaluator<Permutation>(functions);
+      algorithm.addEvaluationPoint(evaluator);
+      algorithm.addExitPoint(new MaxIterations<Permutation>(ITERATIONS));
+      algorithm.addOperator(new InversionMutation(random, probability));
+      algorithm.addEvaluationPoint(evaluator);
+    }
+
+    /**
+     * Creates checkpointer of this algorithm.
+     * @param file Checkpoint file.
+     * @param compactionInterval Maximum number of deltas between snapshots.
+     * @return Checkpointer.
+     */
+    IncrementalCheckpointer<Permutation> checkpointer(final File file,
+        final int compactionInterval) {
+      List<Object> components = new ArrayList<Object>();
+      components.add(random);
+      return new IncrementalCheckpointer<Permutation>(file,
+          new PermutationCodec(), functions, components, compactionInterval);
+    }
+  }
+
+  /**
+   * Tests that the run resumed from a log of snapshots and deltas finishes
+   * with exactly the same population as the uninterrupted run.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testResumedRunIsIdentical() throws IOException {
+    Setup uninterrupted = new Setup(1, 0.3);
+    uninterrupted.algorithm.run();
+
+    Setup checkpointed = new Setup(1, 0.3);
+    final IncrementalCheckpointer<Permutation> checkpointer =
+        checkpointed.checkpointer(file, 3);
+    checkpointed.algorithm.setCheckpointer(new Checkpointer<Permutation>() {
+      public void checkpoint(Algorithm<Permutation> algorithm)
+          throws IOException {
+        if (algorithm.getIterationNumber() <= LAST_CHECKPOINT) {
+          checkpointer.checkpoint(algorithm);
+        }
+      }
+
+      public boolean restore(Algorithm<Permutation> algorithm) {
+        return false;
+      }
+    }, 1);
+    checkpointed.algorithm.run();
+    checkpointer.shutDown();
+
+    Setup resumed = new Setup(2, 0.3);
+    IncrementalCheckpointer<Permutation> restorer =
+        resumed.checkpointer(file, 3);
+    Assert.assertTrue(restorer.restore(resumed.algorithm));
+    Assert.assertEquals(resumed.algorithm.getIterationNumber(),
+        (long) LAST_CHECKPOINT);
+    resumed.algorithm.run();
+    restorer.shutDown();
+
+    Assert.assertEquals(resumed.algorithm.getPopulation(),
+        uninterrupted.algorithm.getPopulation());
+  }
+
+  /**
+   * Tests that checkpoint of an unchanged population is much smaller than
+   * a complete snapshot.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testDeltaIsSmall() throws IOException {
+    Setup setup = new Setup(1, 0.0);
+    IncrementalCheckpointer<Permutation> checkpointer =
+        setup.checkpointer(file, 10);
+    checkpointer.checkpoint(setup.algorithm);
+    checkpointer.awaitWrites();
+    final long snapshot = file.length();
+
+    checkpointer.checkpoint(setup.algorithm);
+    checkpointer.awaitWrites();
+    checkpointer.shutDown();
+    Assert.assertTrue(file.length() - snapshot < snapshot / 4);
+  }
+
+  /**
+   * Tests that a record torn by a crash is ignored.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testTornRecordIsIgnored() throws IOException {
+    Setup setup = new Setup(1, 0.3);
+    IncrementalCheckpointer<Permutation> checkpointer =
+        setup.checkpointer(file, 10);
+    checkpointer.checkpoint(setup.algorithm);
+    checkpointer.awaitWrites();
+    Population<Permutation> expected = setup.algorithm.getPopulation();
+    checkpointer.shutDown();
+
+    FileOutputStream output = new FileOutputStream(file, true);
+    output.write(new byte[] {0, 0, 1, 0, 2, 7, 7});
+    output.close();
+
+    Setup resumed = new Setup(2, 0.3);
+    Assert.assertTrue(resumed.checkpointer(file, 10).restore(
+        resumed.algorithm));
+    Assert.assertEquals(resumed.algorithm.getPopulation(), expected);
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,129 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.individuals.BinaryVector;
+import engine.individuals.NaturalVector;
+import engine.individuals.Permutation;
+import engine.individuals.RealVector;
+import engine.utils.JavaRandom;
+
+/**
+ * Tests for {@link IndividualCodec} implementations.
+ */
+public class IndividualCodecTest {
+  // MagicNumber off
+
+  /**
+   * Encodes and decodes the individual.
+   * @param <T> Type of the individual.
+   * @param codec Codec to use.
+   * @param individual Individual to encode.
+   * @return Decoded individual.
+   * @throws IOException Never thrown.
+   */
+  private <T> T roundTrip(IndividualCodec<T> codec, T individual)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    codec.encode(output, individual);
+    output.flush();
+    DataInputStream input =
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    T decoded = codec.decode(input);
+    Assert.assertEquals(input.available(), 0);
+    return decoded;
+  }
+
+  /**
+   * Tests binary vectors of lengths not divisible by eight.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testBinaryVectorRoundTrip() throws IOException {
+    JavaRandom random = new JavaRandom(0);
+    for (int length = 0; length < 20; length++) {
+      BinaryVector individual = BinaryVector.generate(random, length);
+      Assert.assertEquals(
+          roundTrip(new BinaryVectorCodec(), individual), individual);
+    }
+  }
+
+  /**
+   * Tests packing of bits.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testBinaryVectorIsPacked() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new BinaryVectorCodec().encode(
+        new DataOutputStream(bytes), new BinaryVector(100));
+    Assert.assertEquals(bytes.size(), 1 + 13);
+  }
+
+  /**
+   * Tests natural vectors.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testNaturalVectorRoundTrip() throws IOException {
+    NaturalVector individual =
+        new NaturalVector(new long[] {0, 1, Long.MAX_VALUE, 42});
+    Assert.assertEquals(
+        roundTrip(new NaturalVectorCodec(), individual), individual);
+  }
+
+  /**
+   * Tests permutations, including ones with multi-byte genes.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testPermutationRoundTrip() throws IOException {
+    Permutation individual = Permutation.generate(new JavaRandom(0), 1000);
+    Assert.assertEquals(
+        roundTrip(new PermutationCodec(), individual), individual);
+  }
+
+  /**
+   * Tests that real vectors are restored bit by bit.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRealVectorRoundTrip() throws IOException {
+    RealVector individual = new RealVector(
+        new double[] {0.1, -0.0, Double.NaN, Double.MIN_VALUE, 1e300});
+    RealVector decoded = roundTrip(new RealVectorCodec(), individual);
+    for (int i = 0; i < individual.getSize(); i++) {
+      Assert.assertEquals(Double.doubleToRawLongBits(decoded.getValue(i)),
+          Double.doubleToRawLongBits(individual.getValue(i)));
+    }
+  }
+
+  // MagicNumber on
+}
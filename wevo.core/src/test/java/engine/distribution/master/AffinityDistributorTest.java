@@ -0,0 +1,123 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.Population;
+
+/**
+ * Tests for {@link AffinityDistributor}.
+ */
+public class AffinityDistributorTest {
+  // MagicNumber off
+
+  /** Population of a thousand distinct individuals. */
+  private final Population<String> population = createPopulation(1000);
+
+  /** Tests that individuals go to the same slaves in every distribution. */
+  @Test
+  public void testAffinity() {
+    List<String> slaves = Arrays.asList("slave1", "slave2", "slave3");
+    Map<String, String> first = assign(
+        new AffinityDistributor<String>().distribute(population, slaves));
+    Map<String, String> second = assign(new AffinityDistributor<String>()
+        .distribute(createPopulation(500), slaves));
+
+    for (Entry<String, String> assignment : second.entrySet()) {
+      Assert.assertEquals(assignment.getValue(),
+          first.get(assignment.getKey()));
+    }
+  }
+
+  /** Tests that no slave gets more than its capacity. */
+  @Test
+  public void testBoundedLoad() {
+    List<String> slaves = Arrays.asList("slave1", "slave2", "slave3", "slave4");
+    DistributedPopulation<String> distribution =
+        new AffinityDistributor<String>(1, 0.1).distribute(population, slaves);
+
+    int total = 0;
+    for (String slave : slaves) {
+      Assert.assertTrue(distribution.getPopulation(slave).size() <= 275);
+      total += distribution.getPopulation(slave).size();
+    }
+    Assert.assertEquals(total, 1000);
+  }
+
+  /** Tests that a joining slave takes individuals of other slaves only. */
+  @Test
+  public void testJoiningSlave() {
+    AffinityDistributor<String> distributor =
+        new AffinityDistributor<String>();
+    Map<String, String> before = assign(distributor.distribute(population,
+        Arrays.asList("slave1", "slave2", "slave3")));
+    Map<String, String> after = assign(distributor.distribute(population,
+        Arrays.asList("slave1", "slave2", "slave3", "slave4")));
+
+    int moved = 0;
+    for (Entry<String, String> assignment : after.entrySet()) {
+      if (!assignment.getValue().equals(before.get(assignment.getKey()))) {
+        moved++;
+      }
+    }
+    // Ideally a quarter of individuals moves to the new slave.
+    Assert.assertTrue(moved < 400, "Moved " + moved);
+  }
+
+  /**
+   * Creates population of distinct individuals.
+   * @param size Size of the population.
+   * @return Population of individuals "individual0", "individual1" etc.
+   */
+  private static Population<String> createPopulation(final int size) {
+    List<String> individuals = new ArrayList<String>();
+    for (int i = 0; i < size; i++) {
+      individuals.add("individual" + i);
+    }
+    return new Population<String>(individuals);
+  }
+
+  /**
+   * Maps individuals to slaves they were assigned to.
+   * @param distribution Distributed population.
+   * @return Map from individuals to slaves.
+   */
+  private static Map<String, String> assign(
+      final DistributedPopulation<String> distribution) {
+    Map<String, String> assignment = new HashMap<String, String>();
+    for (Entry<String, Population<String>> slave : distribution) {
+      for (String individual : slave.getValue().getIndividuals()) {
+        assignment.put(individual, slave.getKey());
+      }
+    }
+    return assignment;
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,190 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.CachedObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.serialization.JavaIOResultSerializer;
+import engine.distribution.serialization.JavaIOTaskSerializer;
+import engine.distribution.slave.BinaryConnection;
+
+/**
+ * Tests for {@link BinaryServer}, talking to it over loopback.
+ */
+public class BinaryServerTest {
+  // MagicNumber off
+
+  /** Tested server. */
+  private BinaryServer<String> server;
+
+  /** Task manager of the server. */
+  private TaskManager<String> taskManager;
+
+  /** Connection to the server. */
+  private BinaryConnection<String> connection;
+
+  /** Starts the server and connects to it. */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    taskManager = new TaskManager<String>();
+    server = new BinaryServer<String>(taskManager, new SlaveManager(),
+        new StatisticsManager(), new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    final int port = server.start(0);
+    connection = new BinaryConnection<String>("localhost", port,
+        new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+  }
+
+  /** Stops the server. */
+  @AfterMethod
+  public void tearDown() {
+    connection.close();
+    server.stop();
+  }
+
+  /** Tests registration, task exchange and heartbeats. */
+  @Test
+  public void testExchange() throws Exception {
+    ObjectiveFunction<String> unused = new ObjectiveFunction<String>() {
+      public double compute(String individual) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    List<CachedObjectiveFunction<String>> functions =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    functions.add(new CachedObjectiveFunction<String>(unused, 10));
+
+    String slaveId = connection.register("slave", -1);
+    Assert.assertTrue(slaveId.startsWith("slave"));
+    Assert.assertNull(connection.getTask(slaveId));
+
+    taskManager.enableQueue(new Population<String>(
+        Arrays.asList("a", "b", "c")), 2, 1000, functions);
+    EvaluationTask<String> first = connection.getTask(slaveId);
+    Assert.assertEquals(first.getPopulation().getIndividuals(),
+        Arrays.asList("a", "b"));
+    connection.heartbeat(slaveId);
+
+    EvaluationTask<String> second = connection.sendResult(
+        new EvaluationResult<String>(2, new double[] {1.0, 2.0}),
+        slaveId, first.getId(), true);
+    Assert.assertEquals(second.getPopulation().getIndividuals(),
+        Arrays.asList("c"));
+    Assert.assertNull(connection.sendResult(
+        new EvaluationResult<String>(1, new double[] {3.0}),
+        slaveId, second.getId(), false));
+
+    Assert.assertEquals(functions.get(0).compute("b"), 2.0);
+    Assert.assertEquals(functions.get(0).compute("c"), 3.0);
+    Assert.assertFalse(taskManager.isDistributionEnabled());
+  }
+
+  /** Tests that failures of requests are reported to the slave. */
+  @Test(expectedExceptions = { IOException.class })
+  public void testError() throws IOException {
+    connection.heartbeat("unknown");
+  }
+
+  /**
+   * Tests that a slow result does not hold requests of other slaves.
+   * @throws Exception Thrown on connection failures.
+   */
+  @Test(timeOut = 10000)
+  public void testParallelHandling() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    BinaryServer<String> slowServer = new BinaryServer<String>(
+        new TaskManager<String>(), new SlaveManager(),
+        new StatisticsManager(), new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>() {
+          @Override
+          public EvaluationResult<String> deserialize(InputStream input)
+              throws IOException, ClassNotFoundException {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IOException("Interrupted");
+            }
+            return super.deserialize(input);
+          }
+        });
+    final int slowPort = slowServer.start(0);
+    final BinaryConnection<String> slow = new BinaryConnection<String>(
+        "localhost", slowPort, new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    BinaryConnection<String> fast = new BinaryConnection<String>(
+        "localhost", slowPort, new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    final String slowId = slow.register("slow", -1);
+    String fastId = fast.register("fast", -1);
+
+    Thread sender = new Thread(new Runnable() {
+      public void run() {
+        try {
+          slow.sendResult(new EvaluationResult<String>(1,
+              new double[] {1.0}), slowId, 1, false);
+        } catch (Exception e) {
+          // Result of an unknown task is rejected.
+        }
+      }
+    });
+    sender.start();
+    try {
+      started.await();
+      fast.heartbeat(fastId);
+    } finally {
+      release.countDown();
+      sender.join();
+      slow.close();
+      fast.close();
+      slowServer.stop();
+    }
+  }
+
+  /** Tests that the connection is established again after failures. */
+  @Test
+  public void testReconnection() throws IOException {
+    try {
+      connection.heartbeat("unknown");
+      Assert.fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+    String slaveId = connection.register("", 0);
+    connection.heartbeat(slaveId);
+  }
+}
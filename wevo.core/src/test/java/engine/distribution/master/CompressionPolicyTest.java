@@ -0,0 +1,93 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.distribution.serialization.Compression;
+
+/**
+ * Tests for {@link CompressionPolicy}.
+ */
+public class CompressionPolicyTest {
+  // MagicNumber off
+
+  /** Tests that small payloads and unknown slaves are never compressed. */
+  @Test
+  public void testNoCompression() {
+    CompressionPolicy policy = new CompressionPolicy(1000);
+    policy.addSlave("slave", Arrays.asList(Compression.LZF));
+    Assert.assertEquals(policy.choose("slave", 999), Compression.NONE);
+    Assert.assertEquals(policy.choose("other", 10000), Compression.NONE);
+  }
+
+  /** Tests that every compression is tried before trusting estimates. */
+  @Test
+  public void testExploration() {
+    CompressionPolicy policy = new CompressionPolicy(1000);
+    policy.addSlave("slave",
+        Arrays.asList(Compression.LZF, Compression.DEFLATE));
+    Assert.assertEquals(policy.choose("slave", 10000), Compression.LZF);
+    policy.recordCompression(Compression.LZF, 10000, 5000, 10000);
+    Assert.assertEquals(policy.choose("slave", 10000), Compression.DEFLATE);
+  }
+
+  /**
+   * Tests that compression is used on slow links only, picking the one
+   * with the best trade-off.
+   */
+  @Test
+  public void testLinkThroughput() {
+    CompressionPolicy policy = new CompressionPolicy(1000);
+    policy.addSlave("fast",
+        Arrays.asList(Compression.LZF, Compression.DEFLATE));
+    policy.addSlave("slow",
+        Arrays.asList(Compression.LZF, Compression.DEFLATE));
+    policy.addSlave("medium",
+        Arrays.asList(Compression.LZF, Compression.DEFLATE));
+    // LZF: 1 byte/ns, half the size; deflate: 0.1 byte/ns, quarter the size.
+    policy.recordCompression(Compression.LZF, 100000, 50000, 100000);
+    policy.recordCompression(Compression.DEFLATE, 100000, 25000, 1000000);
+    policy.recordTransfer("fast", 100000, 10000);
+    policy.recordTransfer("medium", 100000, 1000000);
+    policy.recordTransfer("slow", 100000, 100000000);
+
+    Assert.assertEquals(policy.choose("fast", 100000), Compression.NONE);
+    Assert.assertEquals(policy.choose("medium", 100000), Compression.LZF);
+    Assert.assertEquals(policy.choose("slow", 100000), Compression.DEFLATE);
+  }
+
+  /** Tests that slaves removed from the register are forgotten. */
+  @Test
+  public void testSlaveRemoved() {
+    CompressionPolicy policy = new CompressionPolicy(1000);
+    SlaveManager slaveManager = new SlaveManager();
+    slaveManager.addListener(policy);
+    slaveManager.addSlave("slave", new SlaveInformation());
+    policy.addSlave("slave", Arrays.asList(Compression.LZF));
+    Assert.assertEquals(policy.choose("slave", 10000), Compression.LZF);
+
+    slaveManager.removeSlave("slave");
+    Assert.assertEquals(policy.choose("slave", 10000), Compression.NONE);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.utils.WevoClock;
+
+/**
+ * Tests for {@link CostBalancingDistributor}.
+ */
+public class CostBalancingDistributorTest {
+  // MagicNumber off
+
+  /** Current time reported by the clock. */
+  private long now;
+
+  /** Individuals and times of measurements passed to the estimator. */
+  private final List<Object> measurements = new ArrayList<Object>();
+
+  /**
+   * Tests that the most expensive individuals are given out first, each to
+   * the slave with the least cost so far.
+   */
+  @Test
+  public void testLongestProcessingTimeFirst() {
+    DistributedPopulation<String> distributed = createDistributor()
+        .distribute(new Population<String>(
+            Arrays.asList("d", "bbb", "aaaa", "e", "cc")),
+            Arrays.asList("first", "second"));
+    Assert.assertEquals(
+        distributed.getPopulation("first").getIndividuals(),
+        Arrays.asList("aaaa", "d", "e"));
+    Assert.assertEquals(
+        distributed.getPopulation("second").getIndividuals(),
+        Arrays.asList("bbb", "cc"));
+  }
+
+  /** Tests that the estimator learns times of evaluated tasks. */
+  @Test
+  public void testMeasurement() {
+    CostBalancingDistributor<String> distributor = createDistributor();
+    now = 100;
+    distributor.afterSendingTask("slave", new EvaluationTask<String>(
+        new Population<String>(Arrays.asList("a", "bb")), 1));
+    now = 140;
+    distributor.afterReceivingResult("slave", 1,
+        new EvaluationResult<String>(2, new double[] {1.0, 2.0}));
+    distributor.afterReceivingResult("slave", 1,
+        new EvaluationResult<String>(2, new double[] {1.0, 2.0}));
+
+    Assert.assertEquals(measurements,
+        Arrays.<Object>asList(Arrays.asList("a", "bb"), 40L));
+  }
+
+  /**
+   * Tests that results are matched with their own tasks when a slave
+   * holds several tasks.
+   */
+  @Test
+  public void testSeveralTasksHeld() {
+    CostBalancingDistributor<String> distributor = createDistributor();
+    now = 100;
+    distributor.afterSendingTask("slave", new EvaluationTask<String>(
+        new Population<String>(Arrays.asList("a")), 1));
+    now = 110;
+    distributor.afterSendingTask("slave", new EvaluationTask<String>(
+        new Population<String>(Arrays.asList("bb")), 2));
+    now = 150;
+    distributor.afterReceivingResult("slave", 2,
+        new EvaluationResult<String>(1, new double[] {1.0}));
+    distributor.afterReceivingResult("slave", 1,
+        new EvaluationResult<String>(1, new double[] {1.0}));
+
+    Assert.assertEquals(measurements,
+        Arrays.<Object>asList(Arrays.asList("bb"), 40L));
+  }
+
+  /**
+   * Creates distributor estimating cost of an individual as its length.
+   * @return Distributor recording measurements.
+   */
+  private CostBalancingDistributor<String> createDistributor() {
+    return new CostBalancingDistributor<String>(new CostEstimator<String>() {
+      public double estimateCost(String individual) {
+        return individual.length();
+      }
+
+      public void addMeasurement(List<String> individuals,
+          long elapsedMillis) {
+        measurements.add(individuals);
+        measurements.add(elapsedMillis);
+      }
+    }, new WevoClock() {
+      public long getCurrentTimeMillis() {
+        return now;
+      }
+    });
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,61 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.ObjectiveFunction;
+
+/**
+ * Tests for {@link LinearCostEstimator}.
+ */
+public class LinearCostEstimatorTest {
+  // MagicNumber off
+
+  /**
+   * Tests that costs are uniform until measured, and that both coefficients
+   * are fitted once complexity of tasks varies.
+   */
+  @Test
+  public void testFit() {
+    LinearCostEstimator<String> estimator = new LinearCostEstimator<String>(
+        new ObjectiveFunction<String>() {
+          public double compute(String individual) {
+            return individual.length();
+          }
+        }, 0.5);
+    Assert.assertEquals(estimator.estimateCost("a"), 1.0);
+    Assert.assertEquals(estimator.estimateCost("aaa"), 1.0);
+
+    // Individuals cost 1 + 2 * length.
+    estimator.addMeasurement(Arrays.asList("a", "bb"), 8);
+    Assert.assertEquals(estimator.estimateCost("a"), 4.0, 1e-9);
+    Assert.assertEquals(estimator.estimateCost("aaa"), 4.0, 1e-9);
+
+    estimator.addMeasurement(Arrays.asList("cccc"), 9);
+    Assert.assertEquals(estimator.estimateCost("a"), 3.0, 1e-9);
+    Assert.assertEquals(estimator.estimateCost("ddd"), 7.0, 1e-9);
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,130 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.CachedObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+
+/**
+ * Tests for {@link LocalWorker}.
+ */
+public class LocalWorkerTest {
+  // MagicNumber off
+
+  /**
+   * Tests that the worker evaluates all queued tasks and its values are
+   * merged with objective functions of the master.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  @Test(timeOut = 10000)
+  public void testEvaluatesQueue() throws InterruptedException {
+    ObjectiveFunction<String> unused = new ObjectiveFunction<String>() {
+      public double compute(String individual) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    ObjectiveFunction<String> length = new ObjectiveFunction<String>() {
+      public double compute(String individual) {
+        return individual.length();
+      }
+    };
+    List<CachedObjectiveFunction<String>> masterFunctions =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    masterFunctions.add(new CachedObjectiveFunction<String>(unused, 10));
+    List<CachedObjectiveFunction<String>> localFunctions =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    localFunctions.add(new CachedObjectiveFunction<String>(length, 10));
+
+    TaskManager<String> taskManager = new TaskManager<String>();
+    SlaveManager slaveManager = new SlaveManager();
+    LocalWorker<String> worker = new LocalWorker<String>(taskManager,
+        slaveManager, new SingleThreadedEvaluator<String>(localFunctions),
+        "local");
+    worker.start();
+    try {
+      CountDownLatch evaluated = taskManager.enableQueue(
+          new Population<String>(Arrays.asList("a", "bb", "ccc")), 2, 1000,
+          masterFunctions);
+      Assert.assertTrue(evaluated.await(5, TimeUnit.SECONDS));
+    } finally {
+      worker.stop();
+    }
+
+    Assert.assertEquals(masterFunctions.get(0).compute("a"), 1.0);
+    Assert.assertEquals(masterFunctions.get(0).compute("bb"), 2.0);
+    Assert.assertEquals(masterFunctions.get(0).compute("ccc"), 3.0);
+    Assert.assertEquals(taskManager.getUnevaluatedPart().size(), 0);
+  }
+
+  /**
+   * Tests that the worker keeps evaluating tasks after failing to evaluate
+   * one.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  @Test(timeOut = 10000)
+  public void testFailingTask() throws InterruptedException {
+    final List<String> failed = new ArrayList<String>();
+    ObjectiveFunction<String> failingOnce = new ObjectiveFunction<String>() {
+      public double compute(String individual) {
+        if (individual.equals("bb") && failed.isEmpty()) {
+          failed.add(individual);
+          throw new IllegalStateException("Evaluation failed");
+        }
+        return individual.length();
+      }
+    };
+    List<CachedObjectiveFunction<String>> masterFunctions =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    masterFunctions.add(new CachedObjectiveFunction<String>(failingOnce, 10));
+    List<CachedObjectiveFunction<String>> localFunctions =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    localFunctions.add(new CachedObjectiveFunction<String>(failingOnce, 10));
+
+    TaskManager<String> taskManager = new TaskManager<String>();
+    LocalWorker<String> worker = new LocalWorker<String>(taskManager,
+        new SlaveManager(), new SingleThreadedEvaluator<String>(
+            localFunctions), "local");
+    worker.start();
+    try {
+      CountDownLatch evaluated = taskManager.enableQueue(
+          new Population<String>(Arrays.asList("a", "bb", "ccc")), 1, 60000,
+          masterFunctions);
+      Assert.assertTrue(evaluated.await(5, TimeUnit.SECONDS));
+    } finally {
+      worker.stop();
+    }
+
+    Assert.assertEquals(failed, Arrays.asList("bb"));
+    Assert.assertEquals(masterFunctions.get(0).compute("bb"), 2.0);
+  }
+
+  // MagicNumber on
+}
@@ -20,6 +20,7 @@
 package engine.distribution.master;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -27,11 +28,14 @@ import java.util.concurrent.TimeUnit;
 
 import org.easymock.classextension.EasyMock;
 import org.easymock.classextension.IMocksControl;
+import org.mortbay.jetty.Server;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import engine.CachedObjectiveFunction;
 import engine.ObjectiveFunction;
 import engine.Population;
+import engine.SingleThreadedEvaluator;
 import engine.utils.ListUtils;
 
 /**
@@ -169,6 +173,45 @@ public class MasterSlaveEvaluatorTest {
     // MagicNumber on
   }
 
+  /**
+   * Tests that cached and duplicate individuals are not distributed.
+   * @throws InterruptedException Never thrown.
+   */
+  @Test
+  public void testDeduplication() throws InterruptedException {
+    createMocks();
+    List<CachedObjectiveFunction<String>> functions = ListUtils.buildList(
+        new CachedObjectiveFunction<String>(
+            new ObjectiveFunction<String>() {
+              public double compute(final String individual) {
+                return individual.length();
+              }
+            }, 3));
+    functions.get(0).merge(Collections.singletonMap("aa", 2.0));
+    Population<String> distinct = new Population<String>(
+        Arrays.asList("a", "aaa"));
+
+    EasyMock.expect(slaveManagerMock.getAvailableSlaves(1))
+        .andReturn(slaves);
+    EasyMock.expect(populationDistributorMock.distribute(distinct, slaves))
+        .andReturn(distributedPopulation);
+    EasyMock.expect(taskManagerMock.enableDistribution(
+        distributedPopulation, functions))
+            .andReturn(populationEvaluatedSignalMock);
+    populationEvaluatedSignalMock.await();
+    EasyMock.expect(taskManagerMock.getUnevaluatedPart())
+        .andReturn(new Population<String>());
+
+    mockControl.replay();
+    MasterSlaveEvaluator<String> evaluator = new MasterSlaveEvaluator<String>(
+        functions, populationDistributorMock, taskManagerMock,
+        slaveManagerMock, new StatisticsManager(), null);
+    evaluator.setTrialsPerIteration(1);
+    evaluator.evaluatePopulation(new Population<String>(
+        Arrays.asList("a", "aa", "aaa", "a", "aa")));
+    mockControl.verify();
+  }
+
   /**
    * Sets up evaluator instance to test.
    * @param iterationTimeout Iteration timeout.
@@ -214,6 +257,84 @@ public class MasterSlaveEvaluatorTest {
             .andReturn(populationEvaluatedSignalMock);
   }
 
+  /**
+   * Tests that values of cached individuals are kept when merging values of
+   * new ones evicts them from a small cache.
+   * @throws Exception Thrown on shutdown failures.
+   */
+  @Test(timeOut = 10000)
+  public void testEvictedCachedValues() throws Exception {
+    // MagicNumber off
+    ObjectiveFunction<String> length = new ObjectiveFunction<String>() {
+      public double compute(final String individual) {
+        return individual.length();
+      }
+    };
+    List<CachedObjectiveFunction<String>> functions = ListUtils.buildList(
+        new CachedObjectiveFunction<String>(length, 5));
+    MasterSlaveEvaluator<String> evaluator = new MasterSlaveEvaluator<String>(
+        functions, new UniformDistributor<String>(), new TaskManager<String>(),
+        new SlaveManager(), new StatisticsManager(), new Server());
+    evaluator.setTrialsPerIteration(1);
+    evaluator.setWorkQueue(2, 1000);
+    evaluator.addLocalWorker(new SingleThreadedEvaluator<String>(
+        ListUtils.buildList(new CachedObjectiveFunction<String>(length, 5))));
+    try {
+      evaluator.apply(new Population<String>(Arrays.asList("a", "bb", "ccc")));
+      // Equal, but not the same individuals, so that they are looked up.
+      Population<String> next = new Population<String>(Arrays.asList(
+          new String("a"), new String("bb"), "dddd", "eeeee", "ffffff"));
+      evaluator.apply(next);
+
+      for (String individual : next.getIndividuals()) {
+        Assert.assertEquals(functions.get(0).compute(individual),
+            (double) individual.length());
+      }
+    } finally {
+      evaluator.shutdown();
+    }
+    // MagicNumber on
+  }
+
+  /**
+   * Tests that values of cached individuals submitted in the asynchronous
+   * mode are kept when other merges evict them before they are taken.
+   * @throws Exception Thrown on shutdown failures.
+   */
+  @Test(timeOut = 10000)
+  public void testEvictedSubmittedValues() throws Exception {
+    // MagicNumber off
+    List<CachedObjectiveFunction<String>> functions = ListUtils.buildList(
+        new CachedObjectiveFunction<String>(new ObjectiveFunction<String>() {
+          public double compute(final String individual) {
+            throw new UnsupportedOperationException();
+          }
+        }, 3));
+    MasterSlaveEvaluator<String> evaluator = new MasterSlaveEvaluator<String>(
+        functions, new UniformDistributor<String>(), new TaskManager<String>(),
+        new SlaveManager(), new StatisticsManager(), new Server());
+    evaluator.setMinimumNumberOfSlaves(0);
+    evaluator.setWorkQueue(2, 1000);
+    functions.get(0).merge(Collections.singletonMap("a", 1.0));
+    try {
+      evaluator.startAsynchronousEvaluation();
+      Assert.assertEquals(evaluator.submit(
+          new Population<String>(Arrays.asList("a"))), 1);
+      HashMap<String, Double> others = new HashMap<String, Double>();
+      others.put("bb", 2.0);
+      others.put("ccc", 3.0);
+      others.put("dddd", 4.0);
+      functions.get(0).merge(others);
+
+      Assert.assertEquals(evaluator.takeEvaluated().getIndividuals(),
+          Arrays.asList("a"));
+      Assert.assertEquals(functions.get(0).compute("a"), 1.0);
+    } finally {
+      evaluator.shutdown();
+    }
+    // MagicNumber on
+  }
+
   /** Creates mock instances used in tests. */
   private void createMocks() {
     mockControl.reset();
@@ -0,0 +1,63 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.distribution.utils.ProblemData;
+
+/**
+ * Tests for {@link ProblemDataStore}.
+ */
+public class ProblemDataStoreTest {
+
+  /** Tests that data is published under the hash of its content. */
+  @Test
+  public void testPublish() {
+    ProblemDataStore store = new ProblemDataStore();
+    String hash = store.publish("graph", new byte[] {1, 2, 3});
+
+    Assert.assertEquals(hash, ProblemData.hash(new byte[] {1, 2, 3}));
+    Assert.assertEquals(store.getHash("graph"), hash);
+    Assert.assertEquals(store.getData(hash), new byte[] {1, 2, 3});
+    Assert.assertEquals(ProblemData.parseReferences(
+        ProblemData.formatReferences(store.getReferences())),
+        store.getReferences());
+  }
+
+  /** Tests that republished data replaces the old one. */
+  @Test
+  public void testRepublish() {
+    ProblemDataStore store = new ProblemDataStore();
+    String oldHash = store.publish("graph", new byte[] {1});
+    String newHash = store.publish("graph", new byte[] {2});
+
+    Assert.assertFalse(oldHash.equals(newHash));
+    Assert.assertNull(store.getData(oldHash));
+    Assert.assertEquals(store.getHash("graph"), newHash);
+  }
+
+  /** Tests that names with separators are rejected. */
+  @Test(expectedExceptions = { IllegalArgumentException.class })
+  public void testInvalidName() {
+    new ProblemDataStore().publish("a=b", new byte[0]);
+  }
+}
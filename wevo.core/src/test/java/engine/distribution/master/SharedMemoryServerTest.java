@@ -0,0 +1,120 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.distribution.serialization.JavaIOResultSerializer;
+import engine.distribution.serialization.JavaIOTaskSerializer;
+import engine.distribution.slave.BinaryConnection;
+import engine.distribution.utils.SharedMemoryChannel;
+
+/**
+ * Tests for {@link SharedMemoryServer}.
+ */
+public class SharedMemoryServerTest {
+
+  /** Root of directories of shared memory files. */
+  private File root;
+
+  /** Server handling the frames. */
+  private BinaryServer<String> binaryServer;
+
+  /** Tested server. */
+  private SharedMemoryServer server;
+
+  /** Port of the binary server. */
+  private int port;
+
+  /**
+   * Starts the servers with shared memory files in a temporary directory.
+   * @throws IOException Thrown when unable to start the servers.
+   */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    root = File.createTempFile("wevo", "shm");
+    root.delete();
+    root.mkdirs();
+    System.setProperty(SharedMemoryChannel.DIRECTORY_PROPERTY,
+        root.getPath());
+
+    binaryServer = new BinaryServer<String>(new TaskManager<String>(),
+        new SlaveManager(), new StatisticsManager(),
+        new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    port = binaryServer.start(0);
+    server = new SharedMemoryServer(binaryServer,
+        SharedMemoryChannel.getDirectory(port));
+    server.start();
+  }
+
+  /** Stops the servers. */
+  @AfterMethod
+  public void tearDown() {
+    server.stop();
+    binaryServer.stop();
+    System.clearProperty(SharedMemoryChannel.DIRECTORY_PROPERTY);
+    root.delete();
+  }
+
+  /** Tests that slaves on the same host use shared memory. */
+  @Test(timeOut = 10000)
+  public void testSameHostSlave() throws IOException {
+    BinaryConnection<String> connection = new BinaryConnection<String>(
+        "localhost", port, new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    String slaveId = connection.register("slave", -1);
+    connection.heartbeat(slaveId);
+
+    File directory = SharedMemoryChannel.getDirectory(port);
+    Assert.assertEquals(directory.listFiles().length, 1);
+    connection.close();
+
+    server.stop();
+    Assert.assertFalse(directory.exists());
+  }
+
+  /**
+   * Tests that channels of removed slaves, never closed by them, are
+   * closed and their files removed.
+   * @throws Exception Thrown when interrupted or on connection failures.
+   */
+  @Test(timeOut = 10000)
+  public void testRemovedSlave() throws Exception {
+    BinaryConnection<String> connection = new BinaryConnection<String>(
+        "localhost", port, new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    String slaveId = connection.register("slave", -1);
+    File directory = SharedMemoryChannel.getDirectory(port);
+    Assert.assertEquals(directory.listFiles().length, 1);
+
+    server.slaveRemoved("other");
+    server.slaveRemoved(slaveId);
+    while (directory.listFiles().length > 0) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.classextension.EasyMock;
+import org.easymock.classextension.IMocksControl;
+import org.mortbay.jetty.Server;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.CachedObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.SingleThreadedEvaluator;
+import engine.distribution.serialization.JavaIOResultSerializer;
+import engine.distribution.serialization.JavaIOTaskSerializer;
+import engine.distribution.slave.Slave;
+import engine.utils.ListUtils;
+
+/**
+ * Tests for {@link SubMaster}.
+ */
+public class SubMasterTest {
+
+  /**
+   * Tests that the sub-master registers with its master before evaluating
+   * its tasks.
+   * @throws Exception Never thrown.
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testRun() throws Exception {
+    IMocksControl control = EasyMock.createControl();
+    MasterSlaveEvaluator<String> evaluator =
+        control.createMock(MasterSlaveEvaluator.class);
+    Slave<String> upstream = control.createMock(Slave.class);
+
+    upstream.register(3, 10, 20);
+    upstream.run(10, 20);
+    control.replay();
+
+    new SubMaster<String>(evaluator, upstream).run(3, 10, 20);
+    control.verify();
+  }
+
+  /**
+   * Tests that tasks of the master, evaluated by a local worker of
+   * the sub-master, come back to the master with correct values.
+   * @throws Exception Thrown on server failures.
+   */
+  @Test(timeOut = 20000)
+  public void testEvaluation() throws Exception {
+    // MagicNumber off
+    ObjectiveFunction<String> length = new ObjectiveFunction<String>() {
+      public double compute(final String individual) {
+        return individual.length();
+      }
+    };
+    // The master never computes values itself.
+    List<CachedObjectiveFunction<String>> functions = ListUtils.buildList(
+        new CachedObjectiveFunction<String>(new ObjectiveFunction<String>() {
+          public double compute(final String individual) {
+            throw new UnsupportedOperationException();
+          }
+        }, 10));
+    TaskManager<String> taskManager = new TaskManager<String>();
+    BinaryServer<String> server = new BinaryServer<String>(taskManager,
+        new SlaveManager(), new StatisticsManager(),
+        new JavaIOTaskSerializer<String>(),
+        new JavaIOResultSerializer<String>());
+    final int port = server.start(0);
+
+    final MasterSlaveEvaluator<String> evaluator =
+        new MasterSlaveEvaluator<String>(ListUtils.buildList(
+            new CachedObjectiveFunction<String>(length, 10)),
+            new UniformDistributor<String>(), new TaskManager<String>(),
+            new SlaveManager(), new StatisticsManager(), new Server());
+    evaluator.setTrialsPerIteration(Integer.MAX_VALUE);
+    evaluator.setWorkQueue(2, 1000);
+    evaluator.addLocalWorker(new SingleThreadedEvaluator<String>(
+        ListUtils.buildList(new CachedObjectiveFunction<String>(length, 10))));
+    final SubMaster<String> subMaster = new SubMaster<String>(evaluator,
+        Slave.createBinarySlave(evaluator, "sub", "localhost", port, 0));
+    // Zero timeout stops the sub-master once the server is stopped.
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          subMaster.run(1, 10, 0);
+        } catch (ClassNotFoundException e) {
+          Assert.fail();
+        } catch (IllegalStateException e) {
+          // Expected.
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+
+    try {
+      Population<String> population = new Population<String>(
+          Arrays.asList("a", "bb", "ccc", "dddd", "eeeee"));
+      CountDownLatch latch = taskManager.enableQueue(
+          population, 2, 1000, functions);
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+      for (String individual : population.getIndividuals()) {
+        Assert.assertEquals(functions.get(0).compute(individual),
+            (double) individual.length());
+      }
+    } finally {
+      server.stop();
+      thread.join();
+      subMaster.shutdown();
+    }
+    // MagicNumber on
+  }
+}
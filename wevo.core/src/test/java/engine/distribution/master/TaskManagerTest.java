@@ -0,0 +1,510 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.CachedObjectiveFunction;
+import engine.DecomposableObjectiveFunction;
+import engine.ObjectiveFunction;
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.utils.WevoClock;
+
+/**
+ * Tests for {@link TaskManager}.
+ */
+public class TaskManagerTest {
+  // MagicNumber off
+
+  /** Tested task manager. */
+  private TaskManager<String> taskManager;
+
+  /** Objective functions. */
+  private List<CachedObjectiveFunction<String>> functions;
+
+  /** Current time reported by the clock of queue tests. */
+  private long now;
+
+  /** Sets up distribution of a single task of three individuals. */
+  @BeforeMethod
+  public void setUp() {
+    ObjectiveFunction<String> unused = new ObjectiveFunction<String>() {
+      public double compute(String individual) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    functions = new ArrayList<CachedObjectiveFunction<String>>();
+    functions.add(new CachedObjectiveFunction<String>(unused, 10));
+    functions.add(new CachedObjectiveFunction<String>(unused, 10));
+
+    Map<String, EvaluationTask<String>> tasks =
+        new LinkedHashMap<String, EvaluationTask<String>>();
+    tasks.put("slave", new EvaluationTask<String>(new Population<String>(
+        Arrays.asList("a", "b", "c"))));
+    taskManager = new TaskManager<String>();
+    taskManager.enableDistribution(tasks, functions);
+  }
+
+  /** Tests that values are mapped to individuals of the task by position. */
+  @Test
+  public void testPositionalResult() {
+    taskManager.updateTask("slave", new EvaluationResult<String>(3,
+        new double[] {1.0, 10.0, 2.0, 20.0, 3.0, 30.0}));
+
+    Assert.assertFalse(taskManager.isDistributionEnabled());
+    Assert.assertEquals(functions.get(0).compute("b"), 2.0);
+    Assert.assertEquals(functions.get(1).compute("b"), 20.0);
+    Assert.assertEquals(functions.get(0).compute("c"), 3.0);
+    Assert.assertEquals(functions.get(1).compute("a"), 10.0);
+  }
+
+  /** Tests that result not matching the task is rejected. */
+  @Test
+  public void testMismatchedResult() {
+    try {
+      taskManager.updateTask("slave", new EvaluationResult<String>(2,
+          new double[] {1.0, 10.0, 2.0, 20.0}));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(taskManager.isTaskAvailableForSlave("slave"));
+    }
+  }
+
+  /** Tests that idle slaves pull consecutive chunks from the queue. */
+  @Test
+  public void testQueue() {
+    TaskManager<String> queue = createQueue();
+
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+    Assert.assertEquals(queue.getTaskForSlave("slow").getPopulation()
+        .getIndividuals(), Arrays.asList("c", "d"));
+    queue.updateTask("fast", new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("e"));
+    queue.updateTask("fast", new EvaluationResult<String>(1,
+        new double[] {5.0, 50.0}));
+
+    Assert.assertFalse(queue.isTaskAvailableForSlave("fast"));
+    Assert.assertNull(queue.getTaskForSlave("fast"));
+    Assert.assertEquals(queue.getUnevaluatedPart().getIndividuals(),
+        Arrays.asList("c", "d"));
+    Assert.assertEquals(functions.get(1).compute("e"), 50.0);
+  }
+
+  /** Tests that tasks with expired leases go to other slaves. */
+  @Test
+  public void testExpiredLease() {
+    TaskManager<String> queue = createQueue();
+    queue.getTaskForSlave("dead");
+    queue.getTaskForSlave("fast");
+    queue.updateTask("fast", new EvaluationResult<String>(2,
+        new double[] {3.0, 30.0, 4.0, 40.0}));
+    queue.getTaskForSlave("fast");
+    queue.updateTask("fast", new EvaluationResult<String>(1,
+        new double[] {5.0, 50.0}));
+    Assert.assertFalse(queue.isTaskAvailableForSlave("fast"));
+
+    now = 1000;
+    Assert.assertTrue(queue.isTaskAvailableForSlave("fast"));
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+    queue.updateTask("fast", new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+    Assert.assertFalse(queue.isDistributionEnabled());
+
+    // Late result of the original slave is ignored.
+    queue.updateTask("dead", new EvaluationResult<String>(2,
+        new double[] {-1.0, -1.0, -1.0, -1.0}));
+    Assert.assertEquals(functions.get(0).compute("a"), 1.0);
+  }
+
+  /** Tests that leases expire in order of leasing. */
+  @Test
+  public void testLeaseExpiryOrder() {
+    TaskManager<String> queue = createQueue();
+    queue.getTaskForSlave("dead");
+    now = 500;
+    queue.getTaskForSlave("slow");
+    queue.getTaskForSlave("fast");
+    queue.updateTask("fast", new EvaluationResult<String>(1,
+        new double[] {5.0, 50.0}));
+
+    now = 1000;
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+    Assert.assertFalse(queue.isTaskAvailableForSlave("spare"));
+
+    now = 1500;
+    Assert.assertEquals(queue.getTaskForSlave("spare").getPopulation()
+        .getIndividuals(), Arrays.asList("c", "d"));
+  }
+
+  /**
+   * Tests that tasks of removed slaves are requeued at once and that
+   * leases of tasks evaluated by other slaves are pruned.
+   */
+  @Test
+  public void testLeasePruning() {
+    TaskManager<String> queue = createQueue();
+    queue.setSpeculationThreshold(0.3);
+    queue.getTaskForSlave("dead");
+    queue.getTaskForSlave("slow");
+    queue.getTaskForSlave("spare");
+    queue.slaveRemoved("dead");
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+
+    queue.updateTask("spare", new EvaluationResult<String>(1,
+        new double[] {5.0, 50.0}));
+    queue.updateTask("fast", new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+    Assert.assertEquals(queue.getTaskForSlave("spare").getPopulation()
+        .getIndividuals(), Arrays.asList("c", "d"));
+    queue.updateTask("spare", new EvaluationResult<String>(2,
+        new double[] {3.0, 30.0, 4.0, 40.0}));
+    Assert.assertFalse(queue.isDistributionEnabled());
+    Assert.assertEquals(queue.getLeaseCount(), 1);
+
+    Assert.assertNull(queue.getTaskForSlave("slow"));
+    Assert.assertEquals(queue.getLeaseCount(), 0);
+  }
+
+  /** Tests that tasks released by slaves go back to the queue at once. */
+  @Test
+  public void testReleaseTask() {
+    TaskManager<String> queue = createQueue();
+    EvaluationTask<String> task = queue.getTaskForSlave("failing");
+    queue.releaseTask("failing", task.getId());
+    Assert.assertEquals(queue.getLeaseCount(), 0);
+
+    Assert.assertEquals(queue.getTaskForSlave("fast").getPopulation()
+        .getIndividuals(), Arrays.asList("c", "d"));
+    Assert.assertEquals(queue.getTaskForSlave("slow").getPopulation()
+        .getIndividuals(), Arrays.asList("e"));
+    Assert.assertSame(queue.getTaskForSlave("other"), task);
+  }
+
+  /** Tests that idle slaves get copies of straggling tasks. */
+  @Test
+  public void testSpeculation() {
+    Map<String, EvaluationTask<String>> tasks =
+        new LinkedHashMap<String, EvaluationTask<String>>();
+    tasks.put("fast", new EvaluationTask<String>(new Population<String>(
+        Arrays.asList("a"))));
+    tasks.put("slow", new EvaluationTask<String>(new Population<String>(
+        Arrays.asList("b"))));
+    tasks.put("dead", new EvaluationTask<String>(new Population<String>(
+        Arrays.asList("c"))));
+    taskManager.enableDistribution(tasks, functions);
+    taskManager.setSpeculationThreshold(0.3);
+
+    Assert.assertEquals(taskManager.getTaskForSlave("slow"),
+        tasks.get("slow"));
+    taskManager.getTaskForSlave("fast");
+    taskManager.updateTask("fast", new EvaluationResult<String>(1,
+        new double[] {1.0, 10.0}));
+
+    // Tasks of the slow and the dead slave are copied once each.
+    Assert.assertEquals(taskManager.getTaskForSlave("fast"),
+        tasks.get("slow"));
+    Assert.assertEquals(taskManager.getTaskForSlave("spare"),
+        tasks.get("dead"));
+    Assert.assertNull(taskManager.getTaskForSlave("other"));
+    Assert.assertEquals(taskManager.getSpeculativeTaskCount(), 2);
+
+    taskManager.updateTask("fast", new EvaluationResult<String>(1,
+        new double[] {2.0, 20.0}));
+    taskManager.updateTask("spare", new EvaluationResult<String>(1,
+        new double[] {3.0, 30.0}));
+    Assert.assertFalse(taskManager.isDistributionEnabled());
+
+    taskManager.updateTask("slow", new EvaluationResult<String>(1,
+        new double[] {-1.0, -1.0}));
+    Assert.assertEquals(taskManager.getDiscardedResultCount(), 1);
+    Assert.assertEquals(functions.get(0).compute("b"), 2.0);
+  }
+
+  /** Tests that speculation waits until enough tasks are evaluated. */
+  @Test
+  public void testSpeculationThreshold() {
+    TaskManager<String> queue = createQueue();
+    queue.setSpeculationThreshold(0.6);
+    queue.getTaskForSlave("slave1");
+    queue.getTaskForSlave("slave2");
+    queue.getTaskForSlave("slave3");
+    queue.updateTask("slave3", new EvaluationResult<String>(1,
+        new double[] {5.0, 50.0}));
+    Assert.assertFalse(queue.isTaskAvailableForSlave("slave3"));
+
+    queue.updateTask("slave2", new EvaluationResult<String>(2,
+        new double[] {3.0, 30.0, 4.0, 40.0}));
+    Assert.assertTrue(queue.isTaskAvailableForSlave("slave3"));
+    Assert.assertEquals(queue.getTaskForSlave("slave3").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+  }
+
+  /** Tests that slave holds several tasks and returns them out of order. */
+  @Test
+  public void testSeveralTasksPerSlave() {
+    TaskManager<String> queue = createQueue();
+    queue.setMaxTasksPerSlave(2);
+
+    EvaluationTask<String> first = queue.getTaskForSlave("slave");
+    EvaluationTask<String> second = queue.getTaskForSlave("slave");
+    Assert.assertEquals(second.getPopulation().getIndividuals(),
+        Arrays.asList("c", "d"));
+    Assert.assertFalse(first.getId() == second.getId());
+    // At the limit the oldest task is handed out again.
+    Assert.assertSame(queue.getTaskForSlave("slave"), first);
+
+    queue.updateTask("slave", second.getId(), new EvaluationResult<String>(2,
+        new double[] {3.0, 30.0, 4.0, 40.0}));
+    Assert.assertEquals(queue.getTaskForSlave("slave").getPopulation()
+        .getIndividuals(), Arrays.asList("e"));
+    queue.updateTask("slave", first.getId(), new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+
+    Assert.assertEquals(functions.get(0).compute("c"), 3.0);
+    Assert.assertEquals(functions.get(1).compute("a"), 10.0);
+    Assert.assertEquals(queue.getUnevaluatedPart().getIndividuals(),
+        Arrays.asList("e"));
+  }
+
+  /**
+   * Tests that a slave asking to hold more tasks than the maximum for all
+   * slaves gets different tasks.
+   */
+  @Test
+  public void testSlaveTaskLimit() {
+    TaskManager<String> queue = createQueue();
+    queue.setMaxTasksForSlave("slave", 2);
+    Assert.assertEquals(queue.getTaskForSlave("slave").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+    Assert.assertEquals(queue.getTaskForSlave("slave").getPopulation()
+        .getIndividuals(), Arrays.asList("c", "d"));
+    Assert.assertEquals(queue.getTaskForSlave("slave").getPopulation()
+        .getIndividuals(), Arrays.asList("a", "b"));
+    Assert.assertEquals(queue.getTaskForSlave("other").getPopulation()
+        .getIndividuals(), Arrays.asList("e"));
+    Assert.assertEquals(queue.getTaskForSlave("other").getPopulation()
+        .getIndividuals(), Arrays.asList("e"));
+  }
+
+  /** Tests that listeners learn about enabled and copyable tasks. */
+  @Test
+  public void testTaskListener() {
+    final int[] notifications = new int[1];
+    TaskListener listener = new TaskListener() {
+      public void tasksAvailable() {
+        notifications[0]++;
+      }
+    };
+    TaskManager<String> queue = new TaskManager<String>();
+    queue.addTaskListener(listener);
+    queue.setSpeculationThreshold(0.3);
+    queue.enableQueue(new Population<String>(
+        Arrays.asList("a", "b", "c")), 1, 1000, functions);
+    Assert.assertEquals(notifications[0], 1);
+
+    queue.getTaskForSlave("slave");
+    queue.updateTask("slave", new EvaluationResult<String>(1,
+        new double[] {1.0, 10.0}));
+    Assert.assertEquals(notifications[0], 2);
+  }
+
+  /** Tests that partial values of shards are combined. */
+  @Test
+  public void testShards() {
+    DecomposableObjectiveFunction<String> sum =
+        new DecomposableObjectiveFunction<String>() {
+      public double compute(String individual) {
+        throw new UnsupportedOperationException();
+      }
+
+      public double combine(double[] partialValues) {
+        return partialValues[0] + partialValues[1];
+      }
+    };
+    List<CachedObjectiveFunction<String>> sharded =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    sharded.add(new CachedObjectiveFunction<String>(sum, 10));
+    sharded.add(new CachedObjectiveFunction<String>(sum, 10));
+    Map<String, Integer> shards = new HashMap<String, Integer>();
+    shards.put("first", 0);
+    shards.put("second", 1);
+
+    TaskManager<String> manager = new TaskManager<String>();
+    manager.enableShards(new Population<String>(Arrays.asList("a", "b")), 2,
+        shards, 1000, sharded);
+    Assert.assertFalse(manager.isTaskAvailableForSlave("unsharded"));
+    Assert.assertNull(manager.getTaskForSlave("unsharded"));
+
+    EvaluationTask<String> second = manager.getTaskForSlave("second");
+    EvaluationTask<String> first = manager.getTaskForSlave("first");
+    Assert.assertEquals(first.getPopulation().getIndividuals(),
+        Arrays.asList("a", "b"));
+    Assert.assertFalse(first.getId() == second.getId());
+
+    manager.updateTask("first", new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+    Assert.assertEquals(manager.getUnevaluatedPart().getIndividuals(),
+        Arrays.asList("a", "b"));
+    manager.updateTask("second", new EvaluationResult<String>(2,
+        new double[] {3.0, 30.0, 4.0, 40.0}));
+
+    Assert.assertEquals(sharded.get(0).compute("a"), 4.0);
+    Assert.assertEquals(sharded.get(1).compute("b"), 60.0);
+    Assert.assertEquals(manager.getUnevaluatedPart().size(), 0);
+  }
+
+  /**
+   * Tests that streamed tasks are pulled as they are added and handed over
+   * once evaluated, without finishing the distribution.
+   */
+  @Test
+  public void testStream() {
+    BlockingQueue<Population<String>> evaluated =
+        new LinkedBlockingQueue<Population<String>>();
+    TaskManager<String> stream = new TaskManager<String>();
+    stream.enableStream(1000, functions, evaluated);
+    Assert.assertNull(stream.getTaskForSlave("slave"));
+
+    stream.addToQueue(new Population<String>(Arrays.asList("a", "b", "c")),
+        2);
+    EvaluationTask<String> task = stream.getTaskForSlave("slave");
+    Assert.assertEquals(task.getPopulation().getIndividuals(),
+        Arrays.asList("a", "b"));
+    stream.updateTask("slave", task.getId(), new EvaluationResult<String>(2,
+        new double[] {1.0, 10.0, 2.0, 20.0}));
+
+    Assert.assertEquals(evaluated.poll().getIndividuals(),
+        Arrays.asList("a", "b"));
+    Assert.assertEquals(functions.get(1).compute("b"), 20.0);
+    Assert.assertTrue(stream.isDistributionEnabled());
+    Assert.assertEquals(stream.getUnevaluatedPart().getIndividuals(),
+        Arrays.asList("c"));
+  }
+
+  /** Tests that tasks in flight in streaming mode are never copied. */
+  @Test
+  public void testStreamWithoutSpeculation() {
+    TaskManager<String> stream = new TaskManager<String>();
+    stream.enableStream(1000, functions,
+        new LinkedBlockingQueue<Population<String>>());
+    stream.setSpeculationThreshold(0.3);
+    stream.addToQueue(new Population<String>(
+        Arrays.asList("a", "b", "c", "d")), 2);
+    stream.getTaskForSlave("slave1");
+    stream.getTaskForSlave("slave2");
+
+    Assert.assertFalse(stream.isTaskAvailableForSlave("idle"));
+    Assert.assertNull(stream.getTaskForSlave("idle"));
+    Assert.assertEquals(stream.getSpeculativeTaskCount(), 0);
+  }
+
+  /**
+   * Tests that results posted by many slaves at once are all merged and
+   * each task counts once.
+   * @throws InterruptedException Thrown when interrupted while waiting.
+   */
+  @Test(timeOut = 10000)
+  public void testConcurrentResults() throws InterruptedException {
+    final List<String> individuals = new ArrayList<String>();
+    for (int i = 0; i < 400; i++) {
+      individuals.add("individual" + i);
+    }
+    final List<CachedObjectiveFunction<String>> large =
+        new ArrayList<CachedObjectiveFunction<String>>();
+    for (CachedObjectiveFunction<String> function : functions) {
+      large.add(new CachedObjectiveFunction<String>(function, 1000));
+    }
+    final TaskManager<String> queue = new TaskManager<String>();
+    final CountDownLatch evaluated = queue.enableQueue(
+        new Population<String>(individuals), 1, 1000, large);
+    queue.setSpeculationThreshold(0.9);
+
+    List<Thread> slaves = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      final String slaveId = "slave" + i;
+      slaves.add(new Thread() {
+        @Override
+        public void run() {
+          EvaluationTask<String> task = queue.getTaskForSlave(slaveId);
+          while (task != null) {
+            double value = Integer.parseInt(
+                task.getPopulation().getIndividuals().get(0).substring(10));
+            queue.updateTask(slaveId, task.getId(),
+                new EvaluationResult<String>(1, new double[] {value, -value}));
+            task = queue.getTaskForSlave(slaveId);
+          }
+        }
+      });
+    }
+    for (Thread slave : slaves) {
+      slave.start();
+    }
+    for (Thread slave : slaves) {
+      slave.join();
+    }
+
+    Assert.assertEquals(evaluated.getCount(), 0);
+    for (int i = 0; i < 400; i++) {
+      Assert.assertEquals(large.get(0).compute("individual" + i),
+          (double) i);
+      Assert.assertEquals(large.get(1).compute("individual" + i),
+          (double) -i);
+    }
+  }
+
+  /**
+   * Creates queue of chunks of two out of five individuals, with leases
+   * expiring after a second.
+   * @return Task manager in queue mode.
+   */
+  private TaskManager<String> createQueue() {
+    now = 0;
+    TaskManager<String> queue = new TaskManager<String>(new WevoClock() {
+      public long getCurrentTimeMillis() {
+        return now;
+      }
+    });
+    queue.enableQueue(new Population<String>(
+        Arrays.asList("a", "b", "c", "d", "e")), 2, 1000, functions);
+    return queue;
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,147 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.master;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.Population;
+import engine.distribution.serialization.EvaluationResult;
+import engine.distribution.serialization.EvaluationTask;
+import engine.utils.WevoClock;
+
+/**
+ * Tests for {@link ThroughputDistributor}.
+ */
+public class ThroughputDistributorTest {
+  // MagicNumber off
+
+  /** Slaves to distribute among. */
+  private final List<String> slaves = Arrays.asList("fast", "slow", "new");
+
+  /** Current time reported by the clock. */
+  private long now;
+
+  /** Identifier of the next simulated task. */
+  private long nextTaskId;
+
+  /** Tested distributor. */
+  private ThroughputDistributor<Integer> distributor;
+
+  /** Creates the distributor without smoothing. */
+  @BeforeMethod
+  public void setUp() {
+    now = 0;
+    distributor = new ThroughputDistributor<Integer>(new WevoClock() {
+      public long getCurrentTimeMillis() {
+        return now;
+      }
+    }, 1.0);
+  }
+
+  /** Tests that unmeasured slaves get equal shares. */
+  @Test
+  public void testUniformWithoutMeasurements() {
+    Assert.assertEquals(distributor.computeShares(10, slaves),
+        new int[] {4, 3, 3});
+  }
+
+  /**
+   * Tests that shares are proportional to measured speed, with unknown
+   * slaves treated as average ones.
+   */
+  @Test
+  public void testProportionalShares() {
+    measure("fast", 150, 1000);
+    measure("slow", 50, 1000);
+    Assert.assertEquals(distributor.getThroughput("fast").doubleValue(), 150.0);
+
+    int[] shares = distributor.computeShares(303, slaves);
+    Assert.assertEquals(shares, new int[] {151, 51, 101});
+
+    DistributedPopulation<Integer> distributed = distributor.distribute(
+        new Population<Integer>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9)),
+        slaves);
+    Assert.assertEquals(distributed.getPopulation("fast").size()
+        + distributed.getPopulation("slow").size()
+        + distributed.getPopulation("new").size(), 9);
+    Assert.assertEquals(distributed.getPopulation("fast").size(), 4);
+    Assert.assertEquals(distributed.getPopulation("slow").size(), 2);
+  }
+
+  /** Tests that each slave gets an individual when there are enough. */
+  @Test
+  public void testMinimumShare() {
+    measure("fast", 10000, 1);
+    measure("slow", 1, 1000);
+    measure("new", 1, 1000);
+    Assert.assertEquals(distributor.computeShares(5, slaves),
+        new int[] {3, 1, 1});
+    Assert.assertEquals(distributor.computeShares(2, slaves),
+        new int[] {2, 0, 0});
+  }
+
+  /**
+   * Tests that results are timed from sending of their own tasks when
+   * a slave holds several tasks, and that results of unknown tasks are
+   * ignored.
+   */
+  @Test
+  public void testSeveralTasksHeld() {
+    distributor.afterSendingTask("fast", new EvaluationTask<Integer>(
+        new Population<Integer>(), 1));
+    now = 100;
+    distributor.afterSendingTask("fast", new EvaluationTask<Integer>(
+        new Population<Integer>(), 2));
+    now = 200;
+    distributor.afterReceivingResult("fast", 1,
+        new EvaluationResult<Integer>(20, new double[20]));
+    Assert.assertEquals(distributor.getThroughput("fast").doubleValue(), 100.0);
+
+    now = 300;
+    distributor.afterReceivingResult("fast", 3,
+        new EvaluationResult<Integer>(10, new double[10]));
+    distributor.afterReceivingResult("fast", 2,
+        new EvaluationResult<Integer>(10, new double[10]));
+    Assert.assertEquals(distributor.getThroughput("fast").doubleValue(), 50.0);
+  }
+
+  /**
+   * Simulates evaluation of a task by the slave.
+   * @param slaveId ID of the slave.
+   * @param size Number of evaluated individuals.
+   * @param millis Time of evaluation.
+   */
+  private void measure(final String slaveId, final int size,
+      final long millis) {
+    final long taskId = nextTaskId++;
+    distributor.afterSendingTask(slaveId, new EvaluationTask<Integer>(
+        new Population<Integer>(), taskId));
+    now += millis;
+    distributor.afterReceivingResult(slaveId, taskId,
+        new EvaluationResult<Integer>(size, new double[size]));
+  }
+
+  // MagicNumber on
+}
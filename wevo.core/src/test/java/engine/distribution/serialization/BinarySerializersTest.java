@@ -0,0 +1,115 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.Population;
+import engine.codecs.PermutationCodec;
+import engine.individuals.Permutation;
+import engine.utils.JavaRandom;
+
+/**
+ * Tests for {@link BinaryTaskSerializer} and {@link BinaryResultSerializer}.
+ */
+public class BinarySerializersTest {
+  // MagicNumber off
+
+  /** Evaluated population. */
+  private final Population<Permutation> population =
+      Permutation.generatePopulationOfRandomIndividuals(
+          new JavaRandom(1), 50, 100);
+
+  /**
+   * Tests that task survives serialization and is smaller than with Java I/O.
+   * @throws Exception Never thrown.
+   */
+  @Test
+  public void testTask() throws Exception {
+    EvaluationTask<Permutation> task =
+        new EvaluationTask<Permutation>(population);
+
+    ByteArrayOutputStream binary = new ByteArrayOutputStream();
+    new BinaryTaskSerializer<Permutation>(new PermutationCodec())
+        .serialize(binary, task);
+    ByteArrayOutputStream javaIO = new ByteArrayOutputStream();
+    new JavaIOTaskSerializer<Permutation>().serialize(javaIO, task);
+
+    EvaluationTask<Permutation> deserialized =
+        new BinaryTaskSerializer<Permutation>(new PermutationCodec())
+            .deserialize(new ByteArrayInputStream(binary.toByteArray()));
+    Assert.assertEquals(deserialized.getPopulation(), population);
+    Assert.assertFalse(deserialized.isEvaluated());
+    Assert.assertTrue(binary.size() < javaIO.size() / 2);
+  }
+
+  /**
+   * Tests that result survives serialization by position, without
+   * individuals.
+   * @throws Exception Never thrown.
+   */
+  @Test
+  public void testResult() throws Exception {
+    Map<Permutation, Double> first = new LinkedHashMap<Permutation, Double>();
+    Map<Permutation, Double> second = new LinkedHashMap<Permutation, Double>();
+    for (int i = 0; i < population.size(); i++) {
+      first.put(population.getIndividuals().get(i), (double) i);
+      second.put(population.getIndividuals().get(i), -0.5 * i);
+    }
+    EvaluationResultBuilder<Permutation> builder =
+        new EvaluationResultBuilder<Permutation>();
+    builder.appendObjectiveFunctionResults(first);
+    builder.appendObjectiveFunctionResults(second);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new BinaryResultSerializer<Permutation>()
+        .serialize(output, builder.toEvaluationResult());
+    Assert.assertEquals(output.size(), 3 + population.size() * 2 * 8);
+    EvaluationResult<Permutation> result =
+        new BinaryResultSerializer<Permutation>()
+            .deserialize(new ByteArrayInputStream(output.toByteArray()));
+
+    Assert.assertEquals(result.size(), population.size());
+    Assert.assertEquals(result.getNumberOfObjectives(), 2);
+    for (int i = 0; i < population.size(); i++) {
+      Assert.assertEquals(result.getValue(i, 0), (double) i);
+      Assert.assertEquals(result.getValue(i, 1), -0.5 * i);
+    }
+  }
+
+  /**
+   * Tests that data in unknown version is rejected.
+   * @throws Exception Expected.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testUnknownVersion() throws Exception {
+    new BinaryTaskSerializer<Permutation>(new PermutationCodec()).deserialize(
+        new ByteArrayInputStream(new byte[] {99, 0}));
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,158 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link Compression}.
+ */
+public class CompressionTest {
+  // MagicNumber off
+
+  /**
+   * Tests that repetitive data spanning several blocks survives every
+   * compression and shrinks.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRepetitiveData() throws IOException {
+    byte[] data = new byte[200000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i % 251 < 100 ? i % 7 : i % 13);
+    }
+    for (Compression compression : Compression.values()) {
+      byte[] compressed = compress(compression, data);
+      Assert.assertEquals(decompress(compression, compressed), data);
+      if (compression != Compression.NONE) {
+        Assert.assertTrue(compressed.length < data.length / 4,
+            compression.getName() + ": " + compressed.length);
+      }
+    }
+  }
+
+  /**
+   * Tests that random data survives every compression and does not grow
+   * noticeably.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRandomData() throws IOException {
+    byte[] data = new byte[100000];
+    new Random(1).nextBytes(data);
+    for (Compression compression : Compression.values()) {
+      byte[] compressed = compress(compression, data);
+      Assert.assertEquals(decompress(compression, compressed), data);
+      Assert.assertTrue(compressed.length < data.length + 100);
+    }
+  }
+
+  /**
+   * Tests short inputs, including the empty one.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testShortData() throws IOException {
+    for (int length = 0; length < 40; length++) {
+      byte[] data = new byte[length];
+      Arrays.fill(data, (byte) 'a');
+      for (Compression compression : Compression.values()) {
+        Assert.assertEquals(
+            decompress(compression, compress(compression, data)), data);
+      }
+    }
+  }
+
+  /**
+   * Tests that a corrupted back reference is detected.
+   * @throws IOException Expected.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testCorruptedData() throws IOException {
+    byte[] data = new byte[1000];
+    byte[] compressed = compress(Compression.LZF, data);
+    // Block length, compressed flag and length, then a literal run of
+    // a single byte followed by a match reaching before the block.
+    byte[] corrupted = new byte[] {
+        compressed[0], compressed[1], 1, 4, 0, 'a', 0x3f, (byte) 0xff};
+    decompress(Compression.LZF, corrupted);
+  }
+
+  /**
+   * Tests parsing and formatting lists of compressions.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testNames() throws IOException {
+    Assert.assertEquals(Compression.parse("deflate, unknown,lzf,lzf"),
+        Arrays.asList(Compression.DEFLATE, Compression.LZF));
+    Assert.assertTrue(Compression.parse(null).isEmpty());
+    Assert.assertEquals(Compression.format(Compression.parse("lzf,deflate")),
+        "lzf,deflate");
+    Assert.assertEquals(Compression.forName(null), Compression.NONE);
+    Assert.assertEquals(Compression.forName("deflate"), Compression.DEFLATE);
+  }
+
+  /**
+   * Compresses the data.
+   * @param compression Compression to use.
+   * @param data Data to compress.
+   * @return Compressed data.
+   * @throws IOException Never thrown.
+   */
+  private byte[] compress(final Compression compression, final byte[] data)
+      throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    OutputStream output = compression.compress(compressed);
+    output.write(data);
+    output.close();
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Decompresses the data.
+   * @param compression Compression to use.
+   * @param data Data to decompress.
+   * @return Decompressed data.
+   * @throws IOException Thrown on corrupted data.
+   */
+  private byte[] decompress(final Compression compression, final byte[] data)
+      throws IOException {
+    InputStream input =
+        compression.decompress(new ByteArrayInputStream(data));
+    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1000];
+    int read;
+    while ((read = input.read(buffer)) > 0) {
+      decompressed.write(buffer, 0, read);
+    }
+    input.close();
+    return decompressed.toByteArray();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.slave;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import engine.distribution.utils.ProblemData;
+import engine.distribution.utils.WevoURL;
+
+/**
+ * Tests for {@link DataCache}.
+ */
+public class DataCacheTest {
+
+  /** Data served by the fake master. */
+  private byte[] served;
+
+  /** Number of connections opened to the fake master. */
+  private int connections;
+
+  /** Directory of the tested cache. */
+  private File directory;
+
+  /** Tested cache. */
+  private DataCache cache;
+
+  /**
+   * Sets up cache connected to a fake master.
+   * @throws IOException Never thrown.
+   */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    served = new byte[] {1, 2, 3};
+    connections = 0;
+    directory = File.createTempFile("wevo", "data");
+    directory.delete();
+
+    final URL url = new URL("http://localhost/data");
+    cache = new DataCache(new WevoURL(url) {
+      @Override
+      public HttpURLConnection openConnection() {
+        connections++;
+        return new HttpURLConnection(url) {
+          @Override
+          public void connect() {
+          }
+
+          @Override
+          public void disconnect() {
+          }
+
+          @Override
+          public boolean usingProxy() {
+            return false;
+          }
+
+          @Override
+          public int getResponseCode() {
+            return HTTP_OK;
+          }
+
+          @Override
+          public InputStream getInputStream() {
+            return new ByteArrayInputStream(served);
+          }
+        };
+      }
+    }, directory);
+  }
+
+  /** Removes the directory of the tested cache. */
+  @AfterMethod
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests that data is fetched once and then read from disk.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testFetchOnce() throws IOException {
+    String hash = ProblemData.hash(served);
+    Assert.assertEquals(cache.get("graph"), new byte[] {1, 2, 3});
+    Assert.assertEquals(cache.get("graph"), new byte[] {1, 2, 3});
+    Assert.assertEquals(connections, 1);
+    Assert.assertTrue(new File(directory, hash).isFile());
+
+    // New slave sharing the directory does not fetch the data again.
+    DataCache restarted = new DataCache((WevoURL) null, directory);
+    restarted.updateReferences(Collections.singletonMap("graph", hash));
+    Assert.assertEquals(restarted.get("graph"), new byte[] {1, 2, 3});
+  }
+
+  /**
+   * Tests that data republished under the same name is fetched again.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testNewReference() throws IOException {
+    cache.get("graph");
+    served = new byte[] {4, 5};
+    cache.updateReferences(ProblemData.parseReferences(
+        "graph=" + ProblemData.hash(served)));
+
+    Assert.assertEquals(cache.get("graph"), new byte[] {4, 5});
+    Assert.assertEquals(connections, 2);
+  }
+
+  /**
+   * Tests that data not matching its hash is rejected.
+   * @throws IOException Always thrown.
+   */
+  @Test(expectedExceptions = { IOException.class })
+  public void testCorruptedData() throws IOException {
+    cache.getByHash(ProblemData.hash(new byte[] {7}));
+   }
+}
@@ -70,6 +70,9 @@ public class SlaveRegistratorTest {
     connection.setRequestProperty(
         DistributionServlet.SLAVE_ID_PROPERTY,
         "slaveName");
+    connection.setRequestProperty(
+        DistributionServlet.ACCEPTED_COMPRESSIONS_PROPERTY,
+        "lzf,deflate");
 
     connection.connect();
     EasyMock.expect(connection.getResponseMessage())
@@ -79,9 +82,10 @@ public class SlaveRegistratorTest {
         DistributionServlet.SLAVE_ID_PROPERTY))
         .andReturn("SlaveID");
 
-    connection.disconnect();
+    url.release(connection);
 
-    registrator = new SlaveRegistrator(url);
+    registrator = new SlaveRegistrator(url,
+        SlaveRegistrator.DEFAULT_COMPRESSIONS);
 
     mockControl.replay();
     registrator.register("slaveName");
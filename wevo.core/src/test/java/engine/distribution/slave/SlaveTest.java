@@ -20,10 +20,14 @@
 package engine.distribution.slave;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.easymock.classextension.EasyMock;
 import org.easymock.classextension.IMocksControl;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import samples.objectivefunctions.EuclideanTSP;
@@ -34,6 +38,7 @@ import engine.SingleThreadedEvaluator;
 import engine.PopulationEvaluatorTest.DummyIndividual;
 import engine.distribution.serialization.EvaluationResult;
 import engine.distribution.serialization.EvaluationTask;
+import engine.distribution.utils.WevoURL;
 import engine.individuals.Permutation;
 import engine.utils.SystemClock;
 
@@ -278,10 +283,10 @@ public class SlaveTest {
         (String) EasyMock.anyObject(), EasyMock.anyInt()))
             .andThrow(new IllegalStateException("Stop the slave execution."));
 
-    taskExchangerMock.sendResult(
+    EasyMock.expect(taskExchangerMock.sendResultAndGetTask(
         (EvaluationResult<Permutation>) EasyMock.anyObject(),
-        (String) EasyMock.anyObject());
-    EasyMock.expectLastCall().anyTimes();
+        (String) EasyMock.anyObject(), EasyMock.anyLong()))
+            .andReturn(null).anyTimes();
 
     Slave<Permutation> testedSlave = new Slave<Permutation>(
         "",
@@ -300,4 +305,117 @@ public class SlaveTest {
     // LineLength on
     // MagicNumber on
   }
+
+  /**
+   * Tests that slave fetching tasks ahead evaluates all tasks and sends
+   * their results with task identifiers.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  @Test
+  public void testRunWithTasksAhead() throws ClassNotFoundException {
+    // MagicNumber off
+    final List<Long> sentTasks =
+        Collections.synchronizedList(new ArrayList<Long>());
+    final List<Integer> sentSizes =
+        Collections.synchronizedList(new ArrayList<Integer>());
+    TaskExchanger<Permutation> exchanger =
+        new TaskExchanger<Permutation>(null, null, (WevoURL) null) {
+          private int fetched;
+
+          @Override
+          public EvaluationTask<Permutation> getTask(
+              final String id, final int backoff) {
+            if (fetched == 3) {
+              throw new IllegalStateException("Stop the slave execution.");
+            }
+            fetched++;
+            return new EvaluationTask<Permutation>(
+                new Population<Permutation>(Arrays.asList(
+                    new Permutation(new int[] {0, 1, 2}),
+                    new Permutation(new int[fetched + 1]))), 10 + fetched);
+          }
+
+          @Override
+          public void sendResult(final EvaluationResult<Permutation> result,
+              final String id, final long taskId) {
+            sentTasks.add(taskId);
+            sentSizes.add(result.size());
+          }
+        };
+
+    Slave<Permutation> testedSlave = new Slave<Permutation>(
+        "",
+        new SingleThreadedEvaluator<Permutation>(
+            Arrays.asList(new CachedObjectiveFunction<Permutation>(
+                new EuclideanTSP(), 25))),
+        exchanger,
+        null,
+        "slave",
+        new SystemClock());
+    testedSlave.setSlaveId("slaveid");
+
+    try {
+      testedSlave.run(10, -1, 2);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(sentTasks, Arrays.asList(11L, 12L, 13L));
+      Assert.assertEquals(sentSizes, Arrays.asList(2, 2, 2));
+    }
+    // MagicNumber on
+  }
+
+  /**
+   * Tests that slave fetching tasks ahead skips a task it already holds,
+   * sent again by a master limiting the number of tasks per slave.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  @Test
+  public void testRunWithTaskSentAgain() throws ClassNotFoundException {
+    // MagicNumber off
+    final List<Long> sentTasks =
+        Collections.synchronizedList(new ArrayList<Long>());
+    TaskExchanger<Permutation> exchanger =
+        new TaskExchanger<Permutation>(null, null, (WevoURL) null) {
+          private long nextId = 11;
+
+          @Override
+          public EvaluationTask<Permutation> getTask(
+              final String id, final int backoff) {
+            if (sentTasks.contains(nextId)) {
+              nextId++;
+            }
+            if (nextId == 13) {
+              throw new IllegalStateException("Stop the slave execution.");
+            }
+            return new EvaluationTask<Permutation>(
+                new Population<Permutation>(Arrays.asList(
+                    new Permutation(new int[] {0, 1, 2}))), nextId);
+          }
+
+          @Override
+          public void sendResult(final EvaluationResult<Permutation> result,
+              final String id, final long taskId) {
+            sentTasks.add(taskId);
+          }
+        };
+
+    Slave<Permutation> testedSlave = new Slave<Permutation>(
+        "",
+        new SingleThreadedEvaluator<Permutation>(
+            Arrays.asList(new CachedObjectiveFunction<Permutation>(
+                new EuclideanTSP(), 25))),
+        exchanger,
+        null,
+        "slave",
+        new SystemClock());
+    testedSlave.setSlaveId("slaveid");
+
+    try {
+      testedSlave.run(10, -1, 2);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(sentTasks, Arrays.asList(11L, 12L));
+    }
+    // MagicNumber on
+  }
 }
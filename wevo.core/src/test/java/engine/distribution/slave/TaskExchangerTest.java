@@ -147,6 +147,10 @@ public class TaskExchangerTest {
     EasyMock.expect(taskSerializerMock.deserialize(null))
         .andReturn(transferredTask);
 
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.LONG_POLL_PROPERTY))
+        .andStubReturn(null);
+
     mockControl.replay();
     EvaluationTask<DummyIndividual> actualTask =
         exchanger.getTask(slaveId, 0);
@@ -196,15 +200,104 @@ public class TaskExchangerTest {
         DistributionServlet.SLAVE_ID_PROPERTY,
         slaveId);
     connectionMock.connect();
-    connectionMock.disconnect();
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.COMPRESSION_PROPERTY))
+        .andStubReturn(null);
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.TASK_ID_PROPERTY))
+        .andStubReturn(null);
+    urlMock.release(connectionMock);
+    EasyMock.expectLastCall().anyTimes();
   }
 
+  /**
+   * Tests that slave does not back off after the server held the request.
+   * @throws IOException Never thrown.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  // MagicNumber off
+  @Test(timeOut = 10000)
+  public void testGettingPopulationWithLongPoll()
+      throws IOException, ClassNotFoundException {
+
+    setUpCommonGettingBehavior();
+
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.LONG_POLL_PROPERTY))
+        .andStubReturn("30000");
+    EasyMock.expect(connectionMock.getResponseCode())
+        .andReturn(HttpURLConnection.HTTP_NO_CONTENT)
+        .times(2);
+    EasyMock.expect(connectionMock.getResponseCode())
+        .andReturn(HttpURLConnection.HTTP_OK);
+    EasyMock.expect(connectionMock.getInputStream())
+        .andReturn(null);
+    EasyMock.expect(taskSerializerMock.deserialize(null))
+        .andReturn(transferredTask);
+
+    mockControl.replay();
+    EvaluationTask<DummyIndividual> actualTask =
+        exchanger.getTask(slaveId, 60000);
+    mockControl.verify();
+
+    Assert.assertEquals(transferredTask, actualTask);
+  }
+  // MagicNumber on
+
   /**
    * Tests population sending behavior. 
    * @throws IOException Never thrown.
    */
   @Test
   public void testSendingPopulation() throws IOException {
+    setUpCommonSendingBehavior();
+    EasyMock.expect(connectionMock.getResponseMessage())
+        .andStubReturn("");
+    EasyMock.expect(connectionMock.getResponseCode())
+        .andStubReturn(HttpURLConnection.HTTP_ACCEPTED);
+
+    mockControl.replay();
+    exchanger.sendResult(returnedResult, slaveId);
+    mockControl.verify();
+  }
+
+  /**
+   * Tests that the next task is retrieved with the response to the result.
+   * @throws IOException Never thrown.
+   * @throws ClassNotFoundException Never thrown.
+   */
+  @Test
+  public void testSendingPopulationAndGettingTask()
+      throws IOException, ClassNotFoundException {
+    setUpCommonSendingBehavior();
+    connectionMock.setRequestProperty(
+        DistributionServlet.NEXT_TASK_PROPERTY, "true");
+    EasyMock.expect(connectionMock.getResponseCode())
+        .andReturn(HttpURLConnection.HTTP_OK);
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.COMPRESSION_PROPERTY))
+        .andStubReturn(null);
+    EasyMock.expect(connectionMock.getHeaderField(
+        DistributionServlet.TASK_ID_PROPERTY))
+        .andStubReturn(null);
+    EasyMock.expect(connectionMock.getInputStream())
+        .andReturn(null);
+    EasyMock.expect(taskSerializerMock.deserialize(null))
+        .andReturn(transferredTask);
+
+    mockControl.replay();
+    EvaluationTask<DummyIndividual> actualTask = exchanger
+        .sendResultAndGetTask(returnedResult, slaveId, EvaluationTask.NO_ID);
+    mockControl.verify();
+
+    Assert.assertEquals(transferredTask, actualTask);
+  }
+
+  /**
+   * Sets up mock behavior common for all tests related to sending results.
+   * @throws IOException Never thrown.
+   */
+  private void setUpCommonSendingBehavior() throws IOException {
     mockControl.reset();
     EasyMock.expect(urlMock.openConnection())
         .andStubReturn(connectionMock);
@@ -212,6 +305,7 @@ public class TaskExchangerTest {
     connectionMock.setDoOutput(true);
     connectionMock.setUseCaches(false);
     connectionMock.setRequestMethod("POST");
+    connectionMock.setChunkedStreamingMode(EasyMock.anyInt());
     connectionMock.setRequestProperty("Content-Type",
         "application/octet-stream");
     connectionMock.setRequestProperty(
@@ -222,13 +316,7 @@ public class TaskExchangerTest {
     EasyMock.expect(connectionMock.getOutputStream())
         .andReturn(null);
     resultSerializerMock.serialize(null, returnedResult);
-    EasyMock.expect(connectionMock.getResponseMessage())
-        .andReturn("");
-    connectionMock.disconnect();
-
-    mockControl.replay();
-    exchanger.sendResult(returnedResult, slaveId);
-    mockControl.verify();
+    urlMock.release(connectionMock);
   }
 
   /** Sets up testing environment. */
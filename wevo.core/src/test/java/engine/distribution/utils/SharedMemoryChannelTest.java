@@ -0,0 +1,143 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.distribution.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link SharedMemoryChannel}.
+ */
+public class SharedMemoryChannelTest {
+  // MagicNumber off
+
+  /** Directory of the channels. */
+  private File directory;
+
+  /** Slave side of the channel. */
+  private SharedMemoryChannel slave;
+
+  /** Master side of the channel. */
+  private SharedMemoryChannel master;
+
+  /**
+   * Creates a channel with small rings.
+   * @throws IOException Thrown when unable to create the channel.
+   */
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = File.createTempFile("wevo", "shm");
+    directory.delete();
+    directory.mkdirs();
+    slave = SharedMemoryChannel.create(directory, 16);
+    Assert.assertTrue(slave.getFile().getName().endsWith(
+        SharedMemoryChannel.SUFFIX));
+    master = SharedMemoryChannel.open(slave.getFile());
+  }
+
+  /** Removes the channel. */
+  @AfterMethod
+  public void tearDown() {
+    slave.getFile().delete();
+    directory.delete();
+  }
+
+  /** Tests that writes stop when the ring is full and wrap around. */
+  @Test
+  public void testNonBlockingTransfer() throws IOException {
+    ByteBuffer source = ByteBuffer.wrap(sequence(24));
+    Assert.assertEquals(slave.write(source), 16);
+    Assert.assertEquals(slave.write(source), 0);
+
+    ByteBuffer destination = ByteBuffer.allocate(24);
+    destination.limit(10);
+    Assert.assertEquals(master.read(destination), 10);
+    Assert.assertEquals(slave.write(source), 8);
+    destination.limit(24);
+    Assert.assertEquals(master.read(destination), 14);
+    Assert.assertEquals(master.read(destination), 0);
+    Assert.assertEquals(destination.array(), sequence(24));
+
+    // The other direction is independent.
+    Assert.assertEquals(master.write(ByteBuffer.wrap(sequence(3))), 3);
+    ByteBuffer reply = ByteBuffer.allocate(3);
+    Assert.assertEquals(slave.read(reply), 3);
+    Assert.assertEquals(reply.array(), sequence(3));
+  }
+
+  /** Tests that blocking transfers stream data larger than the ring. */
+  @Test(timeOut = 10000)
+  public void testBlockingTransfer() throws Exception {
+    slave.configureBlocking(true);
+    master.configureBlocking(true);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          ByteBuffer source = ByteBuffer.wrap(sequence(1000));
+          while (source.hasRemaining()) {
+            slave.write(source);
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    writer.start();
+
+    ByteBuffer destination = ByteBuffer.allocate(1000);
+    while (destination.hasRemaining()) {
+      Assert.assertTrue(master.read(destination) > 0);
+    }
+    writer.join();
+    Assert.assertEquals(destination.array(), sequence(1000));
+  }
+
+  /** Tests that the reader gets remaining data before the end of stream. */
+  @Test
+  public void testClose() throws IOException {
+    slave.write(ByteBuffer.wrap(sequence(3)));
+    slave.close();
+    Assert.assertFalse(slave.isOpen());
+
+    ByteBuffer destination = ByteBuffer.allocate(8);
+    Assert.assertEquals(master.read(destination), 3);
+    Assert.assertEquals(master.read(destination), -1);
+  }
+
+  /**
+   * Creates bytes of consecutive values.
+   * @param length Number of bytes.
+   * @return Bytes 0, 1, 2...
+   */
+  private static byte[] sequence(final int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.Operator;
+import engine.Population;
+
+/**
+ * Tests for {@link StreamingOperatorChain} and streaming operators.
+ */
+@Test
+public class StreamingOperatorChainTest {
+
+  /** Appends a suffix to every individual. */
+  private static class Suffix extends IndividualOperator<String> {
+    /** Suffix to append. */
+    private final String suffix;
+
+    /**
+     * Creates the operator.
+     * @param suffix Suffix to append.
+     */
+    Suffix(final String suffix) {
+      this.suffix = suffix;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String transform(final String individual) {
+      return individual + suffix;
+    }
+  }
+
+  /** Concatenates pairs of individuals both ways. */
+  private static class Swap extends PairwiseOperator<String> {
+    /** {@inheritDoc} */
+    @Override
+    protected List<String> combine(final String first, final String second) {
+      return Arrays.asList(first + second, second + first);
+    }
+  }
+
+  /** Reverses order of individuals, requires random access. */
+  private static class Reverse implements Operator<String> {
+    /** {@inheritDoc} */
+    public Population<String> apply(Population<String> population) {
+      List<String> result = new ArrayList<String>();
+      for (int i = population.size() - 1; i >= 0; i--) {
+        result.add(population.getIndividuals().get(i));
+      }
+      return new Population<String>(result);
+    }
+  }
+
+  /**
+   * Creates population of given individuals.
+   * @param individuals Individuals.
+   * @return Population.
+   */
+  private static Population<String> population(String... individuals) {
+    return new Population<String>(
+        new ArrayList<String>(Arrays.asList(individuals)));
+  }
+
+  /** Tests that the chain gives the same result as regular operators. */
+  public void testSameAsRegularOperators() {
+    Population<String> population = population("a", "b", "c", "d", "e");
+    Population<String> expected = new Suffix("2").apply(
+        new Reverse().apply(new Swap().apply(
+            new Suffix("1").apply(population))));
+
+    StreamingOperatorChain<String> chain = new StreamingOperatorChain<String>()
+        .add(new Suffix("1"))
+        .add(new Swap())
+        .add(new MaterializingAdapter<String>(new Reverse()))
+        .add(new Suffix("2"));
+
+    Assert.assertEquals(chain.apply(population), expected);
+    Assert.assertEquals(expected.getIndividuals().get(0), "e12");
+  }
+
+  /** Tests that streaming operators pull only what is consumed. */
+  public void testLaziness() {
+    final int[] pulled = new int[1];
+    final Iterator<String> source =
+        population("a", "b", "c", "d").getIndividuals().iterator();
+    Iterator<String> counting = new Iterator<String>() {
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      public String next() {
+        pulled[0]++;
+        return source.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    Iterator<String> result = new Swap().apply(new Suffix("x").apply(counting));
+    Assert.assertEquals(pulled[0], 0);
+    Assert.assertEquals(result.next(), "axbx");
+    Assert.assertEquals(pulled[0], 2);
+    Assert.assertEquals(result.next(), "bxax");
+    Assert.assertEquals(pulled[0], 2);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import engine.ObjectiveFunction;
+import engine.Population;
+
+/**
+ * Tests for {@link WorstReplacement}.
+ */
+public class WorstReplacementTest {
+
+  /** Tests that better offspring replace the worst individuals only. */
+  @Test
+  public void testReplace() {
+    WorstReplacement<String> policy = new WorstReplacement<String>(
+        new ObjectiveFunction<String>() {
+          public double compute(String individual) {
+            return individual.length();
+          }
+        });
+    Population<String> population = policy.replace(
+        new Population<String>(Arrays.asList("aaa", "b", "cc")),
+        new Population<String>(Arrays.asList("dddd", "e", "fff")));
+    assertEquals(population.getIndividuals(),
+        Arrays.asList("aaa", "dddd", "fff"));
+  }
+
+  /**
+   * Tests that replacing into the returned population computes values of
+   * the offspring only.
+   */
+  @Test
+  public void testValuesKept() {
+    final List<String> computed = new ArrayList<String>();
+    WorstReplacement<String> policy = new WorstReplacement<String>(
+        new ObjectiveFunction<String>() {
+          public double compute(String individual) {
+            computed.add(individual);
+            return individual.length();
+          }
+        });
+    Population<String> population = policy.replace(
+        new Population<String>(Arrays.asList("aaa", "b")),
+        new Population<String>(Arrays.asList("cc")));
+    computed.clear();
+    population = policy.replace(population,
+        new Population<String>(Arrays.asList("dddd")));
+
+    assertEquals(population.getIndividuals(), Arrays.asList("aaa", "dddd"));
+    assertEquals(computed, Arrays.asList("dddd"));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.operators.natural;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import engine.Population;
+import engine.individuals.NaturalVector;
+
+/**
+ * Tests for {@link IntervalCutoff}.
+ */
+public class IntervalCutoffTest {
+  // MagicNumber off
+
+  /**
+   * Tests that genes out of the interval are brought back to it, and that
+   * individuals within the interval are kept as the very same objects.
+   */
+  @Test
+  public void testCutoff() {
+    NaturalVector inside = new NaturalVector(new long[] {1, 5, 3});
+    NaturalVector outside = new NaturalVector(new long[] {-2, 5, 9});
+    List<NaturalVector> result = new IntervalCutoff(0, 5).apply(
+        new Population<NaturalVector>(Arrays.asList(inside, outside)))
+        .getIndividuals();
+
+    Assert.assertSame(result.get(0), inside);
+    Assert.assertEquals(result.get(1),
+        new NaturalVector(new long[] {0, 5, 5}));
+    Assert.assertEquals(outside, new NaturalVector(new long[] {-2, 5, 9}));
+  }
+
+  // MagicNumber on
+}
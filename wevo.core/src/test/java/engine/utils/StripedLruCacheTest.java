@@ -0,0 +1,78 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link StripedLruCache}.
+ */
+public class StripedLruCacheTest {
+  // MagicNumber off
+
+  /** Tests that small caches are not striped and evict like LruMap. */
+  @Test
+  public void testSmallCache() {
+    StripedLruCache<String, Integer> cache =
+        new StripedLruCache<String, Integer>(3);
+    Assert.assertEquals(cache.getStripeCount(), 1);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    Assert.assertEquals(cache.get("a").intValue(), 1);
+    cache.put("d", 4);
+    Assert.assertTrue(cache.containsKey("a"));
+    Assert.assertFalse(cache.containsKey("b"));
+    Assert.assertEquals(new ArrayList<String>(cache.copy().keySet()),
+        Arrays.asList("c", "a", "d"));
+  }
+
+  /**
+   * Tests that large caches are striped, hold their size and can be
+   * reproduced from a copy.
+   */
+  @Test
+  public void testStripedCache() {
+    StripedLruCache<Integer, Integer> cache =
+        new StripedLruCache<Integer, Integer>(4096);
+    Assert.assertEquals(cache.getStripeCount(), 16);
+    for (int i = 0; i < 4096; i++) {
+      cache.put(i, -i);
+    }
+    for (int i = 0; i < 4096; i++) {
+      Assert.assertEquals(cache.get(i).intValue(), -i);
+    }
+
+    Map<Integer, Integer> copy = cache.copy();
+    Assert.assertEquals(copy.size(), 4096);
+    StripedLruCache<Integer, Integer> restored =
+        new StripedLruCache<Integer, Integer>(4096);
+    restored.putAll(copy);
+    Assert.assertEquals(new ArrayList<Integer>(restored.copy().keySet()),
+        new ArrayList<Integer>(copy.keySet()));
+  }
+
+  // MagicNumber on
+}
@@ -0,0 +1,78 @@
+/*
+ * Wevo2 - Distributed Evolutionary Computation Library.
+ * Copyright (C) 2009 Marcin Brodziak
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ *    Boston, MA  02110-1301  USA
+ */
+package engine.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link VarIntUtils}.
+ */
+public class VarIntUtilsTest {
+  // MagicNumber off
+
+  /**
+   * Tests values around byte boundaries.
+   * @throws IOException Never thrown.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    int[] values = {0, 1, 127, 128, 16383, 16384, 1 << 28,
+        Integer.MAX_VALUE};
+    int[] sizes = {1, 1, 1, 2, 2, 3, 5, 5};
+    for (int i = 0; i < values.length; i++) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      VarIntUtils.writeUnsignedInt(new DataOutputStream(bytes), values[i]);
+      Assert.assertEquals(bytes.size(), sizes[i]);
+      Assert.assertEquals(VarIntUtils.readUnsignedInt(new DataInputStream(
+          new ByteArrayInputStream(bytes.toByteArray()))), values[i]);
+    }
+  }
+
+  /**
+   * Tests that negative values are rejected.
+   * @throws IOException Never thrown.
+   */
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeValue() throws IOException {
+    VarIntUtils.writeUnsignedInt(
+        new DataOutputStream(new ByteArrayOutputStream()), -1);
+  }
+
+  /**
+   * Tests that too long encodings are rejected.
+   * @throws IOException Expected.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testMalformedInput() throws IOException {
+    byte[] bytes = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF, 0x01};
+    VarIntUtils.readUnsignedInt(
+        new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  // MagicNumber on
+}